@@ -15,6 +15,9 @@ import java.util.zip.DataFormatException;
  * "0" is not instantiated as a selector (and will be ignored by convert_instance()).
  *
  * target_attr_count = 0  (pure association rule mining).
+ *
+ * With set_record_cache(true, ...), the rows are kept as sparse EncodedRecords during fetch_info
+ * (only the values other than "0"), so the data section is not read again.
  */
 public class ARFFReader extends DataReader {
 
@@ -68,6 +71,8 @@ public class ARFFReader extends DataReader {
         this.attributes.clear();
         this.attrNames.clear();
         this.seenData = false;
+        this.release_encoded_records();
+        EncodedRecords records = null;
 
         int rows = 0;
         // 1) Parse header (@relation / @attribute) and remember attribute names
@@ -98,23 +103,27 @@ public class ARFFReader extends DataReader {
             this.attr_count = attrNames.size();
             this.predict_attr_count = this.attr_count;
             this.target_attr_count = 0; // pure ARM
+            if (this.record_cache) {
+                records = new EncodedRecords(this.attr_count, true);
+                if (this.record_spill) records.spill();
+            }
 
             // 2) First pass over data to count "1"s per attribute (works for both dense and sparse)
             int[] onesFreq = new int[this.attr_count];
+            SparseRecord pairs = new SparseRecord();
             while ((line = br.readLine()) != null) {
                 String s = line.trim();
                 if (s.isEmpty() || s.startsWith("%")) continue;
 
                 rows++;
+                if (records != null) records.begin_record();
                 if (s.startsWith("{")) {
                     // Sparse row
-                    Map<Integer,String> pairs = parseSparsePairs(s);
-                    for (Map.Entry<Integer,String> e : pairs.entrySet()) {
-                        int idx = e.getKey();
-                        String val = e.getValue();
-                        if (idx >= 0 && idx < this.attr_count && isOne(val)) {
-                            onesFreq[idx]++;
-                        }
+                    parseSparseOnes(s, pairs);
+                    for (int p = 0; p < pairs.size(); p++) {
+                        int idx = pairs.getAttrIndex(p);
+                        onesFreq[idx]++;
+                        if (records != null) records.add(idx, "1");
                     }
                 } else {
                     // Dense row (comma-separated tokens)
@@ -126,7 +135,16 @@ public class ARFFReader extends DataReader {
                     } else {
                         for (int i = 0; i < toks.length; i++) if (isOne(toks[i])) onesFreq[i]++;
                     }
+                    if (records != null) {
+                        // values as next_record() gives them, "0" has no selector
+                        int upto = Math.min(toks.length, this.attr_count);
+                        for (int i = 0; i < upto; i++) {
+                            String val = toks[i].trim();
+                            if (!val.equals("0")) records.add(i, val);
+                        }
+                    }
                 }
+                if (records != null) records.end_record();
             }
 
             this.row_count = rows;
@@ -147,8 +165,12 @@ public class ARFFReader extends DataReader {
             this.prepare_selectors();
         }
 
-        // 4) Ready for streaming
-        bind_datasource(data_filename);
+        // 4) Ready for streaming, or for reading the kept records
+        if (records != null) {
+            records.finish();
+            records.bind(this.attributes);
+            this.encoded_records = records;
+        } else bind_datasource(data_filename);
     }
 
     @Override
@@ -164,14 +186,9 @@ public class ARFFReader extends DataReader {
                 // Sparse -> expand to dense 0/1 tokens
                 String[] dense = new String[this.attr_count];
                 Arrays.fill(dense, "0");
-                Map<Integer,String> pairs = parseSparsePairs(s);
-                for (Map.Entry<Integer,String> e : pairs.entrySet()) {
-                    int idx = e.getKey();
-                    String val = e.getValue();
-                    if (0 <= idx && idx < this.attr_count && isOne(val)) {
-                        dense[idx] = "1";
-                    }
-                }
+                SparseRecord pairs = new SparseRecord();
+                parseSparseOnes(s, pairs);
+                for (int p = 0; p < pairs.size(); p++) dense[pairs.getAttrIndex(p)] = "1";
                 return dense;
             } else {
                 // Dense 0/1 tokens
@@ -189,6 +206,46 @@ public class ARFFReader extends DataReader {
         return null;
     }
 
+    @Override
+    public boolean hasSparseRecordReader() {
+        return true;
+    }
+
+    /** Attributes without a pair in a sparse row are "0" */
+    @Override
+    protected String getSparseDefaultValue() {
+        return "0";
+    }
+
+    /**
+     * Sparse rows give only the pairs of "1" values, without expanding the row to all attributes.
+     * Dense rows give the (trimmed) values other than "0", the same values as next_record() after trimming.
+     */
+    @Override
+    public SparseRecord next_sparse_record(SparseRecord record) throws IOException {
+        if (this.input == null) return null;
+
+        String line;
+        while ((line = input.readLine()) != null) {
+            String s = line.trim();
+            if (s.isEmpty() || s.startsWith("%")) continue;
+
+            if (s.startsWith("{")) {
+                parseSparseOnes(s, record);
+            } else {
+                record.clear();
+                String[] toks = s.split(",", -1);
+                int upto = Math.min(toks.length, this.attr_count);
+                for (int i = 0; i < upto; i++) {
+                    String val = toks[i].trim();
+                    if (!val.equals("0")) record.add(i, val);
+                }
+            }
+            return record;
+        }
+        return null;
+    }
+
     // ---------- helpers ----------
 
     private static boolean isOne(String v) {
@@ -212,27 +269,88 @@ public class ARFFReader extends DataReader {
         return (sp > 0) ? rest.substring(0, sp).trim() : rest;
     }
 
-    private static Map<Integer,String> parseSparsePairs(String s) {
-        // accept "{i 1,  j 1}" OR "{i:1, j:1}"
-        Map<Integer,String> m = new HashMap<>();
-        String inside = s;
-        if (inside.startsWith("{") && inside.endsWith("}")) inside = inside.substring(1, inside.length()-1);
-        if (inside.isEmpty()) return m;
-
-        String[] segs = inside.split(",");
-        for (String seg : segs) {
-            String t = seg.trim();
-            if (t.isEmpty()) continue;
-            t = t.replace(':', ' ');               // normalize "i:1" -> "i 1"
-            String[] iv = t.split("\\s+");
-            if (iv.length >= 2) {
+    /**
+     * Parse a sparse row "{i 1,  j 1}" OR "{i:1, j:1}" into the pairs (i, "1") of the attributes whose value is one,
+     * in ascending order of attribute indices, without creating a String per pair.
+     * If an index occurs more than once, its last value counts. Segments which are not a pair of an integer index
+     * and a value are ignored, as well as indices out of range.
+     */
+    private void parseSparseOnes(String s, SparseRecord record) {
+        record.clear();
+        int from = 0, to = s.length();
+        if (s.startsWith("{") && s.endsWith("}")) {
+            from = 1;
+            to = s.length() - 1;
+        }
+        while (from < to) {
+            int comma = s.indexOf(',', from);
+            if (comma < 0 || comma > to) comma = to;
+            parsePair(s, from, comma, record);
+            from = comma + 1;
+        }
+
+        // keep the last value of each index, then only the ones
+        record.sort_unique();
+        record.retain(this.attr_count, "1");
+    }
+
+    /** Add the pair (index, "1" or "0") of the segment s[from, to) if it is "index value" or "index:value" */
+    private static void parsePair(String s, int from, int to, SparseRecord record) {
+        // String.trim()
+        while (from < to && s.charAt(from) <= ' ') from++;
+        while (to > from && s.charAt(to-1) <= ' ') to--;
+
+        int i = from;
+        while (i < to && !isPairSeparator(s.charAt(i))) i++;
+        int index_end = i;
+        while (i < to && isPairSeparator(s.charAt(i))) i++;
+        int value_start = i;
+        while (i < to && !isPairSeparator(s.charAt(i))) i++;
+        if (index_end == from || value_start == to) return;
+
+        long idx = parseIndex(s, from, index_end);
+        if (idx == Long.MIN_VALUE) return;
+        record.add((int) idx, isOne(s, value_start, i) ? "1" : "0");
+    }
+
+    private static boolean isPairSeparator(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r' || ch == ':';
+    }
+
+    /** @return Integer.parseInt(s[from, to)), Long.MIN_VALUE if it is not an int */
+    private static long parseIndex(String s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (s.charAt(i) == '+' || s.charAt(i) == '-') {
+            negative = (s.charAt(i) == '-');
+            i++;
+        }
+        if (i == to) return Long.MIN_VALUE;
+        long value = 0;
+        for (; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                // non-ASCII digits
                 try {
-                    int idx = Integer.parseInt(iv[0]);
-                    String val = iv[1].trim();
-                    m.put(idx, val);
-                } catch (NumberFormatException ignore) {}
+                    return Integer.parseInt(s.substring(from, to));
+                } catch (NumberFormatException e) {
+                    return Long.MIN_VALUE;
+                }
             }
+            value = 10*value + (ch - '0');
+            if (value > Integer.MAX_VALUE + 1L) return Long.MIN_VALUE;
         }
-        return m;
+        value = negative ? -value : value;
+        return (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) ? Long.MIN_VALUE : value;
+    }
+
+    /** isOne(...) of s[from, to) */
+    private static boolean isOne(String s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') from++;
+        while (to > from && s.charAt(to-1) <= ' ') to--;
+        int length = to - from;
+        return (length == 1 && s.charAt(from) == '1')
+                || (length == 3 && s.regionMatches(from, "1.0", 0, 3))
+                || (length == 4 && s.regionMatches(true, from, "true", 0, 4));
     }
 }
@@ -76,7 +76,7 @@ public class Attribute{
 					// Therefore, cannot use directly 'value' as a string to get the corresponding Selector
 					return this.distinct_values.get(Double.parseDouble(value)+"");
 				}else{
-					return this.distinct_values.get(str_intervals[this.find_right_index(
+					return this.distinct_values.get(str_intervals[find_right_index(
 							this.discretized_values, Double.parseDouble(value))]);
 				}
 			default:
@@ -94,7 +94,7 @@ public class Attribute{
 					// Treat as a nominal attribute because it cannot be discretized.
 					return value;
 				}else{
-					return str_intervals[this.find_right_index(this.discretized_values, Double.parseDouble(value))];
+					return str_intervals[find_right_index(this.discretized_values, Double.parseDouble(value))];
 				}
 			default:
 				return value;
@@ -116,6 +116,17 @@ public class Attribute{
 		this.distinct_values = this.build_distinct_values(discretized_values, attr_values, this.str_intervals);
 	}
 	
+	/**
+	 * Restore the state of a preprocessed attribute, e.g. from a stored snapshot
+	 * @param discretized_values cut points of a discretized numeric attribute, null if the attribute is not discretized
+	 * @param distinct_values map of distinct values (intervals for a discretized attribute) to their selectors
+	 */
+	public void restore(double[] discretized_values, Map<String, Selector> distinct_values){
+		this.discretized_values = discretized_values;
+		this.str_intervals = (discretized_values == null) ? null : this.build_str_intervals(discretized_values);
+		this.distinct_values = distinct_values;
+	}
+
 	private Map<String, Selector> build_distinct_values_as_nominal_one(double[] attr_values){
 		Map<String, Selector> distinct_values = new HashMap<String, Selector>();
 		
@@ -167,13 +178,30 @@ public class Attribute{
 		
 		for(double value : attr_values){
 			if(Double.isNaN(value)) continue;
-			distinct_values.get(str_intervals[this.find_right_index(discretized_values, value)]).frequency++;
+			distinct_values.get(str_intervals[find_right_index(discretized_values, value)]).frequency++;
 		}
 		
 		return distinct_values;
 	}
 	
-	private int find_right_index(double[] discretized_values, double value){
+	/**
+	 * @return the number of intervals of a discretized numeric attribute, 0 if the attribute is not discretized
+	 */
+	int getIntervalCount(){
+		return (this.str_intervals == null) ? 0 : this.str_intervals.length;
+	}
+	
+	/**
+	 * @return the selector of the interval-th interval of a discretized numeric attribute
+	 */
+	Selector getIntervalSelector(int interval){
+		return this.distinct_values.get(this.str_intervals[interval]);
+	}
+	
+	/**
+	 * @return the index of the interval which the value belongs to
+	 */
+	static int find_right_index(double[] discretized_values, double value){
 		int low_index=0, middle, high_index=discretized_values.length-1;
 		
 		while((high_index-low_index) > 1){
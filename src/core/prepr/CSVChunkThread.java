@@ -0,0 +1,172 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.prepr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.structure.IntHolder;
+
+/**
+ * Worker thread for the parallel ingestion of a CSV file in CSVReader.
+ * </br>Chunks (byte ranges of whole lines) are claimed one by one via the shared 'globalIndex'.
+ * Depending on the phase, a worker either tokenizes a chunk into records of local dictionary codes,
+ * or remaps the local codes of a chunk to the codes of the merged dictionaries.
+ */
+class CSVChunkThread extends Thread{
+	public static final int PARSE = 0;
+	public static final int REMAP = 1;
+
+	private int phase;
+	private Chunk[] chunks;
+	private FileChannel channel;
+	private Charset charset;
+	private char delimiter;
+	private int attr_count;
+	private IntHolder globalIndex;
+	private IOException error = null;
+
+	public CSVChunkThread(int phase,
+						Chunk[] chunks,
+						FileChannel channel,
+						Charset charset,
+						char delimiter,
+						int attr_count,
+						IntHolder globalIndex){
+		this.phase = phase;
+		this.chunks = chunks;
+		this.channel = channel;
+		this.charset = charset;
+		this.delimiter = delimiter;
+		this.attr_count = attr_count;
+		this.globalIndex = globalIndex;
+	}
+
+	/**
+	 * @return the exception thrown while reading a chunk, null if there is none
+	 */
+	public IOException getError(){
+		return this.error;
+	}
+
+	public void run(){
+		int chunk_index;
+		while (true){
+			synchronized(globalIndex){
+				if(this.globalIndex.value >= this.chunks.length) break;
+				chunk_index = this.globalIndex.value;
+				this.globalIndex.value++;
+			}
+
+			try{
+				if(this.phase == PARSE) this.parse(this.chunks[chunk_index]);
+				else this.chunks[chunk_index].remap();
+			}catch(IOException e){
+				this.error = e;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Tokenize the lines of a chunk the same way as CSVReader.fetch_info does
+	 */
+	private void parse(Chunk chunk) throws IOException{
+		int length = (int)(chunk.end - chunk.start);
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()){
+			if(this.channel.read(buffer, chunk.start + buffer.position()) < 0) break;
+		}
+		buffer.flip();
+		CharBuffer text = this.charset.decode(buffer);
+
+		chunk.init(this.attr_count);
+		CSVTokenizer tokenizer = new CSVTokenizer(this.delimiter);
+		tokenizer.reset(text.array(), text.arrayOffset() + text.position(), text.arrayOffset() + text.limit());
+		while(tokenizer.next_line()){
+			if(chunk.samples.size() < 3) chunk.samples.add(tokenizer.line());
+			for(int i=0; i<this.attr_count; i++){
+				if(tokenizer.next_value() && !tokenizer.is_null) chunk.add(i, tokenizer.buffer, tokenizer.start, tokenizer.end);
+				else chunk.codes.add(EncodedRecords.NULL_CODE);
+			}
+			chunk.rows++;
+		}
+	}
+
+	/**
+	 * A byte range [start, end) of whole lines in a CSV file and its records encoded as codes of its local dictionaries
+	 */
+	static class Chunk{
+		final long start, end;
+		int rows = 0;
+		IntegerArray codes;
+
+		/**
+		 * Per attribute: local dictionary (token <--> local code), local code --> count
+		 */
+		TokenTable[] tokens;
+		IntegerArray[] counts;
+
+		/**
+		 * Up to 3 first lines of the chunk, for printing samples
+		 */
+		List<String> samples = new ArrayList<String>(3);
+
+		/**
+		 * Per attribute: local code --> merged code, set by the merging of dictionaries
+		 */
+		int[][] remap;
+
+		Chunk(long start, long end){
+			this.start = start;
+			this.end = end;
+		}
+
+		void init(int attr_count){
+			this.codes = new IntegerArray((int) Math.min(Integer.MAX_VALUE-8, Math.max(16, (this.end-this.start)/4)));
+			this.tokens = new TokenTable[attr_count];
+			this.counts = new IntegerArray[attr_count];
+			for(int i=0; i<attr_count; i++){
+				this.tokens[i] = new TokenTable();
+				this.counts[i] = new IntegerArray();
+			}
+		}
+
+		/**
+		 * Add the (not null) value buffer[start, end) of the i-th attribute of the current record
+		 */
+		void add(int i, char[] buffer, int start, int end){
+			TokenTable tokens = this.tokens[i];
+			IntegerArray counts = this.counts[i];
+			int code = tokens.add(buffer, start, end);
+			if(code == counts.size()) counts.add(1);
+			else counts.set(code, counts.get(code) + 1);
+			this.codes.add(code);
+		}
+
+		/**
+		 * Replace local codes by merged codes
+		 */
+		void remap(){
+			int[] codes = this.codes.toArray();
+			int attr_count = this.remap.length;
+			for(int offset=0; offset<codes.length; offset+=attr_count){
+				for(int i=0; i<attr_count; i++){
+					int code = codes[offset+i];
+					if(code >= 0) codes[offset+i] = this.remap[i][code];
+				}
+			}
+			// the local dictionaries are not needed any more
+			this.tokens = null;
+			this.counts = null;
+		}
+	}
+}
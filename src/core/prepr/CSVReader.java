@@ -9,27 +9,50 @@
  */
 package core.prepr;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.DataFormatException;
 
+import core.structure.IntHolder;
+
 /**
  * Treat all attributes as NOMINAL (no discretization here).
  * Robust to quoted CSV (delimiter in quotes), trims values, and
  * aligns row width to the declared attribute count (pad/truncate).
+ * <p>With more than one thread (set_thread_count), fetch_info splits the data rows into byte ranges on line boundaries,
+ * tokenizes them on worker threads and merges the per-chunk dictionaries of distinct values. The records are kept as
+ * dictionary codes (EncodedRecords), so they are not read and tokenized again. The file must be in an ASCII-compatible
+ * encoding (e.g. UTF-8, the default charset is used as by the sequential reading).
+ * <p>On one thread, the records are kept encoded only if set_record_cache(true, ...) was called.
  */
 public class CSVReader extends DataReader {
+    /** Maximum number of bytes of a chunk in the parallel ingestion */
+    private static final long MAX_CHUNK_BYTES = 1L << 26;
+
+    /** Tokenizer of the bound data source and the value --> selector ID tables, for next_id_record(...) */
+    private CSVTokenizer tokenizer = null;
+    private SelectorLookup lookup = null;
 
     public CSVReader(){
         this.data_format = DATA_FORMATS.CSV;
     }
 
     /** Quote-aware split for CSV. Supports delimiter inside double quotes and escaped "" */
-    private List<String> smartSplit(String line, char delim) {
+    static List<String> smartSplit(String line, char delim) {
         List<String> out = new ArrayList<>();
         StringBuilder cur = new StringBuilder();
         boolean inQuotes = false;
@@ -56,7 +79,7 @@ public class CSVReader extends DataReader {
     }
 
     /** Normalize a raw token: trim; empty/NA -> '?' (null symbol) */
-    private String normalizeToken(String v) {
+    static String normalizeToken(String v) {
         if (v == null) return "?";
         v = v.trim();
         if (v.isEmpty() || v.equalsIgnoreCase("NA")) return "?";
@@ -91,6 +114,37 @@ public class CSVReader extends DataReader {
         this.input = new BufferedReader(new FileReader(data_filename));
         // skip header row (one line) robustly
         readFirstDataLine(this.input); // discard header line
+        this.tokenizer = null;
+    }
+
+    @Override
+    public boolean hasIdRecordReader() {
+        return true;
+    }
+
+    /**
+     * Tokenize the next line on a reusable char buffer and look up the values in per-attribute tables,
+     * without creating Strings. Must not be mixed with next_record() on the same bound data source.
+     */
+    @Override
+    public int[] next_id_record(int[] id_buffer) throws IOException {
+        if (this.input == null) return null;
+        if (this.tokenizer == null) {
+            this.tokenizer = new CSVTokenizer(this.delimiter.charAt(0));
+            this.tokenizer.reset(this.input);
+            this.lookup = new SelectorLookup(this.attributes);
+        }
+        if (!this.tokenizer.next_line()) return null;
+
+        int count = 0;
+        for (int i = 0; i < this.attr_count && this.tokenizer.next_value(); i++) {
+            if (this.tokenizer.is_null) continue;
+            int id = this.lookup.selector_id(i, this.tokenizer.buffer, this.tokenizer.start, this.tokenizer.end);
+            if (id != Selector.INVALID_ID) id_buffer[count++] = id;
+        }
+        int[] id_record = new int[count];
+        System.arraycopy(id_buffer, 0, id_record, 0, count);
+        return id_record;
     }
 
     @Override
@@ -101,6 +155,12 @@ public class CSVReader extends DataReader {
         if (this.data_format != DataReader.getDataFormat(data_filename))
             throw new DataFormatException("Require CSV format");
 
+        this.release_encoded_records();
+        if (this.thread_count > 1) {
+            fetch_info_parallel(data_filename, target_attr_count, support_threshold);
+            return;
+        }
+
         BufferedReader br = new BufferedReader(new FileReader(data_filename));
         String header = readFirstDataLine(br);
         if (header == null) {
@@ -109,6 +169,74 @@ public class CSVReader extends DataReader {
         }
 
         // 1) parse header → attributes (all NOMINAL)
+        parse_header(header, target_attr_count);
+
+        // 2) scan data rows → distinct values and their counts, and keep the encoded rows if required
+        TokenTable[] tables = new_tables();
+        IntegerArray[] counts = new IntegerArray[this.attr_count];
+        for (int i = 0; i < this.attr_count; i++) counts[i] = new IntegerArray();
+        EncodedRecords records = null;
+        if (this.record_cache) {
+            records = new EncodedRecords(dictionaries(tables));
+            if (this.record_spill) records.spill();
+        }
+        CSVTokenizer tokenizer = new CSVTokenizer(this.delimiter.charAt(0));
+        tokenizer.reset(br);
+        this.row_count = 0;
+        while (tokenizer.next_line()) {
+            // count the row and update per-attribute distincts, missing values are null values
+            this.row_count++;
+            if (this.row_count <= 3) System.err.println("[CSV sample] " + tokenizer.line());
+
+            if (records != null) records.begin_record();
+            for (int i = 0; i < this.attr_count; i++) {
+                if (!tokenizer.next_value() || tokenizer.is_null) continue;
+
+                int code = tables[i].add(tokenizer.buffer, tokenizer.start, tokenizer.end);
+                if (code == counts[i].size()) counts[i].add(1);
+                else counts[i].set(code, counts[i].get(code) + 1);
+                if (records != null) records.add_code(i, code);
+            }
+            if (records != null) records.end_record();
+        }
+        System.err.println("[CSV info] headerCols=" + this.attr_count + " dataLines=" + this.row_count);
+        br.close();
+        put_distinct_values(tables, counts);
+
+        // 3) min sup count and selector structures, then codes --> selector IDs
+        finish_fetch_info(support_threshold);
+        if (records != null) {
+            records.finish();
+            records.bind(this.attributes);
+            this.encoded_records = records;
+        }
+    }
+
+    private TokenTable[] new_tables() {
+        TokenTable[] tables = new TokenTable[this.attr_count];
+        for (int i = 0; i < this.attr_count; i++) tables[i] = new TokenTable();
+        return tables;
+    }
+
+    private static List<List<String>> dictionaries(TokenTable[] tables) {
+        List<List<String>> dictionaries = new ArrayList<List<String>>(tables.length);
+        for (TokenTable table : tables) dictionaries.add(table.tokens());
+        return dictionaries;
+    }
+
+    /** Create the selectors (ATOM) of the distinct values in the order of their codes, i.e. of their first occurrences */
+    private void put_distinct_values(TokenTable[] tables, IntegerArray[] counts) {
+        for (int i = 0; i < this.attr_count; i++) {
+            Attribute attr = this.attributes.get(i);
+            for (int code = 0; code < tables[i].size(); code++) {
+                String value = tables[i].token(code);
+                attr.distinct_values.put(value, new Selector(i, attr.name, value, counts[i].get(code)));
+            }
+        }
+    }
+
+    /** Create the attributes (all NOMINAL) from the header line */
+    private void parse_header(String header, int target_attr_count) {
         List<String> headerCols = smartSplit(header, this.delimiter.charAt(0));
         this.attributes.clear();
         int attr_id = -1;
@@ -124,55 +252,168 @@ public class CSVReader extends DataReader {
         this.attr_count = this.attributes.size();
         this.target_attr_count = target_attr_count;
         this.predict_attr_count = Math.max(0, this.attr_count - this.target_attr_count);
+    }
 
-        // 2) scan data rows → build distinct_values (ATOM selectors)
-        String line;
-        this.row_count = 0;
-        int dataLines = 0;
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty()) continue;
-            dataLines++;
-            if (dataLines <= 3) System.err.println("[CSV sample] " + line);
-            List<String> toks = smartSplit(line, this.delimiter.charAt(0));
+    private void finish_fetch_info(double support_threshold) {
+        // min sup count = ceil(row_count * threshold) (at least 1 if threshold>0)
+        if (support_threshold > 0) {
+            this.min_sup_count = Math.max( (int)Math.ceil(this.row_count * support_threshold), 1 );
+        } else {
+            this.min_sup_count = 0;
+        }
 
-            // align to attr_count
-            if (toks.size() < this.attr_count) {
-                int need = this.attr_count - toks.size();
-                for (int i = 0; i < need; i++) toks.add("?");
-            } else if (toks.size() > this.attr_count) {
-                toks = toks.subList(0, this.attr_count);
+        // prepare selector structures
+        this.prepare_selectors();
+        // or: this.prepare_selectors_PredictTargetSelectors_in_one_group();
+    }
+
+    /**
+     * fetch_info on 'thread_count' threads, the records are kept in 'encoded_records'.
+     * The result is the same as the one of the sequential fetch_info.
+     */
+    private void fetch_info_parallel(String data_filename,
+                                     int target_attr_count,
+                                     double support_threshold) throws DataFormatException, IOException {
+        Charset charset = Charset.defaultCharset();
+        char delim = this.delimiter.charAt(0);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(data_filename), StandardOpenOption.READ)) {
+            // 1) header → attributes, data rows start after the header line
+            String[] header = new String[1];
+            long data_start;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(data_filename))) {
+                data_start = readFirstDataLine(in, charset, header);
             }
+            if (header[0] == null) throw new IOException("Empty CSV: " + data_filename);
+            parse_header(header[0], target_attr_count);
 
-            // count the row and update per-attribute distincts
-            this.row_count++;
+            // 2) split the data rows into chunks of whole lines
+            long file_size = channel.size();
+            long chunk_bytes = Math.max(1, (file_size - data_start) / (4L*this.thread_count));
+            chunk_bytes = Math.min(chunk_bytes, MAX_CHUNK_BYTES);
+            List<CSVChunkThread.Chunk> chunk_list = new ArrayList<CSVChunkThread.Chunk>();
+            long start = data_start;
+            while (start < file_size) {
+                long end = (start + chunk_bytes >= file_size) ? file_size : nextLineStart(channel, start + chunk_bytes, file_size);
+                chunk_list.add(new CSVChunkThread.Chunk(start, end));
+                start = end;
+            }
+            CSVChunkThread.Chunk[] chunks = chunk_list.toArray(new CSVChunkThread.Chunk[chunk_list.size()]);
 
-            for (int i = 0; i < this.attr_count; i++) {
-                String value = normalizeToken(toks.get(i));
-                if (Attribute.NULL_SYMBOLS.contains(value)) continue;
+            // 3) tokenize the chunks into records of local dictionary codes
+            run_chunk_threads(CSVChunkThread.PARSE, chunks, channel, charset, delim);
 
-                Attribute attr = this.attributes.get(i);
-                Selector s = attr.distinct_values.get(value);
-                if (s == null) {
-                    attr.distinct_values.put(value, new Selector(i, attr.name, value, 1));
-                } else {
-                    s.frequency++;
+            // 4) merge the local dictionaries in the order of chunks, so codes and selectors are in the order of first occurrences
+            TokenTable[] tables = new_tables();
+            IntegerArray[] counts = new IntegerArray[this.attr_count];
+            for (int i = 0; i < this.attr_count; i++) counts[i] = new IntegerArray();
+            this.row_count = 0;
+            int samples = 0;
+            for (CSVChunkThread.Chunk chunk : chunks) {
+                this.row_count += chunk.rows;
+                for (String line : chunk.samples) {
+                    if (samples++ < 3) System.err.println("[CSV sample] " + line);
+                }
+                chunk.remap = new int[this.attr_count][];
+                for (int i = 0; i < this.attr_count; i++) {
+                    TokenTable tokens = chunk.tokens[i];
+                    int[] remap = chunk.remap[i] = new int[tokens.size()];
+                    for (int local = 0; local < remap.length; local++) {
+                        int code = tables[i].add(tokens.token(local));
+                        int count = chunk.counts[i].get(local);
+                        if (code == counts[i].size()) counts[i].add(count);
+                        else counts[i].set(code, counts[i].get(code) + count);
+                        remap[local] = code;
+                    }
                 }
             }
+            put_distinct_values(tables, counts);
+            System.err.println("[CSV info] headerCols=" + this.attr_count + " dataLines=" + this.row_count
+                    + " chunks=" + chunks.length + " threads=" + this.thread_count);
+
+            // 5) records in merged codes
+            run_chunk_threads(CSVChunkThread.REMAP, chunks, channel, charset, delim);
+            EncodedRecords records = new EncodedRecords(dictionaries(tables));
+            if (this.record_spill) records.spill();
+            for (CSVChunkThread.Chunk chunk : chunks) records.append(chunk.codes.toArray(), chunk.rows);
+
+            // 6) min sup count and selector structures, then codes --> selector IDs
+            finish_fetch_info(support_threshold);
+            records.bind(this.attributes);
+            this.encoded_records = records;
         }
-        System.err.println("[CSV info] headerCols=" + this.attr_count + " dataLines=" + dataLines);
-        br.close();
+    }
 
-        // 3) min sup count = ceil(row_count * threshold) (at least 1 if threshold>0)
-        if (support_threshold > 0) {
-            this.min_sup_count = Math.max( (int)Math.ceil(this.row_count * support_threshold), 1 );
-        } else {
-            this.min_sup_count = 0;
+    private void run_chunk_threads(int phase, CSVChunkThread.Chunk[] chunks, FileChannel channel,
+                                   Charset charset, char delim) throws IOException {
+        IntHolder globalIndex = new IntHolder(0);
+        CSVChunkThread[] threads = new CSVChunkThread[Math.min(this.thread_count, chunks.length)];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new CSVChunkThread(phase, chunks, channel, charset, delim, this.attr_count, globalIndex);
+            threads[i].start();
+        }
+        try {
+            for (CSVChunkThread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading chunks", e);
+        }
+        for (CSVChunkThread thread : threads) {
+            if (thread.getError() != null) throw thread.getError();
         }
+    }
 
-        // 4) prepare selector structures
-        this.prepare_selectors();
-        // or: this.prepare_selectors_PredictTargetSelectors_in_one_group();
+    /** @return the position after the first '\n' at or after 'position'-1, or 'file_size' if there is none */
+    private static long nextLineStart(FileChannel channel, long position, long file_size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long p = position - 1;
+        while (p < file_size) {
+            buffer.clear();
+            int n = channel.read(buffer, p);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') return p + i + 1;
+            }
+            p += n;
+        }
+        return file_size;
+    }
+
+    /**
+     * Byte-level variant of readFirstDataLine(BufferedReader) for the parallel ingestion
+     * @param header receives the header line at index 0, null if there is none
+     * @return the position of the first byte after the header line
+     */
+    private static long readFirstDataLine(InputStream in, Charset charset, String[] header) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long position = 0;
+        boolean end = false;
+        while (!end) {
+            int b = in.read();
+            if (b == -1) {
+                end = true;
+                if (bytes.size() == 0) break;
+            } else {
+                position++;
+                if (b != '\n') {
+                    bytes.write(b);
+                    continue;
+                }
+            }
+            String line = new String(bytes.toByteArray(), charset);
+            bytes.reset();
+            if (line.endsWith("\r")) line = line.substring(0, line.length()-1);
+            if (line.length() > 0) {
+                // strip BOM if any
+                if (line.charAt(0) == '\uFEFF') line = line.substring(1);
+                if (!line.trim().isEmpty()) {
+                    header[0] = line;
+                    return position;
+                }
+            }
+        }
+        header[0] = null;
+        return position;
     }
 
     /** Override to ensure data reading uses the same robust CSV parsing as fetch_info */
@@ -0,0 +1,218 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.prepr;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Tokenizer of CSV lines on a reusable char buffer, a token is given as a slice [start, end) of 'buffer'
+ * so no String is created per line or per value.
+ * </br>Tokens are the same as the ones of CSVReader: the line is trimmed, split by CSVReader.smartSplit(...)
+ * and each value is normalized by CSVReader.normalizeToken(...). Empty lines are skipped.
+ * </br>The text is either a fixed range of a char array, or read from a Reader through a growing buffer.
+ */
+final class CSVTokenizer {
+	private final char delimiter;
+
+	private Reader reader = null;
+	private boolean eof = true;
+	private char[] text = null;
+	private int position = 0, limit = 0;
+
+	// The current line and the position of its next value
+	private int line_start = 0, line_end = 0, value_position = 0;
+	private boolean line_done = true;
+
+	// Copies of values with quotes
+	private char[] value_buffer = new char[64];
+
+	/**
+	 * The current token: buffer[start, end), is_null for a null value
+	 */
+	char[] buffer;
+	int start, end;
+	boolean is_null;
+
+	CSVTokenizer(char delimiter){
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Tokenize the lines of text[start, end)
+	 */
+	void reset(char[] text, int start, int end){
+		this.reader = null;
+		this.eof = true;
+		this.text = text;
+		this.position = start;
+		this.limit = end;
+		this.line_done = true;
+	}
+
+	/**
+	 * Tokenize the lines read from the reader (from its current position)
+	 */
+	void reset(Reader reader){
+		this.reader = reader;
+		this.eof = false;
+		if(this.text == null || this.text.length < (1 << 16)) this.text = new char[1 << 16];
+		this.position = 0;
+		this.limit = 0;
+		this.line_done = true;
+	}
+
+	/**
+	 * Move to the next non-empty line
+	 * @return false if there is no more line
+	 */
+	boolean next_line() throws IOException {
+		while(true){
+			int i = this.position;
+			while(true){
+				while(i < this.limit && this.text[i] != '\n' && this.text[i] != '\r') i++;
+				if(i < this.limit || this.eof) break;
+				int scanned = i - this.position;
+				this.fill();
+				i = this.position + scanned;
+			}
+			if(i == this.limit && this.position == this.limit) return false;
+
+			int start = this.position, end = i;
+			this.position = (i < this.limit) ? i+1 : i;
+
+			// String.trim()
+			while(start < end && this.text[start] <= ' ') start++;
+			while(end > start && this.text[end-1] <= ' ') end--;
+			if(start == end) continue;
+
+			this.line_start = start;
+			this.line_end = end;
+			this.value_position = start;
+			this.line_done = false;
+			return true;
+		}
+	}
+
+	/**
+	 * @return the current line (trimmed)
+	 */
+	String line(){
+		return new String(this.text, this.line_start, this.line_end-this.line_start);
+	}
+
+	/**
+	 * Move to the next value of the current line, the token is then in buffer[start, end)
+	 * @return false if there is no more value in the line
+	 */
+	boolean next_value(){
+		if(this.line_done) return false;
+
+		// CSVReader.smartSplit(...), values without quotes are not copied
+		int i = this.value_position, n = 0;
+		boolean in_quotes = false, quoted = false;
+		for(; i < this.line_end; i++){
+			char ch = this.text[i];
+			if(ch == '"'){
+				if(!quoted){
+					quoted = true;
+					n = this.copy(this.value_position, i);
+				}
+				if(in_quotes && i+1 < this.line_end && this.text[i+1] == '"'){
+					n = this.put(n, '"');
+					i++;
+				}else in_quotes = !in_quotes;
+			}else if(ch == this.delimiter && !in_quotes){
+				break;
+			}else if(quoted) n = this.put(n, ch);
+		}
+		if(quoted){
+			this.buffer = this.value_buffer;
+			this.start = 0;
+			this.end = n;
+		}else{
+			this.buffer = this.text;
+			this.start = this.value_position;
+			this.end = i;
+		}
+		if(i < this.line_end) this.value_position = i+1;
+		else this.line_done = true;
+
+		this.normalize();
+		return true;
+	}
+
+	/**
+	 * CSVReader.normalizeToken(...) and the check of Attribute.NULL_SYMBOLS
+	 */
+	private void normalize(){
+		char[] b = this.buffer;
+		while(this.start < this.end && b[this.start] <= ' ') this.start++;
+		while(this.end > this.start && b[this.end-1] <= ' ') this.end--;
+		int length = this.end - this.start;
+		if(length == 2 && (b[this.start] == 'N' || b[this.start] == 'n') && (b[this.start+1] == 'A' || b[this.start+1] == 'a')){
+			this.is_null = true;
+			return;
+		}
+		if(length >= 2 && b[this.start] == '"' && b[this.end-1] == '"'){
+			// rare: quotes remain after splitting, normalize as a String
+			String value = CSVReader.normalizeToken(new String(b, this.start, length));
+			int n = 0;
+			for(int i=0; i<value.length(); i++) n = this.put(n, value.charAt(i));
+			this.buffer = this.value_buffer;
+			this.start = 0;
+			this.end = n;
+		}
+		this.is_null = is_null_symbol(this.buffer, this.start, this.end);
+	}
+
+	/**
+	 * @return true if buffer[start, end) is one of Attribute.NULL_SYMBOLS
+	 */
+	static boolean is_null_symbol(char[] buffer, int start, int end){
+		switch(end - start){
+			case 0: return true;
+			case 1: return buffer[start] == '?' || buffer[start] == ' ';
+			case 3: return buffer[start] == 'N' && buffer[start+1] == 'a' && buffer[start+2] == 'N';
+			default: return false;
+		}
+	}
+
+	private int copy(int from, int to){
+		int n = 0;
+		for(int i=from; i<to; i++) n = this.put(n, this.text[i]);
+		return n;
+	}
+
+	private int put(int n, char ch){
+		if(n == this.value_buffer.length){
+			char[] buffer = new char[2*n];
+			System.arraycopy(this.value_buffer, 0, buffer, 0, n);
+			this.value_buffer = buffer;
+		}
+		this.value_buffer[n] = ch;
+		return n+1;
+	}
+
+	/**
+	 * Keep the unread text at the beginning of the buffer (growing it if it is full) and read more text
+	 */
+	private void fill() throws IOException {
+		int remaining = this.limit - this.position;
+		if(this.position > 0){
+			System.arraycopy(this.text, this.position, this.text, 0, remaining);
+		}else if(remaining == this.text.length){
+			char[] text = new char[2*this.text.length];
+			System.arraycopy(this.text, 0, text, 0, remaining);
+			this.text = text;
+		}
+		this.position = 0;
+		this.limit = remaining;
+		int n = this.reader.read(this.text, this.limit, this.text.length - this.limit);
+		if(n < 0) this.eof = true;
+		else this.limit += n;
+	}
+}
@@ -21,6 +21,32 @@ public abstract class DataReader {
 	
 	protected BufferedReader input;
 	
+	/**
+	 * The number of threads used by fetch_info, readers which support parallel ingestion split the input into chunks if it is greater than 1
+	 */
+	protected int thread_count = 1;
+	
+	/**
+	 * Records encoded as dictionary codes during fetch_info, null if the reader does not keep them
+	 */
+	protected EncodedRecords encoded_records = null;
+	
+	/**
+	 * Whether fetch_info keeps the records encoded (EncodedRecords) also when reading on one thread,
+	 * and whether the kept records are spilled to a temporary file
+	 */
+	protected boolean record_cache = false;
+	protected boolean record_spill = false;
+	
+	/**
+	 * Attributes which have a selector of the default value of sparse records, and the IDs of these selectors,
+	 * null until convert_sparse_record(...) is called after the selectors are prepared
+	 */
+	private int[] default_attrs = null;
+	private int[] default_ids = null;
+	private int[] attr_marks = null;
+	private int mark = 0;
+	
 	/**
 	 * List of attributes
 	 */
@@ -153,7 +179,68 @@ public abstract class DataReader {
 		this.delimiter = delimiter;
 	}
 	
+	/**
+	 * Set the number of threads used by fetch_info.
+	 * </br>Default value is 1. Readers which do not support parallel ingestion read the input on one thread.
+	 * @param thread_count
+	 */
+	public void set_thread_count(int thread_count){
+		this.thread_count = Math.max(1, thread_count);
+	}
+	
+	/**
+	 * Enable/disable keeping the records encoded as dictionary codes during fetch_info, so that they are read
+	 * by 'next_encoded_record(...)' without reading and tokenizing the data source again.
+	 * Records kept by the parallel ingestion (thread_count > 1) are always encoded.
+	 * @param cache
+	 * @param spill whether the encoded records are kept in a temporary file instead of the heap
+	 */
+	public void set_record_cache(boolean cache, boolean spill){
+		this.record_cache = cache;
+		this.record_spill = spill;
+	}
+	
+	/**
+	 * @return true if the records were kept (encoded as dictionary codes) by fetch_info,
+	 * they are then read by 'next_encoded_record(...)' instead of binding the data source again
+	 */
+	public boolean hasEncodedRecords(){
+		return this.encoded_records != null;
+	}
+	
+	public EncodedRecords getEncodedRecords(){
+		return this.encoded_records;
+	}
+	
+	/**
+	 * Restart 'next_encoded_record(...)' from the first record
+	 */
+	public void rewind_encoded_records(){
+		this.encoded_records.rewind();
+	}
+	
+	/**
+	 * Sequentially get the next record kept by fetch_info, converted to the selector IDs of its values.
+	 * </br>Require hasEncodedRecords() to be true
+	 * @param id_buffer input buffer, length is bigger than or equal the number of attributes in the input dataset
+	 * @return the converted record, as 'convert_instance' of the string values, null if there is no more record
+	 */
+	public int[] next_encoded_record(int[] id_buffer) throws IOException {
+		return this.encoded_records.next_record(id_buffer);
+	}
+	
+	/**
+	 * Release the records kept by fetch_info, the data source has to be bound again to read the records afterwards
+	 */
+	public void release_encoded_records(){
+		if(this.encoded_records != null) this.encoded_records.release();
+		this.encoded_records = null;
+	}
+	
 	protected void prepare_selectors(){
+		this.default_attrs = null;
+		this.default_ids = null;
+		
 		/**
 	     * 1. Construct the selector list 'constructing_selectors' which includes:
 	     * 	+ FREQUENT selectors from predictive attributes in ASCENDING ORDER of support count
@@ -310,6 +397,108 @@ public abstract class DataReader {
 		}
 	}
 	
+	/**
+	 * @return true if the reader converts the records of the bound data source to selector IDs itself,
+	 * see next_id_record(...)
+	 */
+	public boolean hasIdRecordReader(){
+		return false;
+	}
+	
+	/**
+	 * Sequentially get the next record from the bound data source in form of selector IDs, without creating a String per value.
+	 * </br>Require hasIdRecordReader() to be true and the data source that have already been bound with function <b>bind_datasource</b>
+	 * @param id_buffer input buffer, length is bigger than or equal the number of attributes in the input dataset
+	 * @return the converted record, null if there is no more record
+	 * @throws IOException
+	 */
+	public int[] next_id_record(int[] id_buffer) throws IOException{
+		String[] record = this.next_record();
+		return (record == null) ? null : this.convert_instance(record, id_buffer);
+	}
+	
+	/**
+	 * @return true if the reader gives the records of the bound data source in the sparse form natively,
+	 * i.e. next_sparse_record(...) does not expand a record to all attributes
+	 */
+	public boolean hasSparseRecordReader(){
+		return false;
+	}
+	
+	/**
+	 * @return the value of the attributes without a pair in a record given by next_sparse_record(...),
+	 * null if all attributes of a record have a pair
+	 */
+	protected String getSparseDefaultValue(){
+		return null;
+	}
+	
+	/**
+	 * Sequentially get the next record from the bound data source in the sparse form.
+	 * </br>Require the data source that have already been bound with function <b>bind_datasource</b>
+	 * @param record reused record, cleared before the pairs of the next record are added
+	 * @return 'record', null if there is no more record
+	 * @throws IOException
+	 */
+	public SparseRecord next_sparse_record(SparseRecord record) throws IOException{
+		String[] instance = this.next_record();
+		if(instance == null) return null;
+		
+		record.clear();
+		for(int i=0; i<instance.length; i++) record.add(i, instance[i]);
+		return record;
+	}
+	
+	/**
+	 * Convert a record in the sparse form to an array of the corresponding selector IDs, the work is proportional to
+	 * the number of pairs (plus the number of attributes which have a selector of the default value, usually none).
+	 * Values are trimmed before looked up.
+	 * @param record
+	 * @param id_buffer input buffer, length is bigger than or equal the number of attributes in the input dataset
+	 * @return The converted record
+	 */
+	public int[] convert_sparse_record(SparseRecord record, int[] id_buffer){
+		if(this.default_attrs == null) this.prepare_default_selectors();
+		
+		int count = 0;
+		for(int i=0; i<record.size(); i++){
+			String value = record.getValue(i);
+			if(value == null) continue;
+			Selector s = this.attributes.get(record.getAttrIndex(i)).getSelector(value.trim());
+			if(s != null && s.selectorID != Selector.INVALID_ID) id_buffer[count++] = s.selectorID;
+		}
+		
+		if(this.default_attrs.length > 0){
+			// attributes without a pair have the default value
+			this.mark++;
+			for(int i=0; i<record.size(); i++) this.attr_marks[record.getAttrIndex(i)] = this.mark;
+			for(int i=0; i<this.default_attrs.length; i++){
+				if(this.attr_marks[this.default_attrs[i]] != this.mark) id_buffer[count++] = this.default_ids[i];
+			}
+		}
+		
+		int[] id_record = new int[count];
+		System.arraycopy(id_buffer, 0, id_record, 0, count);
+		return id_record;
+	}
+	
+	private void prepare_default_selectors(){
+		String default_value = this.getSparseDefaultValue();
+		IntegerArray attrs = new IntegerArray(), ids = new IntegerArray();
+		if(default_value != null){
+			for(Attribute attr : this.attributes){
+				Selector s = attr.getSelector(default_value);
+				if(s != null && s.selectorID != Selector.INVALID_ID){
+					attrs.add(attr.index);
+					ids.add(s.selectorID);
+				}
+			}
+		}
+		this.default_attrs = attrs.toArray();
+		this.default_ids = ids.toArray();
+		if(this.default_attrs.length > 0) this.attr_marks = new int[this.attributes.size()];
+	}
+	
 	/**
 	 * Convert an example/instance (record of string values) to an array of the corresponding selector IDs
 	 * @param instance an array of strings, read from the input dataset
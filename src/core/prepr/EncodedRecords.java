@@ -0,0 +1,380 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.prepr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records of an input dataset kept in the form of dictionary codes, so that the input file does not have to be read
+ * and tokenized again after fetching information.
+ * </br>The value of the i-th attribute in a record is stored as the code of the (normalized) token in the dictionary
+ * of the i-th attribute, codes are in the order of the first occurrences of the tokens. Records are stored in chunks
+ * of int arrays: in the dense form, a chunk is row-major with 'attr_count' codes per record; in the sparse form,
+ * a record is its number of values followed by pairs of (attribute index, code), attributes without a value are omitted.
+ * </br>Chunks are kept on the heap, or spilled to a temporary file (and read back chunk by chunk) to keep the heap small.
+ * </br>After the selectors are prepared, bind(attributes) maps each code to its selector ID once per distinct token,
+ * then next_record(...) returns records of selector IDs without any text processing.
+ */
+public class EncodedRecords {
+	/**
+	 * Code of a null value ('', '?', ' ', 'NaN')
+	 */
+	public static final int NULL_CODE = -1;
+
+	/**
+	 * Number of ints of a chunk of records added by add(...)
+	 */
+	private static final int CHUNK_INTS = 1 << 20;
+
+	private final int attr_count;
+	private final boolean sparse;
+
+	/**
+	 * Per attribute: code --> token
+	 */
+	private final List<List<String>> dictionaries;
+
+	/**
+	 * Per attribute: token --> code, only while records are added by add(...)
+	 */
+	private List<Map<String, Integer>> codes = null;
+
+	/**
+	 * Chunks on the heap, null for spilled chunks
+	 */
+	private final List<int[]> chunks = new ArrayList<int[]>();
+	private final IntegerArray chunk_lengths = new IntegerArray();
+	private final IntegerArray chunk_row_counts = new IntegerArray();
+	private int row_count = 0;
+
+	/**
+	 * The record being added by add(...) and the chunk of records not yet appended
+	 */
+	private int[] record = null;
+	private int record_values = 0;
+	private IntegerArray pending = null;
+	private int pending_rows = 0;
+
+	/**
+	 * Spill file of the chunks, null if chunks are kept on the heap
+	 */
+	private File spill_file = null;
+	private FileChannel spill_channel = null;
+	private long spill_size = 0;
+
+	/**
+	 * Per attribute: code --> selector ID, Selector.INVALID_ID for a code without a (constructing) selector
+	 */
+	private int[][] code_selector_ids = null;
+
+	// Iteration state of next_record
+	private int chunk_index = 0, row_in_chunk = 0, offset = 0;
+	private long spill_position = 0;
+	private int[] chunk = null;
+	private ByteBuffer read_buffer = null;
+	private int[] read_codes = null;
+
+	/**
+	 * Records in the dense form whose dictionaries are built outside, see append(...) and add_code(...)
+	 * @param dictionaries per attribute: code --> token, the lists are kept (not copied) and can still grow
+	 */
+	public EncodedRecords(List<List<String>> dictionaries){
+		this.attr_count = dictionaries.size();
+		this.sparse = false;
+		this.dictionaries = dictionaries;
+	}
+
+	/**
+	 * Empty records whose values are added one by one, see add(...)
+	 * @param attr_count
+	 * @param sparse whether records are kept in the sparse form, i.e. most attributes of a record have no value
+	 */
+	public EncodedRecords(int attr_count, boolean sparse){
+		this.attr_count = attr_count;
+		this.sparse = sparse;
+		this.dictionaries = new ArrayList<List<String>>(attr_count);
+		this.codes = new ArrayList<Map<String, Integer>>(attr_count);
+		for(int i=0; i<attr_count; i++){
+			this.dictionaries.add(new ArrayList<String>());
+			this.codes.add(new HashMap<String, Integer>());
+		}
+	}
+
+	public int getAttrCount(){
+		return this.attr_count;
+	}
+
+	public int getRowCount(){
+		return this.row_count;
+	}
+
+	public boolean isSparse(){
+		return this.sparse;
+	}
+
+	/**
+	 * @param attr_index
+	 * @return code --> token of the attribute
+	 */
+	public List<String> getDictionary(int attr_index){
+		return this.dictionaries.get(attr_index);
+	}
+
+	/**
+	 * Spill the chunks to a temporary file from now on, and the chunks already on the heap
+	 * @throws IOException
+	 */
+	public void spill() throws IOException {
+		if(this.spill_channel != null) return;
+		this.spill_file = File.createTempFile("records", ".codes");
+		this.spill_file.deleteOnExit();
+		this.spill_channel = FileChannel.open(this.spill_file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		for(int i=0; i<this.chunks.size(); i++){
+			this.write_chunk(this.chunks.get(i), this.chunk_lengths.get(i));
+			this.chunks.set(i, null);
+		}
+	}
+
+	public boolean isSpilled(){
+		return this.spill_channel != null;
+	}
+
+	/**
+	 * Start a new record to add values by add(...)
+	 */
+	public void begin_record(){
+		if(this.pending == null) this.pending = new IntegerArray(CHUNK_INTS);
+		if(this.record == null) this.record = new int[this.sparse ? 2*this.attr_count : this.attr_count];
+		if(!this.sparse) java.util.Arrays.fill(this.record, NULL_CODE);
+		this.record_values = 0;
+	}
+
+	/**
+	 * Add the value of the attribute 'attr_index' to the current record, a null value is ignored.
+	 * In the dense form, an attribute without an added value has a null value.
+	 * @param attr_index
+	 * @param token the normalized token of the value, as it is given to Attribute.getSelector(...)
+	 */
+	public void add(int attr_index, String token){
+		if(Attribute.NULL_SYMBOLS.contains(token)) return;
+
+		Map<String, Integer> codes = this.codes.get(attr_index);
+		Integer code = codes.get(token);
+		if(code == null){
+			code = this.dictionaries.get(attr_index).size();
+			codes.put(token, code);
+			this.dictionaries.get(attr_index).add(token);
+		}
+		this.add_code(attr_index, code);
+	}
+
+	/**
+	 * Add the code of the value of the attribute 'attr_index' to the current record,
+	 * for records whose dictionaries are built outside
+	 * @param attr_index
+	 * @param code the code of the value in the dictionary of the attribute
+	 */
+	public void add_code(int attr_index, int code){
+		if(this.sparse){
+			this.record[2*this.record_values] = attr_index;
+			this.record[2*this.record_values+1] = code;
+			this.record_values++;
+		}else this.record[attr_index] = code;
+	}
+
+	/**
+	 * Finish the current record
+	 * @throws IOException
+	 */
+	public void end_record() throws IOException {
+		if(this.sparse){
+			this.pending.add(this.record_values);
+			for(int i=0; i<2*this.record_values; i++) this.pending.add(this.record[i]);
+		}else{
+			for(int i=0; i<this.attr_count; i++) this.pending.add(this.record[i]);
+		}
+		this.pending_rows++;
+		if(this.pending.size() >= CHUNK_INTS) this.flush();
+	}
+
+	/**
+	 * Finish adding records, the token --> code maps are released
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if(this.pending != null) this.flush();
+		this.pending = null;
+		this.codes = null;
+		this.record = null;
+	}
+
+	private void flush() throws IOException {
+		if(this.pending_rows == 0) return;
+		this.append_chunk(this.pending.toArray(), this.pending_rows);
+		this.pending = new IntegerArray(CHUNK_INTS);
+		this.pending_rows = 0;
+	}
+
+	/**
+	 * Append a chunk of records in the dense form
+	 * @param codes row-major codes, 'attr_count' codes per record, the array is kept (not copied) if not spilled
+	 * @param rows the number of records in the chunk
+	 * @throws IOException
+	 */
+	public void append(int[] codes, int rows) throws IOException {
+		if(this.sparse) throw new IllegalStateException("Chunks in the dense form can not be appended to sparse records");
+		this.append_chunk(codes, rows);
+	}
+
+	private void append_chunk(int[] codes, int rows) throws IOException {
+		if(rows == 0) return;
+		if(this.spill_channel != null){
+			this.write_chunk(codes, codes.length);
+			this.chunks.add(null);
+		}else this.chunks.add(codes);
+		this.chunk_lengths.add(codes.length);
+		this.chunk_row_counts.add(rows);
+		this.row_count += rows;
+	}
+
+	private void write_chunk(int[] codes, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4*length).order(ByteOrder.nativeOrder());
+		buffer.asIntBuffer().put(codes, 0, length);
+		while(buffer.hasRemaining()){
+			this.spill_size += this.spill_channel.write(buffer, this.spill_size);
+		}
+	}
+
+	/**
+	 * @return estimated heap bytes of the codes of the records
+	 */
+	public long memory(){
+		long memory = 0;
+		for(int[] chunk : this.chunks) if(chunk != null) memory += 16 + 4L*chunk.length;
+		return memory;
+	}
+
+	/**
+	 * @return bytes of the records in the spill file, 0 if the records are on the heap
+	 */
+	public long getSpillSize(){
+		return this.spill_size;
+	}
+
+	/**
+	 * Map the codes to selector IDs by the selectors of the attributes, and rewind the records.
+	 * </br>The token of a code is mapped as a value of the input dataset, i.e. by Attribute.getSelector(token).
+	 * @param attributes
+	 */
+	public void bind(List<Attribute> attributes){
+		this.code_selector_ids = new int[this.attr_count][];
+		for(int i=0; i<this.attr_count; i++){
+			Attribute attr = attributes.get(i);
+			List<String> dictionary = this.dictionaries.get(i);
+			int[] ids = this.code_selector_ids[i] = new int[dictionary.size()];
+			for(int code=0; code<ids.length; code++){
+				Selector s = attr.getSelector(dictionary.get(code));
+				ids[code] = (s == null) ? Selector.INVALID_ID : s.selectorID;
+			}
+		}
+		this.rewind();
+	}
+
+	/**
+	 * Restart next_record(...) from the first record
+	 */
+	public void rewind(){
+		this.chunk_index = -1;
+		this.row_in_chunk = 0;
+		this.spill_position = 0;
+		this.chunk = null;
+	}
+
+	/**
+	 * Sequentially get the next record in form of selector IDs (in the order of attributes), bind(...) must be called before
+	 * @param id_buffer input buffer, length is bigger than or equal the number of attributes
+	 * @return selector IDs of the values of the record which have constructing selectors, null if there is no more record
+	 * @throws IOException
+	 */
+	public int[] next_record(int[] id_buffer) throws IOException {
+		while(this.chunk == null || this.row_in_chunk == this.chunk_row_counts.get(this.chunk_index)){
+			if(this.chunk_index+1 >= this.chunks.size()) return null;
+			this.load_chunk(++this.chunk_index);
+		}
+		int[] chunk = this.chunk;
+		this.row_in_chunk++;
+
+		int count = 0;
+		if(this.sparse){
+			int values = chunk[this.offset++];
+			for(int v=0; v<values; v++, this.offset+=2){
+				int id = this.code_selector_ids[chunk[this.offset]][chunk[this.offset+1]];
+				if(id != Selector.INVALID_ID) id_buffer[count++] = id;
+			}
+		}else{
+			for(int i=0; i<this.attr_count; i++){
+				int code = chunk[this.offset+i];
+				if(code < 0) continue;
+				int id = this.code_selector_ids[i][code];
+				if(id != Selector.INVALID_ID) id_buffer[count++] = id;
+			}
+			this.offset += this.attr_count;
+		}
+
+		int[] id_record = new int[count];
+		System.arraycopy(id_buffer, 0, id_record, 0, count);
+		return id_record;
+	}
+
+	private void load_chunk(int index) throws IOException {
+		this.row_in_chunk = 0;
+		this.offset = 0;
+		if(this.chunks.get(index) != null){
+			this.chunk = this.chunks.get(index);
+			return;
+		}
+
+		// read the spilled chunk into reused buffers, chunks are read in order
+		int length = this.chunk_lengths.get(index);
+		if(this.read_buffer == null || this.read_buffer.capacity() < 4*length){
+			this.read_buffer = ByteBuffer.allocate(4*length).order(ByteOrder.nativeOrder());
+			this.read_codes = new int[length];
+		}
+		this.read_buffer.clear().limit(4*length);
+		while(this.read_buffer.hasRemaining()){
+			if(this.spill_channel.read(this.read_buffer, this.spill_position + this.read_buffer.position()) < 0)
+				throw new IOException("Unexpected end of the spill file of records");
+		}
+		this.read_buffer.flip();
+		this.read_buffer.asIntBuffer().get(this.read_codes, 0, length);
+		this.spill_position += 4L*length;
+		this.chunk = this.read_codes;
+	}
+
+	/**
+	 * Release the spill file, if any
+	 */
+	public void release(){
+		this.chunks.clear();
+		if(this.spill_channel == null) return;
+		try{
+			this.spill_channel.close();
+		}catch(IOException e){
+			// the file is deleted anyway
+		}
+		this.spill_file.delete();
+		this.spill_channel = null;
+	}
+}
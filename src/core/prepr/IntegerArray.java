@@ -70,6 +70,13 @@ public class IntegerArray {
  		return this.array[index];
  	}
  	
+ 	/**
+ 	 * Set the number at index, index must be less than the size
+ 	 */
+ 	public void set(int index, int num){
+ 		this.array[index] = num;
+ 	}
+ 	
  	/**
  	 * This function should only be used when being sure that there will not be any new elements added.
  	 * </br> Shrink the capacity to the size.
@@ -0,0 +1,160 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.prepr;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map values given as slices of a char array to selector IDs, the same as Attribute.getSelector(...) of the values
+ * but without creating Strings.
+ * </br>1. Nominal attribute: a per-attribute TokenTable of the distinct values, code --> selector ID
+ * </br>2. Discretized numeric attribute: the value is parsed and its interval is found by a binary search over
+ * 'discretized_values', interval --> selector ID
+ * </br>3. Numeric attribute which is not discretized: the value is parsed and found by a binary search over the
+ * sorted distinct values (as doubles), since the keys of its selectors are Double.toString(...) of the values
+ */
+public final class SelectorLookup {
+	private static final double[] POWERS_OF_10 = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private final Attribute.DATA_TYPE[] types;
+
+	/**
+	 * Nominal attributes: distinct value --> code, code --> selector ID
+	 */
+	private final TokenTable[] tables;
+	private final int[][] ids;
+
+	/**
+	 * Numeric attributes: cut points (discretized) or sorted distinct values (not discretized), index --> selector ID
+	 */
+	private final double[][] values;
+	private final boolean[] discretized;
+
+	public SelectorLookup(List<Attribute> attributes){
+		int attr_count = attributes.size();
+		this.types = new Attribute.DATA_TYPE[attr_count];
+		this.tables = new TokenTable[attr_count];
+		this.ids = new int[attr_count][];
+		this.values = new double[attr_count][];
+		this.discretized = new boolean[attr_count];
+
+		for(int i=0; i<attr_count; i++){
+			Attribute attr = attributes.get(i);
+			this.types[i] = attr.type;
+			if(attr.type == Attribute.DATA_TYPE.NOMINAL){
+				TokenTable table = this.tables[i] = new TokenTable(attr.distinct_values.size());
+				int[] ids = this.ids[i] = new int[attr.distinct_values.size()];
+				for(Map.Entry<String, Selector> entry : attr.distinct_values.entrySet()){
+					ids[table.add(entry.getKey())] = entry.getValue().selectorID;
+				}
+			}else if(attr.discretized_values != null){
+				this.discretized[i] = true;
+				this.values[i] = attr.discretized_values;
+				int[] ids = this.ids[i] = new int[attr.getIntervalCount()];
+				for(int interval=0; interval<ids.length; interval++){
+					Selector s = attr.getIntervalSelector(interval);
+					ids[interval] = (s == null) ? Selector.INVALID_ID : s.selectorID;
+				}
+			}else{
+				double[] sorted = this.values[i] = new double[attr.distinct_values.size()];
+				int k = 0;
+				for(String key : attr.distinct_values.keySet()) sorted[k++] = Double.parseDouble(key);
+				Arrays.sort(sorted);
+				int[] ids = this.ids[i] = new int[sorted.length];
+				for(Map.Entry<String, Selector> entry : attr.distinct_values.entrySet()){
+					ids[Arrays.binarySearch(sorted, Double.parseDouble(entry.getKey()))] = entry.getValue().selectorID;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param attr_index
+	 * @param buffer the (normalized) value is buffer[start, end)
+	 * @return the selector ID of the value, Selector.INVALID_ID if the value has no (constructing) selector
+	 */
+	public int selector_id(int attr_index, char[] buffer, int start, int end){
+		if(this.types[attr_index] == Attribute.DATA_TYPE.NOMINAL){
+			int code = this.tables[attr_index].get(buffer, start, end);
+			return (code == TokenTable.NOT_FOUND) ? Selector.INVALID_ID : this.ids[attr_index][code];
+		}
+
+		if(CSVTokenizer.is_null_symbol(buffer, start, end)) return Selector.INVALID_ID;
+		double value = parse_double(buffer, start, end);
+		if(this.discretized[attr_index]){
+			return this.ids[attr_index][Attribute.find_right_index(this.values[attr_index], value)];
+		}
+		int index = Arrays.binarySearch(this.values[attr_index], value);
+		return (index < 0) ? Selector.INVALID_ID : this.ids[attr_index][index];
+	}
+
+	/**
+	 * Double.parseDouble(...) of buffer[start, end). Plain decimal numbers with at most 15-16 significant digits and
+	 * a small exponent are parsed without a String (the result is exact as the one of Double.parseDouble),
+	 * other forms fall back to Double.parseDouble(...).
+	 * @throws NumberFormatException
+	 */
+	public static double parse_double(char[] buffer, int start, int end){
+		int i = start;
+		boolean negative = false;
+		if(i < end && (buffer[i] == '+' || buffer[i] == '-')){
+			negative = (buffer[i] == '-');
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0, fraction_digits = 0;
+		boolean dot = false;
+		for(; i < end; i++){
+			char ch = buffer[i];
+			if(ch >= '0' && ch <= '9'){
+				int d = ch - '0';
+				// the mantissa must be exact as a double
+				if(mantissa > ((1L << 53) - d)/10) return fallback(buffer, start, end);
+				mantissa = 10*mantissa + d;
+				digits++;
+				if(dot) fraction_digits++;
+			}else if(ch == '.' && !dot){
+				dot = true;
+			}else break;
+		}
+		if(digits == 0) return fallback(buffer, start, end);
+
+		int exponent = 0;
+		if(i < end){
+			if(buffer[i] != 'e' && buffer[i] != 'E') return fallback(buffer, start, end);
+			i++;
+			boolean negative_exponent = false;
+			if(i < end && (buffer[i] == '+' || buffer[i] == '-')){
+				negative_exponent = (buffer[i] == '-');
+				i++;
+			}
+			if(i == end || end - i > 4) return fallback(buffer, start, end);
+			for(; i < end; i++){
+				char ch = buffer[i];
+				if(ch < '0' || ch > '9') return fallback(buffer, start, end);
+				exponent = 10*exponent + (ch - '0');
+			}
+			if(negative_exponent) exponent = -exponent;
+		}
+
+		if(mantissa == 0) return negative ? -0.0 : 0.0;
+		exponent -= fraction_digits;
+		if(exponent < -22 || exponent > 22) return fallback(buffer, start, end);
+
+		// both operands are exact, so the only rounding is the one of the operation as in Double.parseDouble
+		double value = (exponent >= 0) ? mantissa*POWERS_OF_10[exponent] : mantissa/POWERS_OF_10[-exponent];
+		return negative ? -value : value;
+	}
+
+	private static double fallback(char[] buffer, int start, int end){
+		return Double.parseDouble(new String(buffer, start, end-start));
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.prepr;
+
+/**
+ * A reusable record in the sparse form: pairs of (attribute index, value) of the attributes which have a value
+ * in the record. Attributes without a pair have the default value of the reader (e.g. "0" for sparse ARFF rows).
+ */
+public class SparseRecord {
+	private int size = 0;
+	private int[] attr_indices;
+	private String[] values;
+
+	/**
+	 * Whether the attribute indices of the pairs are strictly ascending
+	 */
+	private boolean ascending = true;
+
+	public SparseRecord(){
+		this(16);
+	}
+
+	public SparseRecord(int capacity){
+		this.attr_indices = new int[Math.max(capacity, 1)];
+		this.values = new String[Math.max(capacity, 1)];
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public int getAttrIndex(int i){
+		return this.attr_indices[i];
+	}
+
+	public String getValue(int i){
+		return this.values[i];
+	}
+
+	public void clear(){
+		for(int i=0; i<this.size; i++) this.values[i] = null;
+		this.size = 0;
+		this.ascending = true;
+	}
+
+	public void add(int attr_index, String value){
+		if(this.size == this.attr_indices.length){
+			int[] attr_indices = new int[2*this.size];
+			String[] values = new String[2*this.size];
+			System.arraycopy(this.attr_indices, 0, attr_indices, 0, this.size);
+			System.arraycopy(this.values, 0, values, 0, this.size);
+			this.attr_indices = attr_indices;
+			this.values = values;
+		}
+		if(this.size > 0 && this.attr_indices[this.size-1] >= attr_index) this.ascending = false;
+		this.attr_indices[this.size] = attr_index;
+		this.values[this.size] = value;
+		this.size++;
+	}
+
+	/**
+	 * Keep only the pairs of attribute indices in [0, attr_count) with the value
+	 */
+	void retain(int attr_count, String value){
+		int n = 0;
+		for(int i=0; i<this.size; i++){
+			int attr_index = this.attr_indices[i];
+			if(attr_index < 0 || attr_index >= attr_count || !value.equals(this.values[i])) continue;
+			this.attr_indices[n] = attr_index;
+			this.values[n] = this.values[i];
+			n++;
+		}
+		for(int i=n; i<this.size; i++) this.values[i] = null;
+		this.size = n;
+	}
+
+	/**
+	 * Sort the pairs by attribute index, only the last pair of a duplicated attribute index is kept.
+	 * Pairs are usually already ascending (as required for sparse ARFF rows), otherwise a stable insertion sort is used.
+	 */
+	public void sort_unique(){
+		if(this.ascending) return;
+
+		for(int i=1; i<this.size; i++){
+			int attr_index = this.attr_indices[i];
+			String value = this.values[i];
+			int j = i-1;
+			while(j >= 0 && this.attr_indices[j] > attr_index){
+				this.attr_indices[j+1] = this.attr_indices[j];
+				this.values[j+1] = this.values[j];
+				j--;
+			}
+			this.attr_indices[j+1] = attr_index;
+			this.values[j+1] = value;
+		}
+
+		int n = 0;
+		for(int i=0; i<this.size; i++){
+			if(i+1 < this.size && this.attr_indices[i+1] == this.attr_indices[i]) continue;
+			this.attr_indices[n] = this.attr_indices[i];
+			this.values[n] = this.values[i];
+			n++;
+		}
+		for(int i=n; i<this.size; i++) this.values[i] = null;
+		this.size = n;
+		this.ascending = true;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.prepr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open-addressing (linear probing) hash table of distinct tokens, each token has a code which is its insertion order.
+ * </br>Tokens can be looked up and added as slices [start, end) of a char array, so no String is created for a token
+ * which is already in the table. The hash of a slice is the same as String.hashCode() of the token.
+ */
+public final class TokenTable {
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * code --> token
+	 */
+	private final List<String> tokens;
+
+	/**
+	 * slot --> code + 1, 0 for an empty slot; slot --> hash of the token
+	 */
+	private int[] slots;
+	private int[] hashes;
+	private int mask;
+
+	public TokenTable(){
+		this(16);
+	}
+
+	/**
+	 * @param expected_size the expected number of tokens
+	 */
+	public TokenTable(int expected_size){
+		int capacity = 16;
+		while(capacity < 2*expected_size) capacity <<= 1;
+		this.slots = new int[capacity];
+		this.hashes = new int[capacity];
+		this.mask = capacity - 1;
+		this.tokens = new ArrayList<String>(Math.max(expected_size, 4));
+	}
+
+	public int size(){
+		return this.tokens.size();
+	}
+
+	/**
+	 * @return the token of the code
+	 */
+	public String token(int code){
+		return this.tokens.get(code);
+	}
+
+	/**
+	 * @return code --> token, the list is updated when tokens are added
+	 */
+	public List<String> tokens(){
+		return this.tokens;
+	}
+
+	/**
+	 * @return the code of the token, NOT_FOUND if the token is not in the table
+	 */
+	public int get(String token){
+		int hash = token.hashCode();
+		for(int slot = mix(hash) & this.mask; ; slot = (slot+1) & this.mask){
+			int code = this.slots[slot] - 1;
+			if(code == NOT_FOUND) return NOT_FOUND;
+			if(this.hashes[slot] == hash && this.tokens.get(code).equals(token)) return code;
+		}
+	}
+
+	/**
+	 * @return the code of the token buffer[start, end), NOT_FOUND if the token is not in the table
+	 */
+	public int get(char[] buffer, int start, int end){
+		int hash = hash(buffer, start, end);
+		for(int slot = mix(hash) & this.mask; ; slot = (slot+1) & this.mask){
+			int code = this.slots[slot] - 1;
+			if(code == NOT_FOUND) return NOT_FOUND;
+			if(this.hashes[slot] == hash && equals(this.tokens.get(code), buffer, start, end)) return code;
+		}
+	}
+
+	/**
+	 * Add the token if it is not in the table
+	 * @return the code of the token
+	 */
+	public int add(String token){
+		int hash = token.hashCode();
+		int slot = mix(hash) & this.mask;
+		for(; ; slot = (slot+1) & this.mask){
+			int code = this.slots[slot] - 1;
+			if(code == NOT_FOUND) break;
+			if(this.hashes[slot] == hash && this.tokens.get(code).equals(token)) return code;
+		}
+		return this.insert(slot, hash, token);
+	}
+
+	/**
+	 * Add the token buffer[start, end) if it is not in the table, a String is created only for a new token
+	 * @return the code of the token
+	 */
+	public int add(char[] buffer, int start, int end){
+		int hash = hash(buffer, start, end);
+		int slot = mix(hash) & this.mask;
+		for(; ; slot = (slot+1) & this.mask){
+			int code = this.slots[slot] - 1;
+			if(code == NOT_FOUND) break;
+			if(this.hashes[slot] == hash && equals(this.tokens.get(code), buffer, start, end)) return code;
+		}
+		return this.insert(slot, hash, new String(buffer, start, end-start));
+	}
+
+	private int insert(int slot, int hash, String token){
+		int code = this.tokens.size();
+		this.tokens.add(token);
+		this.slots[slot] = code + 1;
+		this.hashes[slot] = hash;
+		if(2*this.tokens.size() > this.slots.length) this.grow();
+		return code;
+	}
+
+	private void grow(){
+		int[] slots = this.slots, hashes = this.hashes;
+		this.slots = new int[2*slots.length];
+		this.hashes = new int[2*slots.length];
+		this.mask = this.slots.length - 1;
+		for(int i=0; i<slots.length; i++){
+			if(slots[i] == 0) continue;
+			int slot = mix(hashes[i]) & this.mask;
+			while(this.slots[slot] != 0) slot = (slot+1) & this.mask;
+			this.slots[slot] = slots[i];
+			this.hashes[slot] = hashes[i];
+		}
+	}
+
+	/**
+	 * @return String.hashCode() of the token buffer[start, end)
+	 */
+	static int hash(char[] buffer, int start, int end){
+		int hash = 0;
+		for(int i=start; i<end; i++) hash = 31*hash + buffer[i];
+		return hash;
+	}
+
+	private static int mix(int hash){
+		return hash ^ (hash >>> 16);
+	}
+
+	static boolean equals(String token, char[] buffer, int start, int end){
+		if(token.length() != end-start) return false;
+		for(int i=start; i<end; i++){
+			if(token.charAt(i-start) != buffer[i]) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,401 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+/**
+ * Specialized kernels of Supporter for Nlists of the same array-based implementation (Nodelist or PackedNodelist).
+ * </br>They work directly on the backing arrays instead of calling INlist.get(index, Node) for each node,
+ * so the innermost loops contain no interface calls and no copies into Node objects.
+ * Supporter dispatches to these kernels by the exact classes of the operands, other combinations go to the generic kernels.
+ * </br>The results are identical to the ones of the generic kernels.
+ */
+final class ArrayKernels {
+	/**
+	 * The default minimum ratio between the lengths of the two ranges to join for switching from the linear merge to galloping
+	 */
+	static final int DEFAULT_GALLOP_RATIO = 16;
+
+	static int gallop_ratio = DEFAULT_GALLOP_RATIO;
+
+	private ArrayKernels(){}
+
+	/**
+	 * @return true if the ranges of lengths 'length1' and 'length2' should be joined by galloping
+	 */
+	private static boolean gallop(int length1, int length2){
+		return (length1 < length2) ? length2/gallop_ratio >= length1 : length1/gallop_ratio >= length2;
+	}
+
+	/**
+	 * @return true if the ranges of lengths 'length1' and 'length2' of two Nodelists should be joined by the skipping kernels
+	 * of BlockKernels, i.e. one of the Nodelists has a SkipIndex and the ranges are not joined by galloping
+	 */
+	static boolean skip(Nodelist nlist1, int length1, Nodelist nlist2, int length2){
+		return (nlist1.skip_index != null || nlist2.skip_index != null) && !gallop(length1, length2);
+	}
+
+	/**
+	 * Exponential search on an ascending sequence whose i-th element is a[offset + stride*i]
+	 * @return the first index i in [from, to) with a[offset + stride*i] > key, or 'to' if there is no such index
+	 */
+	private static int first_greater(int[] a, int offset, int stride, int from, int to, int key){
+		int low = from, high = from, step = 1;
+		// all elements in [from, low) are not greater than key
+		while(high < to && a[offset + stride*high] <= key){
+			low = high + 1;
+			high = from + step;
+			step <<= 1;
+		}
+		if(high > to) high = to;
+
+		// binary search in [low, high)
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(a[offset + stride*mid] <= key) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/////////////////////////////////////////////// Nodelist x Nodelist //////////////////////////////////////////////
+
+	/**
+	 * @see Supporter#join(INlist, int, int, INlist, int, int, INlist, Node, Node)
+	 */
+	static void join(Nodelist nlist1, int from1, int to1, Nodelist nlist2, int from2, int to2, Nodelist nodelist){
+		if(from1 >= to1 || from2 >= to2) return;	// also the case of unallocated arrays
+		if(gallop(to1-from1, to2-from2)){
+			join_gallop(nlist1, from1, to1, nlist2, from2, to2, nodelist);
+			return;
+		}
+
+		int[][] ppc1 = nlist1.arrays(), ppc2 = nlist2.arrays();
+		int[] pre1 = ppc1[0], pos1 = ppc1[1], count1 = ppc1[2];
+		int[] pre2 = ppc2[0], pos2 = ppc2[1];
+		int index1 = from1, index2 = from2, parent_node_index = nodelist.size()-1, parent_node_pre = -1;
+
+		while(index1 < to1 && index2 < to2){
+			int p1 = pre1[index1], p2 = pre2[index2];
+			if(p1 > p2){
+				if(pos1[index1] < pos2[index2]){
+					// node in nlist1 is a descendant of node in nlist2
+					if(parent_node_pre == p2){
+						nodelist.accSupportCount(parent_node_index, count1[index1]);
+					}else{
+						nodelist.add(p2, pos2[index2], count1[index1]);
+						parent_node_pre = p2;
+						parent_node_index++;
+					}
+					index1++;
+				}else{
+					index2++;
+				}
+			}else{
+				index1++;
+			}
+		}
+	}
+
+	/**
+	 * @see Supporter#support_count(INlist, int, int, INlist, int, int, Node, Node)
+	 */
+	static int support_count(Nodelist nlist1, int from1, int to1, Nodelist nlist2, int from2, int to2){
+		if(from1 >= to1 || from2 >= to2) return 0;	// also the case of unallocated arrays
+		if(gallop(to1-from1, to2-from2)) return support_count_gallop(nlist1, from1, to1, nlist2, from2, to2);
+
+		int[][] ppc1 = nlist1.arrays(), ppc2 = nlist2.arrays();
+		int[] pre1 = ppc1[0], pos1 = ppc1[1], count1 = ppc1[2];
+		int[] pre2 = ppc2[0], pos2 = ppc2[1];
+		int index1 = from1, index2 = from2, support_count = 0;
+
+		while(index1 < to1 && index2 < to2){
+			if(pre1[index1] > pre2[index2]){
+				if(pos1[index1] < pos2[index2]){
+					support_count += count1[index1];
+					index1++;
+				}else{
+					index2++;
+				}
+			}else{
+				index1++;
+			}
+		}
+		return support_count;
+	}
+
+	/*
+	 * Galloping kernels: the nodes of an Nlist are roots of disjoint subtrees, so both their pre-codes and pos-codes ascend.
+	 * For the node of nlist1 at index1, the only candidate ancestor in nlist2 is the first node whose pos-code is greater,
+	 * nodes of nlist2 before it are skipped by galloping on pos-codes. If the candidate is not an ancestor (its pre-code is greater),
+	 * nodes of nlist1 before it are skipped by galloping on pre-codes. Nodes of nlist2 are never descendants of nodes of nlist1
+	 * in the Nlists given to create_nlist, so the skipped nodes are exactly the ones passed one by one in the linear merge.
+	 */
+
+	private static void join_gallop(Nodelist nlist1, int from1, int to1, Nodelist nlist2, int from2, int to2, Nodelist nodelist){
+		int[][] ppc1 = nlist1.arrays(), ppc2 = nlist2.arrays();
+		int[] pre1 = ppc1[0], pos1 = ppc1[1], count1 = ppc1[2];
+		int[] pre2 = ppc2[0], pos2 = ppc2[1];
+		int index1 = from1, index2 = from2, parent_node_index = nodelist.size()-1, parent_node_pre = -1;
+
+		while(index1 < to1 && index2 < to2){
+			int q1 = pos1[index1];
+			if(pos2[index2] < q1){
+				index2 = first_greater(pos2, 0, 1, index2+1, to2, q1);
+				if(index2 == to2) break;
+			}
+			int p2 = pre2[index2];
+			if(pre1[index1] > p2){
+				// node in nlist1 is a descendant of node in nlist2
+				if(parent_node_pre == p2){
+					nodelist.accSupportCount(parent_node_index, count1[index1]);
+				}else{
+					nodelist.add(p2, pos2[index2], count1[index1]);
+					parent_node_pre = p2;
+					parent_node_index++;
+				}
+				index1++;
+			}else{
+				index1 = first_greater(pre1, 0, 1, index1+1, to1, p2);
+			}
+		}
+	}
+
+	private static int support_count_gallop(Nodelist nlist1, int from1, int to1, Nodelist nlist2, int from2, int to2){
+		int[][] ppc1 = nlist1.arrays(), ppc2 = nlist2.arrays();
+		int[] pre1 = ppc1[0], pos1 = ppc1[1], count1 = ppc1[2];
+		int[] pre2 = ppc2[0], pos2 = ppc2[1];
+		int index1 = from1, index2 = from2, support_count = 0;
+
+		while(index1 < to1 && index2 < to2){
+			int q1 = pos1[index1];
+			if(pos2[index2] < q1){
+				index2 = first_greater(pos2, 0, 1, index2+1, to2, q1);
+				if(index2 == to2) break;
+			}
+			int p2 = pre2[index2];
+			if(pre1[index1] > p2){
+				support_count += count1[index1];
+				index1++;
+			}else{
+				index1 = first_greater(pre1, 0, 1, index1+1, to1, p2);
+			}
+		}
+		return support_count;
+	}
+
+	/**
+	 * @see Supporter#create_nlist_conj(INlist, INlist)
+	 */
+	static void conj(Nodelist nlist1, Nodelist nlist2, Nodelist nodelist){
+		int[][] ppc1 = nlist1.arrays(), ppc2 = nlist2.arrays();
+		int[] pre1 = ppc1[0], pos1 = ppc1[1], count1 = ppc1[2];
+		int[] pre2 = ppc2[0], pos2 = ppc2[1], count2 = ppc2[2];
+		int size1 = nlist1.size(), size2 = nlist2.size();
+		int index1 = 0, index2 = 0;
+
+		while(index1 < size1 && index2 < size2){
+			int p1 = pre1[index1], p2 = pre2[index2];
+			if(p1 > p2){
+				if(pos1[index1] < pos2[index2]){
+					// node1 is a descendant of node2, add node1
+					nodelist.add(p1, pos1[index1], count1[index1]);
+					index1++;
+				}else{
+					index2++;
+				}
+			}else if(p1 < p2){
+				if(pos1[index1] < pos2[index2]){
+					index1++;
+				}else{
+					// node2 is a descendant of node1, add node2
+					nodelist.add(p2, pos2[index2], count2[index2]);
+					index2++;
+				}
+			}else{
+				// identical nodes
+				nodelist.add(p1, pos1[index1], count1[index1]);
+				index1++;
+				index2++;
+			}
+		}
+	}
+
+	/**
+	 * @see Supporter#create_nlist_disj(INlist, INlist)
+	 * @return true if the remaining nodes of nlist1 were added, the same case that the generic kernel does not shrink the result
+	 */
+	static boolean disj(Nodelist nlist1, Nodelist nlist2, Nodelist nodelist){
+		int[][] ppc1 = nlist1.arrays(), ppc2 = nlist2.arrays();
+		int[] pre1 = ppc1[0], pos1 = ppc1[1], count1 = ppc1[2];
+		int[] pre2 = ppc2[0], pos2 = ppc2[1], count2 = ppc2[2];
+		int size1 = nlist1.size(), size2 = nlist2.size();
+		int index1 = 0, index2 = 0, ancestor_node_pre = -1;
+
+		while(true){
+			int p1 = pre1[index1], p2 = pre2[index2];
+			if(p1 > p2){
+				if(pos1[index1] < pos2[index2]){
+					// node1 is a descendant of node2, add node2 only once
+					if(ancestor_node_pre != p2){
+						nodelist.add(p2, pos2[index2], count2[index2]);
+						ancestor_node_pre = p2;
+					}
+					index1++;
+					if(index1 == size1){
+						index2++;	// ancestor has added
+						break;
+					}
+				}else{
+					if(ancestor_node_pre != p2) nodelist.add(p2, pos2[index2], count2[index2]);
+					index2++;
+					if(index2 == size2) break;
+				}
+			}else if(p1 < p2){
+				if(pos1[index1] < pos2[index2]){
+					if(ancestor_node_pre != p1) nodelist.add(p1, pos1[index1], count1[index1]);
+					index1++;
+					if(index1 == size1) break;
+				}else{
+					// node2 is a descendant of node1, add node1 only once
+					if(ancestor_node_pre != p1){
+						nodelist.add(p1, pos1[index1], count1[index1]);
+						ancestor_node_pre = p1;
+					}
+					index2++;
+					if(index2 == size2){
+						index1++;	// ancestor has added
+						break;
+					}
+				}
+			}else{
+				// identical nodes
+				nodelist.add(p1, pos1[index1], count1[index1]);
+				index1++;
+				index2++;
+				if(index1 == size1 || index2 == size2) break;
+			}
+		}
+
+		// add the remaining nodes in one of the two input node lists
+		if(index1 < size1){
+			for(int i=index1; i<size1; i++) nodelist.add(pre1[i], pos1[i], count1[i]);
+			return true;
+		}
+		for(int i=index2; i<size2; i++) nodelist.add(pre2[i], pos2[i], count2[i]);
+		return false;
+	}
+
+	/////////////////////////////////////////// PackedNodelist x PackedNodelist //////////////////////////////////////////
+
+	/**
+	 * @see Supporter#join(INlist, int, int, INlist, int, int, INlist, Node, Node)
+	 */
+	static void join(PackedNodelist nlist1, int from1, int to1, PackedNodelist nlist2, int from2, int to2, PackedNodelist nodelist){
+		if(from1 >= to1 || from2 >= to2) return;	// also the case of unallocated arrays
+		if(gallop(to1-from1, to2-from2)){
+			join_gallop(nlist1, from1, to1, nlist2, from2, to2, nodelist);
+			return;
+		}
+
+		int[] ppc1 = nlist1.packed(), ppc2 = nlist2.packed();
+		int offset1 = 3*from1, end1 = 3*to1, offset2 = 3*from2, end2 = 3*to2;
+		int parent_node_index = nodelist.size()-1, parent_node_pre = -1;
+
+		while(offset1 < end1 && offset2 < end2){
+			int p1 = ppc1[offset1], p2 = ppc2[offset2];
+			if(p1 > p2){
+				if(ppc1[offset1+1] < ppc2[offset2+1]){
+					// node in nlist1 is a descendant of node in nlist2
+					if(parent_node_pre == p2){
+						nodelist.accSupportCount(parent_node_index, ppc1[offset1+2]);
+					}else{
+						nodelist.add(p2, ppc2[offset2+1], ppc1[offset1+2]);
+						parent_node_pre = p2;
+						parent_node_index++;
+					}
+					offset1 += 3;
+				}else{
+					offset2 += 3;
+				}
+			}else{
+				offset1 += 3;
+			}
+		}
+	}
+
+	/**
+	 * @see Supporter#support_count(INlist, int, int, INlist, int, int, Node, Node)
+	 */
+	static int support_count(PackedNodelist nlist1, int from1, int to1, PackedNodelist nlist2, int from2, int to2){
+		if(from1 >= to1 || from2 >= to2) return 0;	// also the case of unallocated arrays
+		if(gallop(to1-from1, to2-from2)) return support_count_gallop(nlist1, from1, to1, nlist2, from2, to2);
+
+		int[] ppc1 = nlist1.packed(), ppc2 = nlist2.packed();
+		int offset1 = 3*from1, end1 = 3*to1, offset2 = 3*from2, end2 = 3*to2;
+		int support_count = 0;
+
+		while(offset1 < end1 && offset2 < end2){
+			if(ppc1[offset1] > ppc2[offset2]){
+				if(ppc1[offset1+1] < ppc2[offset2+1]){
+					support_count += ppc1[offset1+2];
+					offset1 += 3;
+				}else{
+					offset2 += 3;
+				}
+			}else{
+				offset1 += 3;
+			}
+		}
+		return support_count;
+	}
+
+	private static void join_gallop(PackedNodelist nlist1, int from1, int to1, PackedNodelist nlist2, int from2, int to2, PackedNodelist nodelist){
+		int[] ppc1 = nlist1.packed(), ppc2 = nlist2.packed();
+		int index1 = from1, index2 = from2, parent_node_index = nodelist.size()-1, parent_node_pre = -1;
+
+		while(index1 < to1 && index2 < to2){
+			int offset1 = 3*index1, q1 = ppc1[offset1+1];
+			if(ppc2[3*index2+1] < q1){
+				index2 = first_greater(ppc2, 1, 3, index2+1, to2, q1);
+				if(index2 == to2) break;
+			}
+			int offset2 = 3*index2, p2 = ppc2[offset2];
+			if(ppc1[offset1] > p2){
+				// node in nlist1 is a descendant of node in nlist2
+				if(parent_node_pre == p2){
+					nodelist.accSupportCount(parent_node_index, ppc1[offset1+2]);
+				}else{
+					nodelist.add(p2, ppc2[offset2+1], ppc1[offset1+2]);
+					parent_node_pre = p2;
+					parent_node_index++;
+				}
+				index1++;
+			}else{
+				index1 = first_greater(ppc1, 0, 3, index1+1, to1, p2);
+			}
+		}
+	}
+
+	private static int support_count_gallop(PackedNodelist nlist1, int from1, int to1, PackedNodelist nlist2, int from2, int to2){
+		int[] ppc1 = nlist1.packed(), ppc2 = nlist2.packed();
+		int index1 = from1, index2 = from2, support_count = 0;
+
+		while(index1 < to1 && index2 < to2){
+			int offset1 = 3*index1, q1 = ppc1[offset1+1];
+			if(ppc2[3*index2+1] < q1){
+				index2 = first_greater(ppc2, 1, 3, index2+1, to2, q1);
+				if(index2 == to2) break;
+			}
+			if(ppc1[offset1] > ppc2[3*index2]){
+				support_count += ppc1[offset1+2];
+				index1++;
+			}else{
+				index1 = first_greater(ppc1, 0, 3, index1+1, to1, ppc2[3*index2]);
+			}
+		}
+		return support_count;
+	}
+}
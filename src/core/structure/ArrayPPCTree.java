@@ -0,0 +1,469 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An array implementation for PPCTree. Nodes are stored in parallel int arrays (item, count, parent,
+ * first child, next sibling, pre-code, pos-code) instead of PPCNode objects, a node is its index in the arrays.
+ * </br>During the insertion, children are linked in the insertion order and found by a hash map from (parent, item) pairs,
+ * they are sorted by item IDs when PPCodes are assigned. The hash map is released after that.
+ * </br>The purpose is to reduce memory overhead (object headers, children ArrayLists) and pointer chasing.
+ * </br><b>Note:</b> the root node is at index 0. The tree can also be a subtree of a P3CTree whose root is a leaf node of the top part.
+ */
+public class ArrayPPCTree implements IPPCTree {
+	private static final float allocate_rate = 1.75f;
+	private static final int NONE = -1;
+
+	/**
+	 * Estimated memory (bytes) per node while building, including the entry of the child hash map
+	 */
+	public static final long ESTIMATED_NODE_BYTES = 48;
+
+	private int[] item;
+	private int[] count;
+	private int[] parent;
+	private int[] first_child;
+	private int[] next_sibling;
+	private int[] pre;
+	private int[] pos;
+	private int size = 0;
+
+	/**
+	 * Map from (parent node, item) to the child node, only exists while inserting records
+	 */
+	private LongIntHashMap child_map;
+
+	/**
+	 * Build a tree with a root node without any selector associated
+	 */
+	public ArrayPPCTree(){
+		this(-1, 0, 1024);
+	}
+
+	/**
+	 * Build a tree with a given root node, e.g. a leaf node of the top part of a P3CTree
+	 * @param root_item itemID of the root node, -1 if no selector associated
+	 * @param root_count support count of the root node
+	 * @param capacity initialized number of nodes
+	 */
+	public ArrayPPCTree(int root_item, int root_count, int capacity){
+		capacity = Math.max(capacity, 16);
+		this.item = new int[capacity];
+		this.count = new int[capacity];
+		this.parent = new int[capacity];
+		this.first_child = new int[capacity];
+		this.next_sibling = new int[capacity];
+		this.child_map = new LongIntHashMap(capacity);
+		this.new_node(root_item, NONE, root_count);
+	}
+
+	private int new_node(int item_id, int parent_node, int node_count){
+		if(this.size == this.item.length){
+			// No spare room for new node, allocate new space
+			int capacity = (int)(this.size*allocate_rate);
+			this.item = Arrays.copyOf(this.item, capacity);
+			this.count = Arrays.copyOf(this.count, capacity);
+			this.parent = Arrays.copyOf(this.parent, capacity);
+			this.first_child = Arrays.copyOf(this.first_child, capacity);
+			this.next_sibling = Arrays.copyOf(this.next_sibling, capacity);
+		}
+		int node = this.size;
+		this.item[node] = item_id;
+		this.count[node] = node_count;
+		this.parent[node] = parent_node;
+		this.first_child[node] = NONE;
+		this.next_sibling[node] = NONE;
+		this.size++;
+		return node;
+	}
+
+	private static long child_key(int parent_node, int item_id){
+		return ((long)parent_node << 32) | (item_id & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Return the child of 'node' associated with 'item_id', a new child is added if it does not exist
+	 */
+	private int get_or_add_child(int node, int item_id){
+		long key = child_key(node, item_id);
+		int child = this.child_map.get(key);
+		if(child == NONE){
+			child = this.new_node(item_id, node, 0);
+			// link the new child at the head, children are sorted when PPCodes are assigned
+			this.next_sibling[child] = this.first_child[node];
+			this.first_child[node] = child;
+			this.child_map.put(key, child);
+		}
+		return child;
+	}
+
+	/**
+	 * Rebuild the child hash map if records are inserted after PPCodes were assigned
+	 */
+	private void ensure_child_map(){
+		if(this.child_map != null) return;
+		this.child_map = new LongIntHashMap(this.size);
+		for(int node=1; node<this.size; node++){
+			this.child_map.put(child_key(this.parent[node], this.item[node]), node);
+		}
+	}
+
+	/**
+	 * Insert a record of selector ids (in a pre-defined order) into the tree.
+	 * </br>The order of ids to insert into the tree is from right to left.
+	 * @param record an int array of selector IDs in a pre-defined order of selectors
+	 */
+	public void insert_record(int[] record){
+		this.insert_suffix(record, 0);
+	}
+
+	/**
+	 * Insert a record of selector ids (in a pre-defined order) which stands for 'weight' identical records,
+	 * the counts of the nodes on its path increase by 'weight'. Pre-aggregated data can be fed this way.
+	 * @param record an int array of selector IDs in a pre-defined order of selectors
+	 * @param weight the multiplicity of the record
+	 */
+	public void insert_record(int[] record, int weight){
+		this.insert_suffix(record, 0, record.length, 0, weight);
+	}
+
+	/**
+	 * Insert a record without its last 'level'-1 selector ids, which are already the path
+	 * from the top part of a P3CTree to the root of this tree.
+	 * </br>The order of ids to insert into the tree is from right to left.
+	 * @param record an int array of selector IDs in a pre-defined order of selectors
+	 * @param level the level of the root of this tree, 0 to insert the whole record
+	 */
+	public void insert_suffix(int[] record, int level){
+		this.insert_suffix(record, 0, record.length, level);
+	}
+
+	/**
+	 * Insert the record ids[offset, offset+length) without its last 'level'-1 selector ids, as insert_suffix(int[], int)
+	 * @param ids
+	 * @param offset
+	 * @param length
+	 * @param level
+	 */
+	public void insert_suffix(int[] ids, int offset, int length, int level){
+		this.insert_suffix(ids, offset, length, level, 1);
+	}
+
+	/**
+	 * Insert the record ids[offset, offset+length) without its last 'level'-1 selector ids, the record stands for
+	 * 'weight' identical records
+	 * @param ids
+	 * @param offset
+	 * @param length
+	 * @param level
+	 * @param weight the multiplicity of the record
+	 */
+	public void insert_suffix(int[] ids, int offset, int length, int level, int weight){
+		this.ensure_child_map();
+		int node = 0;
+		int first = (level == 0) ? offset+length-1 : offset+length-level;
+
+		// The record of ids is in ascending order.
+		// So the order of ids to insert into the tree is from right to left.
+		for(int i=first; i>=offset; i--){
+			node = this.get_or_add_child(node, ids[i]);
+			this.count[node] += weight;
+		}
+	}
+
+	/**
+	 * Insert the records order[0..] in the order of RecordSorter.sorted_order(...) in one sweep, see insert_sorted_suffixes(...)
+	 * @param records
+	 * @param order indices of the records in the sorted order
+	 */
+	public void insert_sorted_records(RecordArray records, int[] order){
+		this.insert_sorted_suffixes(records, null, order, 0, order.length, 1);
+	}
+
+	/**
+	 * Insert the records order[0..] in the order of RecordSorter.sorted_order(...) in one sweep, each record counts for its weight
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the sorted order
+	 */
+	public void insert_sorted_records(RecordArray records, int[] weights, int[] order){
+		this.insert_sorted_suffixes(records, weights, order, 0, order.length, 1);
+	}
+
+	/**
+	 * Insert the records order[begin, end) without their last 'level'-1 selector ids, the records must be sorted from 'level'
+	 * by a RecordSorter. Each record is compared with the path of the previous record only: the common part is counted and
+	 * the rest is appended as the last children, so there is no lookup of children.
+	 * </br>If the tree already has nodes other than the root, the records are inserted one by one.
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the sorted order
+	 * @param begin
+	 * @param end
+	 * @param level the level of the root of this tree plus 1, 1 to insert the whole records
+	 */
+	public void insert_sorted_suffixes(RecordArray records, int[] weights, int[] order, int begin, int end, int level){
+		if(this.size > 1){
+			for(int k=begin; k<end; k++){
+				int r = order[k];
+				this.insert_suffix(records.ids(r), records.offset(r), records.length(r), level, (weights == null) ? 1 : weights[r]);
+			}
+			return;
+		}
+
+		// the child map is not maintained, it is rebuilt if records are inserted later
+		this.child_map = null;
+		int[] path = new int[16];
+		int path_length = 0;
+		for(int k=begin; k<end; k++){
+			int r = order[k];
+			int weight = (weights == null) ? 1 : weights[r];
+			int[] ids = records.ids(r);
+			int offset = records.offset(r);
+			int first = offset + records.length(r) - level;
+			int depth = first - offset + 1;
+
+			// the common part with the path of the previous record
+			int max_common = Math.min(depth, path_length);
+			int common = 0;
+			while(common < max_common && this.item[path[common]] == ids[first-common]){
+				this.count[path[common]] += weight;
+				common++;
+			}
+
+			if(depth > path.length) path = Arrays.copyOf(path, Math.max(depth, (int)(path.length*allocate_rate)));
+			int node = (common == 0) ? 0 : path[common-1];
+			for(int d=common; d<depth; d++){
+				int child = this.new_node(ids[first-d], node, weight);
+				// the node of the previous record at this depth is the last child
+				if(d == common && d < path_length) this.next_sibling[path[d]] = child;
+				else this.first_child[node] = child;
+				path[d] = child;
+				node = child;
+			}
+			path_length = depth;
+		}
+	}
+
+	/**
+	 * Traverse the tree with pre and post orders and assign two ordinal numbers for each node.
+	 */
+	public void assignPrePosOrderCode(){
+		this.assignPrePosOrderCode(0, 0);
+	}
+
+	/**
+	 * Traverse the tree with pre and post orders and assign two ordinal numbers for each node,
+	 * starting from the given codes. Children of each node are sorted by item IDs beforehand.
+	 * @param start_pre pre-order code of the root node
+	 * @param start_pos the smallest post-order code of the tree
+	 */
+	public void assignPrePosOrderCode(int start_pre, int start_pos){
+		// the child map is no longer needed, release it before allocating the code arrays
+		this.child_map = null;
+		if(this.pre == null || this.pre.length < this.size){
+			this.pre = new int[this.size];
+			this.pos = new int[this.size];
+		}
+
+		long[] buffer = new long[16];
+		int pre_code = start_pre, pos_code = start_pos;
+		int node = 0;
+		this.pre[node] = pre_code++;
+		buffer = this.sort_children(node, buffer);
+		int child = this.first_child[node];
+
+		// Iterative pre&post-order traverse, the parent links are used to go back up
+		while(true){
+			if(child != NONE){
+				node = child;
+				this.pre[node] = pre_code++;
+				buffer = this.sort_children(node, buffer);
+				child = this.first_child[node];
+			}else{
+				this.pos[node] = pos_code++;
+				if(node == 0) break;
+				child = this.next_sibling[node];
+				node = this.parent[node];
+			}
+		}
+	}
+
+	/**
+	 * Relink children of 'node' in ascending order of item IDs
+	 * @return the buffer, enlarged if needed
+	 */
+	private long[] sort_children(int node, long[] buffer){
+		int child = this.first_child[node];
+		if(child == NONE || this.next_sibling[child] == NONE) return buffer;
+
+		int n = 0;
+		boolean sorted = true;
+		int prev_item = Integer.MIN_VALUE;
+		for(; child != NONE; child = this.next_sibling[child]){
+			if(n == buffer.length) buffer = Arrays.copyOf(buffer, (int)(n*allocate_rate));
+			buffer[n++] = ((long)this.item[child] << 32) | child;
+			if(this.item[child] < prev_item) sorted = false;
+			prev_item = this.item[child];
+		}
+		if(sorted) return buffer;
+
+		Arrays.sort(buffer, 0, n);
+		this.first_child[node] = (int) buffer[0];
+		for(int i=1; i<n; i++) this.next_sibling[(int) buffer[i-1]] = (int) buffer[i];
+		this.next_sibling[(int) buffer[n-1]] = NONE;
+
+		return buffer;
+	}
+
+	/**
+	 * Create an Nlist (using Nodelist implementation) for each selector (selector ID) which was used to build the tree.
+	 * @param selector_count the number of selectors used to build the tree
+	 * @return array of Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(int selector_count){
+		// Prepare 'selector_nlists', add an empty Nodelist for each selector.
+    	// Note: selectorID of a selector is exactly its index in 'selector_nlists'
+		INlist[] selector_nlists = new INlist[selector_count];
+		for(int i=0; i<selector_count; i++){
+			selector_nlists[i] = new Nodelist();
+		}
+
+		this.update_nlists(selector_nlists);
+
+		for(INlist nlist : selector_nlists) nlist.shrink();
+
+		return selector_nlists;
+	}
+
+	/**
+	 * Create an Nlist for each selector (selector ID) which was used to build the tree, the nodes are kept off-heap in 'store'.
+	 * @param store an unsealed store for the selectors which were used to build the tree, it is sealed afterwards
+	 * @return array of (read-only) Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(OffHeapNlistStore store){
+		this.update_nlists(store.getAppenders());
+		return store.seal();
+	}
+
+	/**
+	 * Add all nodes, except the root node, to the Nlists of the corresponding selectors in pre-order
+	 * @param selector_nlists
+	 */
+	public void update_nlists(INlist[] selector_nlists){
+		int node = 0;
+		int child = this.first_child[node];
+
+		while(true){
+			if(child != NONE){
+				node = child;
+				// itemID of a node means Selector.selectorID
+				selector_nlists[this.item[node]].add(this.pre[node], this.pos[node], this.count[node]);
+				child = this.first_child[node];
+			}else{
+				if(node == 0) break;
+				child = this.next_sibling[node];
+				node = this.parent[node];
+			}
+		}
+	}
+
+	/**
+	 * Pack all nodes, including the root node, in pre-order into 'fragment', 4 integers per node: itemID, pre-code, pos-code, count
+	 * @param fragment length must be at least 4*countNodes()
+	 */
+	public void fill_fragment(int[] fragment){
+		int offset = 0;
+		int node = 0;
+		int child = this.first_child[node];
+		fragment[offset++] = this.item[node];
+		fragment[offset++] = this.pre[node];
+		fragment[offset++] = this.pos[node];
+		fragment[offset++] = this.count[node];
+
+		while(true){
+			if(child != NONE){
+				node = child;
+				fragment[offset++] = this.item[node];
+				fragment[offset++] = this.pre[node];
+				fragment[offset++] = this.pos[node];
+				fragment[offset++] = this.count[node];
+				child = this.first_child[node];
+			}else{
+				if(node == 0) break;
+				child = this.next_sibling[node];
+				node = this.parent[node];
+			}
+		}
+	}
+
+	/**
+	 * Add all Nlists of selectors to a map from string representation of each selector ID to the corresponding Nlist.
+	 * @param selector_nlists
+	 * @return
+	 */
+	public Map<String, INlist> create_selector_Nlist_map(INlist[] selector_nlists){
+		int total_selector_count = selector_nlists.length;
+
+		Map<String, INlist> selector_nlist_map = new HashMap<String, INlist>(total_selector_count);
+		for(int i=0; i<total_selector_count; i++){
+			selector_nlist_map.put("["+i+"]", selector_nlists[i]);
+		}
+
+		return selector_nlist_map;
+	}
+
+	public int[] getRootChildPreCodes(){
+		int count = 0;
+		for(int child = this.first_child[0]; child != NONE; child = this.next_sibling[child]) count++;
+		int[] codes = new int[count];
+		int i = 0;
+		for(int child = this.first_child[0]; child != NONE; child = this.next_sibling[child]) codes[i++] = this.pre[child];
+		return codes;
+	}
+	
+	/**
+	 * @return pre-order code of the root node
+	 */
+	public int getRootPre(){
+		return this.pre[0];
+	}
+
+	/**
+	 * @return post-order code of the root node
+	 */
+	public int getRootPos(){
+		return this.pos[0];
+	}
+
+	public long countNodes(){
+		return this.size;
+	}
+
+	/**
+	 * @return the approximate memory (bytes) of the node arrays and the child hash map
+	 */
+	public long memory(){
+		long memory = 20L*this.item.length;
+		if(this.pre != null) memory += 8L*this.pre.length;
+		if(this.child_map != null) memory += this.child_map.memory();
+		return memory;
+	}
+
+	/**
+	 * Free memory
+	 */
+	public void free(){
+		this.item = this.count = this.parent = this.first_child = this.next_sibling = null;
+		this.pre = this.pos = null;
+		this.child_map = null;
+		this.size = 0;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import core.structure.CompressedNlist.Cursor;
+
+/**
+ * Specialized kernels of Supporter for joins in which at least one operand is a CompressedNlist and the other one
+ * is a CompressedNlist or a Nodelist, or one operand has a SkipIndex. The operands are read block by block through Cursors:
+ * a CompressedNlist is decoded one block at a time into the int arrays of its Cursor, so the innermost loops work on arrays
+ * as in ArrayKernels.
+ * </br>Skipping: both pre-codes and pos-codes ascend in an Nlist. The node of nlist1 is passed while its pre-code is not greater
+ * than the one of the current node of nlist2, so when the next block of nlist1 is needed, blocks whose last pre-code is not greater
+ * are skipped. The node of nlist2 is passed while its pos-code is less than the one of the current node of nlist1 (nodes of nlist2
+ * are never descendants of nodes of nlist1 in the Nlists given to create_nlist), so blocks of nlist2 whose last pos-code is less
+ * are skipped. The skipped nodes are exactly the ones passed one by one in the linear merge, and skipped blocks of a
+ * CompressedNlist are not decoded.
+ * </br>The results are identical to the ones of the generic kernels.
+ */
+final class BlockKernels {
+
+	private BlockKernels(){}
+
+	/**
+	 * @see Supporter#join(INlist, int, int, INlist, int, int, INlist, Node, Node)
+	 */
+	static void join(Cursor cursor1, int from1, int to1, Cursor cursor2, int from2, int to2, INlist nodelist){
+		if(from1 >= to1 || from2 >= to2) return;
+
+		SkipIndex skip1 = cursor1.skip, skip2 = cursor2.skip;
+		int start1 = cursor1.load(from1), end1 = Math.min(to1, cursor1.end);
+		int start2 = cursor2.load(from2), end2 = Math.min(to2, cursor2.end);
+		int[] pre1 = cursor1.pre, pos1 = cursor1.pos, count1 = cursor1.count;
+		int[] pre2 = cursor2.pre, pos2 = cursor2.pos;
+		int index1 = from1, index2 = from2, parent_node_index = nodelist.size()-1, parent_node_pre = -1;
+
+		while(true){
+			int p1 = pre1[index1-start1], p2 = pre2[index2-start2];
+			if(p1 > p2){
+				int q1 = pos1[index1-start1];
+				if(q1 < pos2[index2-start2]){
+					// node in nlist1 is a descendant of node in nlist2
+					if(parent_node_pre == p2){
+						nodelist.accSupportCount(parent_node_index, count1[index1-start1]);
+					}else{
+						nodelist.add(p2, pos2[index2-start2], count1[index1-start1]);
+						parent_node_pre = p2;
+						parent_node_index++;
+					}
+				}else{
+					// node in nlist2 is not an ancestor of the node in nlist1 and the following ones
+					if(++index2 == end2){
+						if(index2 == to2) break;
+						if(skip2 != null && (index2 = skip_pos(skip2, index2, q1)) >= to2) break;
+						start2 = cursor2.load(index2);
+						end2 = Math.min(to2, cursor2.end);
+					}
+					continue;
+				}
+			}
+			// the node in nlist1 is done
+			if(++index1 == end1){
+				if(index1 == to1) break;
+				if(skip1 != null && (index1 = skip_pre(skip1, index1, p2)) >= to1) break;
+				start1 = cursor1.load(index1);
+				end1 = Math.min(to1, cursor1.end);
+			}
+		}
+	}
+
+	/**
+	 * @see Supporter#support_count(INlist, int, int, INlist, int, int, Node, Node)
+	 */
+	static int support_count(Cursor cursor1, int from1, int to1, Cursor cursor2, int from2, int to2){
+		if(from1 >= to1 || from2 >= to2) return 0;
+
+		SkipIndex skip1 = cursor1.skip, skip2 = cursor2.skip;
+		int start1 = cursor1.load(from1), end1 = Math.min(to1, cursor1.end);
+		int start2 = cursor2.load(from2), end2 = Math.min(to2, cursor2.end);
+		int[] pre1 = cursor1.pre, pos1 = cursor1.pos, count1 = cursor1.count;
+		int[] pre2 = cursor2.pre, pos2 = cursor2.pos;
+		int index1 = from1, index2 = from2, support_count = 0;
+
+		while(true){
+			int p2 = pre2[index2-start2];
+			if(pre1[index1-start1] > p2){
+				int q1 = pos1[index1-start1];
+				if(q1 < pos2[index2-start2]){
+					support_count += count1[index1-start1];
+				}else{
+					if(++index2 == end2){
+						if(index2 == to2) break;
+						if(skip2 != null && (index2 = skip_pos(skip2, index2, q1)) >= to2) break;
+						start2 = cursor2.load(index2);
+						end2 = Math.min(to2, cursor2.end);
+					}
+					continue;
+				}
+			}
+			if(++index1 == end1){
+				if(index1 == to1) break;
+				if(skip1 != null && (index1 = skip_pre(skip1, index1, p2)) >= to1) break;
+				start1 = cursor1.load(index1);
+				end1 = Math.min(to1, cursor1.end);
+			}
+		}
+		return support_count;
+	}
+
+	/**
+	 * @return 'index' or the start of the first following block whose last pre-code is greater than 'pre' if the block of 'index' has none
+	 */
+	private static int skip_pre(SkipIndex skip, int index, int pre){
+		int block = index >>> skip.shift;
+		if(skip.last_pre[block] > pre) return index;
+		return skip.first_block_pre_greater(block+1, pre) << skip.shift;
+	}
+
+	/**
+	 * @return 'index' or the start of the first following block whose last pos-code is greater than 'pos' if the block of 'index' has none
+	 */
+	private static int skip_pos(SkipIndex skip, int index, int pos){
+		int block = index >>> skip.shift;
+		if(skip.last_pos[block] > pos) return index;
+		return skip.first_block_pos_greater(block+1, pos) << skip.shift;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.nio.IntBuffer;
+
+/**
+ * A read-only Nlist served from an IntBuffer, e.g. a view on a memory-mapped file, without copying its nodes into the heap.
+ * The three properties of each node are interleaved as in PackedNodelist: buffer[3*i], buffer[3*i+1], buffer[3*i+2] for the i-th node.
+ * </br>Nlists derived by joining a BufferNodelist are created in the SEPARATE layout on the heap.
+ * </br>Reading is thread-safe since only absolute gets are used on the buffer.
+ */
+public class BufferNodelist implements INlist {
+	private IntBuffer ppc;
+	private int size;
+	private int supportCount;
+
+	/**
+	 * @param ppc the nodes of the Nlist, from index 0 of the buffer
+	 * @param size the number of nodes
+	 * @param supportCount the sum of support counts of all nodes, -1 if unknown
+	 */
+	public BufferNodelist(IntBuffer ppc, int size, int supportCount){
+		this.ppc = ppc;
+		this.size = size;
+		this.supportCount = supportCount;
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public int capacity(){
+		return this.size;
+	}
+
+	/**
+	 * Fill information of the node at position 'index' to the parameter 'node'
+	 * @param index
+	 * @param node
+	 */
+	public void get(int index, Node node){
+		int offset = 3*index;
+		node.pre = this.ppc.get(offset);
+		node.pos = this.ppc.get(offset+1);
+		node.count = this.ppc.get(offset+2);
+	}
+
+	/**
+	 * Return the sum of support counts of all nodes
+	 * @return
+	 */
+	public int supportCount(){
+		if(this.supportCount == -1){
+			int sc = 0;
+			int end = 3*this.size;
+			for(int i=2; i<end; i+=3) sc += this.ppc.get(i);
+			return (this.supportCount = sc);
+		}
+		return this.supportCount;
+	}
+
+	/**
+	 * Reset the support count
+	 */
+	public void resetSC() {
+		this.supportCount = -1;
+	}
+
+	/**
+	 * A BufferNodelist is read-only, there is nothing to shrink
+	 */
+	public BufferNodelist shrink(float efficient_rate){
+		return this;
+	}
+
+	/**
+	 * A BufferNodelist is read-only, there is nothing to shrink
+	 */
+	public BufferNodelist shrink(){
+		return this;
+	}
+
+	/**
+	 * Return the string representation of the Nlist, just for testing
+	 */
+	public String toString(){
+		StringBuilder sb = new StringBuilder(200);
+		sb.append('{');
+		for(int i=0; i<3*size; i+=3){
+			sb.append('<').append(this.ppc.get(i)).append(',')
+			.append(this.ppc.get(i+1)).append(">:")
+			.append(this.ppc.get(i+2)).append("; ");
+		}
+		if (size > 0) sb.setLength(sb.length()-2);	// not an empty list
+		sb.append("}, freq:").append(this.supportCount());
+
+		return sb.toString();
+	}
+
+	public boolean isIdentical(INlist nlist) {
+		if (this.size != nlist.size()) return false;
+
+		Node node = new Node();
+		for (int i=0; i<this.size; i++){
+			nlist.get(i, node);
+			int offset = 3*i;
+			if (this.ppc.get(offset) != node.pre || this.ppc.get(offset+1) != node.pos || this.ppc.get(offset+2) != node.count) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * BufferNodelist does not support this method.
+	 */
+	public void allocate(int capacity){
+		System.err.println("allocate(int capacity) method is not supported by BufferNodelist");
+		System.exit(0);
+	}
+
+	/**
+	 * BufferNodelist does not support this method.
+	 */
+	public void add(int pre, int pos, int count){
+		System.err.println("add(int pre, int pos, int count) method is not supported by BufferNodelist");
+		System.exit(0);
+	}
+
+	/**
+	 * BufferNodelist does not support this method.
+	 */
+	public void add(Node node){
+		System.err.println("add(Node node) method is not supported by BufferNodelist");
+		System.exit(0);
+	}
+
+	/**
+	 * BufferNodelist does not support this method.
+	 */
+	public void accSupportCount(int index, int supportCount){
+		System.err.println("accSupportCount(int index, int supportCount) method is not supported by BufferNodelist");
+		System.exit(0);
+	}
+
+	/**
+	 * BufferNodelist does not support this method.
+	 */
+	public void add(PPCNode ppcNode) {
+		System.err.println("add(PPCNode ppcNode) method is not supported by BufferNodelist");
+		System.exit(0);
+	}
+
+	/**
+	 * BufferNodelist does not support this method.
+	 */
+	public void insert(PPCNode ppcNode) {
+		System.err.println("insert(PPCNode ppcNode) method is not supported by BufferNodelist");
+		System.exit(0);
+	}
+}
@@ -0,0 +1,396 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+
+/**
+ * An immutable compressed implementation for Nlist. Nodes are encoded in blocks of BLOCK_SIZE nodes,
+ * each node as three variable-length integers (7 bits per byte):
+ * <ul>
+ * <li>pre-code: absolute for the first node of a block, otherwise the delta to the previous pre-code (pre-codes ascend)</li>
+ * <li>pos-code: relative to the pre-code of the node, zigzag-encoded since it can be negative</li>
+ * <li>support count</li>
+ * </ul>
+ * Blocks are decoded independently, join kernels read a CompressedNlist block by block through a Cursor.
+ * A random access by get(index, Node) decodes the block of 'index' from its start.
+ */
+public class CompressedNlist implements INlist {
+	/**
+	 * The number of nodes in a block, except the last block
+	 */
+	public static final int BLOCK_SIZE = 128;
+
+	private final byte[] data;
+
+	/**
+	 * Byte offset of each block in 'data'
+	 */
+	private final int[] block_offsets;
+
+	private final int size;
+	private final int supportCount;
+
+	/**
+	 * Optional index for skipping blocks of nodes in joins, attached by SkipIndex.attach_all(...)
+	 */
+	SkipIndex skip_index = null;
+
+	private CompressedNlist(byte[] data, int[] block_offsets, int size, int supportCount){
+		this.data = data;
+		this.block_offsets = block_offsets;
+		this.size = size;
+		this.supportCount = supportCount;
+	}
+
+	/**
+	 * Encode an Nlist
+	 * @param nlist
+	 * @return the compressed Nlist with the same nodes
+	 */
+	public static CompressedNlist compress(INlist nlist){
+		int size = nlist.size();
+		int[] block_offsets = new int[(size + BLOCK_SIZE - 1)/BLOCK_SIZE];
+		byte[] data = new byte[Math.max(16, 4*size)];
+		int offset = 0, support_count = 0, previous_pre = 0;
+
+		Node node = new Node();
+		for(int i=0; i<size; i++){
+			nlist.get(i, node);
+			if(data.length - offset < 15) data = Arrays.copyOf(data, data.length + (data.length >> 1) + 15);
+
+			if(i % BLOCK_SIZE == 0){
+				block_offsets[i / BLOCK_SIZE] = offset;
+				offset = write_varint(data, offset, node.pre);
+			}else{
+				offset = write_varint(data, offset, node.pre - previous_pre);
+			}
+			int delta = node.pos - node.pre;
+			offset = write_varint(data, offset, (delta << 1) ^ (delta >> 31));
+			offset = write_varint(data, offset, node.count);
+
+			previous_pre = node.pre;
+			support_count += node.count;
+		}
+
+		return new CompressedNlist(Arrays.copyOf(data, offset), block_offsets, size, support_count);
+	}
+
+	/**
+	 * @return a Nodelist with the same nodes
+	 */
+	public Nodelist decompress(){
+		Nodelist nodelist = new Nodelist(Math.max(1, this.size));
+		int[] pre = new int[BLOCK_SIZE], pos = new int[BLOCK_SIZE], count = new int[BLOCK_SIZE];
+		for(int block=0; block<this.block_offsets.length; block++){
+			int n = this.decode_block(block, pre, pos, count);
+			for(int i=0; i<n; i++) nodelist.add(pre[i], pos[i], count[i]);
+		}
+		return nodelist;
+	}
+
+	/**
+	 * Decode the nodes of a block
+	 * @param block block index
+	 * @param pre receives the pre-codes, length at least BLOCK_SIZE
+	 * @param pos receives the pos-codes, length at least BLOCK_SIZE
+	 * @param count receives the support counts, length at least BLOCK_SIZE
+	 * @return the number of nodes in the block
+	 */
+	int decode_block(int block, int[] pre, int[] pos, int[] count){
+		byte[] data = this.data;
+		int offset = this.block_offsets[block];
+		int n = Math.min(BLOCK_SIZE, this.size - block*BLOCK_SIZE);
+		int p = 0;
+
+		for(int i=0; i<n; i++){
+			// inlined varint decoding of the pre-code (delta), the pos-code (zigzag) and the support count
+			int b = data[offset++], value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			p = (i == 0) ? value : p + value;
+			pre[i] = p;
+
+			b = data[offset++]; value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			pos[i] = p + ((value >>> 1) ^ -(value & 1));
+
+			b = data[offset++]; value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			count[i] = value;
+		}
+		return n;
+	}
+
+	/**
+	 * Return the position of the first node whose pre-order code is not less than 'pre',
+	 * blocks are searched by their first (absolute) pre-codes, then one block is scanned
+	 * @param pre
+	 * @return
+	 */
+	public int lower_bound(int pre){
+		byte[] data = this.data;
+		// the first block whose first pre-code is not less than 'pre'
+		int low = 0, high = this.block_offsets.length;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			int offset = this.block_offsets[mid];
+			int b = data[offset++], value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			if(value < pre) low = mid + 1;
+			else high = mid;
+		}
+		if(low == 0) return 0;
+
+		// the result is in the previous block or the first node of block 'low'
+		int block = low-1;
+		int offset = this.block_offsets[block];
+		int n = Math.min(BLOCK_SIZE, this.size - block*BLOCK_SIZE);
+		int p = 0;
+		for(int i=0; i<n; i++){
+			int b = data[offset++], value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			p = (i == 0) ? value : p + value;
+			if(p >= pre) return block*BLOCK_SIZE + i;
+			while(data[offset++] < 0);	// skip the pos-code
+			while(data[offset++] < 0);	// skip the support count
+		}
+		return block*BLOCK_SIZE + n;
+	}
+
+	private static int write_varint(byte[] data, int offset, int value){
+		while((value & ~0x7F) != 0){
+			data[offset++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * @return the number of blocks
+	 */
+	public int blockCount(){
+		return this.block_offsets.length;
+	}
+
+	/**
+	 * @return estimated heap bytes of the Nlist, including object and array headers
+	 */
+	public long memory(){
+		return 16 + 16 + this.data.length + 16 + 4L*this.block_offsets.length;
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public int capacity(){
+		return this.size;
+	}
+
+	/**
+	 * Fill information of the node at position 'index' to the parameter 'node', the block of 'index' is decoded from its start
+	 * @param index
+	 * @param node
+	 */
+	public void get(int index, Node node){
+		byte[] data = this.data;
+		int block = index / BLOCK_SIZE;
+		int offset = this.block_offsets[block];
+		int last = index - block*BLOCK_SIZE;
+		int p = 0, pos_delta = 0, count = 0;
+
+		for(int i=0; i<=last; i++){
+			int b = data[offset++], value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			p = (i == 0) ? value : p + value;
+
+			b = data[offset++]; value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			pos_delta = value;
+
+			b = data[offset++]; value = b & 0x7F;
+			for(int shift = 7; b < 0; shift += 7){ b = data[offset++]; value |= (b & 0x7F) << shift; }
+			count = value;
+		}
+		node.pre = p;
+		node.pos = p + ((pos_delta >>> 1) ^ -(pos_delta & 1));
+		node.count = count;
+	}
+
+	/**
+	 * Return the sum of support counts of all nodes
+	 * @return
+	 */
+	public int supportCount(){
+		return this.supportCount;
+	}
+
+	/**
+	 * The support count of an immutable Nlist does not change
+	 */
+	public void resetSC(){}
+
+	/**
+	 * A CompressedNlist is immutable and has no spare room
+	 */
+	public CompressedNlist shrink(float efficient_rate){
+		return this;
+	}
+
+	/**
+	 * A CompressedNlist is immutable and has no spare room
+	 */
+	public CompressedNlist shrink(){
+		return this;
+	}
+
+	/**
+	 * Return the string representation of the Nlist, just for testing
+	 */
+	public String toString(){
+		return this.decompress().toString();
+	}
+
+	public boolean isIdentical(INlist nlist){
+		if (this.size != nlist.size()) return false;
+
+		int[] pre = new int[BLOCK_SIZE], pos = new int[BLOCK_SIZE], count = new int[BLOCK_SIZE];
+		Node node = new Node();
+		int index = 0;
+		for(int block=0; block<this.block_offsets.length; block++){
+			int n = this.decode_block(block, pre, pos, count);
+			for(int i=0; i<n; i++, index++){
+				nlist.get(index, node);
+				if(pre[i] != node.pre || pos[i] != node.pos || count[i] != node.count) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * CompressedNlist does not support this method.
+	 */
+	public void allocate(int capacity){
+		System.err.println("allocate(int capacity) method is not supported by CompressedNlist");
+		System.exit(0);
+	}
+
+	/**
+	 * CompressedNlist does not support this method.
+	 */
+	public void add(int pre, int pos, int count){
+		System.err.println("add(int pre, int pos, int count) method is not supported by CompressedNlist");
+		System.exit(0);
+	}
+
+	/**
+	 * CompressedNlist does not support this method.
+	 */
+	public void add(Node node){
+		System.err.println("add(Node node) method is not supported by CompressedNlist");
+		System.exit(0);
+	}
+
+	/**
+	 * CompressedNlist does not support this method.
+	 */
+	public void accSupportCount(int index, int supportCount){
+		System.err.println("accSupportCount(int index, int supportCount) method is not supported by CompressedNlist");
+		System.exit(0);
+	}
+
+	/**
+	 * CompressedNlist does not support this method.
+	 */
+	public void add(PPCNode ppcNode){
+		System.err.println("add(PPCNode ppcNode) method is not supported by CompressedNlist");
+		System.exit(0);
+	}
+
+	/**
+	 * CompressedNlist does not support this method.
+	 */
+	public void insert(PPCNode ppcNode){
+		System.err.println("insert(PPCNode ppcNode) method is not supported by CompressedNlist");
+		System.exit(0);
+	}
+
+	/**
+	 * A sequential reader for join kernels over a CompressedNlist (decoding one block at a time) or a Nodelist (its arrays).
+	 * </br>Nodes with indexes in [start, end) are available at pre[index-start], pos[index-start], count[index-start].
+	 * [start, end) is one block of a CompressedNlist, the blocks of the SkipIndex of an indexed Nodelist, or the whole Nodelist otherwise,
+	 * so the kernels consult the SkipIndex once per block.
+	 * A Cursor is confined to one thread.
+	 */
+	static final class Cursor {
+		private final int[] block_pre = new int[BLOCK_SIZE];
+		private final int[] block_pos = new int[BLOCK_SIZE];
+		private final int[] block_count = new int[BLOCK_SIZE];
+		private CompressedNlist source = null;
+		private int size;
+
+		int[] pre, pos, count;
+		int start, end;
+		SkipIndex skip;	// the skip index of the attached Nlist, null if there is none
+
+		/**
+		 * Attach the cursor to 'nlist'
+		 * @param nlist
+		 * @return false if 'nlist' is neither a CompressedNlist nor a Nodelist
+		 */
+		boolean attach(INlist nlist){
+			Class<?> type = nlist.getClass();
+			if(type == CompressedNlist.class){
+				this.source = (CompressedNlist) nlist;
+				this.pre = this.block_pre;
+				this.pos = this.block_pos;
+				this.count = this.block_count;
+				this.start = this.end = 0;
+				this.skip = this.source.skip_index;
+				return true;
+			}
+			if(type == Nodelist.class){
+				int[][] arrays = ((Nodelist) nlist).arrays();
+				this.source = null;
+				this.pre = arrays[0];
+				this.pos = arrays[1];
+				this.count = arrays[2];
+				this.size = nlist.size();
+				this.start = 0;
+				this.end = this.size;
+				this.skip = ((Nodelist) nlist).skip_index;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Make the node at 'index' available
+		 * @param index must be less than the size of the attached Nlist
+		 * @return the new 'start'
+		 */
+		int load(int index){
+			if(this.source != null && (index < this.start || index >= this.end)){
+				int block = index / BLOCK_SIZE;
+				this.start = block*BLOCK_SIZE;
+				this.end = this.start + this.source.decode_block(block, this.block_pre, this.block_pos, this.block_count);
+			}else if(this.source == null && this.skip != null){
+				this.end = Math.min(this.size, ((index >>> this.skip.shift) + 1) << this.skip.shift);
+			}
+			return this.start;
+		}
+
+		/**
+		 * Detach the cursor, so that it does not keep the Nlist reachable
+		 */
+		void detach(){
+			this.source = null;
+			this.pre = this.pos = this.count = null;
+			this.skip = null;
+		}
+	}
+}
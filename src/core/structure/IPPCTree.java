@@ -0,0 +1,90 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Map;
+
+/**
+ * Interface of a PPCTree (PrePost Code tree) which is built from records of selector IDs
+ * and generates the Nlists of single selectors.
+ */
+public interface IPPCTree {
+
+	/**
+	 * Insert a record of selector ids (in a pre-defined order) into the tree.
+	 * </br>The order of ids to insert into the tree is from right to left.
+	 * @param record an int array of selector IDs in a pre-defined order of selectors
+	 */
+	public void insert_record(int[] record);
+
+	/**
+	 * Insert a record of selector ids (in a pre-defined order) which stands for 'weight' identical records,
+	 * the counts of the nodes on its path increase by 'weight'. Pre-aggregated data can be fed this way.
+	 * @param record an int array of selector IDs in a pre-defined order of selectors
+	 * @param weight the multiplicity of the record
+	 */
+	public void insert_record(int[] record, int weight);
+
+	/**
+	 * Insert records in the order of RecordSorter.sorted_order(...) in one sweep, without searching the children of nodes.
+	 * The tree is the same as inserting the records one by one.
+	 * @param records
+	 * @param order indices of the records in the sorted order
+	 */
+	public void insert_sorted_records(RecordArray records, int[] order);
+
+	/**
+	 * Insert records in the order of RecordSorter.sorted_order(...) in one sweep, each record counts for its weight.
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the sorted order
+	 */
+	public void insert_sorted_records(RecordArray records, int[] weights, int[] order);
+
+	/**
+	 * Traverse the tree with pre and post orders and assign two ordinal numbers for each node.
+	 */
+	public void assignPrePosOrderCode();
+
+	/**
+     * Create an Nlist for each selector (selector ID) which was used to build the tree.
+     * @param selector_count the number of selectors used to build the tree
+     * @return array of Nlists of selectors
+     */
+	public INlist[] create_Nlist_for_selectors_arr(int selector_count);
+
+	/**
+	 * Create an Nlist for each selector (selector ID) which was used to build the tree, the nodes are kept off-heap in 'store'.
+	 * @param store an unsealed store for the selectors which were used to build the tree, it is sealed afterwards
+	 * @return array of (read-only) Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(OffHeapNlistStore store);
+
+	/**
+	 * Add all Nlists of selectors to a map from string representation of each selector ID to the corresponding Nlist.
+	 * @param selector_nlists
+	 * @return
+	 */
+	public Map<String, INlist> create_selector_Nlist_map(INlist[] selector_nlists);
+
+	/**
+	 * Pre-order codes of the children of the root, in ascending order, available after PPCodes are assigned.
+	 * </br>Nodes in the subtree of the i-th child have pre-order codes in [codes[i], codes[i+1]),
+	 * so an ancestor-descendant pair never crosses these boundaries and Nlists can be joined partition by partition.
+	 * @return
+	 */
+	public int[] getRootChildPreCodes();
+	
+	/**
+	 * @return the number of nodes including the root
+	 */
+	public long countNodes();
+
+	/**
+	 * Free memory
+	 */
+	public void free();
+}
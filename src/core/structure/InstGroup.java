@@ -1,13 +1,28 @@
 package core.structure;
 
-import java.util.List;
-
+/**
+ * A group of instances to build up the subtree at a leaf node of the top part of a P3CTree,
+ * the instances are the record indices in the range [begin, end) of the instance order of the tree.
+ */
 public class InstGroup {
 	public int level;
-	public List<int[]> instances;
+	public int begin;
+	public int end;
 	
-	public InstGroup(int level, List<int[]> instances){
+	public InstGroup(int level, int begin, int end){
 		this.level = level;
-		this.instances = instances;
+		this.begin = begin;
+		this.end = end;
+	}
+	
+	public int size(){
+		return this.end - this.begin;
+	}
+	
+	/**
+	 * Release the instances of the group, they had been used to grow the tree
+	 */
+	public void clear(){
+		this.begin = this.end;
 	}
 }
@@ -0,0 +1,148 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+
+/**
+ * A lightweight hash map from non-negative long keys to int values, with open addressing and linear probing.
+ * </br>The purpose is to avoid boxing and entry objects of java.util.HashMap.
+ */
+public class LongIntHashMap {
+	private static final long EMPTY_KEY = -1L;
+	private static final float load_factor = 0.5f;
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+	private int mask;
+	private int threshold;
+
+	public LongIntHashMap(int expected_size){
+		int capacity = 16;
+		while (capacity*load_factor < expected_size) capacity <<= 1;
+		this.allocate(capacity);
+	}
+
+	public LongIntHashMap(){
+		this(16);
+	}
+
+	private void allocate(int capacity){
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY_KEY);
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.threshold = (int)(capacity*load_factor);
+	}
+
+	private static int hash(long key){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	/**
+	 * @param key a non-negative key
+	 * @return the value associated with 'key', or -1 if 'key' is not in the map
+	 */
+	public int get(long key){
+		int index = hash(key) & this.mask;
+		long k;
+		while ((k = this.keys[index]) != EMPTY_KEY){
+			if (k == key) return this.values[index];
+			index = (index + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Associate 'value' with 'key', the previous value (if any) is replaced
+	 * @param key a non-negative key
+	 * @param value
+	 */
+	public void put(long key, int value){
+		int index = hash(key) & this.mask;
+		long k;
+		while ((k = this.keys[index]) != EMPTY_KEY){
+			if (k == key){
+				this.values[index] = value;
+				return;
+			}
+			index = (index + 1) & this.mask;
+		}
+		this.keys[index] = key;
+		this.values[index] = value;
+		this.size++;
+		if (this.size > this.threshold) this.rehash(this.keys.length << 1);
+	}
+
+	/**
+	 * Remove 'key' from the map, entries after it in the probing sequence are shifted back
+	 * so that no deleted marker is needed.
+	 * @param key a non-negative key
+	 * @return the value associated with 'key', or -1 if 'key' is not in the map
+	 */
+	public int remove(long key){
+		int index = hash(key) & this.mask;
+		long k;
+		while ((k = this.keys[index]) != key){
+			if (k == EMPTY_KEY) return -1;
+			index = (index + 1) & this.mask;
+		}
+		int value = this.values[index];
+		
+		// backward shift deletion
+		int hole = index;
+		index = (index + 1) & this.mask;
+		while ((k = this.keys[index]) != EMPTY_KEY){
+			int home = hash(k) & this.mask;
+			// move the entry to the hole if its home position is not in (hole, index]
+			if (((index - home) & this.mask) >= ((index - hole) & this.mask)){
+				this.keys[hole] = k;
+				this.values[hole] = this.values[index];
+				hole = index;
+			}
+			index = (index + 1) & this.mask;
+		}
+		this.keys[hole] = EMPTY_KEY;
+		this.size--;
+		return value;
+	}
+	
+	/**
+	 * Remove all entries, the capacity is kept
+	 */
+	public void clear(){
+		Arrays.fill(this.keys, EMPTY_KEY);
+		this.size = 0;
+	}
+	
+	private void rehash(int capacity){
+		long[] old_keys = this.keys;
+		int[] old_values = this.values;
+		this.allocate(capacity);
+
+		for (int i=0; i<old_keys.length; i++){
+			long key = old_keys[i];
+			if (key == EMPTY_KEY) continue;
+			int index = hash(key) & this.mask;
+			while (this.keys[index] != EMPTY_KEY) index = (index + 1) & this.mask;
+			this.keys[index] = key;
+			this.values[index] = old_values[i];
+		}
+	}
+
+	/**
+	 * @return the approximate memory (bytes) of the key and value arrays
+	 */
+	public long memory(){
+		return 12L*this.keys.length;
+	}
+}
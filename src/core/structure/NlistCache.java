@@ -0,0 +1,275 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of Nlists of itemsets (prefixes of queried itemsets), keyed by the sorted selector IDs of the itemsets.
+ * </br>An itemset is located by a 64-bit rolling hash of its selector IDs in a primitive hash map, the stored selector IDs
+ * are compared to confirm a hit. Entries are kept in slots of parallel arrays and evicted in the least recently used order
+ * when the total estimated memory exceeds the memory budget.
+ * </br><b>Note:</b> cached Nlists are shared, callers must not modify them. Methods are synchronized, the cache can be used by multiple threads.
+ */
+public class NlistCache {
+	private static final float allocate_rate = 1.75f;
+	private static final int NONE = -1;
+
+	/**
+	 * Hash of the empty itemset, the start value of the rolling hash
+	 */
+	public static final long EMPTY_HASH = 0x2545F4914F6CDD1DL;
+
+	/**
+	 * Estimated memory (bytes) of an entry apart from the Nlist arrays: slot arrays, hash map, itemset header and Nlist object
+	 */
+	private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+	private long memory_budget;
+	private long memory = 0;
+
+	/**
+	 * Map from the hash of an itemset to its slot
+	 */
+	private LongIntHashMap slot_map = new LongIntHashMap();
+
+	private long[] hashes;
+	private int[][] itemsets;
+	private INlist[] nlists;
+	private long[] sizes;
+
+	/**
+	 * Doubly linked list of used slots, from the most recently used (head) to the least recently used (tail)
+	 */
+	private int[] prev;
+	private int[] next;
+	private int head = NONE, tail = NONE;
+
+	/**
+	 * Stack of free slots
+	 */
+	private int[] free_slots;
+	private int free_count = 0;
+	private int slot_count = 0;
+
+	/**
+	 * Queries which found a cached prefix, queries which found none
+	 */
+	private long hit_count = 0;
+	private long miss_count = 0;
+	private long eviction_count = 0;
+
+	/**
+	 * @param memory_budget the maximum estimated memory (bytes) of the cached Nlists
+	 */
+	public NlistCache(long memory_budget){
+		this.memory_budget = memory_budget;
+		this.allocate(64);
+	}
+
+	private void allocate(int capacity){
+		if (this.hashes == null){
+			this.hashes = new long[capacity];
+			this.itemsets = new int[capacity][];
+			this.nlists = new INlist[capacity];
+			this.sizes = new long[capacity];
+			this.prev = new int[capacity];
+			this.next = new int[capacity];
+			this.free_slots = new int[capacity];
+		}else{
+			this.hashes = Arrays.copyOf(this.hashes, capacity);
+			this.itemsets = Arrays.copyOf(this.itemsets, capacity);
+			this.nlists = Arrays.copyOf(this.nlists, capacity);
+			this.sizes = Arrays.copyOf(this.sizes, capacity);
+			this.prev = Arrays.copyOf(this.prev, capacity);
+			this.next = Arrays.copyOf(this.next, capacity);
+			this.free_slots = Arrays.copyOf(this.free_slots, capacity);
+		}
+	}
+
+	/**
+	 * Extend the rolling hash of an itemset by one more selector ID, the result is always non-negative
+	 * @param hash hash of the itemset, EMPTY_HASH for the empty itemset
+	 * @param selector_id
+	 * @return hash of the extended itemset
+	 */
+	public static long hash(long hash, int selector_id){
+		long h = (hash ^ (selector_id + 1)) * 0x9E3779B97F4A7C15L;
+		return (h ^ (h >>> 29)) & Long.MAX_VALUE;
+	}
+
+	/**
+	 * Estimate the memory (bytes) of an Nlist in the cache
+	 * @param nlist
+	 * @return
+	 */
+	public static long estimate_memory(INlist nlist){
+		return 12L*nlist.capacity() + ENTRY_OVERHEAD_BYTES;
+	}
+
+	/**
+	 * Return the cached Nlist of the itemset of the first 'length' selector IDs in 'itemset'
+	 * @param hash hash of the prefix
+	 * @param itemset
+	 * @param length the length of the prefix
+	 * @return the cached Nlist, or null if the prefix is not in the cache (counted as a hit or a miss respectively)
+	 */
+	public synchronized INlist get(long hash, int[] itemset, int length){
+		INlist nlist = this.lookup(hash, itemset, length);
+		this.count_query(nlist != null);
+		return nlist;
+	}
+
+	/**
+	 * Return the cached Nlist of the itemset of the first 'length' selector IDs in 'itemset' without counting a hit or a miss,
+	 * for a query probing several prefixes which is counted once by count_query(...)
+	 * @param hash hash of the prefix
+	 * @param itemset
+	 * @param length the length of the prefix
+	 * @return the cached Nlist, or null if the prefix is not in the cache
+	 */
+	public synchronized INlist lookup(long hash, int[] itemset, int length){
+		int slot = this.slot_map.get(hash);
+		if (slot == NONE || !is_prefix(this.itemsets[slot], itemset, length)) return null;
+		this.move_to_head(slot);
+		return this.nlists[slot];
+	}
+
+	/**
+	 * Count a query as a hit (a cached prefix is found) or a miss (no cached prefix)
+	 * @param hit
+	 */
+	public synchronized void count_query(boolean hit){
+		if (hit) this.hit_count++;
+		else this.miss_count++;
+	}
+
+	/**
+	 * Put the Nlist of the itemset of the first 'length' selector IDs in 'itemset' into the cache.
+	 * Least recently used entries are evicted to keep the memory within the budget,
+	 * the Nlist is not cached if it alone exceeds the budget.
+	 * @param hash hash of the prefix
+	 * @param itemset
+	 * @param length the length of the prefix
+	 * @param nlist should be shrunk beforehand
+	 */
+	public synchronized void put(long hash, int[] itemset, int length, INlist nlist){
+		long size = estimate_memory(nlist);
+		if (size > this.memory_budget) return;
+
+		// replace the existing entry of the same hash (the same itemset or a collision)
+		int slot = this.slot_map.get(hash);
+		if (slot != NONE) this.remove_slot(slot);
+
+		while (this.memory + size > this.memory_budget){
+			this.remove_slot(this.tail);
+			this.eviction_count++;
+		}
+
+		if (this.free_count > 0){
+			slot = this.free_slots[--this.free_count];
+		}else{
+			if (this.slot_count == this.hashes.length) this.allocate((int)(this.slot_count*allocate_rate));
+			slot = this.slot_count++;
+		}
+
+		this.hashes[slot] = hash;
+		this.itemsets[slot] = Arrays.copyOf(itemset, length);
+		this.nlists[slot] = nlist;
+		this.sizes[slot] = size;
+		this.memory += size;
+		this.slot_map.put(hash, slot);
+
+		this.prev[slot] = NONE;
+		this.next[slot] = this.head;
+		if (this.head != NONE) this.prev[this.head] = slot;
+		this.head = slot;
+		if (this.tail == NONE) this.tail = slot;
+	}
+
+	private static boolean is_prefix(int[] cached_itemset, int[] itemset, int length){
+		if (cached_itemset.length != length) return false;
+		for (int i=0; i<length; i++){
+			if (cached_itemset[i] != itemset[i]) return false;
+		}
+		return true;
+	}
+
+	private void unlink(int slot){
+		if (this.prev[slot] != NONE) this.next[this.prev[slot]] = this.next[slot];
+		else this.head = this.next[slot];
+		if (this.next[slot] != NONE) this.prev[this.next[slot]] = this.prev[slot];
+		else this.tail = this.prev[slot];
+	}
+
+	private void move_to_head(int slot){
+		if (this.head == slot) return;
+		this.unlink(slot);
+		this.prev[slot] = NONE;
+		this.next[slot] = this.head;
+		this.prev[this.head] = slot;
+		this.head = slot;
+	}
+
+	private void remove_slot(int slot){
+		this.unlink(slot);
+		this.slot_map.remove(this.hashes[slot]);
+		this.memory -= this.sizes[slot];
+		this.itemsets[slot] = null;
+		this.nlists[slot] = null;
+		this.free_slots[this.free_count++] = slot;
+	}
+
+	/**
+	 * Remove all cached Nlists, the counters are kept
+	 */
+	public synchronized void clear(){
+		while (this.head != NONE) this.remove_slot(this.head);
+	}
+
+	/**
+	 * Reset the hit, miss and eviction counters
+	 */
+	public synchronized void reset_counters(){
+		this.hit_count = this.miss_count = this.eviction_count = 0;
+	}
+
+	public synchronized long getHitCount(){
+		return this.hit_count;
+	}
+
+	public synchronized long getMissCount(){
+		return this.miss_count;
+	}
+
+	public synchronized long getEvictionCount(){
+		return this.eviction_count;
+	}
+
+	/**
+	 * @return the number of cached Nlists
+	 */
+	public synchronized int getEntryCount(){
+		return this.slot_map.size();
+	}
+
+	/**
+	 * @return the estimated memory (bytes) of the cached Nlists
+	 */
+	public synchronized long getMemory(){
+		return this.memory;
+	}
+
+	public long getMemoryBudget(){
+		return this.memory_budget;
+	}
+
+	public synchronized String toString(){
+		return String.format("Nlist cache: %d entries, %.2f/%.2f MB, hits: %d, misses: %d, evictions: %d",
+				this.slot_map.size(), this.memory/1048576.0, this.memory_budget/1048576.0,
+				this.hit_count, this.miss_count, this.eviction_count);
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+/**
+ * Memory layouts of array-based Nlists.
+ * </br>SEPARATE: Nodelist, pre-codes, pos-codes and support counts in three separate arrays
+ * </br>PACKED: PackedNodelist, pre-code, pos-code and support count of each node interleaved in one array
+ * </br>COMPRESSED: CompressedNlist, immutable, nodes delta and varint encoded in blocks. Only Nlists of selectors are compressed,
+ * Nlists derived from them are Nodelists.
+ * </br>Nlists derived by joining follow the layout of their first operand.
+ */
+public enum NlistLayout {
+	SEPARATE, PACKED, COMPRESSED;
+
+	/**
+	 * @param capacity
+	 * @return a new empty Nlist in this layout, a Nodelist for COMPRESSED
+	 */
+	public INlist create(int capacity){
+		switch(this){
+		case PACKED: return new PackedNodelist(capacity);
+		default: return new Nodelist(capacity);
+		}
+	}
+
+	/**
+	 * @param nlist
+	 * @return the layout of 'nlist', SEPARATE for Nlists which are not array-based
+	 */
+	public static NlistLayout of(INlist nlist){
+		if(nlist instanceof PackedNodelist) return PACKED;
+		if(nlist instanceof CompressedNlist) return COMPRESSED;
+		return SEPARATE;
+	}
+
+	/**
+	 * Copy 'nlist' into this layout
+	 * @param nlist
+	 * @return 'nlist' itself if it is already an array-based or compressed Nlist in this layout, otherwise a shrunk copy on the heap
+	 */
+	public INlist convert(INlist nlist){
+		if(of(nlist) == this && (nlist instanceof Nodelist || nlist instanceof PackedNodelist || nlist instanceof CompressedNlist)) return nlist;
+		if(this == COMPRESSED) return CompressedNlist.compress(nlist);
+		if(nlist instanceof CompressedNlist){
+			nlist = ((CompressedNlist) nlist).decompress();
+			if(this == SEPARATE) return nlist;
+		}
+
+		int size = nlist.size();
+		INlist result = this.create(size);
+		Node node = new Node();
+		for(int i=0; i<size; i++){
+			nlist.get(i, node);
+			result.add(node);
+		}
+		return result;
+	}
+
+	/**
+	 * Convert Nlists of selectors into this layout in place
+	 * @param selector_nlists
+	 */
+	public void convert_all(INlist[] selector_nlists){
+		for(int i=0; i<selector_nlists.length; i++){
+			selector_nlists[i] = this.convert(selector_nlists[i]);
+		}
+	}
+}
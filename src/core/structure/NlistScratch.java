@@ -0,0 +1,55 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+/**
+ * Per-thread reusable buffers for calculating support counts of itemsets from Nlists.
+ * </br>Intermediate Nlists of a chain of joins are written alternately into two Nodelists
+ * which keep their capacities between queries, so there is no allocation in the steady state.
+ */
+class NlistScratch {
+	private static final ThreadLocal<NlistScratch> scratches = new ThreadLocal<NlistScratch>(){
+		protected NlistScratch initialValue(){
+			return new NlistScratch();
+		}
+	};
+	
+	public final Nodelist[] buffers = new Nodelist[]{new Nodelist(), new Nodelist()};
+	public final Node i1_node = new Node();
+	public final Node i2_node = new Node();
+	
+	/**
+	 * Cursors over the two operands of a join when one of them is a CompressedNlist
+	 */
+	public final CompressedNlist.Cursor cursor1 = new CompressedNlist.Cursor();
+	public final CompressedNlist.Cursor cursor2 = new CompressedNlist.Cursor();
+	
+	/**
+	 * One buffer per prefix length for evaluating a sorted batch of itemsets, grown on demand
+	 */
+	private Nodelist[] depth_buffers = new Nodelist[0];
+	
+	/**
+	 * @param depth
+	 * @return the buffer for Nlists of prefixes at 'depth'
+	 */
+	public Nodelist depth_buffer(int depth){
+		if(depth >= this.depth_buffers.length){
+			Nodelist[] buffers = new Nodelist[depth+1];
+			System.arraycopy(this.depth_buffers, 0, buffers, 0, this.depth_buffers.length);
+			for(int i=this.depth_buffers.length; i<=depth; i++) buffers[i] = new Nodelist();
+			this.depth_buffers = buffers;
+		}
+		return this.depth_buffers[depth];
+	}
+	
+	/**
+	 * @return the scratch buffers of the current thread
+	 */
+	public static NlistScratch get(){
+		return scratches.get();
+	}
+}
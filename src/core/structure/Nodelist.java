@@ -15,6 +15,11 @@ public class Nodelist implements INlist {
 	private int size = 0;
 	private int supportCount = -1;
 	
+	/**
+	 * Optional index for skipping blocks of nodes in joins, attached by SkipIndex.attach_all(...)
+	 */
+	SkipIndex skip_index = null;
+	
  	public Nodelist(int capacity){
 		// ppc[0] for pre-codes, ppc[1] for pos-codes, ppc[2] for support counts
 		this.ppc = new int[3][capacity];
@@ -50,6 +55,13 @@ public class Nodelist implements INlist {
  		node.count = this.ppc[2][index];
  	}
  	
+ 	/**
+ 	 * @return the backing arrays, for kernels working directly on them: [0] pre-codes, [1] pos-codes, [2] support counts
+ 	 */
+ 	int[][] arrays(){
+ 		return this.ppc;
+ 	}
+ 	
  	/**
  	 * Return the sum of support counts of all nodes
  	 * @return 
@@ -57,7 +69,7 @@ public class Nodelist implements INlist {
  	public int supportCount(){
  		if(this.supportCount == -1){
  			int sc = 0;
- 	 		if(this.ppc != null) for(int count : this.ppc[2]) sc += count;
+ 	 		if(this.ppc != null) for(int i=0; i<this.size; i++) sc += this.ppc[2][i];
  	 		return (this.supportCount = sc);
  		}
  		return this.supportCount;
@@ -82,6 +94,22 @@ public class Nodelist implements INlist {
  		}
  	}
  	
+ 	/**
+ 	 * Empty the node list to be reused, e.g. as a scratch buffer, the current space is kept if it is
+ 	 * not smaller than 'capacity', otherwise a larger space is allocated.
+ 	 * @param capacity the expected number of nodes to be added
+ 	 */
+ 	public void reset(int capacity){
+ 		this.size = 0;
+ 		this.supportCount = -1;
+ 		this.skip_index = null;
+ 		if(this.ppc == null || this.ppc[0].length < capacity){
+ 			int new_capacity = (this.ppc == null) ? capacity : Math.max(capacity, (int)(this.ppc[0].length*allocate_rate));
+ 			// ppc[0] for pre-codes, ppc[1] for pos-codes, ppc[2] for support counts
+ 			this.ppc = new int[3][new_capacity];
+ 		}
+ 	}
+ 	
  	/**
  	 * This function should only be used when being sure that there will not be any new nodes added.
  	 * @param efficient_rate: if the size < capacity*efficient_rate, the shrink will be done.
@@ -0,0 +1,314 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A store keeping the nodes of the Nlists of selectors outside the Java heap, so that the heap size and GC pauses
+ * do not grow with the number of nodes.
+ * </br>Usage: trees add nodes to the appenders from getAppenders() as to ordinary Nlists, then seal() returns the final Nlists.
+ * <ul>
+ * <li>Staging: nodes of each selector are appended to a chain of blocks in off-heap chunks, blocks grow geometrically.
+ * Appending to different selectors from different threads is safe, one selector must be appended by one thread at a time.</li>
+ * <li>Sealed: the nodes of each selector are copied into one contiguous (offset, length) slice of an off-heap segment,
+ * the Nlists are read-only BufferNodelists over the slices, the staging chunks are released.</li>
+ * </ul>
+ * Off-heap memory is released by the garbage collector when the Nlists become unreachable.
+ */
+public class OffHeapNlistStore {
+	/**
+	 * Bytes of a node: pre-code, pos-code, support count
+	 */
+	private static final int NODE_BYTES = 12;
+
+	/**
+	 * Bytes of a block header: address of the next block (long), capacity of the block (int)
+	 */
+	private static final int BLOCK_HEADER_BYTES = 12;
+
+	private static final int MIN_BLOCK_NODES = 4;
+	private static final int MAX_BLOCK_NODES = 4096;
+	private static final int STAGING_CHUNK_BYTES = 1 << 26;
+
+	/**
+	 * The maximum number of bytes of a segment of sealed Nlists, unless a single Nlist is larger
+	 */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	private static final long NONE = -1;
+
+	private Appender[] appenders;
+	private List<ByteBuffer> staging_chunks = new ArrayList<ByteBuffer>();
+	private int chunk_used = STAGING_CHUNK_BYTES;	// no chunk yet
+	private long staging_memory = 0;
+
+	private INlist[] nlists = null;
+	private long memory = 0;
+
+	/**
+	 * @param selector_count the number of selectors, selector IDs are in [0, selector_count)
+	 */
+	public OffHeapNlistStore(int selector_count){
+		this.appenders = new Appender[selector_count];
+		for(int i=0; i<selector_count; i++) this.appenders[i] = new Appender(this);
+	}
+
+	/**
+	 * @return Nlists to add nodes to before sealing, the one at i-th index is of the selector with ID i.
+	 * They only support adding nodes and size().
+	 */
+	public INlist[] getAppenders(){
+		if(this.appenders == null) throw new IllegalStateException("The store is sealed");
+		return this.appenders;
+	}
+
+	public boolean isSealed(){
+		return this.nlists != null;
+	}
+
+	/**
+	 * Copy the nodes of each selector into a contiguous off-heap slice and release the staging memory.
+	 * The appenders must not be used afterwards.
+	 * @return the read-only Nlists of selectors, the one at i-th index is of the selector with ID i
+	 */
+	public INlist[] seal(){
+		if(this.nlists != null) return this.nlists;
+
+		int selector_count = this.appenders.length;
+		INlist[] nlists = new INlist[selector_count];
+		int first = 0;
+		while(first < selector_count){
+			// a segment with the next Nlists which fit in SEGMENT_BYTES, at least one Nlist
+			long segment_bytes = (long) NODE_BYTES*this.appenders[first].size;
+			int last = first+1;
+			while(last < selector_count && segment_bytes + (long) NODE_BYTES*this.appenders[last].size <= SEGMENT_BYTES){
+				segment_bytes += (long) NODE_BYTES*this.appenders[last].size;
+				last++;
+			}
+			if(segment_bytes > Integer.MAX_VALUE)
+				throw new IllegalStateException("Nlist of selector " + first + " is too large for an off-heap segment");
+
+			ByteBuffer segment = ByteBuffer.allocateDirect((int) segment_bytes).order(ByteOrder.nativeOrder());
+			this.memory += segment_bytes;
+			for(int i=first; i<last; i++){
+				Appender appender = this.appenders[i];
+				int start = segment.position();
+				this.copy_blocks(appender, segment);
+				ByteBuffer slice = segment.duplicate();
+				slice.position(start).limit(segment.position());
+				nlists[i] = new BufferNodelist(slice.slice().order(ByteOrder.nativeOrder()).asIntBuffer(),
+												appender.size, appender.support_count);
+			}
+			first = last;
+		}
+
+		// release the staging memory
+		this.appenders = null;
+		this.staging_chunks = null;
+		this.staging_memory = 0;
+		return (this.nlists = nlists);
+	}
+
+	/**
+	 * @return off-heap bytes of the sealed Nlists, 0 before sealing
+	 */
+	public long getMemory(){
+		return this.memory;
+	}
+
+	/**
+	 * @return off-heap bytes of the staging chunks, 0 after sealing
+	 */
+	public long getStagingMemory(){
+		return this.staging_memory;
+	}
+
+	/**
+	 * Copy the nodes in the block chain of 'appender' to 'target' at its position
+	 */
+	private void copy_blocks(Appender appender, ByteBuffer target){
+		int remaining = appender.size;
+		long address = appender.first_block;
+		while(remaining > 0){
+			ByteBuffer chunk = this.staging_chunks.get((int)(address >>> 32));
+			int offset = (int) address;
+			int nodes = Math.min(remaining, chunk.getInt(offset + 8));
+
+			ByteBuffer block = chunk.duplicate();
+			block.position(offset + BLOCK_HEADER_BYTES).limit(offset + BLOCK_HEADER_BYTES + nodes*NODE_BYTES);
+			target.put(block);
+
+			remaining -= nodes;
+			address = chunk.getLong(offset);
+		}
+	}
+
+	/**
+	 * Allocate a block for 'capacity' nodes in the staging chunks
+	 * @return address of the block: chunk index in the high 32 bits, byte offset in the chunk in the low 32 bits
+	 */
+	private synchronized long allocate_block(int capacity){
+		int bytes = BLOCK_HEADER_BYTES + capacity*NODE_BYTES;
+		if(this.chunk_used + bytes > STAGING_CHUNK_BYTES){
+			this.staging_chunks.add(ByteBuffer.allocateDirect(STAGING_CHUNK_BYTES).order(ByteOrder.nativeOrder()));
+			this.staging_memory += STAGING_CHUNK_BYTES;
+			this.chunk_used = 0;
+		}
+		int chunk_index = this.staging_chunks.size()-1;
+		ByteBuffer chunk = this.staging_chunks.get(chunk_index);
+		int offset = this.chunk_used;
+		this.chunk_used += bytes;
+
+		chunk.putLong(offset, NONE);
+		chunk.putInt(offset + 8, capacity);
+		return ((long) chunk_index << 32) | offset;
+	}
+
+	/**
+	 * @return the staging chunk containing the block at 'address', synchronized for the visibility of new chunks
+	 */
+	private synchronized ByteBuffer chunk_of(long address){
+		return this.staging_chunks.get((int)(address >>> 32));
+	}
+
+	/**
+	 * Nlist of a selector in the staging state, nodes are appended to its block chain in the store
+	 */
+	static class Appender implements INlist {
+		private OffHeapNlistStore store;
+		private long first_block = NONE;
+		private ByteBuffer block_chunk = null;
+		private int block_header;	// offset of the header of the current block in 'block_chunk'
+		private int block_offset;	// offset of the next node in 'block_chunk'
+		private int block_remaining = 0;
+		private int size = 0;
+		private int support_count = 0;
+
+		Appender(OffHeapNlistStore store){
+			this.store = store;
+		}
+
+		public void add(int pre, int pos, int count){
+			if(this.block_remaining == 0) this.next_block();
+			ByteBuffer chunk = this.block_chunk;
+			int offset = this.block_offset;
+			chunk.putInt(offset, pre);
+			chunk.putInt(offset + 4, pos);
+			chunk.putInt(offset + 8, count);
+			this.block_offset = offset + NODE_BYTES;
+			this.block_remaining--;
+			this.size++;
+			this.support_count += count;
+		}
+
+		public void add(Node node){
+			this.add(node.pre, node.pos, node.count);
+		}
+
+		private void next_block(){
+			int capacity = Math.min(MAX_BLOCK_NODES, Math.max(MIN_BLOCK_NODES, this.size));
+			long address = this.store.allocate_block(capacity);
+			ByteBuffer chunk = this.store.chunk_of(address);
+			int offset = (int) address;
+
+			if(this.first_block == NONE){
+				this.first_block = address;
+			}else{
+				// link the current (full) block to the new block
+				this.block_chunk.putLong(this.block_header, address);
+			}
+			this.block_chunk = chunk;
+			this.block_header = offset;
+			this.block_offset = offset + BLOCK_HEADER_BYTES;
+			this.block_remaining = capacity;
+		}
+
+		public int size(){
+			return this.size;
+		}
+
+		public int capacity(){
+			return this.size + this.block_remaining;
+		}
+
+		public int supportCount(){
+			return this.support_count;
+		}
+
+		public void resetSC(){}
+
+		/**
+		 * Nothing to shrink before sealing, the store is sealed by OffHeapNlistStore.seal()
+		 */
+		public INlist shrink(float efficient_rate){
+			return this;
+		}
+
+		/**
+		 * Nothing to shrink before sealing, the store is sealed by OffHeapNlistStore.seal()
+		 */
+		public INlist shrink(){
+			return this;
+		}
+
+		public String toString(){
+			return "{staging, size:" + this.size + "}, freq:" + this.support_count;
+		}
+
+		/**
+		 * Appender does not support this method.
+		 */
+		public void get(int index, Node node){
+			System.err.println("get(int index, Node node) method is not supported by OffHeapNlistStore.Appender");
+			System.exit(0);
+		}
+
+		/**
+		 * Appender does not support this method.
+		 */
+		public boolean isIdentical(INlist nlist){
+			System.err.println("isIdentical(INlist nlist) method is not supported by OffHeapNlistStore.Appender");
+			System.exit(0);
+			return false;
+		}
+
+		/**
+		 * Appender does not support this method.
+		 */
+		public void allocate(int capacity){
+			System.err.println("allocate(int capacity) method is not supported by OffHeapNlistStore.Appender");
+			System.exit(0);
+		}
+
+		/**
+		 * Appender does not support this method.
+		 */
+		public void accSupportCount(int index, int supportCount){
+			System.err.println("accSupportCount(int index, int supportCount) method is not supported by OffHeapNlistStore.Appender");
+			System.exit(0);
+		}
+
+		/**
+		 * Appender does not support this method.
+		 */
+		public void add(PPCNode ppcNode){
+			System.err.println("add(PPCNode ppcNode) method is not supported by OffHeapNlistStore.Appender");
+			System.exit(0);
+		}
+
+		/**
+		 * Appender does not support this method.
+		 */
+		public void insert(PPCNode ppcNode){
+			System.err.println("insert(PPCNode ppcNode) method is not supported by OffHeapNlistStore.Appender");
+			System.exit(0);
+		}
+	}
+}
@@ -5,7 +5,10 @@
 
 package core.structure;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import core.prepr.IntegerArray;
@@ -16,9 +19,76 @@ import core.prepr.IntegerArray;
  * Then Nlist of selectors are updated from the subtree's PPCNodes which are freed before another subtree. 
  */
 public class P3CTree extends PPCTree {
+	/**
+	 * Estimated heap memory (bytes) of a PPCNode with its children list, used to bound the subtrees built in parallel
+	 */
+	private static final long ESTIMATED_NODE_BYTES = 120;
+	
+	/**
+	 * Memory (bytes) of a node packed in an Nlist fragment: itemID, pre-code, pos-code, count
+	 */
+	private static final long FRAGMENT_NODE_BYTES = 16;
+	
 	private List<PPCNode> leafNodes;
 	private INlist[] selector_nlists;
 	
+	/**
+	 * Instances of the input data which the tree is built from
+	 */
+	private RecordArray records;
+	
+	/**
+	 * Weights of the records (see RecordDeduplicator), null if each record counts once
+	 */
+	private int[] weights;
+	
+	/**
+	 * Indices of the records, partitioned in place while the top part grows, so that the instance group
+	 * of each node of the top part is a range of this array
+	 */
+	private int[] order;
+	
+	/**
+	 * Working array of the partitioning, the keys of the instances in the order
+	 */
+	private int[] order_keys;
+	
+	/**
+	 * Partitions the ranges of 'order' while the top part grows
+	 */
+	private RecordSorter sorter;
+	
+	/**
+	 * If true, instances of a subtree are sorted and the subtree is built in one sweep (see RecordSorter)
+	 * instead of inserting the instances one by one
+	 */
+	private boolean sorted_subtrees = false;
+	
+	/**
+	 * Sorters for sorting the instances of subtrees, one per thread which builds subtrees
+	 */
+	private final ThreadLocal<RecordSorter> subtree_sorters = new ThreadLocal<RecordSorter>(){
+		protected RecordSorter initialValue(){
+			return new RecordSorter(records, order, order_keys, selector_nlists.length);
+		}
+	};
+	
+	/**
+	 * If true, subtrees at leaf nodes are built as ArrayPPCTrees instead of PPCNode objects
+	 */
+	private boolean array_subtrees = false;
+	
+	/**
+	 * Pre-order codes of the children of the root, collected while subtrees are processed in the leaf order
+	 */
+	private IntegerArray root_child_pre_list = new IntegerArray();
+	private PPCNode last_root_child = null;
+	
+	/**
+	 * If not null, nodes of the Nlists of selectors are kept off-heap in this store
+	 */
+	private OffHeapNlistStore off_heap_store = null;
+	
 	////////////////////////////////////////////// COMMONS METHODS //////////////////////////////////////////////////
 
 	public P3CTree(int selector_count) {
@@ -36,6 +106,42 @@ public class P3CTree extends PPCTree {
     	return selector_nlists;
 	}
 	
+	/**
+	 * Set whether subtrees at leaf nodes of the top part are built as ArrayPPCTrees (array mode)
+	 * instead of PPCNode objects. The generated Nlists are identical in both modes.
+	 * @param array_subtrees
+	 */
+	public void setArraySubtrees(boolean array_subtrees){
+		this.array_subtrees = array_subtrees;
+	}
+	
+	public boolean isArraySubtrees(){
+		return this.array_subtrees;
+	}
+	
+	/**
+	 * Set whether the instances of each subtree are sorted before the subtree is built in one sweep, without searching
+	 * the children of nodes. The generated Nlists are identical in both ways. Must be set before the top part is built.
+	 * @param sorted_subtrees
+	 */
+	public void setSortedSubtrees(boolean sorted_subtrees){
+		this.sorted_subtrees = sorted_subtrees;
+	}
+	
+	public boolean isSortedSubtrees(){
+		return this.sorted_subtrees;
+	}
+	
+	/**
+	 * Keep the nodes of the Nlists of selectors off-heap in 'store', must be called before any Nlist is updated.
+	 * The store is sealed by method shrink_nlists.
+	 * @param store an unsealed store for the selectors of this tree
+	 */
+	public void setOffHeapStore(OffHeapNlistStore store){
+		this.off_heap_store = store;
+		this.selector_nlists = store.getAppenders();
+	}
+	
 	public INlist[] get_selector_nlists(){
 		return this.selector_nlists;
 	}	
@@ -67,6 +173,16 @@ public class P3CTree extends PPCTree {
 		}
 	}
 	
+	/**
+	 * Return the indices of the records in the instance group of 'sub_node'
+	 * @param sub_node a leaf node of the top part
+	 * @return
+	 */
+	public int[] getInstanceIndices(PPCNode sub_node){
+		InstGroup instGroup = ((P3CNode) sub_node).instGroup;
+		return Arrays.copyOfRange(this.order, instGroup.begin, instGroup.end);
+	}
+	
 	/**
 	 * Return an array of selector IDs associated with nodes in the path from 'sub_node' to the root
 	 * @param sub_node
@@ -90,78 +206,139 @@ public class P3CTree extends PPCTree {
 	public void buildSubtree(PPCNode sub_node){
 		P3CNode subroot = (P3CNode) sub_node;
 		int level = subroot.instGroup.level;
-		List<int[]> instances = subroot.instGroup.instances;
-		if (instances == null) return;
-		
-		for (int[] instance : instances){
-			this.insert_record(sub_node, instance, level);
-		}
-		
-		// now all instances at 'sub_node' are no longer used and freed
-		instances.clear();
-		subroot.instGroup.instances = null;
-	}
-	private void insert_record(PPCNode sub_node, int[] record, int level){
-	    PPCNode new_node, mid_child;
-	    boolean wasNotMerged;
-	    int id, position, mid_index, size;
-	
-	    // The record of ids is in ascending order.
-	    // So the order of ids to insert into the tree is from right to left.
-	    for(int i = record.length-level; i>-1; i--){
-	    	id = record[i];
-	        wasNotMerged = true;
-	        position = 0;
-	    	size = sub_node.children.size();
-	    	
-	    	// Binary search on the id-based ordered children node list of sub_node
-	    	while (position < size) {
-	    		mid_index = (position + size) / 2;
-	            mid_child = sub_node.children.get(mid_index);
-	            
-	            if (mid_child.itemID < id) position = mid_index + 1;
-	            else if (mid_child.itemID > id) size = mid_index;
-	            else {
-	            	mid_child.count++;
-	            	sub_node = mid_child;
-	                wasNotMerged = false;
-	                break;
-	            }
-	        }
-	        
-	        if (wasNotMerged) {
-	        	new_node = new PPCNode(id, sub_node, 1);
-	        	// position now is the right index in children node list of sub_node
-	        	sub_node.children.add(position, new_node);
-	        	sub_node = new_node;
-	        }
-	    }
+		int begin = subroot.instGroup.begin, end = subroot.instGroup.end;
+		if (begin == end) return;
+		RecordArray records = this.records;
+		int[] order = this.order;
+		
+		int[] weights = this.weights;
+		
+		if (this.sorted_subtrees){
+			this.subtree_sorters.get().sort(begin, end, level);
+			if (this.array_subtrees){
+				ArrayPPCTree subtree = new ArrayPPCTree(sub_node.itemID, sub_node.count, end-begin+1);
+				subtree.insert_sorted_suffixes(records, weights, order, begin, end, level);
+				subroot.subtree = subtree;
+			}else{
+				this.insert_sorted(sub_node, records, weights, order, begin, end, level);
+			}
+		}else if (this.array_subtrees){
+			ArrayPPCTree subtree = new ArrayPPCTree(sub_node.itemID, sub_node.count, end-begin+1);
+			for (int k=begin; k<end; k++){
+				int r = order[k];
+				subtree.insert_suffix(records.ids(r), records.offset(r), records.length(r), level, (weights == null) ? 1 : weights[r]);
+			}
+			subroot.subtree = subtree;
+		}else{
+			for (int k=begin; k<end; k++){
+				int r = order[k];
+				this.insert_record(sub_node, records.ids(r), records.offset(r), records.length(r), level, (weights == null) ? 1 : weights[r]);
+			}
+		}
+		
+		// now all instances at 'sub_node' are no longer used
+		subroot.instGroup.clear();
 	}
-	
 	/**
 	 * Build the top part of the global tree from all instances in the input data that
 	 * every subtree with root at leaf node (of the top part) will be built from a number
 	 * of instances not exceed 'max_inst_count'.
 	 * </br>Leaf nodes of the top part will be at different levels.
+	 * </br>Instance groups of nodes are ranges of one array of record indices which is partitioned in place,
+	 * the records in 'data_instances' must not change until all subtrees are built.
 	 * @param data_instances
 	 * @param max_inst_count
 	 */
-	public void buildTopPart(int[][] data_instances, long max_inst_count){
-		this.growAtRootOnelevel(data_instances);
+	public void buildTopPart(RecordArray data_instances, long max_inst_count){
+		this.buildTopPart(data_instances, null, max_inst_count);
+	}
+	/**
+	 * Build the top part of the global tree from the distinct instances in the input data, each distinct instance stands for
+	 * its weight identical instances. The counts of nodes, and so 'max_inst_count', are numbers of instances, but the
+	 * instance groups and the subtrees are built from the distinct instances only.
+	 * @param data_instances
+	 * @param weights weights of the instances (see RecordDeduplicator), instances of weight 0 are skipped; null if each instance counts once
+	 * @param max_inst_count
+	 */
+	public void buildTopPart(RecordArray data_instances, int[] weights, long max_inst_count){
+		this.growAtRootOnelevel(data_instances, weights);
 		this.buildTopPartRecursive(this.root, max_inst_count);
+		
+		this.release_sorter();
+	}
+	public void buildTopPart(int[][] data_instances, long max_inst_count){
+		this.buildTopPart(RecordArray.from(data_instances), max_inst_count);
 	}
 	/**
 	 * Grow at root of the SubPPCTree one level from all instances from the input data, 
-	 * build its child nodes.
+	 * build its child nodes. The instance order and the sorter of the top part are prepared.
 	 * @param data_instances
+	 * @param weights
 	 */
-	private void growAtRootOnelevel(int[][] data_instances){
-		PPCNode root_node = this.root;
-
-		for (int[] instance : data_instances){
-			this.grow(root_node, instance, 1);
+	private void growAtRootOnelevel(RecordArray data_instances, int[] weights){
+		this.records = data_instances;
+		this.weights = weights;
+		this.order = RecordSorter.initial_order(data_instances, weights);
+		this.order_keys = new int[this.order.length];
+		this.sorter = new RecordSorter(data_instances, this.order, this.order_keys, this.selector_nlists.length);
+		int size = this.order.length;
+		
+		// empty records do not contribute any node, they are kept before the range to partition
+		int begin = 0;
+		while (begin < size && data_instances.length(this.order[begin]) == 0) begin++;
+		this.partition(this.root, begin, size, 1);
+	}
+	/**
+	 * Release the sorter of the top part once it is built
+	 */
+	private void release_sorter(){
+		this.sorter = null;
+		// the keys are still needed to sort the instances of subtrees
+		if (!this.sorted_subtrees) this.order_keys = null;
+	}
+	
+	/**
+	 * Build the top part of the global tree from the (weighted) instances in the input data that the estimated memory
+	 * of every subtree with root at leaf node does not exceed 'memory_budget', instead of a maximum number of instances.
+	 * </br>A leaf node grows one more level on demand, as long as the estimated memory of its subtree exceeds the budget.
+	 * The number of nodes of a subtree is estimated from its instance group: an instance contributes at most
+	 * (length - level + 1) nodes, see estimate_subtree_nodes(...).
+	 * @param data_instances
+	 * @param weights weights of the instances (see RecordDeduplicator), null if each instance counts once
+	 * @param memory_budget the maximum estimated memory (bytes) of a subtree
+	 */
+	public void buildTopPartWithBudget(RecordArray data_instances, int[] weights, long memory_budget){
+		this.growAtRootOnelevel(data_instances, weights);
+		this.buildTopPartRecursiveWithBudget(this.root, memory_budget/this.estimated_node_bytes());
+		
+		this.release_sorter();
+	}
+	
+	/**
+	 * Build the top part of the global tree from instances in a file as buildTopPart(RecordFile, long, File), with a budget
+	 * of the estimated memory of a subtree instead of a maximum number of instances.
+	 * </br>Instance groups are not kept while the top part grows from a file, so the budget is converted to a maximum number of
+	 * instances by the average length of instances: the subtrees are within the budget on average, not each of them.
+	 * @param data_instances
+	 * @param memory_budget the maximum estimated memory (bytes) of a subtree
+	 * @param directory the directory of the partition files, null for the default temporary directory
+	 * @throws IOException
+	 */
+	public void buildTopPartWithBudget(RecordFile data_instances, long memory_budget, File directory) throws IOException{
+		double average_length = Math.max(1.0, (double) data_instances.total_length()/Math.max(data_instances.size(), 1));
+		long max_inst_count = Math.max(1, (long) (memory_budget/(this.estimated_node_bytes()*average_length)));
+		this.buildTopPart(data_instances, max_inst_count, directory);
+	}
+	
+	private void buildTopPartRecursiveWithBudget(PPCNode sub_node, long max_node_count){
+		for(PPCNode child : sub_node.children){
+			if (this.estimate_subtree_nodes(child) > max_node_count) {
+				this.growAtNodeOnelevel(child);
+				this.buildTopPartRecursiveWithBudget(child, max_node_count);
+			}
 		}
 	}
+	
 	private void buildTopPartRecursive(PPCNode sub_node, long max_inst_count){
 		for(PPCNode child : sub_node.children){
 			if (child.count > max_inst_count) {
@@ -172,55 +349,58 @@ public class P3CTree extends PPCTree {
 	}
 	/**
 	 * Grow at the 'sub_node' one more level, build its child nodes.
-	 * </br>After finishing, the list of instances at 'sub_node' will be free 
-	 * because they had been split and transfered to its child nodes, 
+	 * </br>After finishing, the instance group of 'sub_node' will be empty 
+	 * because its instances had been split and transfered to its child nodes, 
 	 * @param sub_node
 	 */
 	private void growAtNodeOnelevel(PPCNode sub_node){
-		P3CNode subroot = (P3CNode) sub_node;
-		int level = subroot.instGroup.level;
-		List<int[]> instances = subroot.instGroup.instances;
-
-		for (int[] instance : instances){
-			this.grow(subroot, instance, level);
-		}
+		InstGroup instGroup = ((P3CNode) sub_node).instGroup;
+		this.partition(sub_node, instGroup.begin, instGroup.end, instGroup.level);
 		
 		// now all instances at 'sub_node' had been split and transfered to its child nodes.
-		instances.clear();
-		subroot.instGroup.instances = null;
-	}
-	private void grow(PPCNode sub_node, int[] instance, int level){
-	    PPCNode mid_child;
-    	int id = instance[instance.length - level];
-        int position = 0, mid_index;
-    	int size = sub_node.children.size();
-    	boolean wasNotMerged = true;
-    	
-    	// Binary search on the id-based ordered children node list of sub_node
-    	while (position < size) {
-    		mid_index = (position + size) / 2;
-            mid_child = sub_node.children.get(mid_index);
-            
-            if (mid_child.itemID < id) position = mid_index + 1;
-            else if (mid_child.itemID > id) size = mid_index;
-            else {
-            	mid_child.count++;
-            	// only add the instance if it can be used to grow the tree further
-            	if(instance.length > level) ((P3CNode) mid_child).instGroup.instances.add(instance);
-                wasNotMerged = false;
-                break;
-            }
-        }
-        
-        if (wasNotMerged) {
-        	List<int[]> instances = new ArrayList<int[]>();
-        	
-        	// only add the instance if it can be used to grow the tree further
-        	if(instance.length > level) instances.add(instance);
-        	
-        	// position now is the right index in children node list of sub_node
-        	sub_node.children.add(position, new P3CNode(id, sub_node, 1, level+1, instances));
-        }
+		instGroup.clear();
+	}
+	/**
+	 * Partition the instances order[begin, end) in place by their selector IDs at 'level' and add a child node to 'sub_node'
+	 * for each selector ID, in ascending order of IDs. All instances of the range have at least 'level' selector IDs.
+	 * </br>In the partition of an ID, the instances which end at 'level' come first (see RecordSorter.partition(...)),
+	 * the instance group of the child is the range of the other instances.
+	 * @param sub_node
+	 * @param begin
+	 * @param end
+	 * @param level
+	 */
+	private void partition(PPCNode sub_node, int begin, int end, int level){
+		RecordSorter sorter = this.sorter;
+		int key_count = sorter.partition(begin, end, level);
+		int[] keys = sorter.keys, sizes = sorter.sizes;
+		
+		// add child nodes, the ranges of keys 2*ID and 2*ID+1 are adjacent
+		int position = begin;
+		for (int i=0; i<key_count; i++){
+			int id = keys[i] >> 1;
+			int group_begin = position, group_end = position + sizes[i];
+			if ((keys[i] & 1) == 0){
+				// the instances end at the child
+				group_begin = group_end;
+				if (i+1 < key_count && keys[i+1] == keys[i]+1){
+					i++;
+					group_end += sizes[i];
+				}
+			}
+			sub_node.children.add(new P3CNode(id, sub_node, this.weighted_count(position, group_end), level+1, group_begin, group_end));
+			position = group_end;
+		}
+	}
+	
+	/**
+	 * @return the number of instances of order[begin, end), the sum of their weights if the instances are weighted
+	 */
+	private int weighted_count(int begin, int end){
+		if (this.weights == null) return end - begin;
+		int count = 0;
+		for (int k=begin; k<end; k++) count += this.weights[this.order[k]];
+		return count;
 	}
 	
 	/**
@@ -232,12 +412,30 @@ public class P3CTree extends PPCTree {
 		// principle: if the first child is assigned a pre-order code, its parent must be assigned a pre-order code beforehand
 		this.assignPreOrderCode_for_AncestorsWithoutPreOrderCode(sub_node);
 		
+		this.record_root_child(sub_node);
+		
 		// assign pre-order and post-order codes for each node in the subtree
-		this.traverseAssignPrePosOrderCode(sub_node);
+		ArrayPPCTree subtree = ((P3CNode) sub_node).subtree;
+		if (subtree != null){
+			subtree.assignPrePosOrderCode(this.currentPreCode, this.currentPosCode);
+			int node_count = (int) subtree.countNodes();
+			this.currentPreCode += node_count;
+			this.currentPosCode += node_count;
+			sub_node.pre = subtree.getRootPre();
+			sub_node.pos = subtree.getRootPos();
+		}else{
+			this.traverseAssignPrePosOrderCode(sub_node);
+		}
 		
 		// assign post-order code for ancestor nodes of sub_node
 		// principle: if the last child is assigned a post-order code, its parent must be assigned a post-order code also afterward
-		this.assignPostOrderCode_for_Ancestors(sub_node);
+		List<PPCNode> completed_ancestors = new ArrayList<PPCNode>();
+		this.assignPostOrderCode_for_Ancestors(sub_node, completed_ancestors);
+		
+		// ancestors have full codes, add them to the corresponding Nlists
+		for (PPCNode ancestor : completed_ancestors){
+			this.selector_nlists[ancestor.itemID].add(ancestor.pre, ancestor.pos, ancestor.count);
+		}
 	}
 	private void assignPreOrderCode_for_AncestorsWithoutPreOrderCode(PPCNode sub_node){
 		if (sub_node != sub_node.parent.children.get(0)) return; // check if sub_node is the first child		
@@ -255,6 +453,24 @@ public class P3CTree extends PPCTree {
 			this.currentPreCode ++;
 		}
 	}
+    /**
+     * Record the pre-order code of the child of the root which contains 'sub_node' if it is not recorded yet.
+     * Must be called after ancestors of 'sub_node' are assigned pre-order codes and before 'sub_node' is.
+     * @param sub_node a leaf node of the top part
+     */
+    private void record_root_child(PPCNode sub_node){
+    	PPCNode root_child = sub_node;
+    	while (root_child.parent != this.root) root_child = root_child.parent;
+    	if (root_child == this.last_root_child) return;
+    	
+    	this.last_root_child = root_child;
+    	this.root_child_pre_list.add((root_child == sub_node) ? this.currentPreCode : root_child.pre);
+    }
+    
+    public int[] getRootChildPreCodes(){
+    	return this.root_child_pre_list.toArray();
+    }
+    
     private void traverseAssignPrePosOrderCode(PPCNode tree_node){
     	// Assign a code for the current node
     	tree_node.pre = this.currentPreCode;
@@ -266,7 +482,12 @@ public class P3CTree extends PPCTree {
     	tree_node.pos = this.currentPosCode;
 		this.currentPosCode++;
     }
-    private void assignPostOrderCode_for_Ancestors(PPCNode sub_node){
+    /**
+     * Assign post-order codes for the ancestors of 'sub_node' which are completed after the subtree at 'sub_node'
+     * @param sub_node
+     * @param completed_ancestors output parameter, ancestors which have just got full codes, in the order of their post-order codes
+     */
+    private void assignPostOrderCode_for_Ancestors(PPCNode sub_node, List<PPCNode> completed_ancestors){
     	// check if sub_node is the last child of its parent
     	// sub_node.parent.itemID == -1 (happen if level=1), not assign post-order code for the root node (without a selector associated)
     	if (sub_node != sub_node.parent.children.get(sub_node.parent.children.size()-1) 
@@ -276,8 +497,7 @@ public class P3CTree extends PPCTree {
     	PPCNode ancestor = sub_node.parent;
     	ancestor.pos = this.currentPosCode;
 		this.currentPosCode ++;
-		// ancestor has full codes, add it to the corresponding Nlist
-		this.selector_nlists[ancestor.itemID].add(ancestor.pre, ancestor.pos, ancestor.count);
+		completed_ancestors.add(ancestor);
 		
 		while (ancestor.parent != null 
 				&& ancestor.parent.itemID != -1 // not assign post-order code for the root node (without a selector associated)
@@ -285,9 +505,7 @@ public class P3CTree extends PPCTree {
 			ancestor = ancestor.parent;
 			ancestor.pos = this.currentPosCode;
 			this.currentPosCode ++;
-			
-			// ancestor has full codes, add it to the corresponding Nlist
-			this.selector_nlists[ancestor.itemID].add(ancestor.pre, ancestor.pos, ancestor.count);
+			completed_ancestors.add(ancestor);
 		}
 	}
     
@@ -298,6 +516,13 @@ public class P3CTree extends PPCTree {
      * @param sub_node
      */
     public void update_nlists_from_subtree(PPCNode sub_node){
+    	ArrayPPCTree subtree = ((P3CNode) sub_node).subtree;
+    	if (subtree != null){
+    		this.selector_nlists[sub_node.itemID].add(sub_node.pre, sub_node.pos, sub_node.count);
+    		subtree.update_nlists(this.selector_nlists);
+    		return;
+    	}
+    	
     	// Add root node of the subtree to the corresponding nlist
    	 	this.selector_nlists[sub_node.itemID].add(sub_node.pre, sub_node.pos, sub_node.count);
    	 
@@ -319,6 +544,11 @@ public class P3CTree extends PPCTree {
      * @param sub_node root node of the subtree
      */
 	public void freeSubTrees(PPCNode sub_node){
+		P3CNode subroot = (P3CNode) sub_node;
+		if (subroot.subtree != null){
+			subroot.subtree.free();
+			subroot.subtree = null;
+		}
 		sub_node.children.clear();
 		sub_node.children = null;
 		
@@ -332,9 +562,441 @@ public class P3CTree extends PPCTree {
 	}
 	
 	/**
-	 * Collect redundant memory that was allocated for Nlists
+	 * Return the number of nodes of the subtree with root at 'sub_node', including 'sub_node'
+	 * @param sub_node
+	 * @return
+	 */
+	public int countSubtreeNodes(PPCNode sub_node){
+		ArrayPPCTree subtree = ((P3CNode) sub_node).subtree;
+		if (subtree != null) return (int) subtree.countNodes();
+		return this.count_nodes_recursive(sub_node);
+	}
+	
+	/////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// METHODS for Out-of-core Building /////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Total bytes of the write buffers of the partition files open at the same time
+	 */
+	private static final long PARTITION_BUFFERS_BYTES = 64L*1024*1024;
+	private static final int MIN_PARTITION_BUFFER_BYTES = 256*1024;
+	
+	/**
+	 * The maximum number of partition files written in one pass over the instances, bounds the write buffers
+	 * to PARTITION_BUFFERS_BYTES and the open file descriptors
+	 */
+	private static final int MAX_OPEN_PARTITION_FILES = (int) (PARTITION_BUFFERS_BYTES/MIN_PARTITION_BUFFER_BYTES);
+	
+	/**
+	 * Files of the instances of the leaf nodes, a partition holds the instances of consecutive leaf nodes
+	 */
+	private RecordFile[] partition_files = null;
+	
+	/**
+	 * The leaf nodes of partition p are leafNodes[partition_leaf_begins[p], partition_leaf_begins[p+1])
+	 */
+	private int[] partition_leaf_begins = null;
+	
+	/**
+	 * Build the top part of the global tree as buildTopPart(RecordArray, long), from instances in a file instead of the heap,
+	 * then spill the instances of the leaf nodes to temporary files, see load_partition(...).
+	 * </br>The top part grows one level per sequential pass over the instances: the instances are routed along the top part
+	 * and counted at the children of the nodes with more than 'max_inst_count' instances. Then the suffix of each instance
+	 * below its leaf node is written to the file of the partition of the leaf node. A partition holds consecutive
+	 * leaf nodes with at most max('max_inst_count', the largest instance group) instances. At most MAX_OPEN_PARTITION_FILES
+	 * partition files are written per pass over the instances, a file is closed after its pass until it is loaded.
+	 * @param data_instances instances of the input data, in form of selector IDs in ascending order (tags are ignored)
+	 * @param max_inst_count
+	 * @param directory the directory of the partition files, null for the default temporary directory
+	 * @throws IOException
+	 */
+	public void buildTopPart(RecordFile data_instances, long max_inst_count, File directory) throws IOException{
+		// during the growth, the instance group of a node counts the instances which continue below the node
+		int depth = 0;
+		boolean growing = true;
+		while (growing){
+			growing = false;
+			data_instances.rewind();
+			while (data_instances.next()){
+				if (this.count_at_depth(data_instances.ids(), data_instances.length(), depth, max_inst_count)) growing = true;
+			}
+			depth++;
+		}
+		
+		// plan the partitions of consecutive leaf nodes
+		List<PPCNode> leaf_nodes = this.getLeafNodes();
+		IntegerArray leaf_begins = new IntegerArray();
+		long partition_size = 0, partition_capacity = Math.max(max_inst_count, 1);
+		for (int i=0; i<leaf_nodes.size(); i++){
+			InstGroup instGroup = ((P3CNode) leaf_nodes.get(i)).instGroup;
+			if (i == 0 || partition_size + instGroup.size() > partition_capacity){
+				leaf_begins.add(i);
+				partition_size = 0;
+			}
+			partition_size += instGroup.size();
+			// while instances are spilled, the instance group of a leaf node is empty, at the index of the leaf node
+			instGroup.begin = instGroup.end = i;
+		}
+		leaf_begins.add(leaf_nodes.size());
+		this.partition_leaf_begins = leaf_begins.toArray();
+		
+		int partition_count = this.partition_leaf_begins.length - 1;
+		int[] leaf_partitions = new int[leaf_nodes.size()];
+		for (int p=0; p<partition_count; p++){
+			for (int i=this.partition_leaf_begins[p]; i<this.partition_leaf_begins[p+1]; i++) leaf_partitions[i] = p;
+		}
+		
+		this.partition_files = new RecordFile[partition_count];
+		int open_count = Math.min(Math.max(partition_count, 1), MAX_OPEN_PARTITION_FILES);
+		int buffer_bytes = (int) Math.min(RecordFile.DEFAULT_BUFFER_BYTES, PARTITION_BUFFERS_BYTES/open_count);
+		
+		// route each instance to its leaf node and spill its suffix below the leaf node, for a group of partitions per pass
+		for (int first=0; first<partition_count; first+=open_count){
+			int last = Math.min(first + open_count, partition_count);
+			for (int p=first; p<last; p++) this.partition_files[p] = new RecordFile(directory, buffer_bytes);
+			
+			data_instances.rewind();
+			while (data_instances.next()){
+				int[] ids = data_instances.ids();
+				int length = data_instances.length();
+				PPCNode node = this.root;
+				int level = 0;
+				while (node.children.size() > 0 && level < length){
+					node = find_child(node, ids[length-level-1]);
+					level++;
+				}
+				if (node == this.root || node.children.size() > 0 || level == length) continue;
+				int leaf_index = ((P3CNode) node).instGroup.begin;
+				int p = leaf_partitions[leaf_index];
+				if (p >= first && p < last) this.partition_files[p].add(leaf_index, ids, 0, length-level);
+			}
+			for (int p=first; p<last; p++) this.partition_files[p].close();
+		}
+	}
+	
+	/**
+	 * Route an instance along the top part to 'depth' and count it at the child of the node at 'depth'
+	 * if the node grows one more level (the root, or a node with more than 'max_inst_count' instances),
+	 * new children are added in ascending order of selector IDs.
+	 * @return true if the instance is counted at a child which will grow one more level
+	 */
+	private boolean count_at_depth(int[] ids, int length, int depth, long max_inst_count){
+		if (length <= depth) return false;
+		PPCNode node = this.root;
+		for (int level=0; level<depth; level++){
+			node = find_child(node, ids[length-level-1]);
+			if (node == null || node.children.size() == 0 && level+1 < depth) return false;
+		}
+		if (node != this.root && (node.count <= max_inst_count || ((P3CNode) node).instGroup.size() == 0)) return false;
+		
+		// find or add the child by binary search on the id-based ordered children node list
+		int id = ids[length-depth-1];
+		List<PPCNode> children = node.children;
+		int position = 0, size = children.size();
+		P3CNode child = null;
+		while (position < size){
+			int mid_index = (position + size) / 2;
+			PPCNode mid_child = children.get(mid_index);
+			if (mid_child.itemID < id) position = mid_index + 1;
+			else if (mid_child.itemID > id) size = mid_index;
+			else{
+				child = (P3CNode) mid_child;
+				break;
+			}
+		}
+		if (child == null){
+			child = new P3CNode(id, node, 0, depth+2, 0, 0);
+			children.add(position, child);
+		}
+		child.count++;
+		if (length > depth+1) child.instGroup.end++;
+		return child.count > max_inst_count && child.instGroup.size() > 0;
+	}
+	
+	/**
+	 * @return the child of 'node' associated with 'id', null if there is no such child
+	 */
+	private static PPCNode find_child(PPCNode node, int id){
+		List<PPCNode> children = node.children;
+		int position = 0, size = children.size();
+		while (position < size){
+			int mid_index = (position + size) / 2;
+			PPCNode mid_child = children.get(mid_index);
+			if (mid_child.itemID < id) position = mid_index + 1;
+			else if (mid_child.itemID > id) size = mid_index;
+			else return mid_child;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the number of partitions of leaf nodes spilled by buildTopPart(RecordFile, long, File), 0 if there is none
+	 */
+	public int getPartitionCount(){
+		return (this.partition_files == null) ? 0 : this.partition_files.length;
+	}
+	
+	/**
+	 * Read the instances of partition p back from its file (the file is deleted) to build the subtrees at its leaf nodes.
+	 * The instances of the previous partition are released. Partitions must be loaded in order, and the subtrees of
+	 * a partition must be built (and freed) before the next partition is loaded.
+	 * @param p
+	 * @param deduplicate if true, identical instances of the partition are collapsed into weighted instances (see RecordDeduplicator)
+	 * @return the leaf nodes of partition p, in the leaf order
+	 * @throws IOException
+	 */
+	public List<PPCNode> load_partition(int p, boolean deduplicate) throws IOException{
+		this.records = null;
+		this.order = null;
+		this.order_keys = null;
+		this.weights = null;
+		this.subtree_sorters.remove();
+		
+		RecordFile file = this.partition_files[p];
+		this.partition_files[p] = null;
+		int leaf_begin = this.partition_leaf_begins[p], leaf_end = this.partition_leaf_begins[p+1];
+		List<PPCNode> leaf_nodes = this.getLeafNodes().subList(leaf_begin, leaf_end);
+		
+		RecordArray records = new RecordArray(file.size());
+		int[] tags = new int[file.size()];
+		file.rewind();
+		while (file.next()){
+			tags[records.size()] = file.tag() - leaf_begin;
+			records.add(file.ids(), file.length());
+		}
+		records.shrink();
+		file.release();
+		
+		int[] weights = deduplicate ? RecordDeduplicator.weights(records, tags) : null;
+		
+		// group the instances by leaf node, in the order of the file
+		int[] group_ends = new int[leaf_end - leaf_begin];
+		for (int r=0; r<tags.length; r++){
+			if (weights == null || weights[r] > 0) group_ends[tags[r]]++;
+		}
+		int position = 0;
+		for (int i=0; i<group_ends.length; i++){
+			InstGroup instGroup = ((P3CNode) leaf_nodes.get(i)).instGroup;
+			instGroup.level = 1;
+			instGroup.begin = instGroup.end = position;
+			position += group_ends[i];
+		}
+		int[] order = new int[position];
+		for (int r=0; r<tags.length; r++){
+			if (weights == null || weights[r] > 0) order[((P3CNode) leaf_nodes.get(tags[r])).instGroup.end++] = r;
+		}
+		
+		this.records = records;
+		this.weights = weights;
+		this.order = order;
+		if (this.sorted_subtrees) this.order_keys = new int[order.length];
+		return leaf_nodes;
+	}
+	
+	/////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// METHODS for Parallel Subtree Building ////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Build subtrees at the leaf nodes of the top part, assign PPCodes and update Nlists of selectors in a parallel way.
+	 * </br>Leaf nodes are processed in windows of consecutive leaf nodes whose estimated subtree memory does not exceed
+	 * 'memory_budget' (a window has at least one leaf node). For each window:
+	 * </br>1. Subtrees are built and their nodes are counted in parallel
+	 * </br>2. The pre-order and post-order code offsets of each subtree are computed from the node counts in the leaf order
+	 * </br>3. Subtrees are assigned PPCodes from their offsets and packed into Nlist fragments in parallel, then freed
+	 * </br>4. Fragments are merged into the Nlists of selectors in parallel, each worker for a stripe of selector IDs
+	 * </br>The generated Nlists are identical to the ones of the sequential way.
+	 * @param leaf_nodes leaf nodes of the top part in the left to right order
+	 * @param thread_count the number of worker threads
+	 * @param memory_budget the maximum estimated memory (bytes) of the subtrees and fragments of a window
+	 * @throws InterruptedException
+	 */
+	public void build_subtrees_parallel(List<PPCNode> leaf_nodes, int thread_count, long memory_budget) throws InterruptedException{
+		int leaf_count = leaf_nodes.size();
+		int begin = 0, end;
+		
+		while (begin < leaf_count){
+			// Select a window of leaf nodes within the memory budget
+			long estimated_memory = this.estimate_subtree_memory(leaf_nodes.get(begin));
+			end = begin + 1;
+			while (end < leaf_count){
+				long memory = this.estimate_subtree_memory(leaf_nodes.get(end));
+				if (estimated_memory + memory > memory_budget) break;
+				estimated_memory += memory;
+				end++;
+			}
+			List<PPCNode> window_leaves = leaf_nodes.subList(begin, end);
+			List<List<PPCNode>> completed_ancestors = new ArrayList<List<PPCNode>>(window_leaves.size());
+			SubtreeWindow window = new SubtreeWindow(window_leaves.size(), completed_ancestors);
+			int worker_count = Math.max(1, Math.min(thread_count, window_leaves.size()));
+			
+			// 1. Build subtrees and count their nodes
+			this.run_workers(SubtreeBuildThread.BUILD, window_leaves, window, worker_count);
+			
+			// 2. Compute the code offsets of subtrees, assign codes for ancestors in the top part
+			for (int i=0; i<window_leaves.size(); i++){
+				PPCNode leaf_node = window_leaves.get(i);
+				this.assignPreOrderCode_for_AncestorsWithoutPreOrderCode(leaf_node);
+				this.record_root_child(leaf_node);
+				
+				window.start_pre_codes[i] = this.currentPreCode;
+				window.start_pos_codes[i] = this.currentPosCode;
+				this.currentPreCode += window.node_counts[i];
+				this.currentPosCode += window.node_counts[i];
+				
+				List<PPCNode> ancestors = new ArrayList<PPCNode>();
+				this.assignPostOrderCode_for_Ancestors(leaf_node, ancestors);
+				completed_ancestors.add(ancestors);
+			}
+			
+			// 3. Assign codes for subtrees and pack them into Nlist fragments
+			this.run_workers(SubtreeBuildThread.EMIT, window_leaves, window, worker_count);
+			
+			// 4. Merge fragments into Nlists of selectors, in the order of leaf nodes
+			this.run_workers(SubtreeBuildThread.MERGE, window_leaves, window, thread_count);
+			
+			// Free the subtrees with root at leaf nodes of the window
+			for (PPCNode leaf_node : window_leaves) this.freeSubTrees(leaf_node);
+			
+			begin = end;
+		}
+	}
+	private void run_workers(int phase, List<PPCNode> window_leaves, SubtreeWindow window, int worker_count) throws InterruptedException{
+		IntHolder globalIndex = new IntHolder(0);
+		Thread[] threads = new Thread[worker_count];
+		for(int i=0; i<worker_count; i++){
+			threads[i] = new SubtreeBuildThread(this, phase, window_leaves, window, globalIndex, i, worker_count);
+			threads[i].start();
+		}
+		for(int i=0; i<worker_count; i++) threads[i].join();
+	}
+	
+	/**
+	 * Estimate the memory of the subtree which will be built at the leaf node 'sub_node' and its Nlist fragment.
+	 * @param sub_node
+	 * @return estimated memory in bytes
+	 */
+	private long estimate_subtree_memory(PPCNode sub_node){
+		return this.estimate_subtree_nodes(sub_node) * (this.estimated_node_bytes() + FRAGMENT_NODE_BYTES);
+	}
+	
+	/**
+	 * Estimate the number of nodes of the subtree at the node 'sub_node' of the top part from its instance group:
+	 * each instance in the group contributes at most (length - level + 1) nodes.
+	 * @param sub_node
+	 * @return an upper bound of the number of nodes, including 'sub_node'
+	 */
+	private long estimate_subtree_nodes(PPCNode sub_node){
+		InstGroup instGroup = ((P3CNode) sub_node).instGroup;
+		long node_count = 1;
+		for (int k=instGroup.begin; k<instGroup.end; k++){
+			node_count += this.records.length(this.order[k]) - instGroup.level + 1;
+		}
+		return node_count;
+	}
+	
+	/**
+	 * @return estimated heap memory (bytes) of a node of a subtree, depending on whether subtrees are ArrayPPCTrees
+	 */
+	public long estimated_node_bytes(){
+		return this.array_subtrees ? ArrayPPCTree.ESTIMATED_NODE_BYTES : ESTIMATED_NODE_BYTES;
+	}
+	
+	/**
+	 * Assign PPCodes for nodes of the subtree with root at 'sub_node' starting from the given codes,
+	 * then pack the nodes in pre-order into an Nlist fragment. Nodes below 'sub_node' are released.
+	 * </br>This method does not touch any shared state, so it can be called for different subtrees concurrently.
+	 * @param sub_node root of the subtree
+	 * @param start_pre pre-order code of 'sub_node'
+	 * @param start_pos the smallest post-order code in the subtree
+	 * @param node_count the number of nodes of the subtree
+	 * @return the fragment, 4 integers per node: itemID, pre-code, pos-code, count
+	 */
+	int[] emit_subtree_fragment(PPCNode sub_node, int start_pre, int start_pos, int node_count){
+		int[] fragment = new int[4*node_count];
+		ArrayPPCTree subtree = ((P3CNode) sub_node).subtree;
+		if (subtree != null){
+			subtree.assignPrePosOrderCode(start_pre, start_pos);
+			sub_node.pre = subtree.getRootPre();
+			sub_node.pos = subtree.getRootPos();
+			subtree.fill_fragment(fragment);
+			
+			// the subtree is no longer needed
+			subtree.free();
+			((P3CNode) sub_node).subtree = null;
+			return fragment;
+		}
+		
+		int[] codes = new int[]{start_pre, start_pos};
+		this.emit_fragment_recursive(sub_node, start_pre, codes, fragment);
+		
+		// the subtree is no longer needed, the children list of 'sub_node' is freed later in the leaf order
+		sub_node.children.clear();
+		
+		return fragment;
+	}
+	private void emit_fragment_recursive(PPCNode node, int start_pre, int[] codes, int[] fragment){
+		// nodes are packed in pre-order, so the position of a node is its pre-code offset
+		int offset = 4*(codes[0] - start_pre);
+		node.pre = codes[0];
+		codes[0]++;
+		
+		for(PPCNode child : node.children) emit_fragment_recursive(child, start_pre, codes, fragment);
+		
+		node.pos = codes[1];
+		codes[1]++;
+		
+		fragment[offset] = node.itemID;
+		fragment[offset+1] = node.pre;
+		fragment[offset+2] = node.pos;
+		fragment[offset+3] = node.count;
+	}
+	
+	/**
+	 * Merge the Nlist fragments of a window into the Nlists of selectors whose IDs belong to the stripe.
+	 * </br>Fragments are merged in the order of leaf nodes, each is followed by its completed ancestors,
+	 * the same order as the sequential way.
+	 * @param window_leaves
+	 * @param window
+	 * @param stripe
+	 * @param stripe_count
+	 */
+	void merge_fragments(List<PPCNode> window_leaves, SubtreeWindow window, int stripe, int stripe_count){
+		INlist[] selector_nlists = this.selector_nlists;
+		
+		for (int i=0; i<window_leaves.size(); i++){
+			int[] fragment = window.fragments[i];
+			for (int k=0; k<fragment.length; k+=4){
+				if (fragment[k] % stripe_count != stripe) continue;
+				selector_nlists[fragment[k]].add(fragment[k+1], fragment[k+2], fragment[k+3]);
+			}
+			
+			for (PPCNode ancestor : window.completed_ancestors.get(i)){
+				if (ancestor.itemID % stripe_count != stripe) continue;
+				selector_nlists[ancestor.itemID].add(ancestor.pre, ancestor.pos, ancestor.count);
+			}
+		}
+	}
+	
+	/**
+	 * Collect redundant memory that was allocated for Nlists, or seal the off-heap store if it is used.
+	 * </br>All subtrees must have been built, the instance order of the top part is released.
 	 */
 	public void shrink_nlists(){
+		this.order = null;
+		this.order_keys = null;
+		this.weights = null;
+		this.records = null;
+		this.subtree_sorters.remove();
+		if (this.partition_files != null){
+			for (RecordFile file : this.partition_files) if (file != null) file.release();
+			this.partition_files = null;
+		}
+		if (this.off_heap_store != null){
+			this.selector_nlists = this.off_heap_store.seal();
+			return;
+		}
 		for (INlist nlist : this.selector_nlists){
 			nlist.shrink();
 		}
@@ -9,6 +9,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,10 +17,11 @@ import java.util.Map;
 /**
  * PPCTree (PrePost Code tree) for generating Nlist of itemset or selector set.
  */
-public class PPCTree {
+public class PPCTree implements IPPCTree {
 	protected PPCNode root;
 	protected int currentPreCode;
 	protected int currentPosCode;
+	protected int[] root_child_pre_codes;
 	
 	////////////////////////////////////////////// COMMONS METHODS //////////////////////////////////////////////////
 
@@ -84,6 +86,15 @@ public class PPCTree {
 		this.currentPreCode = 0;
 		this.currentPosCode = 0;
 		this.traverseAssignPrePosOrderCode(this.root);
+		
+		this.root_child_pre_codes = new int[this.root.children.size()];
+		for(int i=0; i<this.root_child_pre_codes.length; i++){
+			this.root_child_pre_codes[i] = this.root.children.get(i).pre;
+		}
+	}
+	
+	public int[] getRootChildPreCodes(){
+		return this.root_child_pre_codes;
 	}
     
     /**
@@ -101,20 +112,115 @@ public class PPCTree {
 		currentPosCode++;
     }
 	
+	/**
+	 * Insert the records order[0..] in the order of RecordSorter.sorted_order(...) in one sweep, see insert_sorted(...)
+	 * @param records
+	 * @param order indices of the records in the sorted order
+	 */
+	public void insert_sorted_records(RecordArray records, int[] order){
+		this.insert_sorted(this.root, records, null, order, 0, order.length, 1);
+	}
+	
+	/**
+	 * Insert the records order[0..] in the order of RecordSorter.sorted_order(...) in one sweep, each record counts for its weight
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the sorted order
+	 */
+	public void insert_sorted_records(RecordArray records, int[] weights, int[] order){
+		this.insert_sorted(this.root, records, weights, order, 0, order.length, 1);
+	}
+	
+	/**
+	 * Insert the records order[begin, end) under 'sub_node' without their last 'level'-1 selector ids,
+	 * the records must be sorted from 'level' by a RecordSorter.
+	 * Each record is compared with the path of the previous record only: the common part is counted and the rest is
+	 * appended as the last children, so there is no binary search and no insertion in the middle of children lists.
+	 * </br>If 'sub_node' already has children, the records are inserted one by one.
+	 * @param sub_node
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the sorted order
+	 * @param begin
+	 * @param end
+	 * @param level the level of 'sub_node' plus 1, 1 to insert the whole records under the root
+	 */
+	protected void insert_sorted(PPCNode sub_node, RecordArray records, int[] weights, int[] order, int begin, int end, int level){
+		if (sub_node.children.size() > 0){
+			for (int k=begin; k<end; k++){
+				int r = order[k];
+				this.insert_record(sub_node, records.ids(r), records.offset(r), records.length(r), level, (weights == null) ? 1 : weights[r]);
+			}
+			return;
+		}
+		
+		PPCNode[] path = new PPCNode[16];
+		int path_length = 0;
+		for (int k=begin; k<end; k++){
+			int r = order[k];
+			int weight = (weights == null) ? 1 : weights[r];
+			int[] ids = records.ids(r);
+			int offset = records.offset(r);
+			int first = offset + records.length(r) - level;
+			int depth = first - offset + 1;
+			
+			// the common part with the path of the previous record
+			int max_common = Math.min(depth, path_length);
+			int common = 0;
+			while (common < max_common && path[common].itemID == ids[first-common]){
+				path[common].count += weight;
+				common++;
+			}
+			
+			if (depth > path.length) path = Arrays.copyOf(path, Math.max(depth, 2*path.length));
+			PPCNode node = (common == 0) ? sub_node : path[common-1];
+			for (int d=common; d<depth; d++){
+				PPCNode new_node = new PPCNode(ids[first-d], node, weight);
+				node.children.add(new_node);
+				path[d] = new_node;
+				node = new_node;
+			}
+			path_length = depth;
+		}
+	}
+	
 	/**
 	 * Insert a record of selector ids (in a pre-defined order) into the tree.
 	 * </br>The order of ids to insert into the tree is from right to left.
 	 * @param record an int array of selector IDs in a pre-defined order of selectors
 	 */
 	public void insert_record(int[] record){
-	    PPCNode new_node, mid_child, sub_node = this.root;
+		this.insert_record(this.root, record, 0, record.length, 1, 1);
+	}
+	
+	/**
+	 * Insert a record of selector ids (in a pre-defined order) which stands for 'weight' identical records,
+	 * the counts of the nodes on its path increase by 'weight'. Pre-aggregated data can be fed this way.
+	 * @param record an int array of selector IDs in a pre-defined order of selectors
+	 * @param weight the multiplicity of the record
+	 */
+	public void insert_record(int[] record, int weight){
+		this.insert_record(this.root, record, 0, record.length, 1, weight);
+	}
+	
+	/**
+	 * Insert the record ids[offset, offset+length) without its last 'level'-1 selector ids into the subtree at 'sub_node'
+	 * @param sub_node
+	 * @param ids
+	 * @param offset
+	 * @param length
+	 * @param level the level of 'sub_node' plus 1, 1 to insert the whole record
+	 * @param weight the multiplicity of the record
+	 */
+	protected void insert_record(PPCNode sub_node, int[] ids, int offset, int length, int level, int weight){
+	    PPCNode new_node, mid_child;
 	    boolean wasNotMerged;
 	    int id, position, mid_index, size;
 	
 	    // The record of ids is in ascending order.
 	    // So the order of ids to insert into the tree is from right to left.
-	    for(int i = record.length-1; i>-1; i--){
-	    	id = record[i];
+	    for(int i = offset+length-level; i>=offset; i--){
+	    	id = ids[i];
 	        wasNotMerged = true;
 	        position = 0;
 	    	size = sub_node.children.size();
@@ -127,7 +233,7 @@ public class PPCTree {
 	            if (mid_child.itemID < id) position = mid_index + 1;
 	            else if (mid_child.itemID > id) size = mid_index;
 	            else {
-	            	mid_child.count++;
+	            	mid_child.count += weight;
 	            	sub_node = mid_child;
 	                wasNotMerged = false;
 	                break;
@@ -135,7 +241,7 @@ public class PPCTree {
 	        }
 	        
 	        if (wasNotMerged) {
-	        	new_node = new PPCNode(id, sub_node, 1);
+	        	new_node = new PPCNode(id, sub_node, weight);
 	        	// position now is the right index in children node list of sub_node
 	        	sub_node.children.add(position, new_node);
 	        	sub_node = new_node;
@@ -198,6 +304,20 @@ public class PPCTree {
     	return selector_nlists;
      }
      
+     /**
+      * This function will create an Nlist for each selector (selector ID) which was used to build the tree,
+      * the nodes are kept off-heap in 'store'.
+      * @param store an unsealed store for the selectors which were used to build the tree, it is sealed afterwards
+      * @return array of (read-only) Nlists of selectors
+      */
+     public INlist[] create_Nlist_for_selectors_arr(OffHeapNlistStore store){
+    	INlist[] selector_nlists = store.getAppenders();
+    	for(PPCNode child : this.root.children){
+    		this.create_nlists_for_selectors_recursive_arr(child, selector_nlists);
+    	}
+    	return store.seal();
+     }
+     
      /**
       * This function will create an Nlist (using Nodelist implementation) for each selector (selector ID) 
       * which was used to build the tree.
@@ -290,7 +410,7 @@ public class PPCTree {
     	}
     	return count;
     }
-    private int count_nodes_recursive(PPCNode sub_tree){
+    protected int count_nodes_recursive(PPCNode sub_tree){
     	if (sub_tree.children == null) return 1;
     	int count = 1;
     	for(PPCNode node : sub_tree.children){
@@ -0,0 +1,210 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+
+/**
+ * A packed array implementation for Nlist. The three properties of each node: pre-code, pos-code, and support count
+ * are interleaved in a single int array, ppc[3*i], ppc[3*i+1], ppc[3*i+2] for the i-th node.
+ * </br>The purpose is that reading a node touches one cache line instead of three, and one array header per Nlist.
+ */
+public class PackedNodelist implements INlist {
+	private static final float allocate_rate = 1.75f;
+	private int[] ppc;
+	private int size = 0;
+	private int supportCount = -1;
+
+	public PackedNodelist(int capacity){
+		this.ppc = new int[3*capacity];
+	}
+
+	public PackedNodelist(){
+		this.ppc = new int[3*16];
+	}
+
+	/**
+ 	 * New a PackedNodelist but not allocate any resource. The purpose is to DELAY the allocation
+ 	 * @param isEmpty	No matter the value of isEmpty is. No allocation!
+ 	 */
+	public PackedNodelist(boolean isEmpty){}
+
+	public int size(){
+ 		return this.size;
+ 	}
+
+	public int capacity(){
+ 		return this.ppc.length/3;
+ 	}
+
+	/**
+ 	 * Fill information of the node at position 'index' to the parameter 'node'
+ 	 * @param index
+ 	 * @param node
+ 	 */
+	public void get(int index, Node node){
+		int offset = 3*index;
+		node.pre = this.ppc[offset];
+		node.pos = this.ppc[offset+1];
+		node.count = this.ppc[offset+2];
+	}
+
+	/**
+	 * @return the packed array, for kernels working directly on the array: ppc[3*i], ppc[3*i+1], ppc[3*i+2] for the i-th node
+	 */
+	int[] packed(){
+		return this.ppc;
+	}
+
+	/**
+ 	 * Return the sum of support counts of all nodes
+ 	 * @return
+ 	 */
+	public int supportCount(){
+		if(this.supportCount == -1){
+ 			int sc = 0;
+ 			int end = 3*this.size;
+ 			for(int i=2; i<end; i+=3) sc += this.ppc[i];
+ 	 		return (this.supportCount = sc);
+ 		}
+ 		return this.supportCount;
+	}
+
+	/**
+ 	 * Reset the support count
+ 	 */
+	public void resetSC() {
+		this.supportCount = -1;
+	}
+
+	/**
+ 	 * This method is associated with the constructor PackedNodelist(boolean isEmpty)
+ 	 * @param capacity
+ 	 */
+	public void allocate(int capacity){
+		if(this.ppc == null){
+ 			this.size = 0;
+ 			this.ppc = new int[3*capacity];
+ 		}
+	}
+
+	/**
+ 	 * Empty the node list to be reused, the current space is kept if it is
+ 	 * not smaller than 'capacity', otherwise a larger space is allocated.
+ 	 * @param capacity the expected number of nodes to be added
+ 	 */
+ 	public void reset(int capacity){
+ 		this.size = 0;
+ 		this.supportCount = -1;
+ 		if(this.ppc == null || this.ppc.length < 3*capacity){
+ 			int new_capacity = (this.ppc == null) ? capacity : Math.max(capacity, (int)(this.capacity()*allocate_rate));
+ 			this.ppc = new int[3*new_capacity];
+ 		}
+ 	}
+
+	/**
+ 	 * This function should only be used when being sure that there will not be any new nodes added.
+ 	 * @param efficient_rate: if the size < capacity*efficient_rate, the shrink will be done.
+ 	 */
+	public PackedNodelist shrink(float efficient_rate){
+		if(this.size < this.capacity()*efficient_rate){
+			// Too much waste room, shrink
+			this.ppc = Arrays.copyOf(this.ppc, 3*this.size);
+		}
+		return this;
+	}
+
+	/**
+ 	 * This function should only be used when being sure that there will not be any new nodes added.
+ 	 * </br> Shrink the capacity to the size.
+ 	 */
+	public PackedNodelist shrink(){
+		this.ppc = Arrays.copyOf(this.ppc, 3*this.size);
+		return this;
+	}
+
+	/**
+ 	 * Return the string representation of the Nlist, just for testing
+ 	 */
+	public String toString(){
+		StringBuilder sb = new StringBuilder(200);
+ 		sb.append('{');
+ 		for(int i=0; i<3*size; i+=3){
+ 			sb.append('<').append(this.ppc[i]).append(',')
+ 			.append(this.ppc[i+1]).append(">:")
+ 			.append(this.ppc[i+2]).append("; ");
+ 		}
+ 		if (size > 0) sb.setLength(sb.length()-2);	// not an empty list
+ 		sb.append("}, freq:").append(this.supportCount());
+
+ 		return sb.toString();
+	}
+
+	/**
+ 	 * Add a new node to the end of the node list
+ 	 * @param pre
+ 	 * @param pos
+ 	 * @param count
+ 	 */
+	public void add(int pre, int pos, int count){
+		int offset = 3*this.size;
+		if(offset == this.ppc.length){
+			// No spare room for new node, allocate new space
+			int current_capacity = Math.max(16, (int)(this.size*allocate_rate));
+			this.ppc = Arrays.copyOf(this.ppc, 3*current_capacity);
+		}
+		// Add new node
+		this.ppc[offset] = pre;
+		this.ppc[offset+1] = pos;
+		this.ppc[offset+2] = count;
+		this.size++;
+	}
+
+	/**
+ 	 * Based on the information of parameter 'node', a new node is added to the end of the node list
+ 	 * @param node
+ 	 */
+	public void add(Node node){
+		this.add(node.pre, node.pos, node.count);
+	}
+
+	/**
+ 	 * Add the 'supportCount' to the support count of node at the position 'index'
+ 	 * @param index
+ 	 * @param supportCount
+ 	 */
+	public void accSupportCount(int index, int supportCount){
+		this.ppc[3*index+2] += supportCount;
+	}
+
+	public boolean isIdentical(INlist nlist) {
+		if (this.size != nlist.size()) return false;
+
+		Node node = new Node();
+		for (int i=0; i<this.size; i++){
+			nlist.get(i, node);
+			int offset = 3*i;
+			if (this.ppc[offset] != node.pre || this.ppc[offset+1] != node.pos || this.ppc[offset+2] != node.count) return false;
+		}
+		return true;
+	}
+
+	/**
+ 	 * PackedNodelist does not support this method.
+ 	 */
+	public void add(PPCNode ppcNode) {
+		System.err.println("add(PPCNode ppcNode) method is not supported by PackedNodelist");
+ 		System.exit(0);
+	}
+
+	/**
+ 	 * PackedNodelist does not support this method.
+ 	 */
+	public void insert(PPCNode ppcNode) {
+		System.err.println("insert(PPCNode ppcNode) method is not supported by PackedNodelist");
+ 		System.exit(0);
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+/**
+ * Records encoded in selector IDs stored in the compressed sparse row (CSR) form: the IDs of all records are
+ * concatenated in large int pages and a record is located by its start position, so there is no array object per record.
+ * </br>A record never spans two pages, so the IDs of record i are ids(i)[offset(i), offset(i)+length(i)).
+ * Positions are longs (page index in the high bits), so the total number of IDs is not bounded by the length of an array.
+ */
+public class RecordArray {
+	/**
+	 * A page holds at most 2^PAGE_BITS IDs (256 MB)
+	 */
+	private static final int PAGE_BITS = 26;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final long PAGE_MASK = PAGE_SIZE - 1;
+	private static final int INITIAL_PAGE_SIZE = 1 << 10;
+
+	private int[][] pages = new int[1][];
+
+	/**
+	 * The number of IDs used in each page
+	 */
+	private int[] page_ends = new int[1];
+	private int page_count = 1;
+
+	/**
+	 * starts[i] is the position of the first ID of record i, starts[size] is the position after the last record
+	 */
+	private long[] starts;
+	private int size = 0;
+
+	public RecordArray(){
+		this(16);
+	}
+
+	/**
+	 * @param record_capacity the expected number of records
+	 */
+	public RecordArray(int record_capacity){
+		this.starts = new long[Math.max(record_capacity, 1) + 1];
+		this.pages[0] = new int[INITIAL_PAGE_SIZE];
+	}
+
+	/**
+	 * Create a RecordArray with the records of an array of records
+	 * @param records
+	 * @return
+	 */
+	public static RecordArray from(int[][] records){
+		RecordArray result = new RecordArray(records.length);
+		for (int[] record : records) result.add(record);
+		result.shrink();
+		return result;
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	/**
+	 * Append a record
+	 * @param record
+	 */
+	public void add(int[] record){
+		this.add(record, record.length);
+	}
+
+	/**
+	 * Append the record record[0, length), 'record' can be a reused buffer
+	 * @param record
+	 * @param length
+	 */
+	public void add(int[] record, int length){
+		if (length > PAGE_SIZE) throw new IllegalArgumentException("Record of " + length + " IDs exceeds the page size");
+		int page = this.page_count - 1;
+		int end = this.page_ends[page];
+		if (end + length > PAGE_SIZE || end == PAGE_SIZE){
+			this.add_page();
+			page++;
+			end = 0;
+		}
+		int[] ids = this.ensure_page_capacity(page, end + length);
+		System.arraycopy(record, 0, ids, end, length);
+		this.page_ends[page] = end + length;
+
+		if (this.size + 1 == this.starts.length){
+			long[] starts = new long[2*this.starts.length];
+			System.arraycopy(this.starts, 0, starts, 0, this.starts.length);
+			this.starts = starts;
+		}
+		this.starts[this.size] = ((long) page << PAGE_BITS) | end;
+		this.size++;
+		this.starts[this.size] = ((long) page << PAGE_BITS) + end + length;
+	}
+
+	private void add_page(){
+		if (this.page_count == this.pages.length){
+			int[][] pages = new int[2*this.page_count][];
+			int[] page_ends = new int[2*this.page_count];
+			System.arraycopy(this.pages, 0, pages, 0, this.page_count);
+			System.arraycopy(this.page_ends, 0, page_ends, 0, this.page_count);
+			this.pages = pages;
+			this.page_ends = page_ends;
+		}
+		// the previous page is full enough, trim it
+		this.trim_page(this.page_count - 1);
+		this.pages[this.page_count] = new int[INITIAL_PAGE_SIZE];
+		this.page_count++;
+	}
+
+	private int[] ensure_page_capacity(int page, int capacity){
+		int[] ids = this.pages[page];
+		if (capacity <= ids.length) return ids;
+		int new_capacity = ids.length;
+		while (new_capacity < capacity) new_capacity = (int) Math.min(2L*new_capacity, PAGE_SIZE);
+		int[] new_ids = new int[new_capacity];
+		System.arraycopy(ids, 0, new_ids, 0, this.page_ends[page]);
+		this.pages[page] = new_ids;
+		return new_ids;
+	}
+
+	private void trim_page(int page){
+		int end = this.page_ends[page];
+		if (this.pages[page].length == end) return;
+		int[] ids = new int[end];
+		System.arraycopy(this.pages[page], 0, ids, 0, end);
+		this.pages[page] = ids;
+	}
+
+	/**
+	 * Collect redundant memory that was allocated for the records
+	 */
+	public void shrink(){
+		this.trim_page(this.page_count - 1);
+		if (this.starts.length > this.size + 1){
+			long[] starts = new long[this.size + 1];
+			System.arraycopy(this.starts, 0, starts, 0, this.size + 1);
+			this.starts = starts;
+		}
+	}
+
+	/**
+	 * @param i record index
+	 * @return the number of IDs of record i
+	 */
+	public int length(int i){
+		long start = this.starts[i], end = this.starts[i+1];
+		if ((start >>> PAGE_BITS) == (end >>> PAGE_BITS)) return (int) (end - start);
+		// the next record starts a new page
+		return this.page_ends[(int) (start >>> PAGE_BITS)] - (int) (start & PAGE_MASK);
+	}
+
+	/**
+	 * @param i record index
+	 * @return the page holding the IDs of record i, the IDs are at [offset(i), offset(i)+length(i))
+	 */
+	public int[] ids(int i){
+		return this.pages[(int) (this.starts[i] >>> PAGE_BITS)];
+	}
+
+	/**
+	 * @param i record index
+	 * @return the position of the first ID of record i in the page ids(i)
+	 */
+	public int offset(int i){
+		return (int) (this.starts[i] & PAGE_MASK);
+	}
+
+	/**
+	 * @param i record index
+	 * @param j position in the record
+	 * @return the j-th ID of record i
+	 */
+	public int get(int i, int j){
+		long start = this.starts[i];
+		return this.pages[(int) (start >>> PAGE_BITS)][(int) (start & PAGE_MASK) + j];
+	}
+
+	/**
+	 * The key of record i at 'level' for sorting records (see RecordSorter), computed with one lookup of the record
+	 * @param i record index
+	 * @param level 1 for the last ID of the record, the record has at least 'level' IDs
+	 * @return 2*(the ID at 'level' from the end of record i), plus 1 if the record has more than 'level' IDs
+	 */
+	int sort_key(int i, int level){
+		long start = this.starts[i], end = this.starts[i+1];
+		int page = (int) (start >>> PAGE_BITS);
+		int offset = (int) (start & PAGE_MASK);
+		int length = (page == (int) (end >>> PAGE_BITS)) ? (int) (end - start) : this.page_ends[page] - offset;
+		int id = this.pages[page][offset + length - level];
+		return (length > level) ? 2*id+1 : 2*id;
+	}
+
+	/**
+	 * @param i record index
+	 * @return a copy of record i
+	 */
+	public int[] record(int i){
+		int length = this.length(i);
+		int[] record = new int[length];
+		System.arraycopy(this.ids(i), this.offset(i), record, 0, length);
+		return record;
+	}
+
+	/**
+	 * @return copies of all records, one array per record
+	 */
+	public int[][] toArrays(){
+		int[][] records = new int[this.size][];
+		for (int i=0; i<this.size; i++) records[i] = this.record(i);
+		return records;
+	}
+
+	/**
+	 * @return the total number of IDs of all records
+	 */
+	public long total_length(){
+		long total = 0;
+		for (int p=0; p<this.page_count; p++) total += this.page_ends[p];
+		return total;
+	}
+
+	/**
+	 * @return estimated heap memory (bytes) of the arrays of this RecordArray
+	 */
+	public long memory(){
+		long memory = 8L*this.starts.length + 8L*this.pages.length + 4L*this.page_ends.length;
+		for (int p=0; p<this.page_count; p++) memory += 16 + 4L*this.pages[p].length;
+		return memory;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+
+/**
+ * Collapse identical records (arrays of selector IDs in ascending order) into one record with a multiplicity.
+ * </br>Dense categorical data have many identical records once infrequent selectors are dropped, each distinct record
+ * is inserted into a tree once with its multiplicity as the weight instead of walking the same path many times.
+ * </br>Records are not moved: the first occurrence of a distinct record represents it, the weights are indexed by record.
+ */
+public class RecordDeduplicator {
+	private static final int EMPTY = -1;
+
+	/**
+	 * Count the occurrences of the distinct records
+	 * @param records
+	 * @return weights[r] is the number of records identical to record r if r is the first of them, 0 otherwise
+	 */
+	public static int[] weights(RecordArray records){
+		return weights(records, null);
+	}
+
+	/**
+	 * Count the occurrences of the distinct records in groups, records with different tags are never collapsed,
+	 * e.g. suffixes of records below different leaf nodes of a P3CTree
+	 * @param records
+	 * @param tags tags of records, null if all records are in one group
+	 * @return weights[r] is the number of records identical to record r (with the tag of r) if r is the first of them, 0 otherwise
+	 */
+	public static int[] weights(RecordArray records, int[] tags){
+		int size = records.size();
+		int[] weights = new int[size];
+
+		// open addressing table of representative records, at most half full
+		int capacity = Integer.highestOneBit(Math.max(2*size, 2) - 1) << 1;
+		int mask = capacity - 1;
+		int[] table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+
+		for (int r=0; r<size; r++){
+			int slot = (hash(records, r) + ((tags == null) ? 0 : 0x9e3779b9*tags[r])) & mask;
+			while (true){
+				int d = table[slot];
+				if (d == EMPTY){
+					table[slot] = r;
+					weights[r] = 1;
+					break;
+				}
+				if ((tags == null || tags[d] == tags[r]) && equals(records, d, r)){
+					weights[d]++;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * @param weights weights of records, as returned by weights(...)
+	 * @return the number of distinct records
+	 */
+	public static int distinct_count(int[] weights){
+		int count = 0;
+		for (int weight : weights) if (weight > 0) count++;
+		return count;
+	}
+
+	private static int hash(RecordArray records, int r){
+		int[] ids = records.ids(r);
+		int offset = records.offset(r), end = offset + records.length(r);
+		int h = 1;
+		for (int i=offset; i<end; i++) h = 31*h + ids[i];
+		// spread the bits, the table is indexed by the low bits
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+
+	private static boolean equals(RecordArray records, int r1, int r2){
+		int length = records.length(r1);
+		if (length != records.length(r2)) return false;
+		int[] ids1 = records.ids(r1), ids2 = records.ids(r2);
+		int offset1 = records.offset(r1), offset2 = records.offset(r2);
+		for (int j=0; j<length; j++){
+			if (ids1[offset1+j] != ids2[offset2+j]) return false;
+		}
+		return true;
+	}
+}
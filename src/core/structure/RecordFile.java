@@ -0,0 +1,210 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A temporary file of records of selector IDs, each record has an int tag (e.g. the index of the leaf node it belongs to).
+ * </br>Records are appended through a large buffer and written by a FileChannel, then read back sequentially
+ * after rewind(), possibly several times. A record is stored as: tag, length, IDs.
+ * </br>close() keeps the records but releases the buffer and the channel until the next rewind(), so that many files can
+ * be kept without holding a buffer and a file descriptor each.
+ */
+public class RecordFile {
+	public static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+
+	private final File file;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private final int buffer_bytes;
+	private boolean writing = true;
+
+	/**
+	 * Bytes written to the file, the position of the next read
+	 */
+	private long file_size = 0;
+	private long read_position = 0;
+
+	private int record_count = 0;
+	private long id_count = 0;
+
+	// The record read by next()
+	private int tag, length;
+	private int[] ids = new int[16];
+
+	/**
+	 * Create an empty temporary file of records
+	 * @param directory the directory of the file, null for the default temporary directory
+	 * @param buffer_bytes the size of the write (and read) buffer
+	 * @throws IOException
+	 */
+	public RecordFile(File directory, int buffer_bytes) throws IOException {
+		this.file = File.createTempFile("records", ".ids", directory);
+		this.file.deleteOnExit();
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.buffer_bytes = Math.max(buffer_bytes, 64);
+		this.buffer = ByteBuffer.allocate(this.buffer_bytes).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Append the record ids[offset, offset+length) with a tag
+	 * @param tag
+	 * @param ids
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	public void add(int tag, int[] ids, int offset, int length) throws IOException {
+		if (!this.writing) throw new IllegalStateException("Records can not be added after the file is read");
+		int bytes = 4*(length + 2);
+		if (this.buffer.remaining() < bytes){
+			this.flush();
+			if (this.buffer.capacity() < bytes) this.buffer = ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+		}
+		ByteBuffer buffer = this.buffer;
+		buffer.putInt(tag);
+		buffer.putInt(length);
+		for (int i=offset; i<offset+length; i++) buffer.putInt(ids[i]);
+		this.record_count++;
+		this.id_count += length;
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()){
+			this.file_size += this.channel.write(this.buffer, this.file_size);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * Finish adding records (if not yet) and restart next() from the first record
+	 * @throws IOException
+	 */
+	public void rewind() throws IOException {
+		if (this.writing){
+			this.flush();
+			this.writing = false;
+		}
+		if (this.channel == null){
+			this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+			this.buffer = ByteBuffer.allocate(this.buffer_bytes).order(ByteOrder.nativeOrder());
+		}
+		this.read_position = 0;
+		this.buffer.clear().limit(0);
+	}
+
+	/**
+	 * Read the next record, its tag, length and IDs are given by tag(), length() and ids()
+	 * @return false if there is no more record
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		if (!this.fill(8)) return false;
+		this.tag = this.buffer.getInt();
+		this.length = this.buffer.getInt();
+		if (!this.fill(4*this.length)) throw new IOException("Unexpected end of the file of records " + this.file);
+		if (this.ids.length < this.length) this.ids = new int[Math.max(this.length, 2*this.ids.length)];
+		this.buffer.asIntBuffer().get(this.ids, 0, this.length);
+		this.buffer.position(this.buffer.position() + 4*this.length);
+		return true;
+	}
+
+	/**
+	 * Make sure that at least 'bytes' bytes are in the buffer
+	 * @return false if the end of the file is reached before
+	 */
+	private boolean fill(int bytes) throws IOException {
+		if (this.buffer.remaining() >= bytes) return true;
+		if (this.buffer.capacity() < bytes){
+			ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+			buffer.put(this.buffer);
+			this.buffer = buffer;
+		}else this.buffer.compact();
+		while (this.buffer.position() < bytes && this.read_position < this.file_size){
+			int read = this.channel.read(this.buffer, this.read_position);
+			if (read < 0) break;
+			this.read_position += read;
+		}
+		this.buffer.flip();
+		return this.buffer.remaining() >= bytes;
+	}
+
+	public int tag(){
+		return this.tag;
+	}
+
+	public int length(){
+		return this.length;
+	}
+
+	/**
+	 * @return the IDs of the record read by next() at [0, length()), the array is reused by next()
+	 */
+	public int[] ids(){
+		return this.ids;
+	}
+
+	/**
+	 * @return the number of records
+	 */
+	public int size(){
+		return this.record_count;
+	}
+
+	/**
+	 * @return the total number of IDs of all records
+	 */
+	public long total_length(){
+		return this.id_count;
+	}
+
+	/**
+	 * @return bytes of the records written to the file
+	 */
+	public long getFileSize(){
+		return this.file_size;
+	}
+
+	/**
+	 * Finish adding records (if not yet), then release the buffer and close the channel, the records are kept in the file.
+	 * The file is reopened by rewind().
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (this.writing){
+			this.flush();
+			this.writing = false;
+		}
+		this.buffer = null;
+		if (this.channel != null){
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Close and delete the file
+	 */
+	public void release(){
+		this.buffer = null;
+		if (this.channel != null){
+			try{
+				this.channel.close();
+			}catch(IOException e){
+				// the file is deleted anyway
+			}
+			this.channel = null;
+		}
+		this.file.delete();
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.List;
+
+/**
+ * Worker thread for sorting indices of records in parallel (RecordSorter.sorted_order).
+ * </br>Disjoint ranges of the index array are claimed one by one via the shared 'globalIndex' and sorted by the worker's own sorter.
+ */
+class RecordSortThread extends Thread{
+	private RecordSorter sorter;
+	private List<int[]> tasks;
+	private IntHolder globalIndex;
+
+	public RecordSortThread(RecordSorter sorter, List<int[]> tasks, IntHolder globalIndex){
+		this.sorter = sorter;
+		this.tasks = tasks;
+		this.globalIndex = globalIndex;
+	}
+
+	// Overwrite the run method
+	public void run(){
+		int size = this.tasks.size();
+		int index;
+		while (true){
+			synchronized(globalIndex){
+				if(globalIndex.value >= size) break;
+				index = globalIndex.value;
+				globalIndex.value++;
+			}
+
+			int[] task = this.tasks.get(index);
+			this.sorter.sort(task[0], task[1], task[2]);
+		}
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sort indices of records (arrays of selector IDs in ascending order) in the order of inserting the records into a PPCTree:
+ * records are compared by their IDs from right to left (the most frequent selector first), a record before its extensions.
+ * In this order, a record shares the longest common path with the previous record, and new children of a node arrive in
+ * ascending order of their IDs, so a tree can be built in one sweep (see PPCTree.insert_sorted_records(...)).
+ * </br>The sort is an MSD radix sort: a range of indices is partitioned in place by the IDs at a level (American flag sort),
+ * then the partitions are sorted at the next level. Small ranges are sorted by insertion.
+ * </br>A sorter keeps working arrays whose size is proportional to the number of selectors, different sorters can work on
+ * disjoint ranges of the same index array concurrently.
+ */
+public class RecordSorter {
+	private static final int INSERTION_SORT_THRESHOLD = 24;
+
+	private final RecordArray records;
+	private final int[] order;
+
+	/**
+	 * order_keys[k] is the key of the record order[k] while its range is partitioned
+	 */
+	private final int[] order_keys;
+
+	/**
+	 * Per key counts and next positions, zero between partitions
+	 */
+	private final int[] key_counts, key_next;
+
+	/**
+	 * After partition(...): the distinct keys of the range in ascending order and the number of records of each key
+	 */
+	final int[] keys, sizes;
+
+	/**
+	 * @param records
+	 * @param order indices of records to sort
+	 * @param order_keys working array with the same length as 'order', can be shared by sorters of disjoint ranges
+	 * @param selector_count the number of selectors, IDs of records are in [0, selector_count)
+	 */
+	public RecordSorter(RecordArray records, int[] order, int[] order_keys, int selector_count){
+		int key_count = 2*selector_count;
+		this.records = records;
+		this.order = order;
+		this.order_keys = order_keys;
+		this.key_counts = new int[key_count];
+		this.key_next = new int[key_count];
+		this.keys = new int[key_count];
+		this.sizes = new int[key_count];
+	}
+
+	/**
+	 * Return the indices of all records in the order of inserting them into a PPCTree, empty records first
+	 * @param records
+	 * @param selector_count the number of selectors, IDs of records are in [0, selector_count)
+	 * @param thread_count the number of worker threads, the sort is sequential if it is 1
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public static int[] sorted_order(RecordArray records, int selector_count, int thread_count) throws InterruptedException{
+		return sorted_order(records, null, selector_count, thread_count);
+	}
+	
+	/**
+	 * Return the indices of the records with positive weights in the order of inserting them into a PPCTree, empty records first
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null to sort all records
+	 * @param selector_count the number of selectors, IDs of records are in [0, selector_count)
+	 * @param thread_count the number of worker threads, the sort is sequential if it is 1
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public static int[] sorted_order(RecordArray records, int[] weights, int selector_count, int thread_count) throws InterruptedException{
+		int[] order = initial_order(records, weights);
+		int size = order.length;
+		int begin = 0;
+		while (begin < size && records.length(order[begin]) == 0) begin++;
+
+		int[] order_keys = new int[size];
+		RecordSorter sorter = new RecordSorter(records, order, order_keys, selector_count);
+		if (thread_count <= 1 || size - begin <= INSERTION_SORT_THRESHOLD){
+			sorter.sort(begin, size, 1);
+			return order;
+		}
+
+		// Split the ranges larger than 'max_task_size' into partitions, each task is a {begin, end, level} range
+		int max_task_size = Math.max(INSERTION_SORT_THRESHOLD, (size - begin)/(4*thread_count));
+		List<int[]> tasks = new ArrayList<int[]>();
+		ArrayDeque<int[]> ranges = new ArrayDeque<int[]>();
+		ranges.push(new int[]{begin, size, 1});
+		while (!ranges.isEmpty()){
+			int[] range = ranges.pop();
+			if (range[1] - range[0] <= max_task_size){
+				tasks.add(range);
+				continue;
+			}
+			int key_count = sorter.partition(range[0], range[1], range[2]);
+			int position = range[0];
+			for (int i=0; i<key_count; i++){
+				if ((sorter.keys[i] & 1) == 1 && sorter.sizes[i] > 1){
+					ranges.push(new int[]{position, position + sorter.sizes[i], range[2]+1});
+				}
+				position += sorter.sizes[i];
+			}
+		}
+
+		IntHolder globalIndex = new IntHolder(0);
+		Thread[] threads = new Thread[thread_count];
+		for (int i=0; i<thread_count; i++){
+			RecordSorter worker_sorter = (i == 0) ? sorter : new RecordSorter(records, order, order_keys, selector_count);
+			threads[i] = new RecordSortThread(worker_sorter, tasks, globalIndex);
+			threads[i].start();
+		}
+		for (int i=0; i<thread_count; i++) threads[i].join();
+		return order;
+	}
+
+	/**
+	 * Return the indices of the records with positive weights (all records if 'weights' is null), empty records first
+	 * @param records
+	 * @param weights
+	 * @return
+	 */
+	static int[] initial_order(RecordArray records, int[] weights){
+		int size = records.size();
+		int[] order = new int[(weights == null) ? size : RecordDeduplicator.distinct_count(weights)];
+		int begin = 0;
+		for (int r=0; r<size; r++){
+			if (records.length(r) == 0 && (weights == null || weights[r] > 0)) order[begin++] = r;
+		}
+		for (int r=0, k=begin; r<size; r++){
+			if (records.length(r) > 0 && (weights == null || weights[r] > 0)) order[k++] = r;
+		}
+		return order;
+	}
+	
+	/**
+	 * Sort order[begin, end), the records of the range have the same IDs at the levels before 'level'
+	 * and at least 'level' IDs
+	 * @param begin
+	 * @param end
+	 * @param level 1 for the last ID of records
+	 */
+	public void sort(int begin, int end, int level){
+		if (end - begin < 2) return;
+		if (end - begin <= INSERTION_SORT_THRESHOLD){
+			this.insertion_sort(begin, end, level);
+			return;
+		}
+
+		// the partitions are sorted recursively, which overwrites the keys and sizes of this range
+		level = this.common_level(begin, end, level);
+		int key_count = this.partition(begin, end, level);
+		int[] keys = Arrays.copyOf(this.keys, key_count);
+		int[] sizes = Arrays.copyOf(this.sizes, key_count);
+		int position = begin;
+		for (int i=0; i<key_count; i++){
+			if ((keys[i] & 1) == 1) this.sort(position, position + sizes[i], level+1);
+			position += sizes[i];
+		}
+	}
+
+	/**
+	 * Partition order[begin, end) in place by the IDs of the records at 'level'. All records of the range have at least 'level' IDs.
+	 * </br>The key of a record is 2*ID+1 if the record has more than 'level' IDs, 2*ID otherwise, so in each partition of an ID
+	 * the records which end at 'level' come first. Only the distinct keys of the range are visited.
+	 * @param begin
+	 * @param end
+	 * @param level 1 for the last ID of records
+	 * @return the number of distinct keys, the keys in ascending order and the numbers of records are in 'keys' and 'sizes'
+	 */
+	int partition(int begin, int end, int level){
+		int[] order = this.order, order_keys = this.order_keys;
+		int[] counts = this.key_counts, next = this.key_next, keys = this.keys;
+
+		// count records per key, collect distinct keys
+		int key_count = 0;
+		for (int k=begin; k<end; k++){
+			int key = order_keys[k] = this.key(order[k], level);
+			if (counts[key]++ == 0) keys[key_count++] = key;
+		}
+		Arrays.sort(keys, 0, key_count);
+
+		int position = begin;
+		for (int i=0; i<key_count; i++){
+			next[keys[i]] = position;
+			position += counts[keys[i]];
+		}
+
+		// move each record into the range of its key
+		position = begin;
+		for (int i=0; i<key_count; i++){
+			int key = keys[i];
+			position += counts[key];
+			while (next[key] < position){
+				int record = order[next[key]];
+				int record_key = order_keys[next[key]];
+				while (record_key != key){
+					int target = next[record_key]++;
+					int displaced = order[target], displaced_key = order_keys[target];
+					order[target] = record;
+					order_keys[target] = record_key;
+					record = displaced;
+					record_key = displaced_key;
+				}
+				order_keys[next[key]] = key;
+				order[next[key]++] = record;
+			}
+		}
+
+		for (int i=0; i<key_count; i++){
+			this.sizes[i] = counts[keys[i]];
+			counts[keys[i]] = 0;
+		}
+		return key_count;
+	}
+
+	/**
+	 * Skip the levels from 'level' where all records of order[begin, end) have the same IDs, e.g. duplicated records.
+	 * Each record is read once sequentially instead of once per level, the scan stops as soon as no level can be skipped.
+	 * @return the last level from 'level' where all records of the range have the same IDs, or 'level'
+	 */
+	private int common_level(int begin, int end, int level){
+		RecordArray records = this.records;
+		int first = this.order[begin];
+		int[] first_ids = records.ids(first);
+		int first_length = records.length(first);
+		int first_position = records.offset(first) + first_length - level;
+		int common = first_length - level + 1;
+		for (int k=begin+1; k<end && common > 1; k++){
+			int r = this.order[k];
+			int[] ids = records.ids(r);
+			int length = records.length(r);
+			int position = records.offset(r) + length - level;
+			int n = Math.min(common, length - level + 1);
+			int j = 0;
+			while (j < n && ids[position-j] == first_ids[first_position-j]) j++;
+			common = j;
+		}
+		return level + Math.max(common, 1) - 1;
+	}
+
+	/**
+	 * @param record
+	 * @param level
+	 * @return 2*(the ID at 'level' of the record), plus 1 if the record has more than 'level' IDs
+	 */
+	private int key(int record, int level){
+		return this.records.sort_key(record, level);
+	}
+
+	private void insertion_sort(int begin, int end, int level){
+		int[] order = this.order;
+		for (int k=begin+1; k<end; k++){
+			int record = order[k];
+			int j = k-1;
+			while (j >= begin && this.compare(order[j], record, level) > 0){
+				order[j+1] = order[j];
+				j--;
+			}
+			order[j+1] = record;
+		}
+	}
+
+	/**
+	 * Compare two records by their IDs from 'level', from right to left
+	 */
+	private int compare(int record1, int record2, int level){
+		RecordArray records = this.records;
+		int length1 = records.length(record1), length2 = records.length(record2);
+		int[] ids1 = records.ids(record1), ids2 = records.ids(record2);
+		int position1 = records.offset(record1) + length1 - level;
+		int position2 = records.offset(record2) + length2 - level;
+		int n = Math.min(length1, length2) - level + 1;
+		for (int j=0; j<n; j++){
+			int id1 = ids1[position1-j], id2 = ids2[position2-j];
+			if (id1 != id2) return (id1 < id2) ? -1 : 1;
+		}
+		return length1 - length2;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+/**
+ * A sparse index on a long Nlist: the last pre-code and the last pos-code of every block of 'block size' consecutive nodes.
+ * Since both pre-codes and pos-codes ascend in an Nlist, join kernels use the index to skip whole blocks which cannot
+ * contain an ancestor or a descendant of the current node of the other operand, without reading their nodes.
+ * </br>An index is attached to a Nodelist or a CompressedNlist which must not be modified afterwards.
+ */
+public final class SkipIndex {
+	public static final int DEFAULT_BLOCK_SIZE = 128;
+
+	/**
+	 * block size = 1 << shift
+	 */
+	final int shift;
+	final int[] last_pre;
+	final int[] last_pos;
+
+	private SkipIndex(int shift, int[] last_pre, int[] last_pos){
+		this.shift = shift;
+		this.last_pre = last_pre;
+		this.last_pos = last_pos;
+	}
+
+	/**
+	 * Build the index of an Nlist
+	 * @param nlist
+	 * @param block_size a power of 2, at least 16
+	 * @return
+	 */
+	public static SkipIndex build(INlist nlist, int block_size){
+		if(block_size < 16 || Integer.bitCount(block_size) != 1)
+			throw new IllegalArgumentException("Block size of a skip index must be a power of 2 and at least 16: " + block_size);
+		if(nlist instanceof CompressedNlist) nlist = ((CompressedNlist) nlist).decompress();
+
+		int size = nlist.size();
+		int block_count = (size + block_size - 1)/block_size;
+		int[] last_pre = new int[block_count], last_pos = new int[block_count];
+		Node node = new Node();
+		for(int b=0; b<block_count; b++){
+			nlist.get(Math.min(size, (b+1)*block_size) - 1, node);
+			last_pre[b] = node.pre;
+			last_pos[b] = node.pos;
+		}
+		return new SkipIndex(Integer.numberOfTrailingZeros(block_size), last_pre, last_pos);
+	}
+
+	/**
+	 * Build and attach indexes to the Nlists (Nodelist or CompressedNlist) with at least 'min_size' nodes,
+	 * other Nlists are left unchanged
+	 * @param nlists
+	 * @param min_size
+	 * @param block_size a power of 2, at least 16
+	 * @return the number of bytes of the attached indexes
+	 */
+	public static long attach_all(INlist[] nlists, int min_size, int block_size){
+		long memory = 0;
+		for(INlist nlist : nlists){
+			if(nlist.size() < min_size) continue;
+			if(nlist.getClass() == Nodelist.class){
+				SkipIndex index = build(nlist, block_size);
+				((Nodelist) nlist).skip_index = index;
+				memory += index.memory();
+			}else if(nlist.getClass() == CompressedNlist.class){
+				SkipIndex index = build(nlist, block_size);
+				((CompressedNlist) nlist).skip_index = index;
+				memory += index.memory();
+			}
+		}
+		return memory;
+	}
+
+	/**
+	 * @param nlist
+	 * @return the index attached to 'nlist', null if there is none
+	 */
+	public static SkipIndex of(INlist nlist){
+		if(nlist.getClass() == Nodelist.class) return ((Nodelist) nlist).skip_index;
+		if(nlist.getClass() == CompressedNlist.class) return ((CompressedNlist) nlist).skip_index;
+		return null;
+	}
+
+	public int blockSize(){
+		return 1 << this.shift;
+	}
+
+	public int blockCount(){
+		return this.last_pre.length;
+	}
+
+	/**
+	 * @return estimated heap bytes of the index, including object and array headers
+	 */
+	public long memory(){
+		return 16 + 2*(16 + 4L*this.last_pre.length);
+	}
+
+	/**
+	 * @return the first block in [from_block, blockCount()) whose last pre-code is greater than 'pre', blockCount() if there is none
+	 */
+	int first_block_pre_greater(int from_block, int pre){
+		return first_greater(this.last_pre, from_block, pre);
+	}
+
+	/**
+	 * @return the first block in [from_block, blockCount()) whose last pos-code is greater than 'pos', blockCount() if there is none
+	 */
+	int first_block_pos_greater(int from_block, int pos){
+		return first_greater(this.last_pos, from_block, pos);
+	}
+
+	private static int first_greater(int[] a, int low, int key){
+		int high = a.length;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(a[mid] <= key) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.List;
+
+/**
+ * Worker thread for building subtrees of a P3CTree in parallel.
+ * </br>Leaf nodes in a window of the top part are claimed one by one via the shared 'globalIndex'.
+ * Depending on the phase, a worker either builds the subtree at a leaf node and counts its nodes,
+ * assigns PPCodes from a pre-computed offset and packs the nodes into an Nlist fragment,
+ * or merges the fragments into the Nlists of selectors belonging to its stripe.
+ */
+class SubtreeBuildThread extends Thread{
+	public static final int BUILD = 0;
+	public static final int EMIT = 1;
+	public static final int MERGE = 2;
+
+	private P3CTree tree;
+	private int phase;
+	private List<PPCNode> window_leaves;
+	private SubtreeWindow window;
+	private IntHolder globalIndex;
+	private int id;
+	private int thread_count;
+
+	public SubtreeBuildThread(P3CTree tree,
+							int phase,
+							List<PPCNode> window_leaves,
+							SubtreeWindow window,
+							IntHolder globalIndex,
+							int id,
+							int thread_count){
+		this.tree = tree;
+		this.phase = phase;
+		this.window_leaves = window_leaves;
+		this.window = window;
+		this.globalIndex = globalIndex;
+		this.id = id;
+		this.thread_count = thread_count;
+	}
+
+	// Overwrite the run method
+	public void run(){
+		if(this.phase == MERGE){
+			// Each worker updates only Nlists of selectors whose IDs are in its stripe,
+			// so Nlists are written without any synchronization
+			this.tree.merge_fragments(this.window_leaves, this.window, this.id, this.thread_count);
+			return;
+		}
+
+		int size = this.window_leaves.size();
+		int index;
+		while (true){
+			synchronized(globalIndex){
+				if(globalIndex.value >= size) break;
+				index = globalIndex.value;
+				globalIndex.value++;
+			}
+
+			PPCNode leaf_node = this.window_leaves.get(index);
+			if(this.phase == BUILD){
+				this.tree.buildSubtree(leaf_node);
+				this.window.node_counts[index] = this.tree.countSubtreeNodes(leaf_node);
+			}else{
+				this.window.fragments[index] = this.tree.emit_subtree_fragment(leaf_node,
+													this.window.start_pre_codes[index],
+													this.window.start_pos_codes[index],
+													this.window.node_counts[index]);
+			}
+		}
+	}
+}
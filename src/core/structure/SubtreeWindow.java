@@ -0,0 +1,47 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.List;
+
+/**
+ * Working state of a window of leaf nodes whose subtrees are built at the same time
+ * in the parallel mode of P3CTree. Index i in each array refers to the i-th leaf node of the window.
+ */
+class SubtreeWindow {
+	/**
+	 * The number of nodes of each subtree, including its root (the leaf node)
+	 */
+	public int[] node_counts;
+
+	/**
+	 * Pre-order code of the root of each subtree
+	 */
+	public int[] start_pre_codes;
+
+	/**
+	 * The smallest post-order code in each subtree
+	 */
+	public int[] start_pos_codes;
+
+	/**
+	 * Nodes of each subtree in pre-order, 4 integers per node: itemID, pre-code, pos-code, count
+	 */
+	public int[][] fragments;
+
+	/**
+	 * Ancestors (in the top part) which receive their post-order codes right after each subtree
+	 */
+	public List<List<PPCNode>> completed_ancestors;
+
+	public SubtreeWindow(int leaf_count, List<List<PPCNode>> completed_ancestors){
+		this.node_counts = new int[leaf_count];
+		this.start_pre_codes = new int[leaf_count];
+		this.start_pos_codes = new int[leaf_count];
+		this.fragments = new int[leaf_count][];
+		this.completed_ancestors = completed_ancestors;
+	}
+}
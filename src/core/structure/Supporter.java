@@ -5,11 +5,32 @@
 
 package core.structure;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
 
-public class Supporter {    
+/**
+ * Kernels on Nlists and other supporting functions.
+ * </br><b>Note:</b> kernels do not modify their input Nlists and use only local or thread-local scratch state,
+ * so they can be called concurrently on shared (read-only) Nlists.
+ */
+public class Supporter {
+	/**
+	 * Set the minimum ratio between the lengths of two Nlists (or ranges) for joining them by galloping
+	 * (exponential search) instead of the linear merge. Galloping is applied by the array kernels, i.e.
+	 * to Nlists of the same array-based layout.
+	 * @param ratio at least 2, Integer.MAX_VALUE to always use the linear merge
+	 */
+	public static void setGallopRatio(int ratio){
+		if(ratio >= 2) ArrayKernels.gallop_ratio = ratio;
+	}
+	
+	public static int getGallopRatio(){
+		return ArrayKernels.gallop_ratio;
+	}
+	
     /**
      * This function generates Descarte production from two sets of sub sets.
      * This power set does not include empty set
@@ -52,7 +73,7 @@ public class Supporter {
     }
      
     /**
-     * Calculate the nlist (Nodelist object) of itemsets common|i1|i2 from two Nlists of 2 itemsets common|i1, common|i2. (i1 < i2, common can be empty)
+     * Calculate the nlist (in the layout of nlist1) of itemsets common|i1|i2 from two Nlists of 2 itemsets common|i1, common|i2. (i1 < i2, common can be empty)
      * </br>Or calculate the Nlist of itemset [itemset][item], e.g. abcde, from 2 Nlists of itemset abcd and item e, assume that a < b < c < d < e
      * </br> <b>Note: NOT commutative</b> between nlist1 and nlist2, and just support CONJUNCTION ('and' operator)
      * @param nlist1 of itemset common|i1 or [itemset]
@@ -63,9 +84,77 @@ public class Supporter {
     	int size1 = nlist1.size(), size2 = nlist2.size();
     	if(size1 == 0 || size2 == 0) return new NodelistEmpty();
 		
-    	int index1=0, index2=0, parent_node_index = -1, parent_node_pre = -1;
-    	Nodelist nodelist = new Nodelist(size1);
-		Node i1_node = new Node(), i2_node = new Node();
+    	// the result follows the layout of nlist1
+    	INlist nodelist = NlistLayout.of(nlist1).create(size1);
+    	join(nlist1, nlist2, nodelist, new Node(), new Node());
+    	
+    	//nodelist.shrink();	// for memory save
+    	
+    	return nodelist;
+    }
+    
+    /**
+     * The kernel of create_nlist(INlist nlist1, INlist nlist2), the nodes of the result Nlist are added to 'nodelist'.
+     * </br>'i1_node' and 'i2_node' are working objects provided by the caller, so that no object is allocated
+     * if 'nodelist' has enough capacity (at most nlist1.size() nodes are added).
+     * @param nlist1 of itemset common|i1 or [itemset], must not be empty
+     * @param nlist2 of itemset common|i2 or [item], must not be empty
+     * @param nodelist an empty Nlist to receive the nodes of the result Nlist
+     * @param i1_node
+     * @param i2_node
+     */
+    static void join(INlist nlist1, INlist nlist2, INlist nodelist, Node i1_node, Node i2_node){
+    	join(nlist1, 0, nlist1.size(), nlist2, 0, nlist2.size(), nodelist, i1_node, i2_node);
+    }
+    
+    /**
+     * The kernel of create_nlist(INlist nlist1, INlist nlist2) on the ranges [from1, to1) of nlist1 and [from2, to2) of nlist2,
+     * the nodes of the result Nlist are added to 'nodelist'.
+     * @param nlist1
+     * @param from1
+     * @param to1 must be greater than from1
+     * @param nlist2
+     * @param from2
+     * @param to2 must be greater than from2
+     * @param nodelist
+     * @param i1_node
+     * @param i2_node
+     */
+    static void join(INlist nlist1, int from1, int to1, INlist nlist2, int from2, int to2, INlist nodelist, Node i1_node, Node i2_node){
+    	// exact class checks, so that each call site of the array kernels sees only one receiver type
+    	Class<?> type = nlist1.getClass();
+    	boolean cursors = type == CompressedNlist.class || nlist2.getClass() == CompressedNlist.class;
+    	if(type == nlist2.getClass() && type == nodelist.getClass()){
+    		if(type == Nodelist.class){
+    			if(!ArrayKernels.skip((Nodelist) nlist1, to1-from1, (Nodelist) nlist2, to2-from2)){
+    				ArrayKernels.join((Nodelist) nlist1, from1, to1, (Nodelist) nlist2, from2, to2, (Nodelist) nodelist);
+    				return;
+    			}
+    			cursors = true;
+    		}
+    		if(type == PackedNodelist.class){
+    			ArrayKernels.join((PackedNodelist) nlist1, from1, to1, (PackedNodelist) nlist2, from2, to2, (PackedNodelist) nodelist);
+    			return;
+    		}
+    	}
+    	if(cursors){
+    		NlistScratch scratch = NlistScratch.get();
+    		if(scratch.cursor1.attach(nlist1) && scratch.cursor2.attach(nlist2)){
+    			BlockKernels.join(scratch.cursor1, from1, to1, scratch.cursor2, from2, to2, nodelist);
+    			scratch.cursor1.detach();
+    			scratch.cursor2.detach();
+    			return;
+    		}
+    	}
+    	join_generic(nlist1, from1, to1, nlist2, from2, to2, nodelist, i1_node, i2_node);
+    }
+    
+    /**
+     * The generic kernel of join(...) for any implementation of INlist, nodes are read by INlist.get(index, Node)
+     */
+    private static void join_generic(INlist nlist1, int from1, int to1, INlist nlist2, int from2, int to2, INlist nodelist, Node i1_node, Node i2_node){
+    	int size1 = to1, size2 = to2;
+    	int index1=from1, index2=from2, parent_node_index = nodelist.size()-1, parent_node_pre = -1;
 		nlist1.get(index1, i1_node);
 		nlist2.get(index2, i2_node);
 		
@@ -102,25 +191,391 @@ public class Supporter {
 				else break;
     		}
     	}
+    }
+    
+    /**
+     * Calculate only the support count of itemset common|i1|i2 from two Nlists of 2 itemsets common|i1, common|i2,
+     * the same as create_nlist(nlist1, nlist2).supportCount() but the result Nlist is not materialized.
+     * </br>The support count is the sum of counts of nodes in nlist1 which are descendants of nodes in nlist2.
+     * </br> <b>Note: NOT commutative</b> between nlist1 and nlist2
+     * @param nlist1 of itemset common|i1 or [itemset]
+     * @param nlist2 of itemset common|i2 or [item]
+     * @param i1_node working object provided by the caller
+     * @param i2_node working object provided by the caller
+     * @return support count of itemset common|i1|i2 or [itemset][item]
+     */
+    public static int support_count(INlist nlist1, INlist nlist2, Node i1_node, Node i2_node){
+    	return support_count(nlist1, 0, nlist1.size(), nlist2, 0, nlist2.size(), i1_node, i2_node);
+    }
+    
+    /**
+     * Calculate only the support count of itemset common|i1|i2 from the ranges [from1, to1) of nlist1 and [from2, to2) of nlist2
+     * @see #support_count(INlist, INlist, Node, Node)
+     */
+    public static int support_count(INlist nlist1, int from1, int to1, INlist nlist2, int from2, int to2, Node i1_node, Node i2_node){
+    	Class<?> type = nlist1.getClass();
+    	boolean cursors = type == CompressedNlist.class || nlist2.getClass() == CompressedNlist.class;
+    	if(type == nlist2.getClass()){
+    		if(type == Nodelist.class){
+    			if(!ArrayKernels.skip((Nodelist) nlist1, to1-from1, (Nodelist) nlist2, to2-from2))
+    				return ArrayKernels.support_count((Nodelist) nlist1, from1, to1, (Nodelist) nlist2, from2, to2);
+    			cursors = true;
+    		}
+    		if(type == PackedNodelist.class)
+    			return ArrayKernels.support_count((PackedNodelist) nlist1, from1, to1, (PackedNodelist) nlist2, from2, to2);
+    	}
+    	if(cursors){
+    		NlistScratch scratch = NlistScratch.get();
+    		if(scratch.cursor1.attach(nlist1) && scratch.cursor2.attach(nlist2)){
+    			int support_count = BlockKernels.support_count(scratch.cursor1, from1, to1, scratch.cursor2, from2, to2);
+    			scratch.cursor1.detach();
+    			scratch.cursor2.detach();
+    			return support_count;
+    		}
+    	}
+    	return support_count_generic(nlist1, from1, to1, nlist2, from2, to2, i1_node, i2_node);
+    }
+    
+    /**
+     * The generic kernel of support_count(...) for any implementation of INlist, nodes are read by INlist.get(index, Node)
+     */
+    private static int support_count_generic(INlist nlist1, int from1, int to1, INlist nlist2, int from2, int to2, Node i1_node, Node i2_node){
+    	int size1 = to1, size2 = to2;
+    	if(from1 >= size1 || from2 >= size2) return 0;
     	
-    	//nodelist.shrink();	// for memory save
+    	int index1=from1, index2=from2, support_count = 0;
+		nlist1.get(index1, i1_node);
+		nlist2.get(index2, i2_node);
+		
+    	while(true){
+    		if(i1_node.pre > i2_node.pre){
+    			if(i1_node.pos < i2_node.pos){
+    				// i1_node is a descendant of i2_node, accumulate its count
+    				support_count += i1_node.count;
+    				index1++;
+    				if(index1 < size1) nlist1.get(index1, i1_node);
+    				else break;
+    			}else{
+    				// all nodes from i1_node in nlist1 are NOT descendant of i2_node
+    				index2++;
+    				if(index2 < size2) nlist2.get(index2, i2_node);
+    				else break;
+    			}
+    		}else{
+    			// i2_node is not an ancestor of i1_node
+    			index1++;
+    			if(index1 < size1) nlist1.get(index1, i1_node);
+				else break;
+    		}
+    	}
     	
+    	return support_count;
+    }
+    
+    /**
+     * Calculate the support count of an itemset from the Nlists of its single items (selectors).
+     * </br>Intermediate Nlists are written into thread-local scratch buffers and the last join only
+     * accumulates counts, so no object is allocated in the steady state. The method is thread-safe.
+     * @param selector_nlists Nlists of selectors, one at i-th index is Nlist of selector with ID i
+     * @param itemset selector IDs in ascending order
+     * @return support count of the itemset
+     */
+    public static int support_count(INlist[] selector_nlists, int[] itemset){
+    	INlist nlist = selector_nlists[itemset[0]];
+    	if(itemset.length == 1) return nlist.supportCount();
+    	
+    	NlistScratch scratch = NlistScratch.get();
+    	int last = itemset.length - 1;
+    	for(int i = 1; i < last; i++){
+    		if(nlist.size() == 0) return 0;
+    		INlist nlist2 = selector_nlists[itemset[i]];
+    		if(nlist2.size() == 0) return 0;
+    		
+    		// alternate between the two buffers, the input of a join is the output of the previous join
+    		Nodelist buffer = scratch.buffers[i & 1];
+    		buffer.reset(nlist.size());
+    		join(nlist, nlist2, buffer, scratch.i1_node, scratch.i2_node);
+    		nlist = buffer;
+    	}
+    	
+    	return support_count(nlist, selector_nlists[itemset[last]], scratch.i1_node, scratch.i2_node);
+    }
+    
+    /**
+     * Return the position of the first node in 'nlist' whose pre-order code is not less than 'pre' (nodes are in ascending order of pre-order codes)
+     * @param nlist
+     * @param pre
+     * @param node working object
+     * @return
+     */
+    public static int lower_bound(INlist nlist, int pre, Node node){
+    	if(nlist instanceof CompressedNlist) return ((CompressedNlist) nlist).lower_bound(pre);
+    	
+    	int low = 0, high = nlist.size();
+    	while(low < high){
+    		int mid = (low + high) >>> 1;
+    		nlist.get(mid, node);
+    		if(node.pre < pre) low = mid + 1;
+    		else high = mid;
+    	}
+    	return low;
+    }
+    
+    /**
+     * Select pre-order codes to split Nlists into about 'partition_count' partitions with balanced sizes of 'nlist'.
+     * Split points are chosen among 'boundaries' (pre-order codes of the children of the root),
+     * so that no ancestor-descendant pair crosses two partitions.
+     * @param nlist the Nlist whose size is balanced
+     * @param boundaries pre-order codes of the children of the root, in ascending order
+     * @param partition_count
+     * @return split pre-order codes in ascending order, partition i covers [splits[i-1], splits[i]), the first and the last partitions are open
+     */
+    public static int[] partition_pre_codes(INlist nlist, int[] boundaries, int partition_count){
+    	int size = nlist.size();
+    	int[] splits = new int[Math.max(0, partition_count-1)];
+    	int count = 0;
+    	if(size == 0) return splits;
+    	
+    	Node node = new Node();
+    	for(int j=1; j<partition_count; j++){
+    		nlist.get((int)((long)j*size/partition_count), node);
+    		// the largest boundary which is not greater than the pre-order code of the node
+    		int b = Arrays.binarySearch(boundaries, node.pre);
+    		if(b < 0) b = -b - 2;
+    		if(b < 0) continue;
+    		if(count == 0 || splits[count-1] < boundaries[b]) splits[count++] = boundaries[b];
+    	}
+    	return Arrays.copyOf(splits, count);
+    }
+    
+    /**
+     * Calculate the support count of an itemset from the nodes of Nlists of its single items
+     * whose pre-order codes are in [low_pre, high_pre). 'low_pre' and 'high_pre' must be pre-order codes of children of the root
+     * (or the open ends), so the result is the support count contributed by the subtrees of the root children in the range.
+     * </br>Only thread-local scratch state is used, different ranges can be calculated by different threads concurrently.
+     * @param selector_nlists Nlists of selectors, one at i-th index is Nlist of selector with ID i
+     * @param itemset selector IDs in ascending order
+     * @param low_pre
+     * @param high_pre
+     * @return
+     */
+    public static int support_count(INlist[] selector_nlists, int[] itemset, int low_pre, int high_pre){
+    	NlistScratch scratch = NlistScratch.get();
+    	Node i1_node = scratch.i1_node, i2_node = scratch.i2_node;
+    	INlist nlist = selector_nlists[itemset[0]];
+    	int from1 = lower_bound(nlist, low_pre, i1_node), to1 = lower_bound(nlist, high_pre, i1_node);
+    	if(itemset.length == 1){
+    		int support_count = 0;
+    		for(int i=from1; i<to1; i++){
+    			nlist.get(i, i1_node);
+    			support_count += i1_node.count;
+    		}
+    		return support_count;
+    	}
+    	
+    	int last = itemset.length - 1;
+    	for(int i = 1; i < last; i++){
+    		if(from1 >= to1) return 0;
+    		INlist nlist2 = selector_nlists[itemset[i]];
+    		int from2 = lower_bound(nlist2, low_pre, i2_node), to2 = lower_bound(nlist2, high_pre, i2_node);
+    		if(from2 >= to2) return 0;
+    		
+    		// alternate between the two buffers, the input of a join is the output of the previous join
+    		Nodelist buffer = scratch.buffers[i & 1];
+    		buffer.reset(to1 - from1);
+    		join(nlist, from1, to1, nlist2, from2, to2, buffer, i1_node, i2_node);
+    		nlist = buffer;
+    		from1 = 0;
+    		to1 = buffer.size();
+    	}
+    	
+    	INlist nlist2 = selector_nlists[itemset[last]];
+    	int from2 = lower_bound(nlist2, low_pre, i2_node), to2 = lower_bound(nlist2, high_pre, i2_node);
+    	return support_count(nlist, from1, to1, nlist2, from2, to2, i1_node, i2_node);
+    }
+    
+    /**
+     * Create the Nlist of an itemset from the nodes of Nlists of its single items whose pre-order codes are in [low_pre, high_pre).
+     * 'low_pre' and 'high_pre' must be pre-order codes of children of the root (or the open ends).
+     * </br>Nodes of the result are appended to 'nodelist', so Nlists of consecutive ranges can be concatenated.
+     * @param selector_nlists Nlists of selectors, one at i-th index is Nlist of selector with ID i
+     * @param itemset selector IDs in ascending order, at least 2 selectors
+     * @param low_pre
+     * @param high_pre
+     * @param nodelist
+     */
+    public static void create_nlist(INlist[] selector_nlists, int[] itemset, int low_pre, int high_pre, INlist nodelist){
+    	Node i1_node = new Node(), i2_node = new Node();
+    	INlist nlist = selector_nlists[itemset[0]];
+    	int from1 = lower_bound(nlist, low_pre, i1_node), to1 = lower_bound(nlist, high_pre, i1_node);
+    	
+    	for(int i = 1; i < itemset.length; i++){
+    		if(from1 >= to1) return;
+    		INlist nlist2 = selector_nlists[itemset[i]];
+    		int from2 = lower_bound(nlist2, low_pre, i2_node), to2 = lower_bound(nlist2, high_pre, i2_node);
+    		if(from2 >= to2) return;
+    		
+    		INlist result = (i == itemset.length-1) ? nodelist : NlistLayout.of(nlist).create(to1 - from1);
+    		join(nlist, from1, to1, nlist2, from2, to2, result, i1_node, i2_node);
+    		if(result == nodelist) return;
+    		nlist = result;
+    		from1 = 0;
+    		to1 = result.size();
+    	}
+    }
+    
+    /**
+     * Concatenate Nlists of consecutive partitions into one Nlist
+     * @param parts Nlists in ascending order of their pre-order code ranges
+     * @return
+     */
+    public static INlist concatenate(INlist[] parts){
+    	int size = 0;
+    	for(INlist part : parts) size += part.size();
+    	if(size == 0) return new NodelistEmpty();
+    	
+    	INlist nodelist = NlistLayout.of(parts[0]).create(size);
+    	Node node = new Node();
+    	for(INlist part : parts){
+    		for(int i=0; i<part.size(); i++){
+    			part.get(i, node);
+    			nodelist.add(node);
+    		}
+    	}
     	return nodelist;
     }
     
+    /**
+     * Calculate the support counts of a batch of itemsets from the Nlists of their single items (selectors).
+     * </br>Itemsets are evaluated in lexicographic order, which is a depth-first walk on the prefix trie of the batch,
+     * so the Nlist of a prefix shared by consecutive itemsets is joined only once. The Nlist of the prefix of length k
+     * is kept in the k-th thread-local scratch buffer and overwritten when the walk goes to another branch.
+     * The last join of each itemset only accumulates counts.
+     * @param selector_nlists Nlists of selectors, one at i-th index is Nlist of selector with ID i
+     * @param itemsets each itemset is an array of selector IDs in ascending order
+     * @return support counts, the i-th one is of the i-th itemset
+     */
+    public static int[] support_counts(INlist[] selector_nlists, int[][] itemsets){
+    	int[] supports = new int[itemsets.length];
+    	int[] order = lexicographic_order(itemsets, false);
+    	support_counts(selector_nlists, itemsets, order, 0, order.length, supports);
+    	return supports;
+    }
+    
+    /**
+     * Return the indexes of itemsets in the lexicographic order of the itemsets
+     * @param itemsets each itemset is an array of selector IDs in ascending order
+     * @param parallel whether to sort in parallel (with the common fork-join pool)
+     * @return
+     */
+    public static int[] lexicographic_order(final int[][] itemsets, boolean parallel){
+    	Integer[] order = new Integer[itemsets.length];
+    	for(int i=0; i<itemsets.length; i++) order[i] = i;
+    	Comparator<Integer> comparator = new Comparator<Integer>(){
+			public int compare(Integer i1, Integer i2) {
+				int[] itemset1 = itemsets[i1], itemset2 = itemsets[i2];
+				int length = Math.min(itemset1.length, itemset2.length);
+				for(int i=0; i<length; i++){
+					if(itemset1[i] != itemset2[i]) return (itemset1[i] < itemset2[i]) ? -1 : 1;
+				}
+				return itemset1.length - itemset2.length;
+			}
+    	};
+    	if(parallel) Arrays.parallelSort(order, comparator);
+    	else Arrays.sort(order, comparator);
+    	
+    	int[] result = new int[itemsets.length];
+    	for(int i=0; i<itemsets.length; i++) result[i] = order[i];
+    	return result;
+    }
+    
+    /**
+     * Calculate the support counts of itemsets whose indexes are order[from..to), the indexes must be in the lexicographic order of itemsets.
+     * </br>This is a depth-first walk on the prefix trie of the itemsets, so the Nlist of a prefix shared by consecutive itemsets is joined only once.
+     * The Nlist of the prefix of length k is kept in the k-th thread-local scratch buffer and overwritten when the walk goes to another branch.
+     * The last join of each itemset only accumulates counts.
+     * </br>Only thread-local scratch state is used, different ranges can be calculated by different threads concurrently.
+     * @param selector_nlists Nlists of selectors, one at i-th index is Nlist of selector with ID i
+     * @param itemsets each itemset is an array of selector IDs in ascending order
+     * @param order indexes of itemsets in the lexicographic order
+     * @param from
+     * @param to
+     * @param supports output parameter, the support count of the i-th itemset is set to supports[i]
+     */
+    public static void support_counts(INlist[] selector_nlists, int[][] itemsets, int[] order, int from, int to, int[] supports){
+    	NlistScratch scratch = NlistScratch.get();
+    	Node i1_node = scratch.i1_node, i2_node = scratch.i2_node;
+    	int[] previous = null;
+    	int previous_support = 0;
+    	// Nlists of prefixes of length 2..valid_length of 'previous' are in the depth buffers
+    	int valid_length = 0;
+    	
+    	for(int k=from; k<to; k++){
+    		int index = order[k];
+    		int[] itemset = itemsets[index];
+    		int length = itemset.length;
+    		
+    		// the length of the common prefix with the previous itemset
+    		int common = 0;
+    		if(previous != null){
+    			int max_common = Math.min(previous.length, length);
+    			while(common < max_common && previous[common] == itemset[common]) common++;
+    			if(common == length && length == previous.length){
+    				// duplicate itemset
+    				supports[index] = previous_support;
+    				continue;
+    			}
+    		}
+    		previous = itemset;
+    		
+    		if(length == 1){
+    			supports[index] = previous_support = selector_nlists[itemset[0]].supportCount();
+    			valid_length = 0;
+    			continue;
+    		}
+    		
+    		// reuse the Nlists of prefixes shared with the previous itemset
+    		int prefix_length = Math.min(Math.min(common, valid_length), length-1);
+    		if(prefix_length < 1) prefix_length = 1;
+    		INlist nlist = (prefix_length == 1) ? selector_nlists[itemset[0]] : scratch.depth_buffer(prefix_length);
+    		
+    		// extend the prefix to the length-1 prefix
+    		for(; prefix_length < length-1 && nlist.size() > 0; prefix_length++){
+    			INlist nlist2 = selector_nlists[itemset[prefix_length]];
+    			Nodelist buffer = scratch.depth_buffer(prefix_length+1);
+    			buffer.reset(nlist.size());
+    			if(nlist2.size() > 0) join(nlist, nlist2, buffer, i1_node, i2_node);
+    			nlist = buffer;
+    		}
+    		valid_length = prefix_length;
+    		
+    		supports[index] = previous_support = (nlist.size() == 0) ? 0 :
+    			support_count(nlist, selector_nlists[itemset[length-1]], i1_node, i2_node);
+    	}
+    }
+    
     /**
      * CONJUNCTION ('and' operator) between two boolean expressions each of which is represented by an Nlist.
      * </br> The operator is commutative between nlist1 and nlist2
      * @param nlist1 Nlist of boolean expression 1
      * @param nlist2 Nlist of boolean expression 2
-     * @return The Nlist (Nodelist object) of the result 'And' boolean expression
+     * @return The Nlist (in the layout of nlist1) of the result 'And' boolean expression
      */
     public static INlist create_nlist_conj(INlist nlist1, INlist nlist2){
     	int size1 = nlist1.size(), size2 = nlist2.size();
     	if(size1 == 0 || size2 == 0) return new NodelistEmpty();
+    	// compressed operands are decoded once instead of once per node access
+    	if(nlist1 instanceof CompressedNlist) nlist1 = ((CompressedNlist) nlist1).decompress();
+    	if(nlist2 instanceof CompressedNlist) nlist2 = ((CompressedNlist) nlist2).decompress();
+		
+		INlist nodelist = NlistLayout.of(nlist1).create((size2 > size1) ? size2 : size1);
+		if(nlist1.getClass() == Nodelist.class && nlist2.getClass() == Nodelist.class){
+			ArrayKernels.conj((Nodelist) nlist1, (Nodelist) nlist2, (Nodelist) nodelist);
+			nodelist.shrink();	// for memory save
+			return nodelist;
+		}
 		
     	int index1=0, index2=0;
-		Nodelist nodelist = new Nodelist((size2 > size1) ? size2 : size1);
 		Node i1_node = new Node(), i2_node = new Node();
 		nlist1.get(index1, i1_node);
 		nlist2.get(index2, i2_node);
@@ -190,15 +645,23 @@ public class Supporter {
      * </br> The operator is commutative between nlist1 and nlist2
      * @param nlist1 Nlist of boolean expression 1
      * @param nlist2 Nlist of boolean expression 2
-     * @return The Nlist (Nodelist object) of the result 'Or' boolean expression
+     * @return The Nlist (in the layout of nlist1) of the result 'Or' boolean expression
      */
     public static INlist create_nlist_disj(INlist nlist1, INlist nlist2){
     	int size1 = nlist1.size(), size2 = nlist2.size();
     	if (size1 == 0) return nlist2;
     	if (size2 == 0) return nlist1;
+    	// compressed operands are decoded once instead of once per node access
+    	if(nlist1 instanceof CompressedNlist) nlist1 = ((CompressedNlist) nlist1).decompress();
+    	if(nlist2 instanceof CompressedNlist) nlist2 = ((CompressedNlist) nlist2).decompress();
+		
+		INlist nodelist = NlistLayout.of(nlist1).create(size1+size2);
+		if(nlist1.getClass() == Nodelist.class && nlist2.getClass() == Nodelist.class){
+			if(!ArrayKernels.disj((Nodelist) nlist1, (Nodelist) nlist2, (Nodelist) nodelist)) nodelist.shrink();	// for memory save
+			return nodelist;
+		}
 		
     	int index1=0, index2=0, ancestor_node_pre=-1;
-		Nodelist nodelist = new Nodelist(size1+size2);
 		Node i1_node = new Node(), i2_node = new Node();
 		nlist1.get(index1, i1_node);
 		nlist2.get(index2, i2_node);
@@ -0,0 +1,185 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package core.structure;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import core.prepr.IntegerArray;
+
+/**
+ * Build the Nlists of selectors from records sorted by RecordSorter without materializing a PPCTree.
+ * </br>In the sorted order, the nodes of the implicit PPCTree are met in pre-order: a record shares the path of the previous
+ * record up to their common part, the rest of the record are new nodes. A node is completed (its post-order code and count
+ * are known) as soon as a record leaves its path, so nodes are completed in post-order. Only the path of the current record is
+ * kept in a stack as deep as the longest record.
+ * </br>Two nodes of the same selector are never on one path, so their post-order is their pre-order and the Nlist of each
+ * selector is appended in ascending order of pre-order codes, the same Nlists as PPCTree.create_Nlist_for_selectors_arr(...).
+ */
+public class TreelessNlistBuilder {
+	private static final float allocate_rate = 1.75f;
+
+	/**
+	 * The path of the current record: selector IDs, pre-order codes and counts of its nodes from the root
+	 */
+	private int[] path_ids = new int[16];
+	private int[] path_pres = new int[16];
+	private int[] path_counts = new int[16];
+	private int path_length = 0;
+
+	private int currentPreCode = 0;
+	private int currentPosCode = 0;
+	private long node_count = 0;
+
+	private int[] root_child_pre_codes;
+
+	public TreelessNlistBuilder(){}
+
+	/**
+	 * Create an Nlist (using Nodelist implementation) for each selector from the records in the sorted order
+	 * @param records
+	 * @param order indices of the records in the order of RecordSorter.sorted_order(...)
+	 * @param selector_count the number of selectors, IDs of records are in [0, selector_count)
+	 * @return array of Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(RecordArray records, int[] order, int selector_count){
+		return this.create_Nlist_for_selectors_arr(records, null, order, selector_count);
+	}
+
+	/**
+	 * Create an Nlist (using Nodelist implementation) for each selector from the weighted records in the sorted order
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the order of RecordSorter.sorted_order(...)
+	 * @param selector_count the number of selectors, IDs of records are in [0, selector_count)
+	 * @return array of Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(RecordArray records, int[] weights, int[] order, int selector_count){
+		INlist[] selector_nlists = new INlist[selector_count];
+		for(int i=0; i<selector_count; i++){
+			selector_nlists[i] = new Nodelist();
+		}
+
+		this.emit_nlists(records, weights, order, selector_nlists);
+
+		for(INlist nlist : selector_nlists) nlist.shrink();
+		return selector_nlists;
+	}
+
+	/**
+	 * Create an Nlist for each selector from the records in the sorted order, the nodes are kept off-heap in 'store'.
+	 * @param records
+	 * @param order indices of the records in the order of RecordSorter.sorted_order(...)
+	 * @param store an unsealed store for the selectors of the records, it is sealed afterwards
+	 * @return array of (read-only) Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(RecordArray records, int[] order, OffHeapNlistStore store){
+		return this.create_Nlist_for_selectors_arr(records, null, order, store);
+	}
+
+	/**
+	 * Create an Nlist for each selector from the weighted records in the sorted order, the nodes are kept off-heap in 'store'.
+	 * @param records
+	 * @param weights weights of records (see RecordDeduplicator), null if each record counts once
+	 * @param order indices of the records in the order of RecordSorter.sorted_order(...)
+	 * @param store an unsealed store for the selectors of the records, it is sealed afterwards
+	 * @return array of (read-only) Nlists of selectors
+	 */
+	public INlist[] create_Nlist_for_selectors_arr(RecordArray records, int[] weights, int[] order, OffHeapNlistStore store){
+		this.emit_nlists(records, weights, order, store.getAppenders());
+		return store.seal();
+	}
+
+	private void emit_nlists(RecordArray records, int[] weights, int[] order, INlist[] selector_nlists){
+		// the root node (without a selector associated) has the pre-order code 0
+		this.currentPreCode = 1;
+		this.currentPosCode = 0;
+		this.path_length = 0;
+		this.node_count = 1;
+		IntegerArray root_children = new IntegerArray();
+
+		for(int k=0; k<order.length; k++){
+			int r = order[k];
+			int length = records.length(r);
+			if(length == 0) continue;
+			int weight = (weights == null) ? 1 : weights[r];
+			int[] ids = records.ids(r);
+			int first = records.offset(r) + length - 1;
+
+			// the common part with the path of the previous record
+			int max_common = Math.min(length, this.path_length);
+			int common = 0;
+			while(common < max_common && this.path_ids[common] == ids[first-common]) common++;
+
+			// nodes below the common part are completed
+			this.complete_nodes(common, selector_nlists);
+			for(int d=0; d<common; d++) this.path_counts[d] += weight;
+
+			// the rest of the record are new nodes
+			this.ensure_path_capacity(length);
+			for(int d=common; d<length; d++){
+				this.path_ids[d] = ids[first-d];
+				this.path_pres[d] = this.currentPreCode++;
+				this.path_counts[d] = weight;
+				if(d == 0) root_children.add(this.path_pres[d]);
+			}
+			this.node_count += length - common;
+			this.path_length = length;
+		}
+		this.complete_nodes(0, selector_nlists);
+
+		// the root node gets the last post-order code
+		this.currentPosCode++;
+		this.root_child_pre_codes = root_children.toArray();
+	}
+
+	/**
+	 * Pop the nodes of the path from its end to 'depth', assign their post-order codes and add them to the Nlists
+	 */
+	private void complete_nodes(int depth, INlist[] selector_nlists){
+		for(int d=this.path_length-1; d>=depth; d--){
+			selector_nlists[this.path_ids[d]].add(this.path_pres[d], this.currentPosCode++, this.path_counts[d]);
+		}
+		this.path_length = Math.min(this.path_length, depth);
+	}
+
+	private void ensure_path_capacity(int capacity){
+		if(capacity <= this.path_ids.length) return;
+		int new_capacity = Math.max(capacity, (int)(this.path_ids.length*allocate_rate));
+		this.path_ids = Arrays.copyOf(this.path_ids, new_capacity);
+		this.path_pres = Arrays.copyOf(this.path_pres, new_capacity);
+		this.path_counts = Arrays.copyOf(this.path_counts, new_capacity);
+	}
+
+	/**
+	 * Create a map from string representation of each selector ID to the corresponding Nlist
+	 * @param selector_nlists
+	 * @return
+	 */
+	public Map<String, INlist> create_selector_Nlist_map(INlist[] selector_nlists){
+		Map<String, INlist> selector_nlist_map = new HashMap<String, INlist>(selector_nlists.length);
+		for(int i=0; i<selector_nlists.length; i++){
+			selector_nlist_map.put("["+i+"]", selector_nlists[i]);
+		}
+		return selector_nlist_map;
+	}
+
+	/**
+	 * Pre-order codes of the children of the root of the implicit tree, in ascending order, available after the Nlists are created.
+	 * @return
+	 */
+	public int[] getRootChildPreCodes(){
+		return this.root_child_pre_codes;
+	}
+
+	/**
+	 * @return the number of nodes of the implicit tree including the root
+	 */
+	public long countNodes(){
+		return this.node_count;
+	}
+}
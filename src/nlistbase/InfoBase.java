@@ -6,10 +6,12 @@
 package nlistbase;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -19,11 +21,23 @@ import java.util.zip.DataFormatException;
 import core.prepr.Attribute;
 import core.prepr.DataReader;
 import core.prepr.Selector;
+import core.prepr.SparseRecord;
+import core.structure.ArrayPPCTree;
 import core.structure.INlist;
+import core.structure.IPPCTree;
+import core.structure.NlistCache;
+import core.structure.NlistLayout;
+import core.structure.OffHeapNlistStore;
+import core.structure.SkipIndex;
 import core.structure.PPCNode;
 import core.structure.PPCTree;
 import core.structure.P3CTree;
 import core.structure.Supporter;
+import core.structure.RecordArray;
+import core.structure.RecordDeduplicator;
+import core.structure.RecordFile;
+import core.structure.RecordSorter;
+import core.structure.TreelessNlistBuilder;
 import core.structure.P3CNode;
 
 /**
@@ -137,21 +151,116 @@ public class InfoBase {
 	protected Map<String, INlist> selector_nlist_map;
 	
 	/**
-	 * Instances/examples in the input dataset encoded in arrays of sorted selector IDs.
+	 * Pre-order codes of the children of the root of the tree which generated the Nlists of selectors, in ascending order.
+	 * Nlists can be split at these codes and joined partition by partition.
+	 */
+	protected int[] root_child_pre_codes;
+	
+	/**
+	 * Instances/examples in the input dataset encoded in arrays of sorted selector IDs, stored in the CSR form.
 	 * </br>Note that: a selector with larger ID covers more examples (more frequent)
 	 */
-	protected int[][] selectorID_records;
+	protected RecordArray selectorID_records;
 	
 	/**
 	 * The expected memory efficiency coefficient
 	 */
 	protected long efficiency = 1000;
 	
+	/**
+	 * The maximum estimated memory (bytes) of a subtree of the P3CTree, 0 if the top part is bounded by 'efficiency'
+	 */
+	protected long memory_budget = 0;
+	
 	/**
 	 * 
 	 */
 	protected int furtherEfficiency = -1;
 	
+	/**
+	 * Whether subtrees of the P3CTree are built in parallel by 'thread_count' worker threads
+	 */
+	protected boolean parallel_subtree_build = false;
+	
+	/**
+	 * The maximum estimated memory (bytes) of subtrees which are built at the same time in the parallel mode
+	 */
+	protected long subtree_memory_budget = 256L*1024*1024;
+	
+	/**
+	 * Whether the PPCTree (and subtrees of the P3CTree) are built in the array mode (ArrayPPCTree)
+	 */
+	protected boolean array_tree = false;
+	
+	/**
+	 * Whether the records are sorted (by 'thread_count' threads) before the PPCTree is built in one sweep,
+	 * also for the subtrees of the P3CTree
+	 */
+	protected boolean sorted_construction = false;
+	
+	/**
+	 * Whether identical encoded records are collapsed into one record with a weight before the tree is built
+	 */
+	protected boolean record_deduplication = false;
+	
+	/**
+	 * Whether method fetch_information_with_memory_efficiency keeps the encoded records in temporary files instead of the heap
+	 */
+	protected boolean out_of_core = false;
+	
+	/**
+	 * The directory of the temporary files of the out-of-core mode, null for the default temporary directory
+	 */
+	protected File spill_directory = null;
+	
+	/**
+	 * Cache of Nlists of itemset prefixes for method create_nlist_for_itemset, null if disabled
+	 */
+	protected NlistCache nlist_cache = null;
+	
+	/**
+	 * Memory layout of the Nlists of selectors, Nlists derived from them follow the same layout
+	 */
+	protected NlistLayout nlist_layout = NlistLayout.SEPARATE;
+	
+	/**
+	 * If true, nodes of the Nlists of selectors are kept off-heap by the fetch_information methods
+	 */
+	protected boolean off_heap_nlists = false;
+	
+	/**
+	 * The off-heap store of the Nlists of selectors, null if they are on the heap
+	 */
+	protected OffHeapNlistStore off_heap_store = null;
+	
+	/**
+	 * Nlists of selectors with at least this number of nodes get a SkipIndex, 0 if skip indexes are disabled
+	 */
+	protected int skip_index_min_size = 0;
+	protected int skip_index_block_size = SkipIndex.DEFAULT_BLOCK_SIZE;
+	
+	/**
+	 * Estimated bytes of the skip indexes of the Nlists of selectors
+	 */
+	protected long skip_index_memory = 0;
+	
+	/**
+	 * The number of Nlists of selectors with a skip index
+	 */
+	protected int skip_indexed_count = 0;
+	
+	/**
+	 * Whether the input dataset is read by 'thread_count' threads in the preprocessing (CSV files),
+	 * the records are then kept encoded by the reader and not read again to build the tree
+	 */
+	protected boolean parallel_ingestion = false;
+	
+	/**
+	 * Whether the reader keeps the records encoded during the preprocessing, and whether it spills them to a temporary file
+	 */
+	protected boolean record_cache = false;
+	protected boolean record_spill = false;
+	
 	
 	///////////////////////////////////////////////GET/SET METHODS//////////////////////////////////////////////
 	/**
@@ -285,6 +394,13 @@ public class InfoBase {
     	return this.selector_nlists;
     }
     
+    /**
+     * @return Pre-order codes of the children of the root of the tree which generated the Nlists of selectors, null if not available
+     */
+    public int[] getRootChildPreCodes(){
+    	return this.root_child_pre_codes;
+    }
+    
     /**
      * @return Nlists of selectors stored in a map, from a selector ID to the corresponding Nlist
      */
@@ -293,9 +409,17 @@ public class InfoBase {
     }
     
     /**
-     * @return Instances/examples (in the input dataset) encoded in arrays of sorted selector IDs
+     * @return Instances/examples (in the input dataset) encoded in arrays of sorted selector IDs,
+     * the arrays are copied from the compact records of getRecordArray() on each call
      */
     public int[][] getSelectorIDRecords(){
+    	return (this.selectorID_records == null) ? null : this.selectorID_records.toArrays();
+    }
+    
+    /**
+     * @return Instances/examples (in the input dataset) encoded in sorted selector IDs, in the CSR form
+     */
+    public RecordArray getRecordArray(){
     	return this.selectorID_records;
     }
 	
@@ -317,6 +441,22 @@ public class InfoBase {
     	return this.efficiency;
     }
     
+    /**
+     * Set a heap budget instead of an efficiency coefficient for method fetch_information_with_memory_efficiency:
+     * the top part of the P3CTree grows on demand until the estimated memory of the subtree at every leaf node is within
+     * 'memory_budget', so one build stays under the budget without trying efficiency coefficients.
+     * The number of nodes of a subtree is estimated from the instance group of its leaf node and the lengths of the instances.
+     * </br>After the build, getEfficiency() returns the equivalent efficiency coefficient.
+     * @param memory_budget the maximum estimated memory (bytes) of a subtree, 0 to use the efficiency coefficient
+     */
+    public void setMemoryBudget(long memory_budget){
+    	this.memory_budget = Math.max(0, memory_budget);
+    }
+    
+    public long getMemoryBudget(){
+    	return this.memory_budget;
+    }
+    
     /**
      * Get a recommended efficiency coefficient for a further efficiency
      * @return
@@ -325,6 +465,206 @@ public class InfoBase {
     	return this.furtherEfficiency;
     }
     
+    /**
+     * Enable/disable building subtrees of the P3CTree in parallel (by 'thread_count' worker threads)
+     * in method fetch_information_with_memory_efficiency. The generated Nlists are identical to the sequential way.
+     * @param parallel
+     * @param memory_budget the maximum estimated memory (bytes) of subtrees built at the same time
+     */
+    public void setParallelSubtreeBuild(boolean parallel, long memory_budget){
+    	this.parallel_subtree_build = parallel;
+    	if(memory_budget > 0) this.subtree_memory_budget = memory_budget;
+    }
+    
+    public boolean isParallelSubtreeBuild(){
+    	return this.parallel_subtree_build;
+    }
+    
+    /**
+     * Enable/disable building the PPCTree in method fetch_information, and subtrees of the P3CTree
+     * in method fetch_information_with_memory_efficiency, as ArrayPPCTrees instead of PPCNode objects.
+     * The generated Nlists are identical in both modes.
+     * @param array_tree
+     */
+    public void setArrayTree(boolean array_tree){
+    	this.array_tree = array_tree;
+    }
+    
+    public boolean isArrayTree(){
+    	return this.array_tree;
+    }
+    
+    /**
+     * Enable/disable the sort-based construction: in method fetch_information, the encoded records are sorted in the
+     * insertion order of the tree (in parallel by 'thread_count' threads) and the PPCTree is built in one sweep, each record
+     * is compared with the path of the previous one only. In method fetch_information_with_memory_efficiency, the instances
+     * of each subtree of the P3CTree are sorted and the subtree is built in the same way.
+     * The generated Nlists are identical to inserting the records one by one.
+     * @param sorted
+     */
+    public void setSortedConstruction(boolean sorted){
+    	this.sorted_construction = sorted;
+    }
+    
+    public boolean isSortedConstruction(){
+    	return this.sorted_construction;
+    }
+    
+    /**
+     * Enable/disable collapsing identical encoded records before the tree is built by the fetch_information methods:
+     * the records are hashed and each distinct record is inserted once with its multiplicity as the weight
+     * (see RecordDeduplicator), into the PPCTree, or into the top part and the subtrees of the P3CTree.
+     * The generated Nlists are identical to inserting the records one by one.
+     * @param deduplication
+     */
+    public void setRecordDeduplication(boolean deduplication){
+    	this.record_deduplication = deduplication;
+    }
+    
+    public boolean isRecordDeduplication(){
+    	return this.record_deduplication;
+    }
+    
+    /**
+     * Enable/disable the out-of-core mode of method fetch_information_with_memory_efficiency: the encoded records are streamed
+     * to a temporary file instead of being kept on the heap, the top part of the P3CTree grows by sequential passes over
+     * the file, then the records are spilled to temporary files partitioned by the leaf nodes of the top part.
+     * The records of a partition are read back just before the subtrees of its leaf nodes are built, so only one partition
+     * and the Nlists are resident. The generated Nlists are identical to the in-memory mode.
+     * </br>The records are not kept by the InfoBase in this mode (getRecordArray() returns null).
+     * @param out_of_core
+     * @param directory the directory of the temporary files, null for the default temporary directory
+     */
+    public void setOutOfCore(boolean out_of_core, String directory){
+    	this.out_of_core = out_of_core;
+    	this.spill_directory = (directory == null) ? null : new File(directory);
+    }
+    
+    public boolean isOutOfCore(){
+    	return this.out_of_core;
+    }
+    
+    /**
+     * Set the memory layout of the Nlists of selectors built by the fetch_information methods.
+     * Nlists of itemsets derived from them follow the same layout.
+     * @param layout
+     */
+    public void setNlistLayout(NlistLayout layout){
+    	this.nlist_layout = layout;
+    }
+    
+    public NlistLayout getNlistLayout(){
+    	return this.nlist_layout;
+    }
+    
+    /**
+     * Enable/disable keeping the nodes of the Nlists of selectors off-heap (in an OffHeapNlistStore) in the fetch_information methods.
+     * The Nlists of selectors are then read-only BufferNodelists and the Nlist layout is not applied to them,
+     * Nlists of itemsets derived from them are on the heap.
+     * @param off_heap
+     */
+    public void setOffHeapNlists(boolean off_heap){
+    	this.off_heap_nlists = off_heap;
+    }
+    
+    public boolean isOffHeapNlists(){
+    	return this.off_heap_nlists;
+    }
+    
+    /**
+     * @return off-heap bytes of the Nlists of selectors, 0 if they are on the heap
+     */
+    public long getOffHeapNlistMemory(){
+    	return (this.off_heap_store == null) ? 0 : this.off_heap_store.getMemory();
+    }
+    
+    /**
+     * Enable/disable reading the input dataset by 'thread_count' threads in the preprocessing. It is supported for CSV files:
+     * chunks of the file are tokenized in parallel and the records are kept as dictionary codes, so the tree is built
+     * without reading the file again. Attributes, selectors and the generated Nlists are identical to the sequential way.
+     * @param parallel
+     */
+    public void setParallelIngestion(boolean parallel){
+    	this.parallel_ingestion = parallel;
+    }
+    
+    public boolean isParallelIngestion(){
+    	return this.parallel_ingestion;
+    }
+    
+    /**
+     * Enable/disable keeping the records encoded as dictionary codes while the input dataset is read in the preprocessing
+     * (CSV and ARFF files). The tree is then built from the codes mapped to selector IDs, without reading and tokenizing
+     * the file again. The generated Nlists are identical to the ones of reading the file twice.
+     * @param cache
+     * @param spill whether the encoded records are kept in a temporary file instead of the heap (also for the parallel ingestion)
+     */
+    public void setRecordCache(boolean cache, boolean spill){
+    	this.record_cache = cache;
+    	this.record_spill = spill;
+    }
+    
+    public boolean isRecordCache(){
+    	return this.record_cache;
+    }
+    
+    /**
+     * Enable/disable building a SkipIndex for the long Nlists of selectors (Nodelists or CompressedNlists) in the fetch_information methods.
+     * Joins of a short Nlist with an indexed long one then skip the blocks of the long Nlist which cannot contain matching nodes.
+     * @param min_size the minimum number of nodes of an indexed Nlist, skip indexes are disabled if min_size <= 0
+     * @param block_size the number of nodes per index entry, a power of 2 and at least 16, e.g. 64 or 128
+     */
+    public void setSkipIndex(int min_size, int block_size){
+    	if(block_size < 16 || Integer.bitCount(block_size) != 1)
+    		throw new IllegalArgumentException("Block size of a skip index must be a power of 2 and at least 16: " + block_size);
+    	this.skip_index_min_size = Math.max(0, min_size);
+    	this.skip_index_block_size = block_size;
+    }
+    
+    /**
+     * @return estimated bytes of the skip indexes of the Nlists of selectors, 0 if there is none
+     */
+    public long getSkipIndexMemory(){
+    	return this.skip_index_memory;
+    }
+    
+    /**
+     * @return the number of Nlists of selectors with a skip index, 0 if there is none
+     */
+    public int getSkipIndexedCount(){
+    	return this.skip_indexed_count;
+    }
+    
+    /**
+     * Attach skip indexes to the long Nlists of selectors if enabled, their memory overhead is given by getSkipIndexMemory()
+     */
+    protected void attach_skip_indexes(){
+    	this.skip_index_memory = 0;
+    	this.skip_indexed_count = 0;
+    	if(this.skip_index_min_size <= 0) return;
+    	
+    	this.skip_index_memory = SkipIndex.attach_all(this.selector_nlists, this.skip_index_min_size, this.skip_index_block_size);
+    	for(INlist nlist : this.selector_nlists){
+    		if(SkipIndex.of(nlist) != null) this.skip_indexed_count++;
+    	}
+    }
+    
+    /**
+     * Enable/disable caching Nlists of itemset prefixes in method create_nlist_for_itemset.
+     * A query then only joins from its longest cached prefix.
+     * @param memory_budget the maximum estimated memory (bytes) of the cached Nlists, the cache is disabled if memory_budget <= 0
+     */
+    public void setNlistCache(long memory_budget){
+    	this.nlist_cache = (memory_budget > 0) ? new NlistCache(memory_budget) : null;
+    }
+    
+    /**
+     * @return the Nlist cache with its hit/miss/eviction counters, null if disabled
+     */
+    public NlistCache getNlistCache(){
+    	return this.nlist_cache;
+    }
+    
     ///////////////////////////////////////////////FUNCTIONALITY METHODS//////////////////////////////////////////////
     
     /**
@@ -349,15 +689,25 @@ public class InfoBase {
         
         times[0] = this.preprocessing();
         
-        PPCTree ppcTree = new PPCTree(); 
+        IPPCTree ppcTree = this.array_tree ? new ArrayPPCTree() : new PPCTree(); 
         times[1] = this.construct_tree(ppcTree);
         
         // Store the tree, just be used for testing
         //ppcTree.storeTree("data/output/ppc_tree_full");
         
         long start = System.currentTimeMillis();
-        this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.constructing_selector_count);
+        if (this.off_heap_nlists){
+        	this.off_heap_store = new OffHeapNlistStore(this.constructing_selector_count);
+        	this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.off_heap_store);
+        }else{
+        	this.off_heap_store = null;
+        	this.selector_nlists = ppcTree.create_Nlist_for_selectors_arr(this.constructing_selector_count);
+        	if (this.nlist_layout != NlistLayout.SEPARATE) this.nlist_layout.convert_all(this.selector_nlists);
+        }
+        this.attach_skip_indexes();
         this.selector_nlist_map = ppcTree.create_selector_Nlist_map(this.selector_nlists);
+        this.root_child_pre_codes = ppcTree.getRootChildPreCodes();
+        if (this.nlist_cache != null) this.nlist_cache.clear();
         
         times[2] = System.currentTimeMillis() - start;
         
@@ -389,30 +739,33 @@ public class InfoBase {
         
         // Build the top part of the global PPCtree
         P3CTree p3ctree = new P3CTree(this.constructing_selector_count); 
-        times[1] = this.construct_tree_top_part(p3ctree);
+        p3ctree.setArraySubtrees(this.array_tree);
+        p3ctree.setSortedSubtrees(this.sorted_construction);
+        this.off_heap_store = this.off_heap_nlists ? new OffHeapNlistStore(this.constructing_selector_count) : null;
+        if (this.off_heap_store != null) p3ctree.setOffHeapStore(this.off_heap_store);
+        times[1] = this.out_of_core ? this.construct_tree_top_part_out_of_core(p3ctree) : this.construct_tree_top_part(p3ctree);
         
         // Build subtrees and update Nlist for each selector
         long start = System.currentTimeMillis();
         
         List<PPCNode> leaf_nodes = p3ctree.getLeafNodes();
         
-        for (PPCNode leaf_node : leaf_nodes){
-        	// Build a subtree with root at leaf_node
-        	p3ctree.buildSubtree(leaf_node);
-        	
-        	// Assign pre-order and post-order codes
-        	p3ctree.assignPrePosOrderCodeSubTree(leaf_node);
-        	
-        	// Update Nlist of selectors and free the subtree
-        	p3ctree.update_nlists_from_subtree(leaf_node);
-        	
-        	// Free the subtree with root at leaf_node for memory
-        	p3ctree.freeSubTrees(leaf_node);
+        if (this.out_of_core){
+        	// the records of a partition are loaded just before the subtrees of its leaf nodes
+        	for (int p=0; p<p3ctree.getPartitionCount(); p++){
+        		this.build_subtrees(p3ctree, p3ctree.load_partition(p, this.record_deduplication));
+        	}
+        }else{
+        	this.build_subtrees(p3ctree, leaf_nodes);
         }
         
         p3ctree.shrink_nlists();
         this.selector_nlists = p3ctree.get_selector_nlists();
+        if (this.off_heap_store == null && this.nlist_layout != NlistLayout.SEPARATE) this.nlist_layout.convert_all(this.selector_nlists);
+        this.attach_skip_indexes();
         this.selector_nlist_map = p3ctree.create_selector_Nlist_map(this.selector_nlists);
+        this.root_child_pre_codes = p3ctree.getRootChildPreCodes();
+        if (this.nlist_cache != null) this.nlist_cache.clear();
     	
         times[2] = System.currentTimeMillis() - start;
         System.out.println("Preprocessing time: " + times[0] + " ms");
@@ -427,12 +780,78 @@ public class InfoBase {
         	}
         }
         
-        this.furtherEfficiency = this.row_count/((max_inst_count )/2);
+        this.furtherEfficiency = this.row_count/Math.max(1, max_inst_count/2);
+        if (this.memory_budget > 0) this.efficiency = Math.max(1, this.row_count/Math.max(1, max_inst_count));
         
         return times;
     }
   
     
+    /**
+     * Fetch information from the input dataset without building a tree.
+     * </br>1. Do data preprocessing
+     * </br>2. Read the encoded records and sort them in the order of inserting them into a PPCTree (see RecordSorter)
+     * </br>3. Stream the Nlist of each distinct selector from the sorted records (see TreelessNlistBuilder)
+     * </br>The Nlists are identical to the ones of method fetch_information, but there is no tree node in memory:
+     * the peak memory is the records, their sorted indices and the Nlists.
+     * @param file_name The input dataset file name
+     * @return running time of the three stages: [0] preprocessing, [1] read and sort records, create Nlists, [2] post-process Nlists
+     * @throws IOException
+     * @throws DataFormatException
+     */
+    public long[] fetch_information_treeless(String file_name) throws IOException, DataFormatException {
+    	long[] times = new long[3];
+    	
+        this.data_filename = file_name;
+        
+        times[0] = this.preprocessing();
+        
+        TreelessNlistBuilder builder = new TreelessNlistBuilder();
+        times[1] = this.construct_sorted_records(builder);
+        
+        long start = System.currentTimeMillis();
+        if (this.off_heap_store == null && this.nlist_layout != NlistLayout.SEPARATE) this.nlist_layout.convert_all(this.selector_nlists);
+        this.attach_skip_indexes();
+        this.selector_nlist_map = builder.create_selector_Nlist_map(this.selector_nlists);
+        this.root_child_pre_codes = builder.getRootChildPreCodes();
+        if (this.nlist_cache != null) this.nlist_cache.clear();
+        
+        times[2] = System.currentTimeMillis() - start;
+        
+        return times;
+    }
+    
+    /**
+     * Build the subtrees at leaf nodes of the top part of a P3CTree, and update the Nlists of selectors from them
+     * @param p3ctree
+     * @param leaf_nodes consecutive leaf nodes of the top part, in the leaf order
+     * @throws InterruptedIOException
+     */
+    private void build_subtrees(P3CTree p3ctree, List<PPCNode> leaf_nodes) throws InterruptedIOException {
+        if (this.parallel_subtree_build){
+        	try{
+        		p3ctree.build_subtrees_parallel(leaf_nodes, this.thread_count, this.subtree_memory_budget);
+        	}catch(InterruptedException e){
+        		Thread.currentThread().interrupt();
+        		throw new InterruptedIOException("Interrupted while building subtrees in parallel");
+        	}
+        }else{
+	        for (PPCNode leaf_node : leaf_nodes){
+	        	// Build a subtree with root at leaf_node
+	        	p3ctree.buildSubtree(leaf_node);
+	        	
+	        	// Assign pre-order and post-order codes
+	        	p3ctree.assignPrePosOrderCodeSubTree(leaf_node);
+	        	
+	        	// Update Nlist of selectors and free the subtree
+	        	p3ctree.update_nlists_from_subtree(leaf_node);
+	        	
+	        	// Free the subtree with root at leaf_node for memory
+	        	p3ctree.freeSubTrees(leaf_node);
+	        }
+        }
+    }
+    
     /**
      * Read the input dataset to extract information about attributes, distinct values, selectors, etc.
      * @return running time
@@ -448,6 +867,8 @@ public class InfoBase {
     		return 0;
     	}
     	
+    	dr.set_thread_count(this.parallel_ingestion ? this.thread_count : 1);
+    	dr.set_record_cache(this.record_cache, this.record_spill);
     	dr.fetch_info(this.data_filename, this.target_attr_count, 0.001);
 		
 		this.attributes = dr.getAttributes();
@@ -488,36 +909,17 @@ public class InfoBase {
 	 * @throws IOException
 	 * @throws DataFormatException 
 	 */
-	protected long construct_tree(PPCTree tree) throws IOException, DataFormatException {
+	protected long construct_tree(IPPCTree tree) throws IOException, DataFormatException {
 		long start = System.currentTimeMillis();  
 		
-		int[][] result = new int[this.row_count][];
-		int index = 0;
+		RecordArray result = new RecordArray(this.row_count);
 	    
-		core.prepr.DataReader dr = (this.cachedReader != null)
-	    	    ? this.cachedReader
-	    	    : core.prepr.DataReader.getDataReader(this.data_filename);
-		dr.bind_datasource(this.data_filename);
-		dr.bind_datasource(this.data_filename);
-		
-		String[] value_record;
+		core.prepr.DataReader dr = this.open_records();
 		
 		int[] id_buffer = new int[this.attr_count];
 		int[] id_record;
 		
-		while((value_record = dr.next_record()) != null){
-			// convert value_record to a record of selectorIDs
-			// 稀疏：單一 token 且以 '{' 開頭
-	        if (value_record.length == 1 && value_record[0] != null
-	                && value_record[0].trim().startsWith("{")) {
-	            id_record = convert_sparse_line(value_record[0], id_buffer);
-	        } else {
-	            // 稠密
-	            id_record = convert_dense_instance(value_record, id_buffer);
-	        }
-			result[index] = id_record;
-			index++;
-			
+		while((id_record = this.next_id_record(dr, id_buffer)) != null){
 			// selectors with higher frequencies have greater selector ID
 			// only support ascending sort, so the order of ids to insert to the tree is from right to left
 			// since id of a target selector is always greater than id of predictive selector
@@ -526,10 +928,28 @@ public class InfoBase {
 			
 			// System.out.println(Arrays.toString(id_record));	// for testing
 			
-			tree.insert_record(id_record);
+			result.add(id_record);
+			if (!this.sorted_construction && !this.record_deduplication) tree.insert_record(id_record);
 		}
 
+		result.shrink();
 		this.selectorID_records = result;
+		dr.release_encoded_records();
+		
+		int[] weights = this.record_deduplication ? RecordDeduplicator.weights(result) : null;
+		if (this.sorted_construction){
+			try{
+				int[] order = RecordSorter.sorted_order(result, weights, this.constructing_selector_count, this.thread_count);
+				tree.insert_sorted_records(result, weights, order);
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while sorting records");
+			}
+		}else if (weights != null){
+			for (int r=0; r<weights.length; r++){
+				if (weights[r] > 0) tree.insert_record(result.record(r), weights[r]);
+			}
+		}
 	    
 		// Assign a pair of pre-order and pos-order codes for each tree node.
 		tree.assignPrePosOrderCode();
@@ -546,39 +966,151 @@ public class InfoBase {
 	protected long construct_tree_top_part(P3CTree tree) throws IOException, DataFormatException {
 		long start = System.currentTimeMillis();
 		
-		int[][] data_instances = new int[this.row_count][];
+		RecordArray data_instances = this.read_records();
 		
-		core.prepr.DataReader dr = (this.cachedReader != null)
-	    	    ? this.cachedReader
-	    	    : core.prepr.DataReader.getDataReader(this.data_filename);
-		dr.bind_datasource(this.data_filename);
+		int[] weights = this.record_deduplication ? RecordDeduplicator.weights(data_instances) : null;
+		if (this.memory_budget > 0){
+			tree.buildTopPartWithBudget(data_instances, weights, this.memory_budget);
+		}else{
+			// The max number of instances to build a sub tree with its root at a leaf node of the top part
+			long max_inst_count = this.row_count/this.efficiency;
+			tree.buildTopPart(data_instances, weights, max_inst_count);
+		}
+		
+	    return System.currentTimeMillis() - start;
+	}
+	
+	/**
+	 * Read the input dataset to build the top part of the global tree in the out-of-core mode:
+	 * the records are streamed to a temporary file, which is released after they are spilled by leaf nodes of the top part
+	 * @return running time
+	 * @throws IOException
+	 * @throws DataFormatException 
+	 */
+	protected long construct_tree_top_part_out_of_core(P3CTree tree) throws IOException, DataFormatException {
+		long start = System.currentTimeMillis();
+		
+		RecordFile data_instances = new RecordFile(this.spill_directory, RecordFile.DEFAULT_BUFFER_BYTES);
+		try{
+			core.prepr.DataReader dr = this.open_records();
+			
+			int[] id_buffer = new int[this.attr_count];
+			int[] id_record;
+			while ((id_record = this.next_id_record(dr, id_buffer)) != null) {
+		        Arrays.sort(id_record);
+		        data_instances.add(0, id_record, 0, id_record.length);
+		    }
+			this.selectorID_records = null;
+			dr.release_encoded_records();
+			
+			if (this.memory_budget > 0){
+				tree.buildTopPartWithBudget(data_instances, this.memory_budget, this.spill_directory);
+			}else{
+				// The max number of instances to build a sub tree with its root at a leaf node of the top part
+				long max_inst_count = this.row_count/this.efficiency;
+				tree.buildTopPart(data_instances, max_inst_count, this.spill_directory);
+			}
+		}finally{
+			data_instances.release();
+		}
+		
+	    return System.currentTimeMillis() - start;
+	}
+	
+	/**
+	 * Read the input dataset to build Nlists of selectors from the sorted records, without a tree
+	 * @param builder
+	 * @return running time
+	 * @throws IOException
+	 * @throws DataFormatException 
+	 */
+	protected long construct_sorted_records(TreelessNlistBuilder builder) throws IOException, DataFormatException {
+		long start = System.currentTimeMillis();
+		
+		RecordArray records = this.read_records();
+		
+		int[] weights = this.record_deduplication ? RecordDeduplicator.weights(records) : null;
+		int[] order;
+		try{
+			order = RecordSorter.sorted_order(records, weights, this.constructing_selector_count, this.thread_count);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while sorting records");
+		}
+		
+		if (this.off_heap_nlists){
+			this.off_heap_store = new OffHeapNlistStore(this.constructing_selector_count);
+			this.selector_nlists = builder.create_Nlist_for_selectors_arr(records, weights, order, this.off_heap_store);
+		}else{
+			this.off_heap_store = null;
+			this.selector_nlists = builder.create_Nlist_for_selectors_arr(records, weights, order, this.constructing_selector_count);
+		}
+		
+		return System.currentTimeMillis() - start;
+	}
+	
+	/**
+	 * Read all records of the input dataset in form of selector IDs in ascending order,
+	 * they are kept as the selector ID records of this InfoBase
+	 * @return
+	 */
+	private RecordArray read_records() throws IOException, DataFormatException {
+		RecordArray records = new RecordArray(this.row_count);
+		
+		core.prepr.DataReader dr = this.open_records();
 		
-		String[] value_record;
 		int[] id_buffer = new int[this.attr_count];
 		int[] id_record;
-		int index = 0;
-		while ((value_record = dr.next_record()) != null) {
-	        // 稀疏：單一 token 且以 '{' 開頭
-	        if (value_record.length == 1 && value_record[0] != null
-	                && value_record[0].trim().startsWith("{")) {
-	            id_record = convert_sparse_line(value_record[0], id_buffer);
-	        } else {
-	            // 稠密
-	            id_record = convert_dense_instance(value_record, id_buffer);
-	        }
-
-	        java.util.Arrays.sort(id_record);
-	        data_instances[index] = id_record;
-	        index++;
+		while ((id_record = this.next_id_record(dr, id_buffer)) != null) {
+	        Arrays.sort(id_record);
+	        records.add(id_record);
 	    }
-		this.selectorID_records = data_instances;
-		
-		// The max number of instances to build a sub tree with its root at a leaf node of the top part
-		long max_inst_count = this.row_count/this.efficiency;
-
-		tree.buildTopPart(data_instances, max_inst_count);
+		records.shrink();
+		this.selectorID_records = records;
+		dr.release_encoded_records();
+		return records;
+	}
+	
+	/**
+	 * Reused record of readers which give records in the sparse form
+	 */
+	private SparseRecord sparse_record = null;
+	
+	/**
+	 * Prepare the reader of the preprocessing to read the records from the first one:
+	 * records kept encoded by the reader are rewound, otherwise the input dataset is bound again
+	 * @return the reader
+	 */
+	private core.prepr.DataReader open_records() throws IOException, DataFormatException {
+		core.prepr.DataReader dr = (this.cachedReader != null)
+	    	    ? this.cachedReader
+	    	    : core.prepr.DataReader.getDataReader(this.data_filename);
+		if (dr.hasEncodedRecords()) dr.rewind_encoded_records();
+		else dr.bind_datasource(this.data_filename);
+		return dr;
+	}
+	
+	/**
+	 * @return the next record of the reader opened by open_records() in form of selector IDs, null if there is no more record
+	 */
+	private int[] next_id_record(core.prepr.DataReader dr, int[] id_buffer) throws IOException {
+		if (dr.hasEncodedRecords()) return dr.next_encoded_record(id_buffer);
+		if (dr.hasIdRecordReader()) return dr.next_id_record(id_buffer);
+		if (dr.hasSparseRecordReader()) {
+			if (this.sparse_record == null) this.sparse_record = new SparseRecord();
+			SparseRecord record = dr.next_sparse_record(this.sparse_record);
+			return (record == null) ? null : dr.convert_sparse_record(record, id_buffer);
+		}
 		
-	    return System.currentTimeMillis() - start;
+		String[] value_record = dr.next_record();
+		if (value_record == null) return null;
+		// 稀疏：單一 token 且以 '{' 開頭
+        if (value_record.length == 1 && value_record[0] != null
+                && value_record[0].trim().startsWith("{")) {
+            return convert_sparse_line(value_record[0], id_buffer);
+        }
+        // 稠密
+        return convert_dense_instance(value_record, id_buffer);
 	}
 	
 	/**
@@ -659,15 +1191,99 @@ public class InfoBase {
     	w.close();
     }
 	
+	/**
+	 * Write a binary snapshot of the information (attributes, selectors, class IDs and the Nlists of selectors)
+	 * which can be loaded by method load_snapshot instead of fetching the information from the input dataset again.
+	 * @param file_name
+	 * @param with_records whether the instances encoded in selector IDs are also written
+	 * @throws IOException
+	 */
+	public void save_snapshot(String file_name, boolean with_records) throws IOException{
+		InfoBaseSnapshot.write(this, file_name, with_records);
+	}
+	
+	/**
+	 * Load the information from a binary snapshot written by method save_snapshot.
+	 * @param file_name
+	 * @param mapped true to serve the Nlists of selectors directly from the memory-mapped file (read-only BufferNodelists),
+	 * false to copy them into the heap in the Nlist layout of this InfoBase
+	 * @return running time
+	 * @throws IOException
+	 * @throws DataFormatException if the file is not a snapshot or of an unsupported version
+	 */
+	public long load_snapshot(String file_name, boolean mapped) throws IOException, DataFormatException{
+		long start = System.currentTimeMillis();
+		InfoBaseSnapshot.read(this, file_name, mapped);
+		return System.currentTimeMillis() - start;
+	}
+	
+	/**
+	 * Create the Nlist of an itemset by joining the Nlists of its selectors from left to right.
+	 * </br>If the Nlist cache is enabled, the joining starts from the longest cached prefix of the itemset
+	 * and the Nlists of the longer prefixes are cached. The returned Nlist can be shared, it must not be modified.
+	 * @param itemset selector IDs in ascending order
+	 * @return the Nlist of the itemset
+	 */
 	public INlist create_nlist_for_itemset(int[] itemset){
-		INlist nlist = this.selector_nlists[itemset[0]];
+		if (this.nlist_cache == null || itemset.length < 2){
+			INlist nlist = this.selector_nlists[itemset[0]];
+			for(int i = 1; i < itemset.length; i++){
+				nlist = Supporter.create_nlist(nlist, this.selector_nlists[itemset[i]]);
+			}
+			return nlist;
+		}
+		
+		// hashes[k] is the hash of the prefix of length k+1
+		int length = itemset.length;
+		long[] hashes = new long[length];
+		long hash = NlistCache.EMPTY_HASH;
+		for (int i = 0; i < length; i++){
+			hash = NlistCache.hash(hash, itemset[i]);
+			hashes[i] = hash;
+		}
+		
+		// find the longest cached prefix, prefixes of length 1 are the Nlists of single selectors
+		INlist nlist = null;
+		int prefix_length = length;
+		for (; prefix_length > 1; prefix_length--){
+			nlist = this.nlist_cache.lookup(hashes[prefix_length-1], itemset, prefix_length);
+			if (nlist != null) break;
+		}
+		this.nlist_cache.count_query(nlist != null);
+		if (nlist == null){
+			nlist = this.selector_nlists[itemset[0]];
+			prefix_length = 1;
+		}
 		
-		for(int i = 1; i < itemset.length; i++){
-			nlist = Supporter.create_nlist(nlist, this.selector_nlists[itemset[i]]);
+		for(int i = prefix_length; i < length; i++){
+			nlist = Supporter.create_nlist(nlist, this.selector_nlists[itemset[i]]).shrink();
+			this.nlist_cache.put(hashes[i], itemset, i+1, nlist);
 		}
 		return nlist;
 	}
 	
+	/**
+	 * Calculate the support count of an itemset, the same as create_nlist_for_itemset(itemset).supportCount()
+	 * but without materializing any Nlist, no object is allocated in the steady state.
+	 * </br>The method is thread-safe.
+	 * @param itemset selector IDs in ascending order
+	 * @return support count of the itemset
+	 */
+	public int support_count_for_itemset(int[] itemset){
+		return Supporter.support_count(this.selector_nlists, itemset);
+	}
+	
+	/**
+	 * Calculate the support counts of a batch of itemsets. The batch is evaluated in lexicographic order
+	 * so that the Nlist of a prefix shared by many itemsets is joined only once, no Nlist is materialized on the heap.
+	 * </br>The method is thread-safe.
+	 * @param itemsets each itemset is an array of selector IDs in ascending order
+	 * @return support counts, the i-th one is of the i-th itemset
+	 */
+	public int[] support_counts_for_itemsets(int[][] itemsets){
+		return Supporter.support_counts(this.selector_nlists, itemsets);
+	}
+	
 	
 	///////////////////////////////////////////////BENCHMARK METHODS//////////////////////////////////////////////
 	
@@ -690,8 +1306,8 @@ public class InfoBase {
         
         // Print list of instances/transactions in the dataset
         System.out.println("\nInstances/Transaction list:");
-        for(int[] instance : this.selectorID_records){
-        	System.out.println(Arrays.toString(instance));
+        for(int i=0; i<this.selectorID_records.size(); i++){
+        	System.out.println(Arrays.toString(this.selectorID_records.record(i)));
         }
         
         // Build subtrees and update Nlist for each selector
@@ -706,8 +1322,8 @@ public class InfoBase {
         	StringBuilder sb = new StringBuilder(200);
         	P3CNode top_ppc_node  = (P3CNode) leaf_node;
         	sb.append("\n\tlevel: ").append(top_ppc_node.instGroup.level);
-        	for(int[] instance : top_ppc_node.instGroup.instances){
-				sb.append("\n\t").append(Arrays.toString(instance));
+        	for(int instance : p3ctree.getInstanceIndices(leaf_node)){
+				sb.append("\n\t").append(Arrays.toString(this.selectorID_records.record(instance)));
 			}
     		String instances = sb.toString();
     		
@@ -740,7 +1356,11 @@ public class InfoBase {
         
         p3ctree.shrink_nlists();
         this.selector_nlists = p3ctree.get_selector_nlists();
+        if (this.nlist_layout != NlistLayout.SEPARATE) this.nlist_layout.convert_all(this.selector_nlists);
+        this.attach_skip_indexes();
         this.selector_nlist_map = p3ctree.create_selector_Nlist_map(this.selector_nlists);
+        this.root_child_pre_codes = p3ctree.getRootChildPreCodes();
+        if (this.nlist_cache != null) this.nlist_cache.clear();
     	
         times[2] = System.currentTimeMillis() - start;
         
@@ -758,7 +1378,7 @@ public class InfoBase {
         long  tree_time = 0;
         this.preprocessing();
         long start = System.currentTimeMillis();
-        PPCTree ppcTree = new PPCTree(); 
+        IPPCTree ppcTree = this.array_tree ? new ArrayPPCTree() : new PPCTree(); 
         this.construct_tree(ppcTree);
         tree_time +=  System.currentTimeMillis() - start;
         System.out.println("Total nodes of the PPCtree: " + ppcTree.countNodes());
@@ -788,7 +1408,6 @@ public class InfoBase {
         System.out.println("Memory Difference: " + (prv_memory - memory)/mb + " MB");
         prv_memory = memory;
         
-        for(int i=0; i<this.selectorID_records.length; i++) this.selectorID_records[i] = null;
         this.selectorID_records = null;
         MemoryHistogramer.force_garbage_collection();
         System.out.println("\nWithout encoded instance:");
@@ -897,7 +1516,7 @@ public class InfoBase {
         for(PPCNode node : leaf_nodes){
         	if (max_inst_count < node.count) max_inst_count = node.count;
         }
-        this.furtherEfficiency = this.row_count/(max_inst_count/2);
+        this.furtherEfficiency = this.row_count/Math.max(1, max_inst_count/2);
         start = System.currentTimeMillis();
         p3ctree.shrink_nlists();
        
@@ -1005,7 +1624,6 @@ public class InfoBase {
         System.out.println(outputs[1]);
         prv_memory = get_total_memory(outputs[2]);
         
-        for(int i=0; i<this.selectorID_records.length; i++) this.selectorID_records[i] = null;
         this.selectorID_records = null;
         MemoryHistogramer.force_garbage_collection();
         System.out.println("\nWithout encoded instance:");
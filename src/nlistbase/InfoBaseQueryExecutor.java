@@ -0,0 +1,246 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package nlistbase;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import core.structure.INlist;
+import core.structure.NlistLayout;
+import core.structure.Supporter;
+
+/**
+ * A thread-safe facade for support count queries over an InfoBase whose Nlists were built (read-only afterwards).
+ * </br>Batches of itemsets are sorted in the lexicographic order, split into chunks of consecutive itemsets
+ * and evaluated by the worker threads of a fork-join pool with work-stealing. Each chunk is a depth-first walk
+ * on its part of the prefix trie, so shared prefixes are still joined once per chunk.
+ * </br>A single query on long Nlists can also be split into partitions at the pre-order codes of the children of the root,
+ * since no ancestor-descendant pair crosses two partitions, the partitions are joined in parallel.
+ * </br>Single queries can be called from any thread, Supporter kernels use only thread-local scratch state.
+ */
+public class InfoBaseQueryExecutor {
+	/**
+	 * The default number of itemsets in a chunk which is evaluated without further splitting
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 2048;
+
+	/**
+	 * The default minimum total size of the Nlists of an itemset to split a single query into partitions
+	 */
+	public static final int DEFAULT_PARTITION_THRESHOLD = 1 << 14;
+	
+	private INlist[] selector_nlists;
+	private int[] root_child_pre_codes;
+	private ForkJoinPool pool;
+	private int chunk_size = DEFAULT_CHUNK_SIZE;
+	private int partition_threshold = DEFAULT_PARTITION_THRESHOLD;
+
+	/**
+	 * @param infoBase an InfoBase whose Nlists were built, e.g. by method fetch_information
+	 * @param thread_count the number of worker threads
+	 */
+	public InfoBaseQueryExecutor(InfoBase infoBase, int thread_count){
+		this.selector_nlists = infoBase.getSelectorNlists();
+		this.root_child_pre_codes = infoBase.getRootChildPreCodes();
+		this.pool = new ForkJoinPool(Math.max(1, thread_count));
+	}
+
+	/**
+	 * @param chunk_size the number of itemsets in a chunk which is evaluated without further splitting
+	 */
+	public void setChunkSize(int chunk_size){
+		if(chunk_size > 0) this.chunk_size = chunk_size;
+	}
+
+	/**
+	 * @param partition_threshold the minimum total size of the Nlists of an itemset to split a single query into partitions
+	 */
+	public void setPartitionThreshold(int partition_threshold){
+		if(partition_threshold > 0) this.partition_threshold = partition_threshold;
+	}
+	
+	public int getThreadCount(){
+		return this.pool.getParallelism();
+	}
+
+	/**
+	 * Calculate the support count of an itemset in the calling thread
+	 * @param itemset selector IDs in ascending order
+	 * @return support count of the itemset
+	 */
+	public int support_count(int[] itemset){
+		return Supporter.support_count(this.selector_nlists, itemset);
+	}
+
+	/**
+	 * Calculate the support count of an itemset, its Nlists are split into partitions which are joined in parallel
+	 * if their total size is not less than the partition threshold
+	 * @param itemset selector IDs in ascending order
+	 * @return support count of the itemset
+	 */
+	public int support_count_partitioned(final int[] itemset){
+		final int[] splits = this.partition(itemset);
+		if(splits == null) return Supporter.support_count(this.selector_nlists, itemset);
+		
+		return this.pool.invoke(new RecursiveTask<Integer>(){
+			private static final long serialVersionUID = 1L;
+			
+			protected Integer compute(){
+				PartitionCountTask[] tasks = new PartitionCountTask[splits.length+1];
+				for(int p=0; p<tasks.length; p++){
+					int low_pre = (p == 0) ? Integer.MIN_VALUE : splits[p-1];
+					int high_pre = (p == splits.length) ? Integer.MAX_VALUE : splits[p];
+					tasks[p] = new PartitionCountTask(itemset, low_pre, high_pre);
+				}
+				invokeAll(tasks);
+				
+				int support_count = 0;
+				for(PartitionCountTask task : tasks) support_count += task.getRawResult();
+				return support_count;
+			}
+		});
+	}
+	
+	/**
+	 * Create the Nlist of an itemset, its Nlists are split into partitions which are joined in parallel
+	 * if their total size is not less than the partition threshold
+	 * @param itemset selector IDs in ascending order
+	 * @return the Nlist of the itemset, identical to the one of the sequential way
+	 */
+	public INlist create_nlist_partitioned(final int[] itemset){
+		final int[] splits = this.partition(itemset);
+		if(splits == null){
+			INlist nlist = this.selector_nlists[itemset[0]];
+			for(int i = 1; i < itemset.length; i++){
+				nlist = Supporter.create_nlist(nlist, this.selector_nlists[itemset[i]]);
+			}
+			return nlist;
+		}
+		
+		final INlist[] parts = new INlist[splits.length+1];
+		final NlistLayout layout = NlistLayout.of(this.selector_nlists[itemset[0]]);
+		this.pool.invoke(new RecursiveAction(){
+			private static final long serialVersionUID = 1L;
+			
+			protected void compute(){
+				RecursiveAction[] tasks = new RecursiveAction[parts.length];
+				for(int p=0; p<tasks.length; p++){
+					final int index = p;
+					final int low_pre = (p == 0) ? Integer.MIN_VALUE : splits[p-1];
+					final int high_pre = (p == splits.length) ? Integer.MAX_VALUE : splits[p];
+					tasks[p] = new RecursiveAction(){
+						private static final long serialVersionUID = 1L;
+						
+						protected void compute(){
+							parts[index] = layout.create(16);
+							Supporter.create_nlist(selector_nlists, itemset, low_pre, high_pre, parts[index]);
+						}
+					};
+				}
+				invokeAll(tasks);
+			}
+		});
+		
+		// concatenate the partitions in the order of pre-order codes
+		return Supporter.concatenate(parts);
+	}
+	
+	/**
+	 * Select the split pre-order codes for an itemset query
+	 * @param itemset
+	 * @return split pre-order codes, or null if the query should not be split
+	 */
+	private int[] partition(int[] itemset){
+		int worker_count = this.pool.getParallelism();
+		if(worker_count < 2 || itemset.length < 2 || this.root_child_pre_codes == null) return null;
+		
+		// balance the partitions on the longest Nlist
+		INlist longest = null;
+		long total_size = 0;
+		for(int id : itemset){
+			INlist nlist = this.selector_nlists[id];
+			total_size += nlist.size();
+			if(longest == null || longest.size() < nlist.size()) longest = nlist;
+		}
+		if(total_size < this.partition_threshold) return null;
+		
+		int[] splits = Supporter.partition_pre_codes(longest, this.root_child_pre_codes, 4*worker_count);
+		return (splits.length == 0) ? null : splits;
+	}
+	
+	/**
+	 * Calculate the support counts of a batch of itemsets in parallel
+	 * @param itemsets each itemset is an array of selector IDs in ascending order
+	 * @return support counts, the i-th one is of the i-th itemset
+	 */
+	public int[] support_counts(int[][] itemsets){
+		int[] supports = new int[itemsets.length];
+		if(itemsets.length == 0) return supports;
+
+		int[] order = Supporter.lexicographic_order(itemsets, this.pool.getParallelism() > 1);
+		this.pool.invoke(new SupportCountTask(itemsets, order, 0, order.length, supports));
+		return supports;
+	}
+
+	/**
+	 * Stop the worker threads, the executor can not be used afterwards
+	 */
+	public void shutdown(){
+		this.pool.shutdown();
+	}
+
+	/**
+	 * Calculate the support count of an itemset contributed by the nodes whose pre-order codes are in [low_pre, high_pre)
+	 */
+	private class PartitionCountTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+		
+		private int[] itemset;
+		private int low_pre, high_pre;
+		
+		public PartitionCountTask(int[] itemset, int low_pre, int high_pre){
+			this.itemset = itemset;
+			this.low_pre = low_pre;
+			this.high_pre = high_pre;
+		}
+		
+		protected Integer compute(){
+			return Supporter.support_count(selector_nlists, this.itemset, this.low_pre, this.high_pre);
+		}
+	}
+	
+	/**
+	 * Calculate support counts of itemsets whose indexes are order[from..to),
+	 * the range is split in halves until it is not larger than the chunk size.
+	 */
+	private class SupportCountTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private int[][] itemsets;
+		private int[] order;
+		private int from, to;
+		private int[] supports;
+
+		public SupportCountTask(int[][] itemsets, int[] order, int from, int to, int[] supports){
+			this.itemsets = itemsets;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.supports = supports;
+		}
+
+		protected void compute(){
+			if(this.to - this.from <= chunk_size){
+				Supporter.support_counts(selector_nlists, this.itemsets, this.order, this.from, this.to, this.supports);
+				return;
+			}
+			int mid = (this.from + this.to) >>> 1;
+			invokeAll(new SupportCountTask(this.itemsets, this.order, this.from, mid, this.supports),
+					new SupportCountTask(this.itemsets, this.order, mid, this.to, this.supports));
+		}
+	}
+}
@@ -0,0 +1,485 @@
+/*
+ * @author Van Quoc Phuong Huynh, FAW JKU
+ *
+ */
+
+package nlistbase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import core.prepr.Attribute;
+import core.prepr.Selector;
+import core.structure.BufferNodelist;
+import core.structure.CompressedNlist;
+import core.structure.INlist;
+import core.structure.Node;
+import core.structure.RecordArray;
+
+/**
+ * Binary snapshot of an InfoBase whose Nlists were built: attributes, selectors, class IDs,
+ * the Nlists of selectors and optionally the records encoded in selector IDs.
+ * </br>File format (version 1), all sections except the metadata block are in little-endian order:
+ * <ul>
+ * <li>header: magic, version, flags, the byte length of the metadata block</li>
+ * <li>metadata block (written by DataOutputStream): counts, attributes with their selectors, class IDs, pre-order codes of the children of the root</li>
+ * <li>Nlist table, 8-byte aligned: the number of Nlists, then the size and the support count of each Nlist</li>
+ * <li>Nlist data, 8-byte aligned: nodes of the Nlists one after another, each node as pre-code, pos-code, support count</li>
+ * <li>optional records: the number of records, then the length and the selector IDs of each record</li>
+ * </ul>
+ * The loader maps the Nlist data into memory and serves the Nlists as BufferNodelists, nothing is copied into the heap.
+ */
+class InfoBaseSnapshot {
+	static final int MAGIC = 0x50334353;	// "P3CS"
+	static final int VERSION = 1;
+	static final int FLAG_RECORDS = 1;
+
+	/**
+	 * The maximum number of bytes of one mapped region
+	 */
+	private static final long MAX_MAPPED_BYTES = Integer.MAX_VALUE;
+
+	private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+	private InfoBaseSnapshot(){}
+
+	/**
+	 * Write a snapshot of 'infoBase' to a file
+	 * @param infoBase an InfoBase whose Nlists were built
+	 * @param file_name
+	 * @param with_records whether the records encoded in selector IDs are also written
+	 * @throws IOException
+	 */
+	static void write(InfoBase infoBase, String file_name, boolean with_records) throws IOException {
+		RecordArray records = with_records ? infoBase.selectorID_records : null;
+		byte[] meta = write_metadata(infoBase);
+
+		try(FileChannel channel = FileChannel.open(Paths.get(file_name), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.putInt(MAGIC).putInt(VERSION).putInt((records != null) ? FLAG_RECORDS : 0).putInt(meta.length);
+			long position = 16;
+			for(int offset = 0; offset < meta.length; ){
+				int length = Math.min(buffer.remaining(), meta.length - offset);
+				buffer.put(meta, offset, length);
+				offset += length;
+				if(!buffer.hasRemaining()) flush(channel, buffer);
+			}
+			position += meta.length;
+			position += pad(channel, buffer, position);
+
+			// Nlist table
+			INlist[] nlists = infoBase.selector_nlists;
+			put_int(channel, buffer, nlists.length);
+			for(INlist nlist : nlists){
+				put_int(channel, buffer, nlist.size());
+				put_int(channel, buffer, nlist.supportCount());
+			}
+			position += 4 + 8L*nlists.length;
+			position += pad(channel, buffer, position);
+
+			// Nlist data
+			Node node = new Node();
+			for(INlist nlist : nlists){
+				if(nlist instanceof CompressedNlist) nlist = ((CompressedNlist) nlist).decompress();
+				int size = nlist.size();
+				for(int i=0; i<size; i++){
+					nlist.get(i, node);
+					put_int(channel, buffer, node.pre);
+					put_int(channel, buffer, node.pos);
+					put_int(channel, buffer, node.count);
+				}
+			}
+
+			// records
+			if(records != null){
+				put_int(channel, buffer, records.size());
+				for(int i=0; i<records.size(); i++){
+					int length = records.length(i), offset = records.offset(i);
+					int[] ids = records.ids(i);
+					put_int(channel, buffer, length);
+					for(int j=offset; j<offset+length; j++) put_int(channel, buffer, ids[j]);
+				}
+			}
+			flush(channel, buffer);
+		}
+	}
+
+	/**
+	 * Load a snapshot into 'infoBase', replacing its information.
+	 * </br>The whole file is read and validated before any field of 'infoBase' is replaced,
+	 * 'infoBase' is left unchanged if an exception is thrown.
+	 * @param infoBase
+	 * @param file_name
+	 * @param mapped true to serve the Nlists from the memory-mapped file, false to copy them into the heap in the layout of 'infoBase'
+	 * @throws IOException
+	 * @throws DataFormatException if the file is not a snapshot, of an unsupported version or corrupted
+	 */
+	static void read(InfoBase infoBase, String file_name, boolean mapped) throws IOException, DataFormatException {
+		try(FileChannel channel = FileChannel.open(Paths.get(file_name), StandardOpenOption.READ)){
+			ByteBuffer header = read_fully(channel, 0, 16);
+			if(header.getInt() != MAGIC) throw new DataFormatException(file_name + " is not an InfoBase snapshot");
+			int version = header.getInt();
+			if(version < 1 || version > VERSION) throw new DataFormatException("Unsupported InfoBase snapshot version " + version);
+			int flags = header.getInt();
+			int meta_length = header.getInt();
+
+			ByteBuffer meta = read_fully(channel, 16, meta_length);
+			Metadata metadata = read_metadata(new DataInputStream(new ByteArrayInputStream(meta.array())));
+			long position = align(16 + meta_length);
+
+			// Nlist table
+			int nlist_count = read_fully(channel, position, 4).getInt();
+			if(nlist_count != metadata.constructing_selectors.size())
+				throw new DataFormatException("Invalid number of Nlists " + nlist_count + " in the snapshot");
+			ByteBuffer table = read_fully(channel, position+4, 8L*nlist_count);
+			int[] sizes = new int[nlist_count], supports = new int[nlist_count];
+			long data_bytes = 0;
+			for(int i=0; i<nlist_count; i++){
+				sizes[i] = table.getInt();
+				supports[i] = table.getInt();
+				if(sizes[i] < 0) throw new DataFormatException("Invalid size of Nlist " + i + " in the snapshot");
+				data_bytes += 12L*sizes[i];
+			}
+			position = align(position + 4 + 8L*nlist_count);
+			if(position + data_bytes > channel.size()) throw new DataFormatException("Truncated InfoBase snapshot");
+
+			// Nlist data, mapped in regions which do not split any Nlist
+			INlist[] nlists = new INlist[nlist_count];
+			int first = 0;
+			while(first < nlist_count){
+				long region_bytes = 0;
+				int last = first;
+				while(last < nlist_count && region_bytes + 12L*sizes[last] <= MAX_MAPPED_BYTES){
+					region_bytes += 12L*sizes[last];
+					last++;
+				}
+				if(last == first) throw new DataFormatException("Nlist " + first + " is too large to be mapped");
+
+				IntBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, region_bytes)
+											.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+				int offset = 0;
+				for(int i=first; i<last; i++){
+					region.limit(offset + 3*sizes[i]).position(offset);
+					nlists[i] = new BufferNodelist(region.slice(), sizes[i], supports[i]);
+					offset += 3*sizes[i];
+				}
+				position += region_bytes;
+				first = last;
+			}
+
+			// records
+			RecordArray records = null;
+			if((flags & FLAG_RECORDS) != 0){
+				IntReader reader = new IntReader(channel, position);
+				int record_count = reader.next();
+				if(record_count < 0) throw new DataFormatException("Invalid number of records " + record_count + " in the snapshot");
+				records = new RecordArray(record_count);
+				int[] record = new int[16];
+				for(int i=0; i<record_count; i++){
+					int length = reader.next();
+					if(length < 0) throw new DataFormatException("Invalid length of record " + i + " in the snapshot");
+					if(record.length < length) record = new int[Math.max(length, 2*record.length)];
+					for(int j=0; j<length; j++){
+						record[j] = reader.next();
+						if(record[j] < 0 || record[j] >= nlist_count)
+							throw new DataFormatException("Invalid selector ID " + record[j] + " of record " + i + " in the snapshot");
+					}
+					records.add(record, length);
+				}
+				records.shrink();
+			}
+			if(!mapped) infoBase.nlist_layout.convert_all(nlists);
+
+			// the snapshot is valid, replace the information of 'infoBase'
+			metadata.apply(infoBase);
+			infoBase.selector_nlists = nlists;
+			infoBase.selector_nlist_map = new HashMap<String, INlist>(nlist_count);
+			for(int i=0; i<nlist_count; i++) infoBase.selector_nlist_map.put("["+i+"]", nlists[i]);
+			infoBase.selectorID_records = records;
+			infoBase.cachedReader = null;
+			infoBase.off_heap_store = null;
+			infoBase.attach_skip_indexes();
+			if(infoBase.nlist_cache != null) infoBase.nlist_cache.clear();
+		}
+	}
+
+	/////////////////////////////////////////////////// METADATA ///////////////////////////////////////////////////
+
+	private static byte[] write_metadata(InfoBase infoBase) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		write_string(out, infoBase.data_filename);
+		out.writeInt(infoBase.row_count);
+		out.writeInt(infoBase.min_sup_count);
+		out.writeInt(infoBase.attr_count);
+		out.writeInt(infoBase.predict_attr_count);
+		out.writeInt(infoBase.target_attr_count);
+		out.writeInt(infoBase.numeric_attr_count);
+		out.writeInt(infoBase.distinct_value_count);
+		out.writeInt(infoBase.constructing_selector_count);
+		out.writeInt(infoBase.predict_constructing_selector_count);
+		out.writeInt(infoBase.target_selector_count);
+		out.writeLong(infoBase.efficiency);
+		out.writeInt(infoBase.furtherEfficiency);
+
+		// attributes, each with its selectors
+		out.writeInt(infoBase.attributes.size());
+		for(Attribute attr : infoBase.attributes){
+			out.writeInt(attr.index);
+			write_string(out, attr.name);
+			out.writeInt(attr.type.ordinal());
+			write_doubles(out, attr.discretized_values);
+			if(attr.distinct_values == null){
+				out.writeInt(-1);
+				continue;
+			}
+			out.writeInt(attr.distinct_values.size());
+			for(Map.Entry<String, Selector> entry : attr.distinct_values.entrySet()){
+				Selector s = entry.getValue();
+				write_string(out, entry.getKey());
+				out.writeInt(s.attributeID);
+				write_string(out, s.attributeName);
+				write_string(out, s.distinctValue);
+				write_string(out, s.condition);
+				out.writeInt(s.frequency);
+				out.writeInt(s.distinctValueID);
+				out.writeInt(s.selectorID);
+			}
+		}
+
+		out.writeInt(infoBase.classIDs.size());
+		for(int id : infoBase.classIDs) out.writeInt(id);
+
+		write_ints(out, infoBase.root_child_pre_codes);
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * The metadata block of a snapshot, read completely before it is applied to an InfoBase
+	 */
+	private static class Metadata {
+		String data_filename;
+		int row_count, min_sup_count;
+		int attr_count, predict_attr_count, target_attr_count, numeric_attr_count, distinct_value_count;
+		int constructing_selector_count, predict_constructing_selector_count, target_selector_count;
+		long efficiency;
+		int furtherEfficiency;
+		List<Attribute> attributes;
+		List<Selector> constructing_selectors;
+		List<Integer> classIDs;
+		int[] root_child_pre_codes;
+
+		void apply(InfoBase infoBase){
+			infoBase.data_filename = this.data_filename;
+			infoBase.row_count = this.row_count;
+			infoBase.min_sup_count = this.min_sup_count;
+			infoBase.attr_count = this.attr_count;
+			infoBase.predict_attr_count = this.predict_attr_count;
+			infoBase.target_attr_count = this.target_attr_count;
+			infoBase.numeric_attr_count = this.numeric_attr_count;
+			infoBase.distinct_value_count = this.distinct_value_count;
+			infoBase.constructing_selector_count = this.constructing_selector_count;
+			infoBase.predict_constructing_selector_count = this.predict_constructing_selector_count;
+			infoBase.target_selector_count = this.target_selector_count;
+			infoBase.efficiency = this.efficiency;
+			infoBase.furtherEfficiency = this.furtherEfficiency;
+			infoBase.attributes = this.attributes;
+			infoBase.constructing_selectors = this.constructing_selectors;
+			infoBase.classIDs = this.classIDs;
+			infoBase.root_child_pre_codes = this.root_child_pre_codes;
+		}
+	}
+
+	private static Metadata read_metadata(DataInputStream in) throws IOException, DataFormatException {
+		Metadata metadata = new Metadata();
+		metadata.data_filename = read_string(in);
+		metadata.row_count = in.readInt();
+		metadata.min_sup_count = in.readInt();
+		metadata.attr_count = in.readInt();
+		metadata.predict_attr_count = in.readInt();
+		metadata.target_attr_count = in.readInt();
+		metadata.numeric_attr_count = in.readInt();
+		metadata.distinct_value_count = in.readInt();
+		metadata.constructing_selector_count = in.readInt();
+		metadata.predict_constructing_selector_count = in.readInt();
+		metadata.target_selector_count = in.readInt();
+		metadata.efficiency = in.readLong();
+		metadata.furtherEfficiency = in.readInt();
+		if(metadata.constructing_selector_count < 0)
+			throw new DataFormatException("Invalid number of selectors " + metadata.constructing_selector_count + " in the snapshot");
+
+		// attributes, the constructing selectors are the ones with valid selector IDs
+		int attr_count = in.readInt();
+		if(attr_count < 0) throw new DataFormatException("Invalid number of attributes " + attr_count + " in the snapshot");
+		List<Attribute> attributes = new ArrayList<Attribute>(attr_count);
+		Selector[] constructing_selectors = new Selector[metadata.constructing_selector_count];
+		Attribute.DATA_TYPE[] types = Attribute.DATA_TYPE.values();
+		for(int a=0; a<attr_count; a++){
+			int index = in.readInt();
+			String name = read_string(in);
+			int type = in.readInt();
+			if(type < 0 || type >= types.length) throw new DataFormatException("Invalid attribute type " + type + " in the snapshot");
+			Attribute attr = new Attribute(index, name, types[type]);
+			double[] discretized_values = read_doubles(in);
+
+			Map<String, Selector> distinct_values = null;
+			int value_count = in.readInt();
+			if(value_count >= 0){
+				distinct_values = new HashMap<String, Selector>(value_count);
+				for(int v=0; v<value_count; v++){
+					String key = read_string(in);
+					int attributeID = in.readInt();
+					String attributeName = read_string(in);
+					Selector s = new Selector(attributeID, attributeName, read_string(in), 0);
+					s.condition = read_string(in);
+					s.frequency = in.readInt();
+					s.distinctValueID = in.readInt();
+					s.selectorID = in.readInt();
+					distinct_values.put(key, s);
+					if(s.selectorID != Selector.INVALID_ID){
+						if(s.selectorID < 0 || s.selectorID >= constructing_selectors.length)
+							throw new DataFormatException("Invalid selector ID " + s.selectorID + " in the snapshot");
+						constructing_selectors[s.selectorID] = s;
+					}
+				}
+			}
+			attr.restore(discretized_values, distinct_values);
+			attributes.add(attr);
+		}
+		for(int i=0; i<constructing_selectors.length; i++){
+			if(constructing_selectors[i] == null) throw new DataFormatException("Missing selector with ID " + i + " in the snapshot");
+		}
+		metadata.attributes = attributes;
+		metadata.constructing_selectors = new ArrayList<Selector>(Arrays.asList(constructing_selectors));
+
+		int class_count = in.readInt();
+		if(class_count < 0) throw new DataFormatException("Invalid number of classes " + class_count + " in the snapshot");
+		metadata.classIDs = new ArrayList<Integer>(class_count);
+		for(int i=0; i<class_count; i++) metadata.classIDs.add(in.readInt());
+
+		metadata.root_child_pre_codes = read_ints(in);
+		return metadata;
+	}
+
+	private static void write_string(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if(s != null) out.writeUTF(s);
+	}
+
+	private static String read_string(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void write_doubles(DataOutputStream out, double[] values) throws IOException {
+		out.writeInt((values == null) ? -1 : values.length);
+		if(values != null) for(double value : values) out.writeDouble(value);
+	}
+
+	private static double[] read_doubles(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) return null;
+		double[] values = new double[length];
+		for(int i=0; i<length; i++) values[i] = in.readDouble();
+		return values;
+	}
+
+	private static void write_ints(DataOutputStream out, int[] values) throws IOException {
+		out.writeInt((values == null) ? -1 : values.length);
+		if(values != null) for(int value : values) out.writeInt(value);
+	}
+
+	private static int[] read_ints(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) return null;
+		int[] values = new int[length];
+		for(int i=0; i<length; i++) values[i] = in.readInt();
+		return values;
+	}
+
+	///////////////////////////////////////////////////// I/O /////////////////////////////////////////////////////
+
+	private static long align(long position){
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Write zero bytes to align 'position' to 8 bytes
+	 * @return the number of written bytes
+	 */
+	private static int pad(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int padding = (int)(align(position) - position);
+		for(int i=0; i<padding; i++){
+			if(!buffer.hasRemaining()) flush(channel, buffer);
+			buffer.put((byte) 0);
+		}
+		return padding;
+	}
+
+	private static void put_int(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+		if(buffer.remaining() < 4) flush(channel, buffer);
+		buffer.putInt(value);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	private static ByteBuffer read_fully(FileChannel channel, long position, long length) throws IOException, DataFormatException {
+		if(length < 0 || length > Integer.MAX_VALUE || position + length > channel.size())
+			throw new DataFormatException("Truncated InfoBase snapshot");
+		ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+		while(buffer.hasRemaining()){
+			if(channel.read(buffer, position + buffer.position()) < 0) throw new DataFormatException("Truncated InfoBase snapshot");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Sequential reader of little-endian ints from a file channel through a heap buffer
+	 */
+	private static class IntReader {
+		private FileChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		private long position;
+
+		public IntReader(FileChannel channel, long position){
+			this.channel = channel;
+			this.position = position;
+			this.buffer.flip();	// empty
+		}
+
+		public int next() throws IOException, DataFormatException {
+			if(this.buffer.remaining() < 4){
+				this.buffer.compact();
+				int n = this.channel.read(this.buffer, this.position);
+				this.buffer.flip();
+				if(n <= 0 || this.buffer.remaining() < 4) throw new DataFormatException("Truncated InfoBase snapshot");
+				this.position += n;
+			}
+			return this.buffer.getInt();
+		}
+	}
+}
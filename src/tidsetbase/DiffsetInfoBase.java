@@ -16,6 +16,8 @@ import java.util.zip.DataFormatException;
 import core.prepr.Attribute;
 import core.prepr.DataReader;
 import core.prepr.Selector;
+import core.prepr.SparseRecord;
+import core.structure.RecordArray;
 
 /**
  * DiffsetInfoBase is a class for holding information about a dataset and 
@@ -111,10 +113,10 @@ public class DiffsetInfoBase {
 	protected List<Selector> constructing_selectors;
 	
 	/**
-	 * Instances/examples in the input dataset encoded in arrays of sorted selector IDs.
+	 * Instances/examples in the input dataset encoded in arrays of sorted selector IDs, stored in the CSR form.
 	 * </br>Note that: a selector with larger ID covers more examples (more frequent)
 	 */
-	protected int[][] selectorID_records;
+	protected RecordArray selectorID_records;
 	
 	protected IntegerArray[] basic_diffsets;
 	
@@ -245,9 +247,17 @@ public class DiffsetInfoBase {
 	}
     
     /**
-     * @return Instances/examples (in the input dataset) encoded in arrays of sorted selector IDs
+     * @return Instances/examples (in the input dataset) encoded in arrays of sorted selector IDs,
+     * the arrays are copied from the compact records of getRecordArray() on each call
      */
     public int[][] getSelectorIDRecords(){
+    	return (this.selectorID_records == null) ? null : this.selectorID_records.toArrays();
+    }
+    
+    /**
+     * @return Instances/examples (in the input dataset) encoded in sorted selector IDs, in the CSR form
+     */
+    public RecordArray getRecordArray(){
     	return this.selectorID_records;
     }
     
@@ -344,7 +354,7 @@ public class DiffsetInfoBase {
 	        this.basic_diffsets[i] = new IntegerArray();
 	    }
 
-	    int[][] result = new int[this.row_count][];
+	    RecordArray result = new RecordArray(this.row_count);
 	    int index = 0;
 
 	    core.prepr.DataReader dr = (this.cachedReader != null)
@@ -354,19 +364,27 @@ public class DiffsetInfoBase {
 
 	    dr.bind_datasource(this.data_filename);
 
-	    String[] value_record;
 	    int[] id_buffer = new int[this.attr_count];
+	    // readers of sparse records: pairs are mapped to selector IDs without expanding records to all attributes
+	    SparseRecord sparse_record = dr.hasSparseRecordReader() ? new SparseRecord() : null;
 
-	    while ((value_record = dr.next_record()) != null) {
+	    while (true) {
 	        int[] id_record;
 
-	        // 稀疏：單一 token 且以 '{' 開頭
-	        if (value_record.length == 1 && value_record[0] != null
-	                && value_record[0].trim().startsWith("{")) {
-	            id_record = convert_sparse_line(value_record[0], id_buffer);
+	        if (sparse_record != null) {
+	            if (dr.next_sparse_record(sparse_record) == null) break;
+	            id_record = dr.convert_sparse_record(sparse_record, id_buffer);
 	        } else {
-	            // 稠密
-	            id_record = convert_dense_instance(value_record, id_buffer);
+	            String[] value_record = dr.next_record();
+	            if (value_record == null) break;
+	            // 稀疏：單一 token 且以 '{' 開頭
+	            if (value_record.length == 1 && value_record[0] != null
+	                    && value_record[0].trim().startsWith("{")) {
+	                id_record = convert_sparse_line(value_record[0], id_buffer);
+	            } else {
+	                // 稠密
+	                id_record = convert_dense_instance(value_record, id_buffer);
+	            }
 	        }
 
 	        if (id_record.length == 0) {
@@ -377,7 +395,7 @@ public class DiffsetInfoBase {
 	        }
 
 	        java.util.Arrays.sort(id_record);
-	        result[index] = id_record;
+	        result.add(id_record);
 	        update_basic_diffsets(id_record, this.basic_diffsets, index);
 	        index++;
 	    }
@@ -385,9 +403,8 @@ public class DiffsetInfoBase {
 	    System.out.println("[INFO] non-empty rows = " + nonEmptyCount + ", empty rows skipped = " + emptyCount);
 
 	    // 裁切到實際有效列數 index
-	    int[][] resized = new int[index][];
-	    System.arraycopy(result, 0, resized, 0, index);
-	    this.selectorID_records = resized;
+	    result.shrink();
+	    this.selectorID_records = result;
 
 	    // 將 row_count 改成有效非空筆數
 	    this.row_count = index;
@@ -16,6 +16,8 @@ import java.util.zip.DataFormatException;
 import core.prepr.Attribute;
 import core.prepr.DataReader;
 import core.prepr.Selector;
+import core.prepr.SparseRecord;
+import core.structure.RecordArray;
 
 /**
  * TidsetInfoBase is a class for holding information about a feeding dataset and 
@@ -105,10 +107,10 @@ public class TidsetInfoBase {
 	protected List<Selector> constructing_selectors;
 	
 	/**
-	 * Instances/examples in the input dataset encoded in arrays of sorted selector IDs.
+	 * Instances/examples in the input dataset encoded in arrays of sorted selector IDs, stored in the CSR form.
 	 * </br>Note that: a selector with larger ID covers more examples (more frequent)
 	 */
-	protected int[][] selectorID_records;
+	protected RecordArray selectorID_records;
 	
 	protected IntegerArray[] basic_tidsets;
 	
@@ -239,9 +241,17 @@ public class TidsetInfoBase {
 	}
     
     /**
-     * @return Instances/examples (in the input dataset) encoded in arrays of sorted selector IDs
+     * @return Instances/examples (in the input dataset) encoded in arrays of sorted selector IDs,
+     * the arrays are copied from the compact records of getRecordArray() on each call
      */
     public int[][] getSelectorIDRecords(){
+    	return (this.selectorID_records == null) ? null : this.selectorID_records.toArrays();
+    }
+    
+    /**
+     * @return Instances/examples (in the input dataset) encoded in sorted selector IDs, in the CSR form
+     */
+    public RecordArray getRecordArray(){
     	return this.selectorID_records;
     }
     
@@ -324,7 +334,7 @@ public class TidsetInfoBase {
 			this.basic_tidsets[i] = new IntegerArray();
 		}
 		
-		int[][] result = new int[this.row_count][];
+		RecordArray result = new RecordArray(this.row_count);
 		int index = 0;
 	    
 		DataReader dr = DataReader.getDataReader(this.data_filename);
@@ -333,16 +343,24 @@ public class TidsetInfoBase {
 		String[] value_record;
 		int[] id_buffer = new int[this.attr_count];
 		int[] id_record;
+		// readers of sparse records: pairs are mapped to selector IDs without expanding records to all attributes
+		SparseRecord sparse_record = dr.hasSparseRecordReader() ? new SparseRecord() : null;
 		
-		while((value_record = dr.next_record()) != null){
+		while(true){
 			// convert value_record to a record of selectorIDs
-			result[index] = id_record = this.convert_instance(value_record, id_buffer);
-			
+			if(sparse_record != null){
+				if(dr.next_sparse_record(sparse_record) == null) break;
+				id_record = dr.convert_sparse_record(sparse_record, id_buffer);
+			}else{
+				if((value_record = dr.next_record()) == null) break;
+				id_record = this.convert_instance(value_record, id_buffer);
+			}
 			// selectors with higher frequencies have greater selector ID
 			// only support ascending sort, so the order of ids to insert to the tree is from right to left
 			// since id of a target selector is always greater than id of predictive selector
 			// sorting id_record will NOT blend the IDs of two kinds of selectors together
 			Arrays.sort(id_record);
+			result.add(id_record);
 			
 			// add transaction id to the corresponding tidsets
 			for(int selector_id : id_record){
@@ -356,6 +374,7 @@ public class TidsetInfoBase {
 			tidset.shrink();
 		}
 		
+		result.shrink();
 		this.selectorID_records = result;
 		
 	    return System.currentTimeMillis() - start;
@@ -0,0 +1,79 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.CompressedNlist;
+import core.structure.INlist;
+import core.structure.NlistLayout;
+
+/**
+ * Compare the memory of the Nlists of selectors and the runtime of generating Nlists (and support counts)
+ * of random itemsets with Nlists in the SEPARATE layout (Nodelist) and the COMPRESSED layout (CompressedNlist).
+ * The results of the COMPRESSED layout are checked to be identical to the ones of the SEPARATE layout.
+ */
+public class CompressedNlistBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int n_itemsets = 500000;
+		int efficiency = 10;
+		int seed = 0;	// for reproducibility
+		int repeat = 3;
+
+		// args: number of random itemsets, then the file path
+		if (args.length > 0) n_itemsets = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename);
+
+		InfoBase separate = new InfoBase();
+		separate.setEfficiency(efficiency);
+		separate.fetch_information_with_memory_efficiency(data_filename);
+
+		InfoBase compressed = new InfoBase();
+		compressed.setEfficiency(efficiency);
+		compressed.setNlistLayout(NlistLayout.COMPRESSED);
+		compressed.fetch_information_with_memory_efficiency(data_filename);
+
+		// memory of the Nlists of selectors
+		INlist[] nlists1 = separate.getSelectorNlists(), nlists2 = compressed.getSelectorNlists();
+		long nodes = 0, separate_bytes = 0, compressed_bytes = 0;
+		for (int i=0; i<nlists1.length; i++){
+			if (!(nlists2[i] instanceof CompressedNlist) || !nlists2[i].isIdentical(nlists1[i])
+					|| nlists2[i].supportCount() != nlists1[i].supportCount())
+				throw new IllegalStateException("Different Nlist of selector " + i);
+			nodes += nlists1[i].size();
+			separate_bytes += 16 + 3*(16 + 4L*nlists1[i].capacity()) + 16;	// object, int[3][capacity]
+			compressed_bytes += ((CompressedNlist) nlists2[i]).memory();
+		}
+		System.out.println(String.format("%d nodes, SEPARATE: %.2f bytes/node, COMPRESSED: %.2f bytes/node (%.1f%%)",
+				nodes, (double) separate_bytes/nodes, (double) compressed_bytes/nodes, 100.0*compressed_bytes/separate_bytes));
+
+		// runtime and identity of queries
+		int[][] itemsets = ItemsetGenerator.gen_random_itemsets(separate.getSelectorIDRecords(), n_itemsets, 2, 8, seed);
+		for (int[] itemset : itemsets){
+			if (separate.support_count_for_itemset(itemset) != compressed.support_count_for_itemset(itemset)
+					|| !separate.create_nlist_for_itemset(itemset).isIdentical(compressed.create_nlist_for_itemset(itemset)))
+				throw new IllegalStateException("Different results of " + Arrays.toString(itemset));
+		}
+
+		for (InfoBase ibase : new InfoBase[]{separate, compressed}){
+			long nlist_time = Long.MAX_VALUE, count_time = Long.MAX_VALUE, checksum = 0;
+			for (int r=0; r<repeat; r++){
+				checksum = 0;
+				long start = System.currentTimeMillis();
+				for (int[] itemset : itemsets) checksum += ibase.create_nlist_for_itemset(itemset).supportCount();
+				nlist_time = Math.min(nlist_time, System.currentTimeMillis() - start);
+
+				start = System.currentTimeMillis();
+				for (int[] itemset : itemsets) ibase.support_count_for_itemset(itemset);
+				count_time = Math.min(count_time, System.currentTimeMillis() - start);
+			}
+			System.out.println(String.format("%s: create_nlist: %d ms (%.0f itemsets/s), support_count: %d ms (%.0f itemsets/s), checksum %d",
+					ibase.getNlistLayout(), nlist_time, 1000.0*itemsets.length/Math.max(1, nlist_time),
+					count_time, 1000.0*itemsets.length/Math.max(1, count_time), checksum));
+		}
+	}
+}
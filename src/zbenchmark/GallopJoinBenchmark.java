@@ -0,0 +1,109 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+import core.structure.Node;
+import core.structure.Supporter;
+
+/**
+ * Compare the linear merge, galloping and the adaptive choice (the default gallop ratio) for the last join
+ * of random itemsets, i.e. the Nlist of the prefix (nlist1) joined with the Nlist of the last selector (nlist2).
+ * The joins are grouped by the ratio between the lengths of the two Nlists, separately for a shorter and a longer nlist1.
+ * Runtimes are of count-only joins, so that they are not dominated by allocating the result Nlists.
+ */
+public class GallopJoinBenchmark {
+
+	private static final int[] ratio_bounds = new int[]{1, 4, 16, 64, 256, 1024};
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int n_itemsets = 50000;
+		int efficiency = 10;
+		int min_length = 2;
+		int max_length = 8;
+		int seed = 0;	// for reproducibility
+		int repeat = 5;
+
+		// args: number of random itemsets, then the file path
+		if (args.length > 0) n_itemsets = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename);
+
+		InfoBase ibase = new InfoBase();
+		ibase.setEfficiency(efficiency);
+		ibase.fetch_information_with_memory_efficiency(data_filename);
+		INlist[] nlists = ibase.getSelectorNlists();
+		int[][] itemsets = ItemsetGenerator.gen_random_itemsets(ibase.getSelectorIDRecords(),
+																n_itemsets, min_length, max_length, seed);
+
+		// group the last joins by the ratio between the lengths of the two Nlists,
+		// groups [0, ratio_bounds.length) for nlist1 not longer than nlist2, the others for nlist1 longer than nlist2
+		List<List<INlist[]>> groups = new ArrayList<List<INlist[]>>();
+		for (int b=0; b<2*ratio_bounds.length; b++) groups.add(new ArrayList<INlist[]>());
+		for (int[] itemset : itemsets){
+			INlist prefix = nlists[itemset[0]];
+			for (int i=1; i<itemset.length-1; i++) prefix = Supporter.create_nlist(prefix, nlists[itemset[i]]);
+			INlist last = nlists[itemset[itemset.length-1]];
+			if (prefix.size() == 0 || last.size() == 0) continue;
+
+			long ratio = Math.max(prefix.size(), last.size()) / Math.min(prefix.size(), last.size());
+			int b = ratio_bounds.length-1;
+			while (ratio < ratio_bounds[b]) b--;
+			if (prefix.size() > last.size()) b += ratio_bounds.length;
+			groups.get(b).add(new INlist[]{prefix.shrink(), last});
+		}
+
+		int default_ratio = Supporter.getGallopRatio();
+		System.out.println("ratio\t\t\tjoins\tmerge ms\tgallop ms\tadaptive ms (gallop ratio " + default_ratio + ")");
+		for (int b=0; b<groups.size(); b++){
+			List<INlist[]> pairs = groups.get(b);
+			if (pairs.isEmpty()) continue;
+
+			for (INlist[] pair : pairs){
+				Supporter.setGallopRatio(Integer.MAX_VALUE);
+				INlist expected = Supporter.create_nlist(pair[0], pair[1]);
+				Supporter.setGallopRatio(2);
+				if (!expected.isIdentical(Supporter.create_nlist(pair[0], pair[1]))
+						|| expected.supportCount() != Supporter.support_count(pair[0], pair[1], new Node(), new Node()))
+					throw new IllegalStateException("Galloping join differs from the linear merge");
+			}
+
+			Supporter.setGallopRatio(Integer.MAX_VALUE);
+			long merge_time = time(pairs, repeat);
+
+			Supporter.setGallopRatio(2);
+			long gallop_time = time(pairs, repeat);
+
+			Supporter.setGallopRatio(default_ratio);
+			long adaptive_time = time(pairs, repeat);
+
+			int r = b % ratio_bounds.length;
+			String range = (r == ratio_bounds.length-1) ? ">=" + ratio_bounds[r] : ratio_bounds[r] + "-" + ratio_bounds[r+1];
+			range = ((b < ratio_bounds.length) ? "nlist2/nlist1 " : "nlist1/nlist2 ") + range;
+			System.out.println(String.format("%s\t%d\t%d\t%d\t%d", range, pairs.size(), merge_time, gallop_time, adaptive_time));
+		}
+	}
+
+	/**
+	 * @return the minimum runtime (ms) of count-only joins of all the pairs over 'repeat' runs
+	 */
+	private static long time(List<INlist[]> pairs, int repeat){
+		long best = Long.MAX_VALUE;
+		Node i1_node = new Node(), i2_node = new Node();
+		for (int r=0; r<repeat; r++){
+			long start = System.nanoTime();
+			long checksum = 0;
+			for (INlist[] pair : pairs){
+				checksum += Supporter.support_count(pair[0], pair[1], i1_node, i2_node);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			if (checksum < 0) System.out.println(checksum);	// keep the result alive
+		}
+		return best/1000000;
+	}
+}
@@ -0,0 +1,72 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+import core.structure.P3CTree;
+import core.structure.PPCNode;
+import core.structure.RecordArray;
+
+/**
+ * Build the Nlists with a P3CTree whose top part is bounded by a heap budget per subtree instead of an efficiency
+ * coefficient, for several budgets. For each budget, one build reports the number of leaf nodes, the equivalent efficiency
+ * coefficient and the largest subtree actually built (its estimated memory must be within the budget).
+ * The Nlists are checked to be identical to the ones of a PPCTree.
+ */
+public class MemoryBudgetBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		long[] budgets_mb = new long[]{64, 16, 4, 1};
+
+		// args: the file path, then budgets in MB
+		if (args.length > 0) data_filename = args[0];
+		if (args.length > 1){
+			budgets_mb = new long[args.length-1];
+			for (int i=1; i<args.length; i++) budgets_mb[i-1] = Long.parseLong(args[i]);
+		}
+
+		InfoBase ibase = new InfoBase();
+		ibase.fetch_information(data_filename);
+		RecordArray records = ibase.getRecordArray();
+		INlist[] expected = ibase.getSelectorNlists();
+		int selector_count = ibase.getConstructingSelectorCount();
+		ibase = null;
+		System.out.println("Data: " + data_filename + ", " + records.size() + " records");
+
+		System.out.println("budget MB\tleaf nodes\tefficiency\tmax subtree MB\ttime ms");
+		for (long budget_mb : budgets_mb){
+			long budget = budget_mb*1024*1024;
+			long start = System.currentTimeMillis();
+			P3CTree p3ctree = new P3CTree(selector_count);
+			p3ctree.buildTopPartWithBudget(records, null, budget);
+
+			List<PPCNode> leaf_nodes = p3ctree.getLeafNodes();
+			long max_nodes = 0;
+			int max_inst_count = 1;
+			for (PPCNode leaf_node : leaf_nodes){
+				max_inst_count = Math.max(max_inst_count, leaf_node.count);
+				p3ctree.buildSubtree(leaf_node);
+				max_nodes = Math.max(max_nodes, p3ctree.countSubtreeNodes(leaf_node));
+				p3ctree.assignPrePosOrderCodeSubTree(leaf_node);
+				p3ctree.update_nlists_from_subtree(leaf_node);
+				p3ctree.freeSubTrees(leaf_node);
+			}
+			p3ctree.shrink_nlists();
+			long time = System.currentTimeMillis() - start;
+
+			long max_subtree_bytes = max_nodes*p3ctree.estimated_node_bytes();
+			if (max_subtree_bytes > budget) throw new IllegalStateException("A subtree exceeds the budget: " + max_subtree_bytes + " bytes");
+			System.out.println(String.format("%d\t\t%d\t\t%d\t\t%.2f\t\t%d", budget_mb, leaf_nodes.size(),
+					records.size()/max_inst_count, max_subtree_bytes/1048576.0, time));
+
+			INlist[] nlists = p3ctree.get_selector_nlists();
+			for (int i=0; i<selector_count; i++){
+				if (!expected[i].isIdentical(nlists[i])) throw new IllegalStateException("Different Nlist of selector " + i);
+			}
+		}
+	}
+}
@@ -105,5 +105,19 @@ public class NlistInfoBaseBenchmark {
 		}
 		long duration = System.currentTimeMillis() - start;
 		System.out.println("\nTime for generating NLISTs for " + itemsets.length + " random itemsets: " + duration + " ms");
+		
+		//Benchmark runtime of calculating only support counts for random itemsets
+		start = System.currentTimeMillis();
+		for(int[] itemset : itemsets){
+			ibase.support_count_for_itemset(itemset);
+		}
+		duration = System.currentTimeMillis() - start;
+		System.out.println("Time for calculating support counts for " + itemsets.length + " random itemsets: " + duration + " ms");
+		
+		//Benchmark runtime of calculating support counts for random itemsets in a batch
+		start = System.currentTimeMillis();
+		ibase.support_counts_for_itemsets(itemsets);
+		duration = System.currentTimeMillis() - start;
+		System.out.println("Time for calculating support counts for " + itemsets.length + " random itemsets in a batch: " + duration + " ms");
 	}
 }
@@ -0,0 +1,183 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+import core.structure.Node;
+import core.structure.NlistLayout;
+import core.structure.PPCNode;
+import core.structure.Supporter;
+
+/**
+ * Check that the array kernels of Supporter (Nodelist x Nodelist, PackedNodelist x PackedNodelist) and the block kernels
+ * (CompressedNlist x Nodelist/CompressedNlist) give results identical to the generic kernels, and compare their runtime.
+ * </br>The generic kernels are forced by wrapping the Nlists of selectors in a class unknown to the dispatch.
+ */
+public class NlistKernelBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int n_itemsets = 200000;
+		int n_pairs = 20000;
+		int efficiency = 10;
+		int min_length = 2;
+		int max_length = 8;
+		int seed = 0;	// for reproducibility
+
+		// args: number of random itemsets, then the file path
+		if (args.length > 0) n_itemsets = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename);
+
+		int[][] itemsets = null;
+		for (NlistLayout layout : NlistLayout.values()){
+			InfoBase ibase = new InfoBase();
+			ibase.setEfficiency(efficiency);
+			ibase.setNlistLayout(layout);
+			ibase.fetch_information_with_memory_efficiency(data_filename);
+
+			if (itemsets == null){
+				itemsets = ItemsetGenerator.gen_random_itemsets(ibase.getSelectorIDRecords(),
+																n_itemsets, min_length, max_length, seed);
+			}
+
+			INlist[] nlists = ibase.getSelectorNlists();
+			INlist[] generic_nlists = new INlist[nlists.length];
+			for (int i=0; i<nlists.length; i++) generic_nlists[i] = new GenericNlist(nlists[i]);
+
+			// create_nlist and support_count of itemsets
+			long array_time = 0, generic_time = 0, array_count_time = 0, generic_count_time = 0;
+			for (int[] itemset : itemsets){
+				long start = System.nanoTime();
+				INlist array_nlist = create_nlist(nlists, itemset);
+				array_time += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				INlist generic_nlist = create_nlist(generic_nlists, itemset);
+				generic_time += System.nanoTime() - start;
+
+				if (!array_nlist.isIdentical(generic_nlist))
+					throw new IllegalStateException("create_nlist differs on " + java.util.Arrays.toString(itemset));
+
+				start = System.nanoTime();
+				int array_count = Supporter.support_count(nlists, itemset);
+				array_count_time += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				int generic_count = Supporter.support_count(generic_nlists, itemset);
+				generic_count_time += System.nanoTime() - start;
+
+				if (array_count != generic_count || array_count != generic_nlist.supportCount())
+					throw new IllegalStateException("support_count differs on " + java.util.Arrays.toString(itemset));
+			}
+
+			// conjunction and disjunction of random pairs of selectors
+			Random random = new Random(seed);
+			for (int i=0; i<n_pairs; i++){
+				int id1 = random.nextInt(nlists.length), id2 = random.nextInt(nlists.length);
+				if (!Supporter.create_nlist_conj(nlists[id1], nlists[id2])
+						.isIdentical(Supporter.create_nlist_conj(generic_nlists[id1], generic_nlists[id2])))
+					throw new IllegalStateException("create_nlist_conj differs on " + id1 + ", " + id2);
+				if (!Supporter.create_nlist_disj(nlists[id1], nlists[id2])
+						.isIdentical(Supporter.create_nlist_disj(generic_nlists[id1], generic_nlists[id2])))
+					throw new IllegalStateException("create_nlist_disj differs on " + id1 + ", " + id2);
+			}
+
+			System.out.println(String.format("%s: identical results, create_nlist: array %d ms, generic %d ms; support_count: array %d ms, generic %d ms",
+					layout, array_time/1000000, generic_time/1000000, array_count_time/1000000, generic_count_time/1000000));
+		}
+	}
+
+	private static INlist create_nlist(INlist[] nlists, int[] itemset){
+		INlist nlist = nlists[itemset[0]];
+		for (int i=1; i<itemset.length; i++) nlist = Supporter.create_nlist(nlist, nlists[itemset[i]]);
+		return nlist;
+	}
+
+	/**
+	 * A read-only view of an Nlist which is not dispatched to any array kernel
+	 */
+	private static class GenericNlist implements INlist {
+		private INlist nlist;
+
+		public GenericNlist(INlist nlist){
+			this.nlist = nlist;
+		}
+
+		@Override
+		public int size(){ return this.nlist.size(); }
+		@Override
+		public int capacity(){ return this.nlist.capacity(); }
+		@Override
+		public void get(int index, Node node){ this.nlist.get(index, node); }
+		@Override
+		public int supportCount(){ return this.nlist.supportCount(); }
+		@Override
+		public void resetSC(){ this.nlist.resetSC(); }
+		@Override
+		public boolean isIdentical(INlist nlist){ return this.nlist.isIdentical(nlist); }
+		@Override
+		public String toString(){ return this.nlist.toString(); }
+		@Override
+		public INlist shrink(float efficient_rate){ return this; }
+		@Override
+		public INlist shrink(){ return this; }
+
+		/**
+		 * GenericNlist does not support this method.
+		 */
+		@Override
+		public void allocate(int capacity){
+			System.err.println("allocate(int capacity) method is not supported by GenericNlist");
+			System.exit(0);
+		}
+
+		/**
+		 * GenericNlist does not support this method.
+		 */
+		@Override
+		public void add(int pre, int pos, int count){
+			System.err.println("add(int pre, int pos, int count) method is not supported by GenericNlist");
+			System.exit(0);
+		}
+
+		/**
+		 * GenericNlist does not support this method.
+		 */
+		@Override
+		public void add(Node node){
+			System.err.println("add(Node node) method is not supported by GenericNlist");
+			System.exit(0);
+		}
+
+		/**
+		 * GenericNlist does not support this method.
+		 */
+		@Override
+		public void accSupportCount(int index, int supportCount){
+			System.err.println("accSupportCount(int index, int supportCount) method is not supported by GenericNlist");
+			System.exit(0);
+		}
+
+		/**
+		 * GenericNlist does not support this method.
+		 */
+		@Override
+		public void add(PPCNode ppcNode){
+			System.err.println("add(PPCNode ppcNode) method is not supported by GenericNlist");
+			System.exit(0);
+		}
+
+		/**
+		 * GenericNlist does not support this method.
+		 */
+		@Override
+		public void insert(PPCNode ppcNode){
+			System.err.println("insert(PPCNode ppcNode) method is not supported by GenericNlist");
+			System.exit(0);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+import core.structure.NlistLayout;
+
+/**
+ * Compare the runtime of generating Nlists (and support counts) of random itemsets
+ * with Nlists in the SEPARATE layout (Nodelist), the PACKED layout (PackedNodelist) and the COMPRESSED layout (CompressedNlist)
+ */
+public class NlistLayoutBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String[] data_filenames = new String[]{
+				"data/input/connect-4.csv",
+				"data/input/adult.arff"
+		};
+		int n_itemsets = 1000000;
+		int efficiency = 10;
+		int min_length = 2;
+		int max_length = 8;
+		int seed = 0;	// for reproducibility
+		int repeat = 3;
+
+		// args: number of random itemsets, then followed with file paths
+		if (args.length > 0) n_itemsets = Integer.parseInt(args[0]);
+		if (args.length > 1){
+			data_filenames = new String[args.length-1];
+			System.arraycopy(args, 1, data_filenames, 0, data_filenames.length);
+		}
+
+		for (String data_filename : data_filenames){
+			System.out.println("\nData: " + data_filename);
+			try{
+				run(data_filename, n_itemsets, efficiency, min_length, max_length, seed, repeat);
+			}catch(RuntimeException e){
+				System.err.println("Benchmark failed on " + data_filename + ": " + e);
+			}
+		}
+	}
+	
+	private static void run(String data_filename,
+							int n_itemsets,
+							int efficiency,
+							int min_length,
+							int max_length,
+							int seed,
+							int repeat) throws IOException, DataFormatException{
+		int[][] itemsets = null;
+		int[] expected = null;
+
+		for (NlistLayout layout : NlistLayout.values()){
+			InfoBase ibase = new InfoBase();
+			ibase.setEfficiency(efficiency);
+			ibase.setNlistLayout(layout);
+			ibase.fetch_information_with_memory_efficiency(data_filename);
+
+			if (itemsets == null){
+				itemsets = ItemsetGenerator.gen_random_itemsets(ibase.getSelectorIDRecords(),
+																n_itemsets, min_length, max_length, seed);
+			}
+
+			long nlist_time = Long.MAX_VALUE, count_time = Long.MAX_VALUE;
+			int[] supports = new int[itemsets.length];
+			for (int r=0; r<repeat; r++){
+				long start = System.currentTimeMillis();
+				for (int i=0; i<itemsets.length; i++){
+					supports[i] = ibase.create_nlist_for_itemset(itemsets[i]).supportCount();
+				}
+				nlist_time = Math.min(nlist_time, System.currentTimeMillis() - start);
+
+				start = System.currentTimeMillis();
+				for (int i=0; i<itemsets.length; i++){
+					ibase.support_count_for_itemset(itemsets[i]);
+				}
+				count_time = Math.min(count_time, System.currentTimeMillis() - start);
+			}
+
+			if (expected == null) expected = supports;
+			for (int i=0; i<supports.length; i++){
+				if (supports[i] != expected[i]) throw new IllegalStateException("Wrong support count of itemset " + i);
+			}
+
+			long nodes = 0;
+			for (INlist nlist : ibase.getSelectorNlists()) nodes += nlist.size();
+			System.out.println(String.format("%s: %d nodes in basic Nlists, create_nlist: %d ms, support_count: %d ms",
+					layout, nodes, nlist_time, count_time));
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+
+/**
+ * Compare heap usage, GC activity and query runtime with the Nlists of selectors on the heap and off-heap
+ * (OffHeapNlistStore), for the PPCTree, the sequential P3CTree and the parallel P3CTree. The off-heap Nlists
+ * are checked to be identical to the heap ones.
+ */
+public class OffHeapNlistBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int n_itemsets = 200000;
+		int efficiency = 10;
+		int seed = 0;	// for reproducibility
+
+		// args: number of random itemsets, then the file path
+		if (args.length > 0) n_itemsets = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename);
+
+		String[] modes = new String[]{"PPCTree", "P3CTree", "P3CTree parallel"};
+		for (int mode=0; mode<modes.length; mode++){
+			INlist[] expected = null;
+			int[][] itemsets = null;
+			for (boolean off_heap : new boolean[]{false, true}){
+				InfoBase ibase = new InfoBase();
+				ibase.setEfficiency(efficiency);
+				ibase.setOffHeapNlists(off_heap);
+				ibase.setParallelSubtreeBuild(mode == 2, 0);
+
+				long start = System.currentTimeMillis();
+				if (mode == 0) ibase.fetch_information(data_filename);
+				else ibase.fetch_information_with_memory_efficiency(data_filename);
+				long build_time = System.currentTimeMillis() - start;
+
+				INlist[] nlists = ibase.getSelectorNlists();
+				if (expected == null){
+					expected = nlists;
+					itemsets = ItemsetGenerator.gen_random_itemsets(ibase.getSelectorIDRecords(), n_itemsets, 2, 8, seed);
+				}else{
+					for (int i=0; i<nlists.length; i++){
+						if (!expected[i].isIdentical(nlists[i]) || expected[i].supportCount() != nlists[i].supportCount())
+							throw new IllegalStateException("Different Nlist of selector " + i);
+					}
+					expected = null;	// not counted in the heap usage
+				}
+
+				long heap = used_heap();
+				long gc_count = gc_count(), gc_time = gc_time();
+				start = System.currentTimeMillis();
+				long checksum = 0;
+				for (int[] itemset : itemsets) checksum += ibase.create_nlist_for_itemset(itemset).supportCount();
+				long query_time = System.currentTimeMillis() - start;
+
+				System.out.println(String.format("%s, %s: build %d ms, heap after GC %.1f MB, off-heap %.1f MB, "
+						+ "queries %d ms (%d GCs, %d ms), checksum %d",
+						modes[mode], off_heap ? "off-heap" : "heap", build_time, heap/1048576.0,
+						ibase.getOffHeapNlistMemory()/1048576.0, query_time,
+						gc_count() - gc_count, gc_time() - gc_time, checksum));
+			}
+		}
+	}
+
+	private static long used_heap(){
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static long gc_count(){
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += gc.getCollectionCount();
+		return count;
+	}
+
+	private static long gc_time(){
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += gc.getCollectionTime();
+		return time;
+	}
+}
@@ -0,0 +1,131 @@
+package zbenchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+
+/**
+ * Compare the runtime and the peak heap usage of building the Nlists with a P3CTree in the in-memory mode and in the out-of-core
+ * mode, where the encoded records are kept in temporary files partitioned by the leaf nodes of the top part.
+ * The data rows of a dataset (.csv with a header line or .arff) are replicated into a temporary file to get a large dataset.
+ * The Nlists of selectors of both modes are checked to be identical.
+ * </br>Run with a small heap (e.g. -Xmx) to see datasets which can only be processed in the out-of-core mode.
+ * </br>A last case builds the Nlists of the original dataset in the out-of-core mode with a large efficiency coefficient,
+ * i.e. many partitions of leaf nodes, e.g. with -Xmx96m it must succeed as the in-memory mode does.
+ */
+public class OutOfCoreBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int replication = 10;
+		long efficiency = 100;
+		String modes = "memory,out-of-core";
+		long large_efficiency = 5000;
+
+		// args: replication factor, efficiency, the file path, the modes to run, then the large efficiency of the last case
+		if (args.length > 0) replication = Integer.parseInt(args[0]);
+		if (args.length > 1) efficiency = Long.parseLong(args[1]);
+		if (args.length > 2) data_filename = args[2];
+		if (args.length > 3) modes = args[3];
+		if (args.length > 4) large_efficiency = Long.parseLong(args[4]);
+
+		File input = replicate(data_filename, replication);
+		System.out.println("Data: " + data_filename + ", replicated " + replication + " times, " + (input.length() >> 20) + " MB, efficiency " + efficiency);
+
+		INlist[] expected = null;
+		try{
+			for (String mode : modes.split(",")){
+				boolean out_of_core = mode.equals("out-of-core");
+				reset_peak_heap();
+				long start = System.currentTimeMillis();
+				InfoBase ibase = new InfoBase();
+				ibase.setEfficiency(efficiency);
+				ibase.setOutOfCore(out_of_core, null);
+				long[] times = ibase.fetch_information_with_memory_efficiency(input.getPath());
+				long time = System.currentTimeMillis() - start;
+				System.out.println(String.format("%s: %d ms (top part %d ms, subtrees %d ms), peak heap %.1f MB",
+						mode, time, times[1], times[2], peak_heap()/1048576.0));
+
+				INlist[] nlists = ibase.getSelectorNlists();
+				if (expected == null){
+					expected = nlists;
+					continue;
+				}
+				for (int i=0; i<expected.length; i++){
+					if (!expected[i].isIdentical(nlists[i])) throw new IllegalStateException("Different Nlist of selector " + i);
+				}
+			}
+		}finally{
+			input.delete();
+		}
+		expected = null;
+
+		// many partitions: the partition files written at the same time are bounded, not one write buffer per partition
+		reset_peak_heap();
+		long start = System.currentTimeMillis();
+		InfoBase ibase = new InfoBase();
+		ibase.setEfficiency(large_efficiency);
+		ibase.setOutOfCore(true, null);
+		ibase.fetch_information_with_memory_efficiency(data_filename);
+		System.out.println(String.format("out-of-core, %s with efficiency %d: %d ms, peak heap %.1f MB",
+				data_filename, large_efficiency, System.currentTimeMillis() - start, peak_heap()/1048576.0));
+	}
+
+	/**
+	 * Write the header of the dataset once and its data rows 'replication' times to a temporary file with the same extension
+	 */
+	private static File replicate(String data_filename, int replication) throws IOException {
+		boolean arff = data_filename.toLowerCase().endsWith(".arff");
+		List<String> header = new ArrayList<String>(), rows = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(data_filename));
+		String line;
+		boolean in_header = true;
+		while ((line = reader.readLine()) != null){
+			if (in_header){
+				header.add(line);
+				in_header = arff ? !line.trim().toLowerCase().startsWith("@data") : false;
+			}else if (line.trim().length() > 0) rows.add(line);
+		}
+		reader.close();
+
+		File file = File.createTempFile("replicated", arff ? ".arff" : ".csv");
+		file.deleteOnExit();
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		for (String h : header) writer.write(h + "\n");
+		for (int r=0; r<replication; r++){
+			for (String row : rows) writer.write(row + "\n");
+		}
+		writer.close();
+		return file;
+	}
+
+	private static void reset_peak_heap(){
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+		}
+	}
+
+	/**
+	 * @return the sum of the peak usages of the heap pools since reset_peak_heap(), including garbage not yet collected
+	 */
+	private static long peak_heap(){
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+			if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+		}
+		return peak;
+	}
+}
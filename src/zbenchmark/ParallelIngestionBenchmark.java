@@ -0,0 +1,84 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.prepr.Selector;
+import core.structure.INlist;
+
+/**
+ * Compare the runtime of the preprocessing and the tree construction of a dataset read in different ways:
+ * sequentially (the file is read twice), sequentially with the records kept encoded on the heap or in a spill file
+ * (the file is read once), and in parallel (CSV files, chunks are tokenized by worker threads, the file is read once).
+ * Selectors, records of selector IDs and Nlists of selectors are checked to be identical to the ones of the sequential reading.
+ */
+public class ParallelIngestionBenchmark {
+
+	private static final String[] modes = new String[]{"sequential", "cached", "cached spill", "parallel", "parallel spill"};
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int thread_count = Math.max(2, Runtime.getRuntime().availableProcessors());
+		int repeat = 5;
+
+		// args: number of threads, then the file path
+		if (args.length > 0) thread_count = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename + ", threads: " + thread_count);
+
+		InfoBase[] ibases = new InfoBase[modes.length];
+		long[][] best = new long[modes.length][];
+		for (int r=0; r<repeat; r++){
+			for (int m=0; m<modes.length; m++){
+				ibases[m] = new InfoBase();
+				ibases[m].setThreadCount(thread_count, true);
+				ibases[m].setParallelIngestion(modes[m].startsWith("parallel"));
+				ibases[m].setRecordCache(modes[m].startsWith("cached"), modes[m].endsWith("spill"));
+				best[m] = min(best[m], ibases[m].fetch_information(data_filename));
+			}
+		}
+		for (int m=1; m<modes.length; m++) check_identical(ibases[0], ibases[m], modes[m]);
+
+		System.out.println("mode\t\tpreprocessing ms\tbuild tree ms\tNlists ms\ttotal ms");
+		for (int m=0; m<modes.length; m++){
+			System.out.println(String.format("%-14s\t%d\t\t\t%d\t\t%d\t\t%d", modes[m], best[m][0], best[m][1], best[m][2],
+					best[m][0] + best[m][1] + best[m][2]));
+		}
+	}
+
+	private static long[] min(long[] best, long[] times){
+		if (best == null) return times.clone();
+		for (int i=0; i<best.length; i++) best[i] = Math.min(best[i], times[i]);
+		return best;
+	}
+
+	private static void check_identical(InfoBase expected, InfoBase actual, String mode){
+		if (expected.getRowCount() != actual.getRowCount() || expected.getMinSupCount() != actual.getMinSupCount()
+				|| expected.getDistinctValueCount() != actual.getDistinctValueCount())
+			throw new IllegalStateException("Different dataset information");
+
+		List<Selector> selectors1 = expected.getConstructingSelectors(), selectors2 = actual.getConstructingSelectors();
+		if (selectors1.size() != selectors2.size()) throw new IllegalStateException("Different number of selectors");
+		for (int i=0; i<selectors1.size(); i++){
+			Selector s1 = selectors1.get(i), s2 = selectors2.get(i);
+			if (s1.selectorID != s2.selectorID || s1.attributeID != s2.attributeID || s1.frequency != s2.frequency
+					|| !s1.distinctValue.equals(s2.distinctValue) || s1.distinctValueID != s2.distinctValueID)
+				throw new IllegalStateException("Different selector " + i);
+		}
+
+		int[][] records1 = expected.getSelectorIDRecords(), records2 = actual.getSelectorIDRecords();
+		for (int i=0; i<records1.length; i++){
+			if (!Arrays.equals(records1[i], records2[i])) throw new IllegalStateException("Different record " + i);
+		}
+
+		INlist[] nlists1 = expected.getSelectorNlists(), nlists2 = actual.getSelectorNlists();
+		for (int i=0; i<nlists1.length; i++){
+			if (!nlists1[i].isIdentical(nlists2[i]) || nlists1[i].supportCount() != nlists2[i].supportCount())
+				throw new IllegalStateException("Different Nlist of selector " + i);
+		}
+		System.out.println("Identical results of " + mode + ": " + selectors1.size() + " selectors, " + records1.length + " records");
+	}
+}
@@ -0,0 +1,59 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import nlistbase.InfoBaseQueryExecutor;
+
+/**
+ * Benchmark the throughput of support count queries of random itemsets with 1 to N worker threads
+ */
+public class ParallelQueryScalingBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int efficiency = 10;
+		int n_itemsets = 1000000;
+		int max_threads = Runtime.getRuntime().availableProcessors();
+		int min_length = 2;
+		int max_length = 8;
+		int seed = 0;	// for reproducibility
+		int repeat = 3;
+
+		// args: data file name, number of random itemsets, maximum number of threads
+		if (args.length > 0) data_filename = args[0];
+		if (args.length > 1) n_itemsets = Integer.parseInt(args[1]);
+		if (args.length > 2) max_threads = Integer.parseInt(args[2]);
+
+		InfoBase ibase = new InfoBase();
+		ibase.setEfficiency(efficiency);
+		ibase.fetch_information_with_memory_efficiency(data_filename);
+
+		int[][] itemsets = ItemsetGenerator.gen_random_itemsets(ibase.getSelectorIDRecords(),
+																n_itemsets, min_length, max_length, seed);
+		int[] expected = ibase.support_counts_for_itemsets(itemsets);
+
+		System.out.println("\nThreads\tTime (ms)\tQueries/s\tSpeedup");
+		double base_time = 0;
+		for (int thread_count = 1; thread_count <= max_threads; thread_count++){
+			InfoBaseQueryExecutor executor = new InfoBaseQueryExecutor(ibase, thread_count);
+
+			long best = Long.MAX_VALUE;
+			for (int r=0; r<repeat; r++){
+				long start = System.nanoTime();
+				int[] supports = executor.support_counts(itemsets);
+				best = Math.min(best, System.nanoTime() - start);
+
+				for (int i=0; i<supports.length; i++){
+					if (supports[i] != expected[i]) throw new IllegalStateException("Wrong support count of itemset " + i);
+				}
+			}
+			executor.shutdown();
+
+			double time = best/1e6;
+			if (thread_count == 1) base_time = time;
+			System.out.println(String.format("%d\t%.1f\t%.0f\t%.2f", thread_count, time, itemsets.length/(time/1000), base_time/time));
+		}
+	}
+}
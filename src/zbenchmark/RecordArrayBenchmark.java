@@ -0,0 +1,91 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+import core.structure.P3CTree;
+import core.structure.PPCNode;
+import core.structure.PPCTree;
+import core.structure.RecordArray;
+
+/**
+ * Compare the heap usage of the records encoded in selector IDs as one array per record (int[][]) and in the CSR form
+ * (RecordArray). The records of a dataset are replicated to get a large number of records. The runtime of building the
+ * Nlists with a P3CTree whose top part keeps indices of the records in the RecordArray is also reported,
+ * the Nlists are checked to be identical to the ones of a PPCTree built from the int[][] records.
+ */
+public class RecordArrayBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int replication = 20;
+		int efficiency = 100;
+
+		// args: replication factor, then the file path
+		if (args.length > 0) replication = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename + ", replicated " + replication + " times");
+
+		InfoBase ibase = new InfoBase();
+		ibase.fetch_information(data_filename);
+		RecordArray source = ibase.getRecordArray();
+		int selector_count = ibase.getConstructingSelectorCount();
+		int row_count = source.size()*replication;
+		ibase = null;
+
+		long heap = used_heap();
+		int[][] arrays = new int[row_count][];
+		for (int i=0; i<row_count; i++) arrays[i] = source.record(i % source.size());
+		long arrays_heap = used_heap() - heap;
+
+		heap = used_heap();
+		RecordArray records = new RecordArray(row_count);
+		for (int i=0; i<row_count; i++) records.add(arrays[i]);
+		records.shrink();
+		long records_heap = used_heap() - heap;
+
+		System.out.println(String.format("%d records, %d IDs: int[][] %.1f MB, RecordArray %.1f MB (estimated %.1f MB)",
+				row_count, records.total_length(), arrays_heap/1048576.0, records_heap/1048576.0, records.memory()/1048576.0));
+
+		// Nlists by a PPCTree from the int[][] records
+		long start = System.currentTimeMillis();
+		PPCTree ppctree = new PPCTree();
+		for (int[] record : arrays) ppctree.insert_record(record);
+		ppctree.assignPrePosOrderCode();
+		INlist[] expected = ppctree.create_Nlist_for_selectors_arr(selector_count);
+		System.out.println("PPCTree from int[][]: " + (System.currentTimeMillis() - start) + " ms");
+		ppctree.free();
+		arrays = null;
+
+		// Nlists by a P3CTree from the RecordArray
+		heap = used_heap();
+		start = System.currentTimeMillis();
+		P3CTree p3ctree = new P3CTree(selector_count);
+		p3ctree.buildTopPart(records, row_count/efficiency);
+		long top_time = System.currentTimeMillis() - start;
+		long top_heap = used_heap() - heap;
+		start = System.currentTimeMillis() - top_time;
+		for (PPCNode leaf_node : p3ctree.getLeafNodes()){
+			p3ctree.buildSubtree(leaf_node);
+			p3ctree.assignPrePosOrderCodeSubTree(leaf_node);
+			p3ctree.update_nlists_from_subtree(leaf_node);
+			p3ctree.freeSubTrees(leaf_node);
+		}
+		p3ctree.shrink_nlists();
+		System.out.println(String.format("P3CTree from RecordArray: %d ms (top part %d ms, %d leaf nodes, %.1f MB)",
+				System.currentTimeMillis() - start, top_time, p3ctree.getLeafNodes().size(), top_heap/1048576.0));
+
+		INlist[] nlists = p3ctree.get_selector_nlists();
+		for (int i=0; i<selector_count; i++){
+			if (!expected[i].isIdentical(nlists[i])) throw new IllegalStateException("Different Nlist of selector " + i);
+		}
+	}
+
+	private static long used_heap(){
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
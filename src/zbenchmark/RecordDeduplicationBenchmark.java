@@ -0,0 +1,82 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.ArrayPPCTree;
+import core.structure.INlist;
+import core.structure.IPPCTree;
+import core.structure.PPCTree;
+import core.structure.RecordArray;
+import core.structure.RecordDeduplicator;
+
+/**
+ * Compare building a PPCTree (and an ArrayPPCTree) by inserting the encoded records one by one with collapsing identical
+ * records first and inserting each distinct record once with its multiplicity (RecordDeduplicator). The records of a dataset
+ * can be replicated to get a dataset with many identical records.
+ * The Nlists of selectors of both ways are checked to be identical.
+ */
+public class RecordDeduplicationBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int replication = 1;
+		int repeat = 3;
+
+		// args: replication factor, then the file path
+		if (args.length > 0) replication = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+
+		InfoBase ibase = new InfoBase();
+		ibase.fetch_information(data_filename);
+		RecordArray source = ibase.getRecordArray();
+		int selector_count = ibase.getConstructingSelectorCount();
+		ibase = null;
+
+		RecordArray records = new RecordArray(source.size()*replication);
+		for (int i=0; i<source.size()*replication; i++) records.add(source.record(i % source.size()));
+		records.shrink();
+		source = null;
+
+		int[] weights = RecordDeduplicator.weights(records);
+		System.out.println(String.format("Data: %s replicated %d times, %d records, %d distinct", data_filename, replication, records.size(),
+				RecordDeduplicator.distinct_count(weights)));
+
+		System.out.println("tree\t\tway\t\t\tdedup ms\tbuild ms");
+		for (boolean array_tree : new boolean[]{false, true}){
+			String tree_name = array_tree ? "ArrayPPCTree" : "PPCTree\t";
+			INlist[] expected = null;
+			for (int way=0; way<2; way++){
+				long best_dedup = Long.MAX_VALUE, best_build = Long.MAX_VALUE;
+				INlist[] nlists = null;
+				for (int r=0; r<repeat; r++){
+					IPPCTree tree = array_tree ? new ArrayPPCTree() : new PPCTree();
+					long start = System.currentTimeMillis(), dedup_time = 0;
+					if (way == 0){
+						for (int i=0; i<records.size(); i++) tree.insert_record(records.record(i));
+					}else{
+						int[] record_weights = RecordDeduplicator.weights(records);
+						dedup_time = System.currentTimeMillis() - start;
+						for (int i=0; i<records.size(); i++){
+							if (record_weights[i] > 0) tree.insert_record(records.record(i), record_weights[i]);
+						}
+					}
+					long build_time = System.currentTimeMillis() - start - dedup_time;
+					tree.assignPrePosOrderCode();
+					nlists = tree.create_Nlist_for_selectors_arr(selector_count);
+					tree.free();
+					best_dedup = Math.min(best_dedup, dedup_time);
+					best_build = Math.min(best_build, build_time);
+				}
+
+				if (expected == null) expected = nlists;
+				for (int i=0; i<selector_count; i++){
+					if (!expected[i].isIdentical(nlists[i])) throw new IllegalStateException("Different Nlist of selector " + i);
+				}
+				String way_name = (way == 0) ? "insert one by one" : "collapsed, weighted";
+				System.out.println(String.format("%s\t%s\t%d\t\t%d", tree_name, way_name, best_dedup, best_build));
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.CompressedNlist;
+import core.structure.INlist;
+import core.structure.NlistLayout;
+import core.structure.Node;
+import core.structure.SkipIndex;
+import core.structure.Supporter;
+
+/**
+ * Compare the runtime of the first join of random itemsets, i.e. the Nlist of the first selector (nlist1) joined with
+ * the Nlist of the second selector (nlist2), with and without skip indexes on the long Nlists of selectors,
+ * for Nodelists (linear merge, skipping, galloping) and CompressedNlists (block scan, skipping).
+ * The joins are grouped by the ratio between the lengths of the two Nlists, separately for a shorter and a longer nlist1.
+ * Runtimes are of count-only joins, the end-to-end runtime of support counts of the itemsets is also reported.
+ * Results with skip indexes are checked to be identical to the ones without.
+ */
+public class SkipIndexBenchmark {
+
+	private static final int[] ratio_bounds = new int[]{1, 4, 16, 64, 256, 1024};
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int n_itemsets = 50000;
+		int efficiency = 10;
+		int min_size = 1024;
+		int block_size = SkipIndex.DEFAULT_BLOCK_SIZE;
+		int seed = 0;	// for reproducibility
+		int repeat = 5;
+
+		// args: number of random itemsets, minimum size of indexed Nlists, block size, then the file path
+		if (args.length > 0) n_itemsets = Integer.parseInt(args[0]);
+		if (args.length > 1) min_size = Integer.parseInt(args[1]);
+		if (args.length > 2) block_size = Integer.parseInt(args[2]);
+		if (args.length > 3) data_filename = args[3];
+		System.out.println("Data: " + data_filename);
+
+		InfoBase ibase = new InfoBase();
+		ibase.setEfficiency(efficiency);
+		ibase.fetch_information_with_memory_efficiency(data_filename);
+		int[][] itemsets = ItemsetGenerator.gen_random_itemsets(ibase.getSelectorIDRecords(), n_itemsets, 2, 8, seed);
+
+		// end to end: queries with skip indexes built by the InfoBase
+		InfoBase indexed_ibase = new InfoBase();
+		indexed_ibase.setEfficiency(efficiency);
+		indexed_ibase.setSkipIndex(min_size, block_size);
+		indexed_ibase.fetch_information_with_memory_efficiency(data_filename);
+		System.out.println(String.format("InfoBase skip indexes: %d of %d Nlists (>= %d nodes), %d bytes",
+				indexed_ibase.getSkipIndexedCount(), indexed_ibase.getSelectorNlists().length, min_size, indexed_ibase.getSkipIndexMemory()));
+		for (int[] itemset : itemsets){
+			if (ibase.support_count_for_itemset(itemset) != indexed_ibase.support_count_for_itemset(itemset)
+					|| !ibase.create_nlist_for_itemset(itemset).isIdentical(indexed_ibase.create_nlist_for_itemset(itemset)))
+				throw new IllegalStateException("Different results with skip indexes of " + Arrays.toString(itemset));
+		}
+
+		for (InfoBase query_ibase : new InfoBase[]{ibase, indexed_ibase}){
+			long best = Long.MAX_VALUE;
+			for (int r=0; r<repeat; r++){
+				long start = System.currentTimeMillis();
+				for (int[] itemset : itemsets) query_ibase.support_count_for_itemset(itemset);
+				best = Math.min(best, System.currentTimeMillis() - start);
+			}
+			System.out.println(String.format("support_count of %d itemsets %s skip indexes: %d ms",
+					itemsets.length, (query_ibase == ibase) ? "without" : "with", best));
+		}
+
+		// copies of the Nlists of selectors, with and without skip indexes
+		INlist[] plain = ibase.getSelectorNlists();
+		INlist[] indexed = new INlist[plain.length], compressed = new INlist[plain.length], compressed_indexed = new INlist[plain.length];
+		for (int i=0; i<plain.length; i++){
+			compressed[i] = NlistLayout.COMPRESSED.convert(plain[i]);
+			compressed_indexed[i] = NlistLayout.COMPRESSED.convert(plain[i]);
+			indexed[i] = ((CompressedNlist) compressed[i]).decompress();
+		}
+		long memory = SkipIndex.attach_all(indexed, min_size, block_size);
+		SkipIndex.attach_all(compressed_indexed, min_size, block_size);
+		long nodes = 0;
+		for (INlist nlist : plain) nodes += nlist.size();
+		System.out.println(String.format("Skip indexes: %d bytes, %.3f bytes per node (Nodelist: 12 bytes per node)",
+				memory, (double) memory/nodes));
+
+		// group the first joins (both operands are Nlists of selectors) by the ratio between the lengths of the two Nlists,
+		// groups [0, ratio_bounds.length) for nlist1 not longer than nlist2, the others for nlist1 longer than nlist2
+		List<List<int[]>> groups = new ArrayList<List<int[]>>();
+		for (int b=0; b<2*ratio_bounds.length; b++) groups.add(new ArrayList<int[]>());
+		for (int[] itemset : itemsets){
+			INlist nlist1 = plain[itemset[0]], nlist2 = plain[itemset[1]];
+			if (nlist1.size() == 0 || nlist2.size() == 0) continue;
+
+			long ratio = Math.max(nlist1.size(), nlist2.size()) / Math.min(nlist1.size(), nlist2.size());
+			int b = ratio_bounds.length-1;
+			while (ratio < ratio_bounds[b]) b--;
+			if (nlist1.size() > nlist2.size()) b += ratio_bounds.length;
+			groups.get(b).add(new int[]{itemset[0], itemset[1]});
+		}
+
+		int default_ratio = Supporter.getGallopRatio();
+		System.out.println("ratio\t\t\tjoins\tmerge ms\tskip ms\tgallop ms\tcompressed ms\tcompressed skip ms");
+		for (int b=0; b<groups.size(); b++){
+			List<int[]> pairs = groups.get(b);
+			if (pairs.isEmpty()) continue;
+
+			Supporter.setGallopRatio(Integer.MAX_VALUE);
+			Node i1_node = new Node(), i2_node = new Node();
+			for (int[] pair : pairs){
+				INlist expected = Supporter.create_nlist(plain[pair[0]], plain[pair[1]]);
+				for (INlist[] nlists : new INlist[][]{indexed, compressed, compressed_indexed}){
+					if (!expected.isIdentical(Supporter.create_nlist(nlists[pair[0]], nlists[pair[1]]))
+							|| expected.supportCount() != Supporter.support_count(nlists[pair[0]], nlists[pair[1]], i1_node, i2_node))
+						throw new IllegalStateException("Skipping join differs from the linear merge");
+				}
+			}
+
+			long merge_time = time(pairs, plain, repeat);
+			long skip_time = time(pairs, indexed, repeat);
+			long compressed_time = time(pairs, compressed, repeat);
+			long compressed_skip_time = time(pairs, compressed_indexed, repeat);
+			Supporter.setGallopRatio(2);
+			long gallop_time = time(pairs, plain, repeat);
+			Supporter.setGallopRatio(default_ratio);
+
+			int r = b % ratio_bounds.length;
+			String range = (r == ratio_bounds.length-1) ? ">=" + ratio_bounds[r] : ratio_bounds[r] + "-" + ratio_bounds[r+1];
+			range = ((b < ratio_bounds.length) ? "nlist2/nlist1 " : "nlist1/nlist2 ") + range;
+			System.out.println(String.format("%s\t%d\t%d\t%d\t%d\t%d\t%d", range, pairs.size(),
+					merge_time, skip_time, gallop_time, compressed_time, compressed_skip_time));
+		}
+	}
+
+	/**
+	 * @return the minimum runtime (ms) of count-only joins of all the pairs of selectors over 'repeat' runs,
+	 * the Nlists of the selectors are taken from 'nlists'
+	 */
+	private static long time(List<int[]> pairs, INlist[] nlists, int repeat){
+		long best = Long.MAX_VALUE;
+		Node i1_node = new Node(), i2_node = new Node();
+		for (int r=0; r<repeat; r++){
+			long start = System.nanoTime();
+			long checksum = 0;
+			for (int[] pair : pairs){
+				checksum += Supporter.support_count(nlists[pair[0]], nlists[pair[1]], i1_node, i2_node);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+			if (checksum < 0) System.out.println(checksum);	// keep the result alive
+		}
+		return best/1000000;
+	}
+}
@@ -0,0 +1,90 @@
+package zbenchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.prepr.Selector;
+import core.structure.INlist;
+
+/**
+ * Compare the runtime of fetching information from an input dataset with the runtime of loading
+ * a binary snapshot of it (memory-mapped and copied into the heap), and check that the loaded information
+ * is identical to the fetched one.
+ */
+public class SnapshotBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		String snapshot_filename = "data/output/snapshot.p3cs";
+		int n_itemsets = 100000;
+		int efficiency = 10;
+		int seed = 0;	// for reproducibility
+
+		// args: input file path, snapshot file path
+		if (args.length > 0) data_filename = args[0];
+		if (args.length > 1) snapshot_filename = args[1];
+		System.out.println("Data: " + data_filename);
+
+		InfoBase fetched = new InfoBase();
+		fetched.setEfficiency(efficiency);
+		long start = System.currentTimeMillis();
+		fetched.fetch_information_with_memory_efficiency(data_filename);
+		long fetch_time = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		fetched.save_snapshot(snapshot_filename, true);
+		long save_time = System.currentTimeMillis() - start;
+
+		InfoBase mapped = new InfoBase();
+		long mapped_time = mapped.load_snapshot(snapshot_filename, true);
+
+		InfoBase copied = new InfoBase();
+		long copied_time = copied.load_snapshot(snapshot_filename, false);
+
+		int[][] itemsets = ItemsetGenerator.gen_random_itemsets(fetched.getSelectorIDRecords(), n_itemsets, 2, 8, seed);
+		check(fetched, mapped, itemsets);
+		check(fetched, copied, itemsets);
+
+		System.out.println(String.format("fetch: %d ms, save: %d ms (%d bytes), load mapped: %d ms, load copied: %d ms",
+				fetch_time, save_time, new File(snapshot_filename).length(), mapped_time, copied_time));
+	}
+
+	/**
+	 * Throw an exception if the information of 'loaded' is not identical to the one of 'fetched'
+	 */
+	private static void check(InfoBase fetched, InfoBase loaded, int[][] itemsets){
+		if (fetched.getRowCount() != loaded.getRowCount()
+				|| fetched.getAttrCount() != loaded.getAttrCount()
+				|| fetched.getConstructingSelectorCount() != loaded.getConstructingSelectorCount()
+				|| !fetched.getClassIDs().equals(loaded.getClassIDs())
+				|| !Arrays.equals(fetched.getRootChildPreCodes(), loaded.getRootChildPreCodes()))
+			throw new IllegalStateException("Different counts");
+
+		for (int i=0; i<fetched.getConstructingSelectorCount(); i++){
+			Selector s1 = fetched.getConstructingSelectors().get(i), s2 = loaded.getConstructingSelectors().get(i);
+			if (!s1.condition.equals(s2.condition) || s1.frequency != s2.frequency
+					|| s1.selectorID != s2.selectorID || s1.distinctValueID != s2.distinctValueID)
+				throw new IllegalStateException("Different selector " + i);
+		}
+
+		INlist[] nlists1 = fetched.getSelectorNlists(), nlists2 = loaded.getSelectorNlists();
+		for (int i=0; i<nlists1.length; i++){
+			if (!nlists1[i].isIdentical(nlists2[i]) || nlists1[i].supportCount() != nlists2[i].supportCount())
+				throw new IllegalStateException("Different Nlist of selector " + i);
+		}
+
+		int[][] records1 = fetched.getSelectorIDRecords(), records2 = loaded.getSelectorIDRecords();
+		for (int i=0; i<records1.length; i++){
+			if (!Arrays.equals(records1[i], records2[i])) throw new IllegalStateException("Different record " + i);
+		}
+
+		for (int[] itemset : itemsets){
+			if (fetched.support_count_for_itemset(itemset) != loaded.support_count_for_itemset(itemset)
+					|| !fetched.create_nlist_for_itemset(itemset).isIdentical(loaded.create_nlist_for_itemset(itemset)))
+				throw new IllegalStateException("Different results of " + Arrays.toString(itemset));
+		}
+	}
+}
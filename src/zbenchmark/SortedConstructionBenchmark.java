@@ -0,0 +1,91 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.ArrayPPCTree;
+import core.structure.INlist;
+import core.structure.IPPCTree;
+import core.structure.PPCTree;
+import core.structure.RecordArray;
+import core.structure.RecordSorter;
+
+/**
+ * Compare the runtime of building a PPCTree (and an ArrayPPCTree) by inserting the encoded records one by one
+ * with the sort-based construction: the records are sorted by RecordSorter (sequentially and in parallel),
+ * then the tree is built in one sweep. The records of a dataset are replicated to get a large number of records.
+ * The Nlists of selectors of both ways are checked to be identical.
+ */
+public class SortedConstructionBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException, InterruptedException {
+		String data_filename = "data/input/connect-4.csv";
+		int replication = 20;
+		int thread_count = Math.max(2, Runtime.getRuntime().availableProcessors());
+		int repeat = 3;
+
+		// args: replication factor, number of threads, then the file path
+		if (args.length > 0) replication = Integer.parseInt(args[0]);
+		if (args.length > 1) thread_count = Integer.parseInt(args[1]);
+		if (args.length > 2) data_filename = args[2];
+		System.out.println("Data: " + data_filename + ", replicated " + replication + " times, " + thread_count + " threads");
+
+		InfoBase ibase = new InfoBase();
+		ibase.fetch_information(data_filename);
+		RecordArray source = ibase.getRecordArray();
+		int selector_count = ibase.getConstructingSelectorCount();
+		int row_count = source.size()*replication;
+		ibase = null;
+
+		RecordArray records = new RecordArray(row_count);
+		for (int i=0; i<row_count; i++){
+			int r = i % source.size();
+			int[] ids = source.ids(r);
+			int[] record = new int[source.length(r)];
+			System.arraycopy(ids, source.offset(r), record, 0, record.length);
+			records.add(record);
+		}
+		records.shrink();
+
+		System.out.println("tree\t\tway\t\t\tsort ms\tbuild ms");
+		for (boolean array_tree : new boolean[]{false, true}){
+			String tree_name = array_tree ? "ArrayPPCTree" : "PPCTree\t";
+			INlist[] expected = null;
+			for (int way=0; way<3; way++){
+				long best_sort = Long.MAX_VALUE, best_build = Long.MAX_VALUE;
+				INlist[] nlists = null;
+				for (int r=0; r<repeat; r++){
+					IPPCTree tree = array_tree ? new ArrayPPCTree() : new PPCTree();
+					long start = System.currentTimeMillis(), sort_time = 0;
+					if (way == 0){
+						int[] record = null;
+						for (int i=0; i<row_count; i++){
+							int length = records.length(i);
+							if (record == null || record.length != length) record = new int[length];
+							System.arraycopy(records.ids(i), records.offset(i), record, 0, length);
+							tree.insert_record(record);
+						}
+					}else{
+						int[] order = RecordSorter.sorted_order(records, selector_count, (way == 1) ? 1 : thread_count);
+						sort_time = System.currentTimeMillis() - start;
+						tree.insert_sorted_records(records, order);
+					}
+					long build_time = System.currentTimeMillis() - start - sort_time;
+					tree.assignPrePosOrderCode();
+					nlists = tree.create_Nlist_for_selectors_arr(selector_count);
+					tree.free();
+					best_sort = Math.min(best_sort, sort_time);
+					best_build = Math.min(best_build, build_time);
+				}
+
+				if (expected == null) expected = nlists;
+				for (int i=0; i<selector_count; i++){
+					if (!expected[i].isIdentical(nlists[i])) throw new IllegalStateException("Different Nlist of selector " + i);
+				}
+				String way_name = (way == 0) ? "insert one by one" : (way == 1) ? "sorted, sequential" : "sorted, parallel";
+				System.out.println(String.format("%s\t%s\t%d\t%d", tree_name, way_name, best_sort, best_build));
+			}
+		}
+	}
+}
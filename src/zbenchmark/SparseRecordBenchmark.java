@@ -0,0 +1,133 @@
+package zbenchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.prepr.Attribute;
+import core.prepr.DataReader;
+import core.prepr.Selector;
+import core.prepr.SparseRecord;
+
+/**
+ * Compare the runtime of reading the records of a sparse ARFF dataset as selector IDs in two ways:
+ * records expanded to all attributes (next_record() then a lookup per attribute, as before the sparse record API),
+ * and records in the sparse form (next_sparse_record(...) then convert_sparse_record(...), proportional to the nonzeros).
+ * The dataset is generated with many attributes and few nonzeros per row. Records of both ways are checked to be identical,
+ * the end-to-end runtime of InfoBase.fetch_information is also reported.
+ */
+public class SparseRecordBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		int attr_count = 100000;
+		int row_count = 20000;
+		int nonzeros = 20;
+		int seed = 0;	// for reproducibility
+		int repeat = 3;
+
+		// args: number of attributes, number of rows, number of nonzeros per row
+		if (args.length > 0) attr_count = Integer.parseInt(args[0]);
+		if (args.length > 1) row_count = Integer.parseInt(args[1]);
+		if (args.length > 2) nonzeros = Integer.parseInt(args[2]);
+
+		File file = File.createTempFile("sparse", ".arff");
+		file.deleteOnExit();
+		write_sparse_arff(file, attr_count, row_count, nonzeros, seed);
+		String data_filename = file.getPath();
+		System.out.println(String.format("Data: %d attributes, %d rows, %d nonzeros per row", attr_count, row_count, nonzeros));
+
+		DataReader dr = DataReader.getDataReader(data_filename);
+		dr.fetch_info(data_filename, 0, 0.001);
+		int[] id_buffer = new int[attr_count];
+		SparseRecord record = new SparseRecord();
+
+		// identical records
+		int[][] records = new int[row_count][];
+		dr.bind_datasource(data_filename);
+		for (int i=0; i<row_count; i++) records[i] = dense_record(dr, id_buffer);
+		dr.bind_datasource(data_filename);
+		for (int i=0; i<row_count; i++){
+			int[] id_record = dr.convert_sparse_record(dr.next_sparse_record(record), id_buffer);
+			Arrays.sort(id_record);
+			Arrays.sort(records[i]);
+			if (!Arrays.equals(records[i], id_record)) throw new IllegalStateException("Different record " + i);
+		}
+
+		System.out.println("path\t\tms");
+		for (boolean dense : new boolean[]{true, false}){
+			long best = Long.MAX_VALUE;
+			for (int r=0; r<repeat; r++){
+				dr.bind_datasource(data_filename);
+				long checksum = 0, start = System.nanoTime();
+				if (dense){
+					int[] id_record;
+					while ((id_record = dense_record(dr, id_buffer)) != null) checksum += id_record.length;
+				}else{
+					while (dr.next_sparse_record(record) != null) checksum += dr.convert_sparse_record(record, id_buffer).length;
+				}
+				best = Math.min(best, System.nanoTime() - start);
+				if (checksum < 0) System.out.println(checksum);	// keep the result alive
+			}
+			System.out.println(String.format("%s\t%d", dense ? "dense records" : "sparse records", best/1000000));
+		}
+
+		InfoBase ibase = new InfoBase();
+		long[] times = ibase.fetch_information(data_filename);
+		System.out.println(String.format("InfoBase.fetch_information: preprocessing %d ms, build tree %d ms, Nlists %d ms",
+				times[0], times[1], times[2]));
+	}
+
+	/**
+	 * The next record expanded to all attributes, converted as in InfoBase
+	 */
+	private static int[] dense_record(DataReader dr, int[] id_buffer) throws IOException {
+		String[] tokens = dr.next_record();
+		if (tokens == null) return null;
+		List<Attribute> attributes = dr.getAttributes();
+		int count = 0;
+		for (int i=0; i<attributes.size(); i++){
+			String value = (i < tokens.length && tokens[i] != null) ? tokens[i].trim() : "?";
+			Selector s = attributes.get(i).getSelector(value);
+			if (s != null && s.selectorID != Selector.INVALID_ID) id_buffer[count++] = s.selectorID;
+		}
+		int[] id_record = new int[count];
+		System.arraycopy(id_buffer, 0, id_record, 0, count);
+		return id_record;
+	}
+
+	/**
+	 * Write a binary ARFF dataset with sparse rows, attribute indices of a row are drawn with a skew to low indices
+	 */
+	private static void write_sparse_arff(File file, int attr_count, int row_count, int nonzeros, int seed) throws IOException {
+		Random random = new Random(seed);
+		try (BufferedWriter w = new BufferedWriter(new FileWriter(file))){
+			w.write("@relation sparse\n");
+			for (int i=0; i<attr_count; i++) w.write("@attribute f" + i + " {0,1}\n");
+			w.write("@data\n");
+			StringBuilder sb = new StringBuilder();
+			int[] indices = new int[nonzeros];
+			for (int r=0; r<row_count; r++){
+				for (int k=0; k<nonzeros; k++){
+					double u = random.nextDouble();
+					indices[k] = (int) (u*u*attr_count);
+				}
+				Arrays.sort(indices);
+				sb.setLength(0);
+				sb.append('{');
+				for (int k=0; k<nonzeros; k++){
+					if (k > 0 && indices[k] == indices[k-1]) continue;
+					if (sb.length() > 1) sb.append(", ");
+					sb.append(indices[k]).append(" 1");
+				}
+				sb.append("}\n");
+				w.write(sb.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import core.prepr.Attribute;
+import core.prepr.DataReader;
+import core.prepr.Selector;
+
+/**
+ * Compare the runtime and the allocated bytes per record of reading the records of a CSV dataset as selector IDs
+ * (the second pass over the input dataset in InfoBase) in two ways:
+ * String values (next_record() then Attribute.getSelector(...) of each value), and the char buffer path
+ * (next_id_record(...), values are looked up as slices in per-attribute tables). The runtime and allocated bytes of
+ * fetch_info (the first pass, on the char buffer path) are also reported. Records of both ways are checked to be identical.
+ */
+public class TokenizerBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException {
+		String data_filename = "data/input/connect-4.csv";
+		int repeat = 5;
+
+		// args: the file path
+		if (args.length > 0) data_filename = args[0];
+		System.out.println("Data: " + data_filename);
+
+		DataReader dr = DataReader.getDataReader(data_filename);
+		long fetch_time = Long.MAX_VALUE, fetch_bytes = 0;
+		for (int r=0; r<repeat; r++){
+			dr = DataReader.getDataReader(data_filename);
+			long bytes = allocated_bytes(), start = System.nanoTime();
+			dr.fetch_info(data_filename, 1, 0.001);
+			fetch_time = Math.min(fetch_time, System.nanoTime() - start);
+			fetch_bytes = allocated_bytes() - bytes;
+		}
+		int row_count = dr.getRowCount();
+		System.out.println(String.format("fetch_info: %d ms, %.1f allocated bytes per record",
+				fetch_time/1000000, (double) fetch_bytes/row_count));
+
+		// identical records
+		int[] id_buffer = new int[dr.getAttrCount()];
+		int[][] records = new int[row_count][];
+		dr.bind_datasource(data_filename);
+		for (int i=0; i<row_count; i++) records[i] = string_record(dr, id_buffer);
+		dr.bind_datasource(data_filename);
+		for (int i=0; i<row_count; i++){
+			if (!Arrays.equals(records[i], dr.next_id_record(id_buffer)))
+				throw new IllegalStateException("Different record " + i);
+		}
+		if (dr.next_id_record(id_buffer) != null) throw new IllegalStateException("Different number of records");
+
+		System.out.println("path\t\tms\tallocated bytes per record");
+		for (boolean string_path : new boolean[]{true, false}){
+			long best = Long.MAX_VALUE, best_bytes = 0;
+			for (int r=0; r<repeat; r++){
+				dr.bind_datasource(data_filename);
+				long checksum = 0;
+				long bytes = allocated_bytes(), start = System.nanoTime();
+				int[] id_record;
+				while ((id_record = string_path ? string_record(dr, id_buffer) : dr.next_id_record(id_buffer)) != null){
+					checksum += id_record.length;
+				}
+				long time = System.nanoTime() - start;
+				bytes = allocated_bytes() - bytes;
+				if (time < best){
+					best = time;
+					best_bytes = bytes;
+				}
+				if (checksum < 0) System.out.println(checksum);	// keep the result alive
+			}
+			System.out.println(String.format("%s\t%d\t%.1f", string_path ? "String values" : "char buffer",
+					best/1000000, (double) best_bytes/row_count));
+		}
+	}
+
+	/**
+	 * The next record by String values, converted as in InfoBase
+	 */
+	private static int[] string_record(DataReader dr, int[] id_buffer) throws IOException {
+		String[] tokens = dr.next_record();
+		if (tokens == null) return null;
+		List<Attribute> attributes = dr.getAttributes();
+		int count = 0;
+		for (int i=0; i<attributes.size(); i++){
+			String value = (i < tokens.length && tokens[i] != null) ? tokens[i].trim() : "?";
+			Selector s = attributes.get(i).getSelector(value);
+			if (s != null && s.selectorID != Selector.INVALID_ID) id_buffer[count++] = s.selectorID;
+		}
+		int[] id_record = new int[count];
+		System.arraycopy(id_buffer, 0, id_record, 0, count);
+		return id_record;
+	}
+
+	/**
+	 * @return bytes allocated by the current thread so far (HotSpot), 0 if it is not supported
+	 */
+	private static long allocated_bytes(){
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+}
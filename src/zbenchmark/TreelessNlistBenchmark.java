@@ -0,0 +1,82 @@
+package zbenchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.zip.DataFormatException;
+
+import nlistbase.InfoBase;
+import core.structure.INlist;
+import core.structure.PPCTree;
+import core.structure.RecordArray;
+import core.structure.RecordSorter;
+import core.structure.TreelessNlistBuilder;
+
+/**
+ * Compare building the Nlists of selectors with a PPCTree (records inserted one by one) and with the TreelessNlistBuilder
+ * (records sorted, then the Nlists are streamed without tree nodes). The records of a dataset are replicated to get a large
+ * number of records. Besides the runtime, the heap held while building (the tree, or the sorted indices) is reported.
+ * The Nlists of selectors of both ways are checked to be identical.
+ */
+public class TreelessNlistBenchmark {
+
+	public static void main(String[] args) throws IOException, DataFormatException, InterruptedException {
+		String data_filename = "data/input/connect-4.csv";
+		int replication = 20;
+
+		// args: replication factor, then the file path
+		if (args.length > 0) replication = Integer.parseInt(args[0]);
+		if (args.length > 1) data_filename = args[1];
+		System.out.println("Data: " + data_filename + ", replicated " + replication + " times");
+
+		InfoBase ibase = new InfoBase();
+		ibase.fetch_information(data_filename);
+		RecordArray source = ibase.getRecordArray();
+		int selector_count = ibase.getConstructingSelectorCount();
+		int row_count = source.size()*replication;
+		ibase = null;
+
+		RecordArray records = new RecordArray(row_count);
+		for (int i=0; i<row_count; i++) records.add(source.record(i % source.size()));
+		records.shrink();
+		source = null;
+		System.out.println(String.format("%d records, %.1f MB", row_count, records.memory()/1048576.0));
+
+		// Nlists by a PPCTree
+		long heap = used_heap();
+		long start = System.currentTimeMillis();
+		PPCTree ppctree = new PPCTree();
+		for (int i=0; i<row_count; i++) ppctree.insert_record(records.record(i));
+		ppctree.assignPrePosOrderCode();
+		long tree_time = System.currentTimeMillis() - start;
+		long tree_heap = used_heap() - heap;
+		start = System.currentTimeMillis();
+		INlist[] expected = ppctree.create_Nlist_for_selectors_arr(selector_count);
+		long nlist_time = System.currentTimeMillis() - start;
+		System.out.println(String.format("PPCTree: build %d ms, Nlists %d ms, %d nodes, tree %.1f MB",
+				tree_time, nlist_time, ppctree.countNodes(), tree_heap/1048576.0));
+		ppctree.free();
+		ppctree = null;
+
+		// Nlists without a tree
+		heap = used_heap();
+		start = System.currentTimeMillis();
+		int[] order = RecordSorter.sorted_order(records, selector_count, 1);
+		long sort_time = System.currentTimeMillis() - start;
+		long order_heap = used_heap() - heap;
+		start = System.currentTimeMillis();
+		TreelessNlistBuilder builder = new TreelessNlistBuilder();
+		INlist[] nlists = builder.create_Nlist_for_selectors_arr(records, order, selector_count);
+		nlist_time = System.currentTimeMillis() - start;
+		System.out.println(String.format("Treeless: sort %d ms, Nlists %d ms, %d nodes, sorted indices %.1f MB",
+				sort_time, nlist_time, builder.countNodes(), order_heap/1048576.0));
+
+		for (int i=0; i<selector_count; i++){
+			if (!expected[i].isIdentical(nlists[i])) throw new IllegalStateException("Different Nlist of selector " + i);
+		}
+	}
+
+	private static long used_heap(){
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}